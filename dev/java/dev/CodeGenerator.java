@@ -150,9 +150,7 @@ public class CodeGenerator {
 
   public static final String FILE_CONSTANTS = DIR_OUTPUT + "constants.txt";
 
-  public static final String FILE_CKM_NAME = DIR_OUTPUT + "ckm.properties";
-
-  public static final String FILE_CKR_NAME = DIR_OUTPUT + "ckr.properties";
+  public static final String FILE_CODE_NAMES = DIR_OUTPUT + "CodeNames.java";
 
   public static final String FILE_FULL_ENCRYPT_DECRYPT
       = DIR_OUTPUT + "fullEncryptDecrypt.txt";
@@ -181,6 +179,49 @@ public class CodeGenerator {
 
   public static final String NEWLINE = "\n";
 
+  private static final String LICENSE_HEADER =
+      "/*" + NEWLINE
+      + " *" + NEWLINE
+      + " * Copyright (c) 2019 Lijun Liao" + NEWLINE
+      + " *" + NEWLINE
+      + " * Licensed under the Apache License, Version 2.0 (the \"License\");"
+      + NEWLINE
+      + " * you may not use this file except in compliance with the License."
+      + NEWLINE
+      + " * You may obtain a copy of the License at" + NEWLINE
+      + " *" + NEWLINE
+      + " * http://www.apache.org/licenses/LICENSE-2.0" + NEWLINE
+      + " *" + NEWLINE
+      + " * Unless required by applicable law or agreed to in writing, software"
+      + NEWLINE
+      + " * distributed under the License is distributed on an \"AS IS\" BASIS,"
+      + NEWLINE
+      + " * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or "
+      + "implied." + NEWLINE
+      + " * See the License for the specific language governing permissions and"
+      + NEWLINE
+      + " * limitations under the License." + NEWLINE
+      + " */" + NEWLINE;
+
+  /**
+   * Vendor mechanisms which are not defined in pkcs11t.h. Their codes are
+   * referenced via the constants in PKCS11Constants.
+   */
+  private static final String[] VENDOR_CKM_NAMES = {
+    "CKM_VENDOR_ISO2_SM4_MAC",
+    "CKM_VENDOR_ISO2_SM4_MAC_GENERAL",
+    "CKM_VENDOR_SM2",
+    "CKM_VENDOR_SM2_ENCRYPT",
+    "CKM_VENDOR_SM2_KEY_PAIR_GEN",
+    "CKM_VENDOR_SM2_SM3",
+    "CKM_VENDOR_SM3",
+    "CKM_VENDOR_SM4_CBC",
+    "CKM_VENDOR_SM4_ECB",
+    "CKM_VENDOR_SM4_ECB_ENCRYPT_DATA",
+    "CKM_VENDOR_SM4_KEY_GEN",
+    "CKM_VENDOR_SM4_MAC",
+    "CKM_VENDOR_SM4_MAC_GENERAL"};
+
   public static void main(String[] args) {
     try {
       /*
@@ -390,9 +431,8 @@ public class CodeGenerator {
 
     constantsWriter.close();
 
-    writeCkmConstants(FILE_CKM_NAME, ckmCodeNameMap,
-        deprecatedCkmCodeNamesMap);
-    writeCkrConstants(FILE_CKR_NAME, ckrCodeNameMap);
+    writeCodeNames(FILE_CODE_NAMES, ckmCodeNameMap, deprecatedCkmCodeNamesMap,
+        ckrCodeNameMap);
   }
 
   private static void generateCkmInfo() throws Exception {
@@ -491,46 +531,111 @@ public class CodeGenerator {
     deriveWriter.close();
   }
 
-  private static void writeCkrConstants(String fileName,
-      Map<Long, String> codeNameMap) throws Exception {
-    BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
-    List<Long> codes = new ArrayList<>(codeNameMap.keySet());
-    Collections.sort(codes);
-    for (Long code : codes) {
-      writer.write(formatValue(code));
-      writer.write(" = ");
-      writer.write(codeNameMap.get(code));
-      writer.write(NEWLINE);
-    }
-    writer.close();
-  }
+  private static void writeCodeNames(String fileName,
+      Map<Long, String> ckmCodeNameMap,
+      Map<Long, List<String>> deprecatedCkmCodeNamesMap,
+      Map<Long, String> ckrCodeNameMap) throws Exception {
+    List<Long> ckmCodes = new ArrayList<>(ckmCodeNameMap.keySet());
+    Collections.sort(ckmCodes);
+
+    List<String> aliasCodes = new ArrayList<>();
+    List<String> aliasNames = new ArrayList<>();
+    for (Long code : ckmCodes) {
+      String name = ckmCodeNameMap.get(code);
+      List<String> deprecatedNames = deprecatedCkmCodeNamesMap.get(code);
+      if (deprecatedNames == null) {
+        continue;
+      }
 
-  private static void writeCkmConstants(String fileName,
-      Map<Long, String> codeNameMap,
-      Map<Long, List<String>> deprecatedCodeNamesMap) throws Exception {
-    BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
-    List<Long> codes = new ArrayList<>(codeNameMap.keySet());
-    Collections.sort(codes);
-    for (Long code : codes) {
-      writer.write(formatValue(code));
-      writer.write(" = ");
-      String name = codeNameMap.get(code);
-      writer.write(name);
-      List<String> deprecatedNames = deprecatedCodeNamesMap.get(code);
-      if (deprecatedNames != null && !deprecatedNames.isEmpty()) {
-        for (int i = 0; i < deprecatedNames.size(); i++) {
-          String deprecatedName = deprecatedNames.get(i);
-          if (!name.equals(deprecatedName)) {
-            writer.write("," + deprecatedName);
-          }
+      for (String deprecatedName : deprecatedNames) {
+        if (!name.equals(deprecatedName)) {
+          aliasCodes.add(formatValue(code) + "L");
+          aliasNames.add(deprecatedName);
         }
       }
+    }
 
-      writer.write(NEWLINE);
+    List<String> codes = new ArrayList<>(ckmCodes.size());
+    List<String> names = new ArrayList<>(ckmCodes.size());
+    for (Long code : ckmCodes) {
+      codes.add(formatValue(code) + "L");
+      names.add(ckmCodeNameMap.get(code));
     }
+
+    for (String name : VENDOR_CKM_NAMES) {
+      codes.add(name);
+      names.add(name);
+    }
+
+    List<Long> ckrCodes = new ArrayList<>(ckrCodeNameMap.keySet());
+    Collections.sort(ckrCodes);
+    List<String> errorCodes = new ArrayList<>(ckrCodes.size());
+    List<String> errorNames = new ArrayList<>(ckrCodes.size());
+    for (Long code : ckrCodes) {
+      errorCodes.add(formatValue(code) + "L");
+      errorNames.add(ckrCodeNameMap.get(code));
+    }
+
+    BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+    writer.write(LICENSE_HEADER);
+    writer.write(NEWLINE);
+    writer.write("package iaik.pkcs.pkcs11.wrapper;" + NEWLINE);
+    writer.write(NEWLINE);
+    writer.write("/**" + NEWLINE);
+    writer.write(" * Names of the PKCS#11 mechanism codes and return values."
+        + NEWLINE);
+    writer.write(" * <p>" + NEWLINE);
+    writer.write(" * Generated by dev.CodeGenerator from pkcs11t.h. "
+        + "DO NOT EDIT." + NEWLINE);
+    writer.write(" *" + NEWLINE);
+    writer.write(" * @author Lijun Liao" + NEWLINE);
+    writer.write(" * @since 1.4.9" + NEWLINE);
+    writer.write(" */" + NEWLINE);
+    writer.write("final class CodeNames implements PKCS11Constants {"
+        + NEWLINE);
+
+    writeArray(writer, "Mechanism codes, parallel to {@link #CKM_NAMES}.",
+        "long", "CKM_CODES", codes, false);
+    writeArray(writer, "Names of the mechanisms in {@link #CKM_CODES}.",
+        "String", "CKM_NAMES", names, true);
+    writeArray(writer,
+        "Codes of the alias mechanism names in {@link #CKM_ALIASES}.",
+        "long", "CKM_ALIAS_CODES", aliasCodes, false);
+    writeArray(writer, "Further (deprecated) names of mechanisms.",
+        "String", "CKM_ALIASES", aliasNames, true);
+    writeArray(writer, "Return value codes, parallel to {@link #CKR_NAMES}.",
+        "long", "CKR_CODES", errorCodes, false);
+    writeArray(writer, "Names of the return values in {@link #CKR_CODES}.",
+        "String", "CKR_NAMES", errorNames, true);
+
+    writer.write(NEWLINE);
+    writer.write("  private CodeNames() {" + NEWLINE);
+    writer.write("  }" + NEWLINE);
+    writer.write(NEWLINE);
+    writer.write("}" + NEWLINE);
     writer.close();
   }
 
+  private static void writeArray(BufferedWriter writer, String comment,
+      String type, String name, List<String> values, boolean quote)
+      throws Exception {
+    writer.write(NEWLINE);
+    writer.write("  /**" + NEWLINE);
+    writer.write("   * " + comment + NEWLINE);
+    writer.write("   */" + NEWLINE);
+    writer.write("  static final " + type + "[] " + name + " = {");
+    for (int i = 0; i < values.size(); i++) {
+      writer.write(i == 0 ? NEWLINE : "," + NEWLINE);
+      writer.write("    ");
+      if (quote) {
+        writer.write("\"" + values.get(i) + "\"");
+      } else {
+        writer.write(values.get(i));
+      }
+    }
+    writer.write("};" + NEWLINE);
+  }
+
   private static final String formatValue(long value) {
     String str = String.format("%8X", value);
     str = str.replace(' ', '0');
@@ -48,6 +48,7 @@ import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
 import iaik.pkcs.pkcs11.Token;
 import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.Key;
 import iaik.pkcs.pkcs11.objects.SecretKey;
 import iaik.pkcs.pkcs11.objects.ValuedSecretKey;
 import iaik.pkcs.pkcs11.parameters.*;
@@ -172,7 +173,7 @@ public class SSLMechanisms extends TestBase {
       sslKeyAndMACDerivationMechanism.setParameters(keyAndMACDeriveParameters);
 
       SecretKey derivedSecret = (SecretKey) session.deriveKey(
-          sslKeyAndMACDerivationMechanism, masterSecret, null);
+          sslKeyAndMACDerivationMechanism, masterSecret, (Key) null);
 
       LOG.info("the key material is\n{}", returedKeyMaterial);
       LOG.info("the derivedSecret is\n{}", derivedSecret);
@@ -0,0 +1,104 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.AsyncToken;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * This demo program signs and verifies data concurrently via an
+ * {@link AsyncToken}, without blocking the calling thread until all
+ * operations are submitted.
+ *
+ * @author Lijun Liao
+ */
+public class AsyncTokenDemo extends TestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin(), 4, 1);
+    AsyncToken asyncToken = new AsyncToken(pool);
+    try {
+      main0(token, pool, asyncToken);
+    } finally {
+      asyncToken.close();
+      pool.close();
+    }
+  }
+
+  private void main0(Token token, SessionPool pool,
+      final AsyncToken asyncToken) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_ECDSA_SHA256;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism CKM_ECDSA_SHA256");
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    final KeyPair keyPair;
+    // the session keys exist as long as the (pooled) session is open
+    Session session = pool.borrowSession(false);
+    try {
+      keyPair = generateECKeypair(token, session, ecParams, false);
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    LOG.info("##################################################");
+    LOG.info("signing and verifying with {} workers",
+        asyncToken.getWorkers());
+    final Mechanism mechanism = Mechanism.get(mechCode);
+    List<CompletableFuture<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final byte[] data = randomBytes(100);
+      results.add(asyncToken.sign(mechanism, keyPair.getPrivateKey(), data)
+          .thenCompose(new Function<byte[], CompletableFuture<Boolean>>() {
+            @Override
+            public CompletableFuture<Boolean> apply(byte[] signature) {
+              return asyncToken.verify(mechanism, keyPair.getPublicKey(),
+                  data, signature);
+            }
+          }));
+    }
+
+    for (CompletableFuture<Boolean> result : results) {
+      Assert.assertTrue("invalid signature", result.join());
+    }
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.FindObjectsIterator;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.LazyObject;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.objects.X509PublicKeyCertificate;
+import org.junit.Test;
+
+/**
+ * This demo program iterates over all objects, and over all X.509
+ * certificates, of the token with {@link FindObjectsIterator}.
+ *
+ * @author Lijun Liao
+ */
+public class FindObjectsIteratorDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Session session) throws TokenException {
+    LOG.info("##################################################");
+    int count = 0;
+    try (FindObjectsIterator iter = session.find((PKCS11Object) null, 4, 64)) {
+      while (iter.hasNext()) {
+        iter.nextLong();
+        count++;
+      }
+    }
+    LOG.info("found {} objects", count);
+
+    // only the first certificate is read from the token
+    LazyObject cert = null;
+    try (FindObjectsIterator iter =
+        session.find(new X509PublicKeyCertificate())) {
+      if (iter.hasNext()) {
+        cert = iter.nextObject();
+      }
+    }
+
+    if (cert != null) {
+      LOG.info("first certificate:\n{}", cert.getObject());
+    }
+    LOG.info("##################################################");
+  }
+
+}
@@ -130,7 +130,7 @@ public class GetInfo extends TestBase {
 
     int limit = 0, counter = 0;
 
-    session.findObjectsInit(null);
+    session.findObjectsInit((PKCS11Object) null);
     PKCS11Object[] objects = session.findObjects(1);
     if (0 < objects.length) {
       counter++;
@@ -0,0 +1,87 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.KeyIndex;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This demo program warms up the {@link KeyIndex} of the token, and resolves
+ * the keys of the token by their ID and by pkcs11: URIs.
+ *
+ * @author Lijun Liao
+ */
+public class KeyIndexDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws TokenException {
+    LOG.info("##################################################");
+    KeyIndex index = token.getKeyIndex();
+    int size = index.warmUp(session);
+    LOG.info("indexed {} objects", size);
+
+    session.findObjectsInit((PKCS11Object) null);
+    long[] handles;
+    try {
+      handles = session.findObjectHandles(1000);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    AttributeValues[] valuesList = session.readAttributes(handles,
+        PKCS11Constants.CKA_CLASS, PKCS11Constants.CKA_ID);
+    for (AttributeValues values : valuesList) {
+      long objectClass = values.getLong(PKCS11Constants.CKA_CLASS);
+      byte[] id = values.getByteArray(PKCS11Constants.CKA_ID);
+      if (objectClass != PKCS11Constants.CKO_PRIVATE_KEY || id == null) {
+        continue;
+      }
+
+      long handle = index.findHandleById(session, objectClass, id);
+      Assert.assertNotEquals(PKCS11Constants.CK_INVALID_HANDLE, handle);
+
+      StringBuilder uri = new StringBuilder("pkcs11:type=private;id=");
+      for (byte b : id) {
+        uri.append(String.format("%%%02x", b & 0xFF));
+      }
+      Assert.assertEquals(handle,
+          index.findHandleByUri(session, uri.toString()));
+      LOG.info("{} -> {}", uri, handle);
+    }
+    LOG.info("##################################################");
+  }
+
+}
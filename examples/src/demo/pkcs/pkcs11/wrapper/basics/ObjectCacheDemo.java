@@ -0,0 +1,85 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.ObjectCache;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This demo program reads all objects of the token twice with an enabled
+ * {@link ObjectCache}. The second time, the objects are taken from the cache.
+ *
+ * @author Lijun Liao
+ */
+public class ObjectCacheDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    ObjectCache cache = new ObjectCache(1000, 1, TimeUnit.MINUTES);
+    token.setObjectCache(cache);
+    Session session = openReadOnlySession(token);
+    try {
+      main0(session, cache);
+    } finally {
+      session.closeSession();
+      token.setObjectCache(null);
+    }
+  }
+
+  private void main0(Session session, ObjectCache cache)
+      throws TokenException {
+    LOG.info("##################################################");
+    session.findObjectsInit((PKCS11Object) null);
+    long[] handles;
+    try {
+      handles = session.findObjectHandles(1000);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    PKCS11Object[] objects = new PKCS11Object[handles.length];
+    for (int i = 0; i < handles.length; i++) {
+      objects[i] = PKCS11Object.getInstance(session, handles[i]);
+    }
+    long misses = cache.getMissCount();
+
+    for (int i = 0; i < handles.length; i++) {
+      Assert.assertSame(objects[i],
+          PKCS11Object.getInstance(session, handles[i]));
+      AttributeValues values =
+          session.readAttributes(handles[i], PKCS11Constants.CKA_CLASS);
+      Assert.assertTrue(values.isPresent(PKCS11Constants.CKA_CLASS));
+    }
+
+    Assert.assertEquals(misses, cache.getMissCount());
+    LOG.info("{}", cache);
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.ObjectReader;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This demo program reads all objects of the token with the
+ * {@link ObjectReader} of the module.
+ *
+ * @author Lijun Liao
+ */
+public class ObjectReaderDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Session session) throws TokenException {
+    LOG.info("##################################################");
+    ObjectReader reader = session.getModule().getObjectReader();
+
+    session.findObjectsInit((PKCS11Object) null);
+    long[] handles;
+    try {
+      handles = session.findObjectHandles(1000);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    long start = System.nanoTime();
+    for (long handle : handles) {
+      PKCS11Object object = reader.readObject(session, handle);
+      Assert.assertEquals(handle, object.getObjectHandle());
+    }
+    LOG.info("read {} objects in {} ms", handles.length,
+        (System.nanoTime() - start) / 1000000);
+    LOG.info("##################################################");
+  }
+
+}
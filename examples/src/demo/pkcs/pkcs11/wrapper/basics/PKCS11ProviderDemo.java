@@ -0,0 +1,122 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.PKCS11Key;
+import iaik.pkcs.pkcs11.PKCS11Provider;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.Enumeration;
+
+/**
+ * This demo program uses the keys of the token via the JCA: it loads the
+ * key store of a {@link PKCS11Provider}, signs with a private key of the
+ * token, and verifies the signature with the default provider.
+ *
+ * @author Lijun Liao
+ */
+public class PKCS11ProviderDemo extends TestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin());
+    try {
+      main0(token, pool);
+    } finally {
+      pool.close();
+    }
+  }
+
+  private void main0(Token token, SessionPool pool) throws Exception {
+    if (!Util.supports(token, PKCS11Constants.CKM_ECDSA_SHA256)) {
+      System.out.println("Unsupported mechanism CKM_ECDSA_SHA256");
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    KeyPair keyPair;
+    // the session keys exist as long as the (pooled) session is open
+    Session session = pool.borrowSession(false);
+    try {
+      keyPair = generateECKeypair(token, session, ecParams, false);
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    PKCS11Provider provider = new PKCS11Provider("PKCS11-demo", pool);
+
+    LOG.info("##################################################");
+    LOG.info("loading the key store");
+    KeyStore keyStore = KeyStore.getInstance("PKCS11", provider);
+    keyStore.load(null, null);
+    LOG.info("found {} entries", keyStore.size());
+
+    long handle = keyPair.getPrivateKey().getObjectHandle();
+    PrivateKey privateKey = null;
+    Enumeration<String> aliases = keyStore.aliases();
+    while (aliases.hasMoreElements()) {
+      Key key = keyStore.getKey(aliases.nextElement(), null);
+      if (key instanceof PKCS11Key
+          && ((PKCS11Key) key).getObjectHandle() == handle) {
+        privateKey = (PrivateKey) key;
+      }
+    }
+    Assert.assertNotNull("generated key not found", privateKey);
+
+    LOG.info("##################################################");
+    LOG.info("signing data via the JCA");
+    byte[] data = randomBytes(1024);
+    Signature signer = Signature.getInstance("SHA256withECDSA", provider);
+    signer.initSign(privateKey);
+    signer.update(data);
+    byte[] signatureValue = signer.sign();
+
+    Signature verifier = Signature.getInstance("SHA256withECDSA");
+    verifier.initVerify(generateJCEPublicKey(keyPair.getPublicKey()));
+    verifier.update(data);
+    Assert.assertTrue("invalid signature", verifier.verify(signatureValue));
+
+    if (provider.getService("SecureRandom", "PKCS11") != null) {
+      SecureRandom random = SecureRandom.getInstance("PKCS11", provider);
+      byte[] bytes = new byte[32];
+      random.nextBytes(bytes);
+      LOG.info("generated {} random bytes", bytes.length);
+    }
+
+    LOG.info("##################################################");
+  }
+
+}
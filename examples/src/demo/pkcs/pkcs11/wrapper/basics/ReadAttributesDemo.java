@@ -0,0 +1,72 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This demo program reads the class, ID and label of all objects of the
+ * token, without reading any other attribute.
+ *
+ * @author Lijun Liao
+ */
+public class ReadAttributesDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Session session) throws TokenException {
+    LOG.info("##################################################");
+    session.findObjectsInit((PKCS11Object) null);
+    long[] handles;
+    try {
+      handles = session.findObjectHandles(1000);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    AttributeValues[] valuesList = session.readAttributes(handles,
+        PKCS11Constants.CKA_CLASS, PKCS11Constants.CKA_ID,
+        PKCS11Constants.CKA_LABEL);
+    Assert.assertEquals(handles.length, valuesList.length);
+    for (AttributeValues values : valuesList) {
+      Assert.assertTrue(values.isPresent(PKCS11Constants.CKA_CLASS));
+      LOG.info("class: {}, label: {}",
+          values.getLong(PKCS11Constants.CKA_CLASS),
+          values.getString(PKCS11Constants.CKA_LABEL));
+    }
+    LOG.info("##################################################");
+  }
+
+}
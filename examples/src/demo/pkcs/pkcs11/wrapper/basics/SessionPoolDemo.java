@@ -0,0 +1,110 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.State;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This demo program borrows sessions from a {@link SessionPool} and returns
+ * them.
+ *
+ * @author Lijun Liao
+ */
+public class SessionPoolDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin(), 2, 2);
+    try {
+      main0(pool);
+    } finally {
+      pool.close();
+    }
+  }
+
+  private void main0(SessionPool pool) throws TokenException {
+    LOG.info("##################################################");
+    LOG.info("max RO sessions: {}, max RW sessions: {}",
+        pool.getMaxRoSessions(), pool.getMaxRwSessions());
+
+    Session session1 = pool.borrowSession(false);
+    Session session2 = pool.borrowSession(false);
+    try {
+      Assert.assertNotEquals(session1.getSessionHandle(),
+          session2.getSessionHandle());
+
+      // both read-only sessions are in use
+      try {
+        Session session3 = pool.borrowSession(false, 100,
+            TimeUnit.MILLISECONDS);
+        pool.requiteSession(session3);
+        Assert.fail("borrowed more sessions than allowed");
+      } catch (TokenException ex) {
+        LOG.info("expected: {}", ex.getMessage());
+      }
+
+      LOG.info("random: {}", session1.generateRandom(8).length);
+    } finally {
+      pool.requiteSession(session1);
+      pool.requiteSession(session2);
+    }
+
+    // the returned session is reused
+    Session session = pool.borrowSession(false);
+    try {
+      Assert.assertTrue(session == session1 || session == session2);
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    Session rwSession = pool.borrowSession(true);
+    pool.requiteSession(rwSession);
+
+    // discarding all sessions logs the application out of the token, the
+    // next session must be logged in again
+    session1 = pool.borrowSession(false);
+    session2 = pool.borrowSession(false);
+    rwSession = pool.borrowSession(true);
+    pool.invalidateSession(session1);
+    pool.invalidateSession(session2);
+    pool.invalidateSession(rwSession);
+
+    session = pool.borrowSession(false);
+    try {
+      if (pool.getToken().getTokenInfo().isLoginRequired()) {
+        Assert.assertEquals(State.RO_USER_FUNCTIONS,
+            session.getSessionInfo().getState());
+      }
+    } finally {
+      pool.requiteSession(session);
+    }
+    LOG.info("finished");
+    LOG.info("##################################################");
+  }
+
+}
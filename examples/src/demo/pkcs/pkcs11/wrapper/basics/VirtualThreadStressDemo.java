@@ -0,0 +1,222 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package demo.pkcs.pkcs11.wrapper.basics;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This demo program signs data in 100000 virtual threads (Java 21+), once
+ * with and once without offloading the native calls (see
+ * {@link Token#setOffloadNativeCalls(boolean)}). Meanwhile an unrelated
+ * virtual thread sleeps 1 ms in a loop; it only wakes up in time if a
+ * carrier thread is free. The demo measures the longest delay of this probe
+ * beyond its sleep, and checks that the delay is much shorter with
+ * offloading, i.e. that the carrier threads are not blocked in the native
+ * calls. If the token is too fast to delay the probe noticeably even
+ * without offloading, there is nothing to compare. On older JDKs it does
+ * nothing.
+ * <p>
+ * The pool has up to 32 sessions, so without offloading all carrier threads
+ * (one per CPU by default) can be blocked in the token.
+ *
+ * @author Lijun Liao
+ */
+public class VirtualThreadStressDemo extends TestBase {
+
+  private static final int THREADS = 100000;
+
+  /**
+   * The delay of the probe without offloading, below which the carrier
+   * threads are not considered blocked.
+   */
+  private static final long MIN_STARVATION_MILLIS = 50;
+
+  private static final class LoadResult {
+
+    private int failures;
+
+    private long millis;
+
+    private long probeTicks;
+
+    private long maxProbeDelayMillis;
+
+    private double probeTicksPerSecond() {
+      return (millis == 0) ? 0 : probeTicks * 1000.0 / millis;
+    }
+
+  }
+
+  @Test
+  public void main() throws Exception {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException ex) {
+      System.out.println("virtual threads require Java 21 or later");
+      return;
+    }
+
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin());
+    try {
+      main0(token, pool);
+    } finally {
+      token.setOffloadNativeCalls(true);
+      pool.close();
+    }
+  }
+
+  private static ExecutorService newVirtualThreadExecutor()
+      throws Exception {
+    return (ExecutorService) Executors.class
+        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+  }
+
+  private void main0(Token token, SessionPool pool) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_ECDSA_SHA256;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism CKM_ECDSA_SHA256");
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    KeyPair keyPair;
+    // borrowing the first session logs in, before the virtual threads start
+    Session session = pool.borrowSession(false);
+    try {
+      keyPair = generateECKeypair(token, session, ecParams, false);
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    LoadResult blocking = runLoad(token, pool, keyPair, false);
+    LoadResult offloaded = runLoad(token, pool, keyPair, true);
+
+    Assert.assertEquals("failed operations without offloading", 0,
+        blocking.failures);
+    Assert.assertEquals("failed operations with offloading", 0,
+        offloaded.failures);
+    if (blocking.maxProbeDelayMillis < MIN_STARVATION_MILLIS) {
+      LOG.info("the token does not block the carrier threads noticeably");
+    } else {
+      // a margin, so that scheduling noise does not decide the result
+      Assert.assertTrue("carrier threads are blocked despite offloading",
+          offloaded.maxProbeDelayMillis * 2
+              < blocking.maxProbeDelayMillis);
+    }
+    LOG.info("##################################################");
+  }
+
+  private LoadResult runLoad(Token token, final SessionPool pool,
+      final KeyPair keyPair, boolean offload) throws Exception {
+    token.setOffloadNativeCalls(offload);
+    final Mechanism mechanism =
+        Mechanism.get(PKCS11Constants.CKM_ECDSA_SHA256);
+    final byte[] data = randomBytes(100);
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicBoolean loadFinished = new AtomicBoolean();
+    final AtomicLong probeTicks = new AtomicLong();
+    final AtomicLong maxProbeDelay = new AtomicLong();
+
+    ExecutorService probeExecutor = newVirtualThreadExecutor();
+    ExecutorService executor = newVirtualThreadExecutor();
+    LoadResult result = new LoadResult();
+    try {
+      // the probe needs a free carrier thread after each sleep
+      probeExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (!loadFinished.get()) {
+              long start = System.nanoTime();
+              Thread.sleep(1);
+              long delay = (System.nanoTime() - start) / 1000000 - 1;
+              if (delay > maxProbeDelay.get()) {
+                maxProbeDelay.set(delay);
+              }
+              probeTicks.incrementAndGet();
+            }
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+
+      LOG.info("##################################################");
+      LOG.info("signing in {} virtual threads, offloading {}", THREADS,
+          offload ? "on" : "off");
+      long start = System.nanoTime();
+      for (int i = 0; i < THREADS; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Session session = pool.borrowSession(false, 10,
+                  TimeUnit.MINUTES);
+              try {
+                session.signInit(mechanism, keyPair.getPrivateKey());
+                session.sign(data);
+              } finally {
+                pool.requiteSession(session);
+              }
+            } catch (Exception ex) {
+              failures.incrementAndGet();
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      Assert.assertTrue("timed out",
+          executor.awaitTermination(30, TimeUnit.MINUTES));
+      result.millis = (System.nanoTime() - start) / 1000000;
+      result.probeTicks = probeTicks.get();
+      result.maxProbeDelayMillis = maxProbeDelay.get();
+      loadFinished.set(true);
+    } finally {
+      loadFinished.set(true);
+      executor.shutdownNow();
+      probeExecutor.shutdownNow();
+    }
+
+    result.failures = failures.get();
+    LOG.info("{} signatures in {} ms, probe: {} ticks ({} per second),"
+        + " max. delay {} ms", THREADS, result.millis, result.probeTicks,
+        (long) result.probeTicksPerSecond(), result.maxProbeDelayMillis);
+    return result;
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.encryption;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.ValuedSecretKey;
+import iaik.pkcs.pkcs11.parameters.InitializationVectorParameters;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This demo program encrypts data from a direct ByteBuffer and decrypts it
+ * into a heap ByteBuffer via CKM_AES_CBC_PAD, digests the data from
+ * direct, heap and read-only buffers, and digests and MACs the data from a
+ * direct buffer whose position is not 0.
+ *
+ * @author Lijun Liao
+ */
+public class ByteBufferEncryptDecrypt extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+
+    Session session = openReadWriteSession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws TokenException {
+    LOG.info("##################################################");
+    LOG.info("generate secret encryption/decryption key");
+    Mechanism keyMechanism =
+        getSupportedMechanism(token, PKCS11Constants.CKM_AES_KEY_GEN);
+
+    ValuedSecretKey keyTemplate = ValuedSecretKey.newAESSecretKey();
+    keyTemplate.getEncrypt().setBooleanValue(Boolean.TRUE);
+    keyTemplate.getDecrypt().setBooleanValue(Boolean.TRUE);
+    keyTemplate.getValueLen().setLongValue(16L);
+    keyTemplate.getToken().setBooleanValue(false);
+
+    ValuedSecretKey encryptionKey = (ValuedSecretKey)
+        session.generateKey(keyMechanism, keyTemplate);
+
+    byte[] rawData = randomBytes(1057);
+    byte[] iv = randomBytes(16);
+
+    LOG.info("##################################################");
+    LOG.info("encrypting data from a direct buffer");
+    ByteBuffer plain = ByteBuffer.allocateDirect(rawData.length);
+    plain.put(rawData).flip();
+    ByteBuffer encrypted = ByteBuffer.allocateDirect(rawData.length + 16);
+
+    session.encryptInit(getEncryptionMech(token, iv), encryptionKey);
+    while (plain.hasRemaining()) {
+      ByteBuffer part = plain.duplicate();
+      part.limit(Math.min(part.position() + 100, part.limit()));
+      session.encryptUpdate(part, encrypted);
+      plain.position(part.position());
+    }
+    session.encryptFinal(encrypted);
+    encrypted.flip();
+
+    LOG.info("##################################################");
+    LOG.info("decrypting data into a heap buffer");
+    ByteBuffer decrypted = ByteBuffer.allocate(encrypted.remaining());
+    session.decryptInit(getEncryptionMech(token, iv), encryptionKey);
+    session.decryptUpdate(encrypted, decrypted);
+    session.decryptFinal(decrypted);
+    decrypted.flip();
+
+    Assert.assertEquals(0, encrypted.remaining());
+    Assert.assertEquals(ByteBuffer.wrap(rawData), decrypted);
+
+    LOG.info("##################################################");
+    LOG.info("digesting data from direct, heap and read-only buffers");
+    Mechanism digestMechanism =
+        getSupportedMechanism(token, PKCS11Constants.CKM_SHA256);
+    byte[] expected = new byte[32];
+    session.digestInit(digestMechanism);
+    session.digest(rawData, 0, rawData.length, expected, 0, expected.length);
+
+    plain.rewind();
+    ByteBuffer[] buffers = {plain, ByteBuffer.wrap(rawData),
+        ByteBuffer.wrap(rawData).asReadOnlyBuffer()};
+    for (ByteBuffer buffer : buffers) {
+      session.digestInit(digestMechanism);
+      session.digestUpdate(buffer);
+      byte[] digest = new byte[32];
+      session.digestFinal(digest, 0, digest.length);
+      Assert.assertArrayEquals(expected, digest);
+      Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    LOG.info("##################################################");
+    LOG.info("digesting and MACing data from a direct buffer at offset 7");
+    ByteBuffer offsetBuffer = ByteBuffer.allocateDirect(7 + rawData.length);
+    offsetBuffer.put(randomBytes(7)).put(rawData).flip();
+
+    offsetBuffer.position(7);
+    session.digestInit(digestMechanism);
+    session.digestUpdate(offsetBuffer);
+    byte[] digest = new byte[32];
+    session.digestFinal(digest, 0, digest.length);
+    Assert.assertArrayEquals(expected, digest);
+
+    ValuedSecretKey macKeyTemplate = ValuedSecretKey.newGenericSecretKey();
+    macKeyTemplate.getSign().setBooleanValue(Boolean.TRUE);
+    macKeyTemplate.getVerify().setBooleanValue(Boolean.TRUE);
+    macKeyTemplate.getValueLen().setLongValue(32L);
+    macKeyTemplate.getToken().setBooleanValue(false);
+    ValuedSecretKey macKey = (ValuedSecretKey) session.generateKey(
+        getSupportedMechanism(token,
+            PKCS11Constants.CKM_GENERIC_SECRET_KEY_GEN),
+        macKeyTemplate);
+
+    Mechanism macMechanism =
+        getSupportedMechanism(token, PKCS11Constants.CKM_SHA256_HMAC);
+    session.signInit(macMechanism, macKey);
+    byte[] expectedMac = session.sign(rawData);
+
+    offsetBuffer.position(7);
+    session.signInit(macMechanism, macKey);
+    session.signUpdate(offsetBuffer);
+    Assert.assertArrayEquals(expectedMac, session.signFinal(32));
+
+    offsetBuffer.position(7);
+    session.verifyInit(macMechanism, macKey);
+    session.verifyUpdate(offsetBuffer);
+    session.verifyFinal(expectedMac);
+
+    LOG.info("finished");
+  }
+
+  private Mechanism getEncryptionMech(Token token, byte[] iv)
+      throws TokenException {
+    Mechanism mech =
+        getSupportedMechanism(token, PKCS11Constants.CKM_AES_CBC_PAD);
+    mech.setParameters(new InitializationVectorParameters(iv));
+    return mech;
+  }
+
+}
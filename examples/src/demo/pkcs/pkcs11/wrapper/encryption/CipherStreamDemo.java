@@ -0,0 +1,177 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.encryption;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.PKCS11CipherChannel;
+import iaik.pkcs.pkcs11.PKCS11CipherInputStream;
+import iaik.pkcs.pkcs11.PKCS11CipherOutputStream;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.ValuedSecretKey;
+import iaik.pkcs.pkcs11.parameters.GCMParameters;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This demo program encrypts data via CKM_AES_GCM with a
+ * {@link PKCS11CipherOutputStream} and a {@link PKCS11CipherChannel}, and
+ * decrypts it with a {@link PKCS11CipherInputStream}. It also checks that a
+ * tampered authentication tag fails every read of the input stream.
+ *
+ * @author Lijun Liao
+ */
+public class CipherStreamDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException, IOException {
+    // check whether supported in current JDK
+    try {
+      new GCMParameters(16, new byte[12], null);
+    } catch (IllegalStateException ex) {
+      System.err.println("AES-GCM unsupported in current JDK, skip");
+      return;
+    }
+
+    Token token = getNonNullToken();
+    Session session = openReadWriteSession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session)
+      throws TokenException, IOException {
+    LOG.info("##################################################");
+    LOG.info("generate secret encryption/decryption key");
+    Mechanism keyMechanism =
+        getSupportedMechanism(token, PKCS11Constants.CKM_AES_KEY_GEN);
+
+    ValuedSecretKey keyTemplate = ValuedSecretKey.newAESSecretKey();
+    keyTemplate.getEncrypt().setBooleanValue(Boolean.TRUE);
+    keyTemplate.getDecrypt().setBooleanValue(Boolean.TRUE);
+    keyTemplate.getValueLen().setLongValue(16L);
+    keyTemplate.getToken().setBooleanValue(false);
+
+    ValuedSecretKey key = (ValuedSecretKey)
+        session.generateKey(keyMechanism, keyTemplate);
+
+    byte[] rawData = randomBytes(100 * 1024 + 17);
+    byte[] iv = randomBytes(12);
+
+    LOG.info("##################################################");
+    LOG.info("encrypting data with the output stream");
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    OutputStream encOut = new PKCS11CipherOutputStream(bout, session,
+        getEncryptionMech(token, iv), key, true, 0);
+    try {
+      encOut.write(rawData, 0, 10);
+      encOut.write(rawData[10]);
+      encOut.write(rawData, 11, rawData.length - 11);
+    } finally {
+      encOut.close();
+    }
+    byte[] encrypted = bout.toByteArray();
+    // with tag
+    Assert.assertEquals(rawData.length + 16, encrypted.length);
+
+    LOG.info("##################################################");
+    LOG.info("encrypting data with the channel");
+    bout.reset();
+    WritableByteChannel encChannel = new PKCS11CipherChannel(
+        Channels.newChannel(bout), session, getEncryptionMech(token, iv),
+        key, true, 0);
+    try {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(rawData.length);
+      buffer.put(rawData).flip();
+      encChannel.write(buffer);
+    } finally {
+      encChannel.close();
+    }
+    Assert.assertArrayEquals(encrypted, bout.toByteArray());
+
+    LOG.info("##################################################");
+    LOG.info("decrypting data with the input stream");
+    bout.reset();
+    InputStream decIn = new PKCS11CipherInputStream(
+        new ByteArrayInputStream(encrypted), session,
+        getEncryptionMech(token, iv), key, false, 0);
+    try {
+      byte[] buffer = new byte[4096];
+      int len;
+      while ((len = decIn.read(buffer)) != -1) {
+        bout.write(buffer, 0, len);
+      }
+    } finally {
+      decIn.close();
+    }
+    Assert.assertArrayEquals(rawData, bout.toByteArray());
+
+    LOG.info("##################################################");
+    LOG.info("decrypting data with a tampered tag");
+    byte[] tampered = encrypted.clone();
+    tampered[tampered.length - 1] ^= 0x01;
+    decIn = new PKCS11CipherInputStream(new ByteArrayInputStream(tampered),
+        session, getEncryptionMech(token, iv), key, false, 0);
+    try {
+      byte[] buffer = new byte[4096];
+      IOException failure = null;
+      try {
+        while (decIn.read(buffer) != -1) { // CHECKSTYLE:SKIP
+        }
+      } catch (IOException ex) {
+        failure = ex;
+      }
+      Assert.assertNotNull("tampered tag not detected", failure);
+
+      // a retry must not see a clean end of stream
+      try {
+        decIn.read(buffer);
+        Assert.fail("read after a failed verification succeeded");
+      } catch (IOException ex) {
+        Assert.assertSame(failure, ex);
+      }
+    } finally {
+      decIn.close();
+    }
+
+    LOG.info("finished");
+  }
+
+  private Mechanism getEncryptionMech(Token token, byte[] iv)
+      throws TokenException {
+    Mechanism mech = getSupportedMechanism(token, PKCS11Constants.CKM_AES_GCM);
+    mech.setParameters(new GCMParameters(16, iv, new byte[20]));
+    return mech;
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.keygeneration;
+
+import demo.pkcs.pkcs11.wrapper.TestBase;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.ECPrivateKey;
+import iaik.pkcs.pkcs11.objects.ECPublicKey;
+import iaik.pkcs.pkcs11.objects.LazyObject;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This demo program generates an EC key pair without reading its attributes,
+ * signs with the private key via its handle, and reads the public key only
+ * afterwards.
+ *
+ * @author Lijun Liao
+ */
+public class LazyObjectDemo extends TestBase {
+
+  @Test
+  public void main() throws TokenException {
+    Token token = getNonNullToken();
+    Session session = openReadWriteSession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws TokenException {
+    Mechanism keyPairGenMechanism = getSupportedMechanism(token,
+        PKCS11Constants.CKM_EC_KEY_PAIR_GEN);
+    Mechanism signMechanism = getSupportedMechanism(token,
+        PKCS11Constants.CKM_ECDSA);
+    LOG.info("##################################################");
+    LOG.info("Generating EC key pair handles");
+
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    ECPublicKey publicKeyTemplate = new ECPublicKey();
+    publicKeyTemplate.getEcdsaParams().setByteArrayValue(ecParams);
+    publicKeyTemplate.getToken().setBooleanValue(Boolean.FALSE);
+    publicKeyTemplate.getVerify().setBooleanValue(Boolean.TRUE);
+    publicKeyTemplate.getKeyType().setPresent(false);
+    publicKeyTemplate.getObjectClass().setPresent(false);
+
+    ECPrivateKey privateKeyTemplate = new ECPrivateKey();
+    privateKeyTemplate.getToken().setBooleanValue(Boolean.FALSE);
+    privateKeyTemplate.getSensitive().setBooleanValue(Boolean.TRUE);
+    privateKeyTemplate.getSign().setBooleanValue(Boolean.TRUE);
+    privateKeyTemplate.getKeyType().setPresent(false);
+    privateKeyTemplate.getObjectClass().setPresent(false);
+
+    long[] handles = session.generateKeyPairHandles(keyPairGenMechanism,
+        publicKeyTemplate, privateKeyTemplate);
+    LazyObject publicKey = new LazyObject(session, handles[0]);
+    LazyObject privateKey = new LazyObject(session, handles[1]);
+
+    // only the handle of the private key is required to sign
+    session.signInit(signMechanism, privateKey.asKey());
+    byte[] signature = session.sign(new byte[32]);
+    LOG.info("signature length: {}", signature.length);
+    Assert.assertFalse(privateKey.isMaterialized());
+
+    // the attributes of the public key are read on demand
+    Assert.assertTrue(publicKey.getObject() instanceof ECPublicKey);
+    Assert.assertTrue(publicKey.isMaterialized());
+    LOG.info("the public key is\n{}", publicKey.getObject());
+
+    session.destroyObject(privateKey.asKey());
+    session.destroyObject(publicKey.getObject());
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.AsyncToken;
+import iaik.pkcs.pkcs11.BatchSigner;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Signs and verifies a batch of messages with CKM_SHA256_RSA_PKCS in
+ * parallel via a {@link BatchSigner}, with one invalid signature in the
+ * batch.
+ *
+ * @author Lijun Liao
+ */
+public class BatchSignDemo extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin(), 4, 1);
+    AsyncToken asyncToken = new AsyncToken(pool);
+    try {
+      main0(token, pool, asyncToken);
+    } finally {
+      asyncToken.close();
+      pool.close();
+    }
+  }
+
+  private void main0(Token token, SessionPool pool, AsyncToken asyncToken)
+      throws Exception {
+    final long mechCode = PKCS11Constants.CKM_SHA256_RSA_PKCS;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism CKM_SHA256_RSA_PKCS");
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    KeyPair keyPair;
+    // the session keys exist as long as the (pooled) session is open
+    Session session = pool.borrowSession(false);
+    try {
+      keyPair = generateRSAKeypair(token, session, 2048, false);
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    final int count = 1000;
+    List<byte[]> data = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      data.add(randomBytes(200));
+    }
+
+    LOG.info("##################################################");
+    LOG.info("signing {} messages", count);
+    Mechanism mechanism = Mechanism.get(mechCode);
+    BatchSigner batchSigner = new BatchSigner(asyncToken);
+    byte[][] signatures = new byte[count][];
+    TokenException[] errors = new TokenException[count];
+    long start = System.nanoTime();
+    int failures = batchSigner.signAll(mechanism, keyPair.getPrivateKey(),
+        data, signatures, errors);
+    LOG.info("signed in {} ms", (System.nanoTime() - start) / 1000000);
+    Assert.assertEquals("failed signatures: " + Arrays.toString(errors), 0,
+        failures);
+
+    LOG.info("##################################################");
+    LOG.info("verifying {} signatures", count);
+    // tamper the first message
+    data.get(0)[0] ^= 1;
+    boolean[] results = new boolean[count];
+    failures = batchSigner.verifyAll(mechanism, keyPair.getPublicKey(), data,
+        Arrays.asList(signatures), results, errors);
+    Assert.assertEquals(1, failures);
+    Assert.assertFalse(results[0]);
+    Assert.assertNull(errors[0]);
+    jceVerifySignature("SHA256WithRSA", keyPair.getPublicKey(), data.get(1),
+        signatures[1]);
+    LOG.info("##################################################");
+  }
+
+}
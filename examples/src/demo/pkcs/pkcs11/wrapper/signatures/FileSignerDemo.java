@@ -0,0 +1,107 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.FileDigester;
+import iaik.pkcs.pkcs11.FileSigner;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+
+/**
+ * Signs and digests a file with {@link FileSigner} and {@link FileDigester},
+ * once in a single part and once in multiple memory-mapped chunks.
+ *
+ * @author Lijun Liao
+ */
+public class FileSignerDemo extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_ECDSA_SHA256;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism "
+          + Functions.mechanismCodeToString(mechCode));
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    KeyPair keyPair = generateECKeypair(token, session, ecParams, false);
+
+    byte[] content = randomBytes(300 * 1024 + 5);
+    File file = File.createTempFile("pkcs11-file-signer", ".bin");
+    try {
+      Files.write(file.toPath(), content);
+
+      Mechanism signatureMechanism = getSupportedMechanism(token, mechCode);
+      FileSigner signer = new FileSigner(session, signatureMechanism,
+          keyPair.getPrivateKey());
+      signer.setChunkSize(64 * 1024);
+
+      Mechanism digestMechanism =
+          getSupportedMechanism(token, PKCS11Constants.CKM_SHA256);
+      FileDigester digester = new FileDigester(session, digestMechanism);
+      digester.setChunkSize(64 * 1024);
+      byte[] expectedDigest =
+          MessageDigest.getInstance("SHA-256").digest(content);
+
+      // first in a single part, then in multiple parts
+      long[] thresholds = {Long.MAX_VALUE, 0};
+      for (long threshold : thresholds) {
+        LOG.info("##################################################");
+        LOG.info("signing file, single-part threshold {}", threshold);
+        signer.setSinglePartThreshold(threshold);
+        byte[] signatureValue = signer.sign(file);
+        jceVerifySignature("SHA256WithECDSA", keyPair.getPublicKey(),
+            content, Util.dsaSigPlainToX962(signatureValue));
+
+        digester.setSinglePartThreshold(threshold);
+        Assert.assertArrayEquals(expectedDigest, digester.digest(file));
+      }
+    } finally {
+      file.delete();
+    }
+
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.HybridSigner;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.ECPrivateKey;
+import iaik.pkcs.pkcs11.objects.ECPublicKey;
+import iaik.pkcs.pkcs11.objects.Key.KeyType;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Signs data with CKM_SHA256_RSA_PKCS on the token and with local hashing
+ * via {@link HybridSigner}, and checks that the signatures are identical.
+ * Signs data with CKM_VENDOR_SM2_SM3 with local hashing, including the
+ * identifier value Z, and verifies the signature on the token.
+ *
+ * @author Lijun Liao
+ */
+public class HybridSignerDemo extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws Exception {
+    rsa(token, session);
+    sm2(token, session);
+  }
+
+  private void rsa(Token token, Session session) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_SHA256_RSA_PKCS;
+    if (!Util.supports(token, mechCode)
+        || !Util.supports(token, PKCS11Constants.CKM_RSA_PKCS)) {
+      System.out.println("Unsupported mechanism "
+          + Functions.mechanismCodeToString(mechCode));
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    KeyPair keyPair = generateRSAKeypair(token, session, 2048, false);
+
+    Mechanism signatureMechanism = getSupportedMechanism(token, mechCode);
+    HybridSigner signer = new HybridSigner(session, signatureMechanism,
+        keyPair.getPrivateKey());
+    byte[] dataToBeSigned = randomBytes(100 * 1024);
+
+    LOG.info("##################################################");
+    LOG.info("signing data on the token");
+    signer.setThreshold(Integer.MAX_VALUE);
+    Assert.assertFalse(signer.isLocalHashing(dataToBeSigned.length));
+    byte[] tokenSignature = signer.sign(dataToBeSigned);
+
+    LOG.info("##################################################");
+    LOG.info("signing data with local hashing");
+    signer.setThreshold(0);
+    Assert.assertTrue(signer.isLocalHashing(dataToBeSigned.length));
+    byte[] hybridSignature = signer.sign(dataToBeSigned);
+
+    // RSA PKCS#1 v1.5 signatures are deterministic
+    Assert.assertArrayEquals(tokenSignature, hybridSignature);
+    jceVerifySignature("SHA256WithRSA", keyPair.getPublicKey(),
+        dataToBeSigned, hybridSignature);
+
+    // Z is only defined for SM2
+    try {
+      signer.setSM2PublicKey(new byte[65]);
+      Assert.fail("setSM2PublicKey accepted for an RSA mechanism");
+    } catch (IllegalStateException ex) {
+      LOG.info("expected: {}", ex.getMessage());
+    }
+
+    LOG.info("##################################################");
+  }
+
+  private void sm2(Token token, Session session) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_VENDOR_SM2_SM3;
+    if (!Util.supports(token, mechCode)
+        || !Util.supports(token, PKCS11Constants.CKM_VENDOR_SM2)
+        || !Util.supports(token,
+            PKCS11Constants.CKM_VENDOR_SM2_KEY_PAIR_GEN)) {
+      System.out.println("Unsupported mechanism "
+          + Functions.mechanismCodeToString(mechCode));
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate SM2 signature key pair");
+    KeyPair keyPair = generateSM2Keypair(token, session);
+    byte[] ecPoint = ((ECPublicKey) keyPair.getPublicKey()).getEcPoint()
+        .getByteArrayValue();
+
+    Mechanism signatureMechanism = getSupportedMechanism(token, mechCode);
+    HybridSigner signer = new HybridSigner(session, signatureMechanism,
+        keyPair.getPrivateKey());
+    // Z is computed from the public key and the default user ID
+    signer.setSM2PublicKey(ecPoint);
+    if (!signer.supportsLocalHashing()) {
+      System.out.println("SM3 is not available in the JCA, skip");
+      return;
+    }
+
+    byte[] dataToBeSigned = randomBytes(100 * 1024);
+
+    LOG.info("##################################################");
+    LOG.info("signing data with local hashing");
+    signer.setThreshold(0);
+    Assert.assertTrue(signer.isLocalHashing(dataToBeSigned.length));
+    byte[] hybridSignature = signer.sign(dataToBeSigned);
+
+    // SM2 signatures are randomized, verify with Z computed by the token
+    session.verifyInit(signatureMechanism, keyPair.getPublicKey());
+    session.verify(dataToBeSigned, hybridSignature);
+
+    LOG.info("##################################################");
+  }
+
+  private KeyPair generateSM2Keypair(Token token, Session session)
+      throws Exception {
+    Mechanism keyPairGenMechanism = getSupportedMechanism(token,
+        PKCS11Constants.CKM_VENDOR_SM2_KEY_PAIR_GEN);
+    ECPublicKey publicKeyTemplate = new ECPublicKey(KeyType.VENDOR_SM2);
+    ECPrivateKey privateKeyTemplate = new ECPrivateKey(KeyType.VENDOR_SM2);
+
+    // OID 1.2.156.10197.1.301 of the curve sm2p256v1
+    publicKeyTemplate.getEcdsaParams().setByteArrayValue(
+        Functions.decodeHex("06082A811CCF5501822D"));
+    publicKeyTemplate.getToken().setBooleanValue(Boolean.FALSE);
+    publicKeyTemplate.getVerify().setBooleanValue(Boolean.TRUE);
+
+    privateKeyTemplate.getSensitive().setBooleanValue(Boolean.TRUE);
+    privateKeyTemplate.getToken().setBooleanValue(Boolean.FALSE);
+    privateKeyTemplate.getPrivate().setBooleanValue(Boolean.TRUE);
+    privateKeyTemplate.getSign().setBooleanValue(Boolean.TRUE);
+
+    return session.generateKeyPair(keyPairGenMechanism,
+        publicKeyTemplate, privateKeyTemplate);
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.AsyncToken;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.MerkleBatchSigner;
+import iaik.pkcs.pkcs11.MerkleSignature;
+import iaik.pkcs.pkcs11.MerkleVerifier;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Signs many documents with CKM_SHA256_RSA_PKCS via a
+ * {@link MerkleBatchSigner}, which signs only one Merkle tree root per
+ * batch on the token, and verifies the signatures in the JVM via a
+ * {@link MerkleVerifier}.
+ *
+ * @author Lijun Liao
+ */
+public class MerkleBatchSignDemo extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    SessionPool pool = new SessionPool(token, getModulePin(), 2, 1);
+    AsyncToken asyncToken = new AsyncToken(pool);
+    try {
+      main0(token, pool, asyncToken);
+    } finally {
+      asyncToken.close();
+      pool.close();
+    }
+  }
+
+  private void main0(Token token, SessionPool pool, AsyncToken asyncToken)
+      throws Exception {
+    final long mechCode = PKCS11Constants.CKM_SHA256_RSA_PKCS;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism CKM_SHA256_RSA_PKCS");
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    KeyPair keyPair;
+    java.security.PublicKey jcaPublicKey;
+    // the session keys exist as long as the (pooled) session is open
+    Session session = pool.borrowSession(false);
+    try {
+      keyPair = generateRSAKeypair(token, session, 2048, false);
+      jcaPublicKey = token.getPublicKeyEngine().getJcaPublicKey(session,
+          keyPair.getPublicKey());
+    } finally {
+      pool.requiteSession(session);
+    }
+
+    final int count = 10000;
+    List<byte[]> documents = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      documents.add(randomBytes(200));
+    }
+
+    LOG.info("##################################################");
+    LOG.info("signing {} documents", count);
+    Mechanism mechanism = Mechanism.get(mechCode);
+    MerkleBatchSigner signer = new MerkleBatchSigner(asyncToken, mechanism,
+        keyPair.getPrivateKey(), MerkleBatchSigner.DEFAULT_HASH_ALGORITHM,
+        20, 1024);
+    List<CompletableFuture<MerkleSignature>> futures =
+        new ArrayList<>(count);
+    long start = System.nanoTime();
+    try {
+      for (byte[] document : documents) {
+        futures.add(signer.sign(document));
+      }
+    } finally {
+      signer.close();
+    }
+
+    List<MerkleSignature> signatures = new ArrayList<>(count);
+    for (CompletableFuture<MerkleSignature> future : futures) {
+      signatures.add(future.get());
+    }
+    LOG.info("signed in {} ms", (System.nanoTime() - start) / 1000000);
+
+    LOG.info("##################################################");
+    LOG.info("verifying {} signatures", count);
+    MerkleVerifier verifier = new MerkleVerifier(mechanism, jcaPublicKey);
+    for (int i = 0; i < count; i++) {
+      // the signature is transferred in its encoded form
+      MerkleSignature signature =
+          MerkleSignature.decode(signatures.get(i).getEncoded());
+      Assert.assertTrue("invalid signature " + i,
+          verifier.verify(documents.get(i), signature));
+    }
+
+    // tamper the first document
+    documents.get(0)[0] ^= 1;
+    Assert.assertFalse(verifier.verify(documents.get(0), signatures.get(0)));
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.PreparedMechanism;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.objects.PrivateKey;
+import iaik.pkcs.pkcs11.objects.PublicKey;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Test;
+
+/**
+ * Signs some data several times on the token using a prepared
+ * CKM_ECDSA_SHA256 mechanism.
+ *
+ * @author Lijun Liao
+ */
+public class PreparedMechanismSign extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws Exception {
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+
+    final long mechCode = PKCS11Constants.CKM_ECDSA_SHA256;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism "
+          + Functions.mechanismCodeToString(mechCode));
+      return;
+    }
+    // be sure that your token can process the specified mechanism
+    Mechanism signatureMechanism = getSupportedMechanism(token, mechCode);
+    PreparedMechanism preparedMechanism = session.prepare(signatureMechanism);
+
+    final boolean inToken = false;
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+
+    KeyPair generatedKeyPair =
+        generateECKeypair(token, session, ecParams, inToken);
+    PrivateKey generatedPrivateKey = generatedKeyPair.getPrivateKey();
+    PublicKey generatedPublicKey = generatedKeyPair.getPublicKey();
+
+    LOG.info("##################################################");
+    LOG.info("signing data");
+    for (int i = 0; i < 10; i++) {
+      byte[] dataToBeSigned = randomBytes(1057);
+
+      // initialize for signing with the prepared mechanism
+      session.signInit(preparedMechanism, generatedPrivateKey);
+      byte[] signatureValue = session.sign(dataToBeSigned);
+
+      // verify
+      session.verifyInit(preparedMechanism, generatedPublicKey);
+      // error will be thrown if signature is invalid
+      session.verify(dataToBeSigned, signatureValue);
+
+      // verify with JCE
+      jceVerifySignature("SHA256WithECDSA", generatedPublicKey,
+          dataToBeSigned, Util.dsaSigPlainToX962(signatureValue));
+    }
+
+    LOG.info("##################################################");
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package demo.pkcs.pkcs11.wrapper.signatures;
+
+import demo.pkcs.pkcs11.wrapper.util.Util;
+import iaik.pkcs.pkcs11.Mechanism;
+import iaik.pkcs.pkcs11.PublicKeyEngine;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.objects.KeyPair;
+import iaik.pkcs.pkcs11.objects.PublicKey;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Signs data with CKM_ECDSA_SHA256 on the token, and verifies the signatures
+ * in the JVM and on the token via the {@link PublicKeyEngine}.
+ *
+ * @author Lijun Liao
+ */
+public class PublicKeyEngineDemo extends SignatureTestBase {
+
+  @Test
+  public void main() throws Exception {
+    Token token = getNonNullToken();
+    Session session = openReadOnlySession(token);
+    try {
+      main0(token, session);
+    } finally {
+      session.closeSession();
+    }
+  }
+
+  private void main0(Token token, Session session) throws Exception {
+    final long mechCode = PKCS11Constants.CKM_ECDSA_SHA256;
+    if (!Util.supports(token, mechCode)) {
+      System.out.println("Unsupported mechanism "
+          + Functions.mechanismCodeToString(mechCode));
+      return;
+    }
+
+    LOG.info("##################################################");
+    LOG.info("generate signature key pair");
+    // OID: 1.2.840.10045.3.1.7 (secp256r1, alias NIST P-256)
+    final byte[] ecParams = new byte[] {0x06, 0x08, 0x2a, (byte) 0x86,
+        0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07};
+    KeyPair keyPair = generateECKeypair(token, session, ecParams, false);
+    PublicKey publicKey = keyPair.getPublicKey();
+
+    Mechanism signatureMechanism = getSupportedMechanism(token, mechCode);
+    final int count = 20;
+    byte[][] data = new byte[count][];
+    byte[][] signatures = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      data[i] = randomBytes(100 + i);
+      session.signInit(signatureMechanism, keyPair.getPrivateKey());
+      signatures[i] = session.sign(data[i]);
+    }
+    // tamper the last signed data
+    data[count - 1][0] ^= 1;
+
+    PublicKeyEngine engine = token.getPublicKeyEngine();
+    Assert.assertNotNull(engine.getJcaPublicKey(session, publicKey));
+    // the engine is shared by all Token objects of the slot
+    Assert.assertSame(engine,
+        token.getSlot().getToken().getPublicKeyEngine());
+
+    LOG.info("##################################################");
+    LOG.info("verifying signatures in the JVM");
+    Assert.assertTrue(engine.verify(session, signatureMechanism, publicKey,
+        data[0], signatures[0]));
+    boolean[] results = engine.verifyAll(session, signatureMechanism,
+        publicKey, data, signatures);
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(i != count - 1, results[i]);
+    }
+
+    LOG.info("##################################################");
+    LOG.info("verifying signatures on the token");
+    engine.setForceTokenOperations(true);
+    try {
+      results = engine.verifyAll(session, signatureMechanism, publicKey,
+          data, signatures);
+      for (int i = 0; i < count; i++) {
+        Assert.assertEquals(i != count - 1, results[i]);
+      }
+    } finally {
+      engine.setForceTokenOperations(false);
+    }
+
+    LOG.info("##################################################");
+  }
+
+}
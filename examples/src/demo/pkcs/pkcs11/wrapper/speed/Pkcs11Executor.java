@@ -17,12 +17,11 @@
 
 package demo.pkcs.pkcs11.wrapper.speed;
 
-import demo.pkcs.pkcs11.wrapper.util.Util;
 import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionPool;
 import iaik.pkcs.pkcs11.Token;
 import iaik.pkcs.pkcs11.TokenException;
 import org.xipki.util.BenchmarkExecutor;
-import org.xipki.util.concurrent.ConcurrentBag;
 
 import java.util.concurrent.TimeUnit;
 
@@ -33,35 +32,24 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class Pkcs11Executor extends BenchmarkExecutor {
 
-  private final ConcurrentBag<ConcurrentSessionBagEntry> sessions =
-      new ConcurrentBag<>();
+  private final SessionPool sessions;
 
   protected Pkcs11Executor(String description, Token token, char[] pin)
       throws TokenException {
     super(description);
-
-    for (int i = 0; i < 5; i++) {
-      Session session = Util.openAuthorizedSession(token, true, pin);
-      sessions.add(new ConcurrentSessionBagEntry(session));
-    }
+    sessions = new SessionPool(token, pin, 0, 5);
   }
 
-  protected ConcurrentSessionBagEntry borrowSession() {
-    ConcurrentSessionBagEntry signer = null;
+  protected Session borrowSession() {
     try {
-      signer = sessions.borrow(1000, TimeUnit.MILLISECONDS);
-    } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
+      return sessions.borrowSession(true, 1000, TimeUnit.MILLISECONDS);
+    } catch (TokenException ex) {
+      throw new IllegalStateException(ex.getMessage(), ex);
     }
-
-    if (signer == null) {
-      throw new IllegalStateException("no idle session available");
-    }
-
-    return signer;
   }
 
-  protected void requiteSession(ConcurrentSessionBagEntry session) {
-    sessions.requite(session);
+  protected void requiteSession(Session session) {
+    sessions.requiteSession(session);
   }
 
   @Override
@@ -72,11 +60,8 @@ public abstract class Pkcs11Executor extends BenchmarkExecutor {
 
   @Override
   public void close() {
-    ConcurrentSessionBagEntry session;
     try {
-      session = sessions.borrow(10, TimeUnit.MILLISECONDS);
-      session.value().closeSession();
-    } catch (InterruptedException | TokenException ex) {
+      sessions.close();
     } finally {
       super.close();
     }
@@ -18,7 +18,6 @@
 package demo.pkcs.pkcs11.wrapper.speed.encryption;
 
 import demo.pkcs.pkcs11.wrapper.TestBase;
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -53,9 +52,8 @@ public abstract class DecryptExecutor extends Pkcs11Executor {
     public void run() {
       while (!stop()) {
         try {
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           try {
-            Session session = sessionBag.value();
             // initialize for signing
             session.decryptInit(encryptMechanism,key);
             // This signing operation is implemented in most of the drivers
@@ -64,7 +62,7 @@ public abstract class DecryptExecutor extends Pkcs11Executor {
             byte[] decryptedData = Arrays.copyOf(out, len);
             Assert.assertArrayEquals(plainData, decryptedData);
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
@@ -106,9 +104,8 @@ public abstract class DecryptExecutor extends Pkcs11Executor {
     keyTemplate.getEncrypt().setBooleanValue(Boolean.TRUE);
     keyTemplate.getDecrypt().setBooleanValue(Boolean.TRUE);
 
-    ConcurrentSessionBagEntry sessionBag = borrowSession();
+    Session session = borrowSession();
     try {
-      Session session = sessionBag.value();
       key = (ValuedSecretKey) session.generateKey(keyGenMechanism, keyTemplate);
 
       session.encryptInit(encryptMechanism, key);
@@ -117,7 +114,7 @@ public abstract class DecryptExecutor extends Pkcs11Executor {
                   buffer, 0, buffer.length);
       this.dataToDecrypt = Arrays.copyOf(buffer, len);
     } finally {
-      requiteSession(sessionBag);
+      requiteSession(session);
     }
 
   }
@@ -130,14 +127,13 @@ public abstract class DecryptExecutor extends Pkcs11Executor {
   @Override
   public void close() {
     if (key != null) {
-      ConcurrentSessionBagEntry sessionBag = borrowSession();
+      Session session = borrowSession();
       try {
-        Session session = sessionBag.value();
         session.destroyObject(key);
       } catch (Throwable th) {
         LOG.error("could not destroy generated objects", th);
       } finally {
-        requiteSession(sessionBag);
+        requiteSession(session);
       }
     }
 
@@ -18,7 +18,6 @@
 package demo.pkcs.pkcs11.wrapper.speed.encryption;
 
 import demo.pkcs.pkcs11.wrapper.TestBase;
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -54,15 +53,14 @@ public abstract class EncryptExecutor extends Pkcs11Executor {
         try {
           byte[] data = TestBase.randomBytes(inputLen);
 
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           try {
-            Session session = sessionBag.value();
             // initialize for signing
             session.encryptInit(encryptMechanism,key);
             // This signing operation is implemented in most of the drivers
             session.encrypt(data, 0, inputLen, out, 0, out.length);
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
@@ -102,12 +100,11 @@ public abstract class EncryptExecutor extends Pkcs11Executor {
     keyTemplate.getEncrypt().setBooleanValue(Boolean.TRUE);
     keyTemplate.getDecrypt().setBooleanValue(Boolean.TRUE);
 
-    ConcurrentSessionBagEntry sessionBag = borrowSession();
+    Session session = borrowSession();
     try {
-      Session session = sessionBag.value();
       key = (ValuedSecretKey) session.generateKey(keyGenMechanism, keyTemplate);
     } finally {
-      requiteSession(sessionBag);
+      requiteSession(session);
     }
 
   }
@@ -120,14 +117,13 @@ public abstract class EncryptExecutor extends Pkcs11Executor {
   @Override
   public void close() {
     if (key != null) {
-      ConcurrentSessionBagEntry sessionBag = borrowSession();
+      Session session = borrowSession();
       try {
-        Session session = sessionBag.value();
         session.destroyObject(key);
       } catch (Throwable th) {
         LOG.error("could not destroy generated objects", th);
       } finally {
-        requiteSession(sessionBag);
+        requiteSession(session);
       }
     }
 
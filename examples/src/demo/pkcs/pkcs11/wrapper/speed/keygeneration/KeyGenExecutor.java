@@ -17,7 +17,6 @@
 
 package demo.pkcs.pkcs11.wrapper.speed.keygeneration;
 
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -62,15 +61,14 @@ public abstract class KeyGenExecutor extends Pkcs11Executor {
           secretKeyTemplate.getEncrypt().setBooleanValue(Boolean.TRUE);
           secretKeyTemplate.getDecrypt().setBooleanValue(Boolean.TRUE);
 
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           ValuedSecretKey key;
           try {
-            Session session = sessionBag.value();
             key = (ValuedSecretKey) session.generateKey(
                     mechanism, secretKeyTemplate);
             session.destroyObject(key);
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
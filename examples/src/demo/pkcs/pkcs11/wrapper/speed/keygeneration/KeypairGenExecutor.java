@@ -17,7 +17,6 @@
 
 package demo.pkcs.pkcs11.wrapper.speed.keygeneration;
 
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -77,16 +76,15 @@ public abstract class KeypairGenExecutor extends Pkcs11Executor {
           publicKeyTemplate.getObjectClass().setPresent(false);
           privateKeyTemplate.getObjectClass().setPresent(false);
 
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           KeyPair keypair;
           try {
-            Session session = sessionBag.value();
             keypair = session.generateKeyPair(mechanism, publicKeyTemplate,
                 privateKeyTemplate);
             session.destroyObject(keypair.getPrivateKey());
             session.destroyObject(keypair.getPublicKey());
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
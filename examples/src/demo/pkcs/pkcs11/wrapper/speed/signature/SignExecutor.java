@@ -18,7 +18,6 @@
 package demo.pkcs.pkcs11.wrapper.speed.signature;
 
 import demo.pkcs.pkcs11.wrapper.TestBase;
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -52,15 +51,14 @@ public abstract class SignExecutor extends Pkcs11Executor {
         try {
           byte[] data = TestBase.randomBytes(inputLen);
 
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           try {
-            Session session = sessionBag.value();
             // initialize for signing
             session.signInit(signMechanism, keypair.getPrivateKey());
             // This signing operation is implemented in most of the drivers
             session.sign(data);
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
@@ -112,13 +110,12 @@ public abstract class SignExecutor extends Pkcs11Executor {
     publicKeyTemplate.getObjectClass().setPresent(false);
     privateKeyTemplate.getObjectClass().setPresent(false);
 
-    ConcurrentSessionBagEntry sessionBag = borrowSession();
+    Session session = borrowSession();
     try {
-      Session session = sessionBag.value();
       keypair = session.generateKeyPair(keypairGenMechanism,
           publicKeyTemplate, privateKeyTemplate);
     } finally {
-      requiteSession(sessionBag);
+      requiteSession(session);
     }
 
   }
@@ -135,15 +132,14 @@ public abstract class SignExecutor extends Pkcs11Executor {
   @Override
   public void close() {
     if (keypair != null) {
-      ConcurrentSessionBagEntry sessionBag = borrowSession();
+      Session session = borrowSession();
       try {
-        Session session = sessionBag.value();
         session.destroyObject(keypair.getPrivateKey());
         session.destroyObject(keypair.getPublicKey());
       } catch (Throwable th) {
         LOG.error("could not destroy generated objects", th);
       } finally {
-        requiteSession(sessionBag);
+        requiteSession(session);
       }
     }
 
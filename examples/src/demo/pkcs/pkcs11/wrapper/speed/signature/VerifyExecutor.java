@@ -18,7 +18,6 @@
 package demo.pkcs.pkcs11.wrapper.speed.signature;
 
 import demo.pkcs.pkcs11.wrapper.TestBase;
-import demo.pkcs.pkcs11.wrapper.speed.ConcurrentSessionBagEntry;
 import demo.pkcs.pkcs11.wrapper.speed.Pkcs11Executor;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -52,15 +51,14 @@ public abstract class VerifyExecutor extends Pkcs11Executor {
     public void run() {
       while (!stop()) {
         try {
-          ConcurrentSessionBagEntry sessionBag = borrowSession();
+          Session session = borrowSession();
           try {
-            Session session = sessionBag.value();
             // initialize for signing
             session.verifyInit(signMechanism, keypair.getPublicKey());
             // This signing operation is implemented in most of the drivers
             session.verify(dataToVerify, signatureToVerify);
           } finally {
-            requiteSession(sessionBag);
+            requiteSession(session);
           }
 
           account(1, 0);
@@ -113,9 +111,8 @@ public abstract class VerifyExecutor extends Pkcs11Executor {
     publicKeyTemplate.getObjectClass().setPresent(false);
     privateKeyTemplate.getObjectClass().setPresent(false);
 
-    ConcurrentSessionBagEntry sessionBag = borrowSession();
+    Session session = borrowSession();
     try {
-      Session session = sessionBag.value();
       keypair = session.generateKeyPair(keypairGenMechanism,
           publicKeyTemplate, privateKeyTemplate);
 
@@ -125,7 +122,7 @@ public abstract class VerifyExecutor extends Pkcs11Executor {
       // This signing operation is implemented in most of the drivers
       signatureToVerify = session.sign(dataToVerify);
     } finally {
-      requiteSession(sessionBag);
+      requiteSession(session);
     }
 
   }
@@ -142,15 +139,14 @@ public abstract class VerifyExecutor extends Pkcs11Executor {
   @Override
   public void close() {
     if (keypair != null) {
-      ConcurrentSessionBagEntry sessionBag = borrowSession();
+      Session session = borrowSession();
       try {
-        Session session = sessionBag.value();
         session.destroyObject(keypair.getPrivateKey());
         session.destroyObject(keypair.getPublicKey());
       } catch (Throwable th) {
         LOG.error("could not destroy generated objects", th);
       } finally {
-        requiteSession(sessionBag);
+        requiteSession(session);
       }
     }
 
@@ -0,0 +1,574 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.objects.Storage;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * An asynchronous facade of a token. The operations are executed by a
+ * dedicated pool of worker threads, each of which borrows a session from the
+ * given {@link SessionPool} for one operation; the caller gets a
+ * {@link CompletableFuture} and is never blocked by the token. The number of
+ * workers is bounded by the sessions of the pool, so the concurrency at the
+ * token is independent of the number of requests. Operations which cannot
+ * be queued because the queue is full fail with a
+ * {@link RejectedExecutionException}.
+ * <p>
+ * Each operation fails with a {@link TimeoutException} if it has not
+ * completed within its timeout. An operation which has not been started
+ * when it times out (or when its future is cancelled) is not executed; a
+ * running native call cannot be interrupted, its result is discarded.
+ * <p>
+ * An operation which fails with CKR_USER_NOT_LOGGED_IN is retried once,
+ * after the user has been logged in again, see
+ * {@link SessionPool#relogin(Session)}.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class AsyncToken {
+
+  /**
+   * An operation executed with a borrowed session.
+   *
+   * @param <T>
+   *          The type of the result.
+   */
+  public interface Operation<T> {
+
+    /**
+     * Executes the operation. Any operation started in the session must be
+     * finished before this method returns.
+     *
+     * @param session
+     *          The borrowed session.
+     * @return the result.
+     * @exception TokenException
+     *              If the operation failed.
+     */
+    T execute(Session session) throws TokenException;
+
+  }
+
+  /**
+   * The default maximal number of queued operations.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  /**
+   * The default timeout of an operation in milliseconds.
+   */
+  public static final long DEFAULT_TIMEOUT = 30000;
+
+  /**
+   * Output buffer size of encrypt and decrypt, in addition to the input
+   * length. The buffer is enlarged if the token returns
+   * CKR_BUFFER_TOO_SMALL.
+   */
+  private static final int OUTPUT_RESERVE = 2048;
+
+  private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger();
+
+  private final class Task<T> implements Runnable {
+
+    private final boolean rw;
+
+    private final Operation<T> operation;
+
+    private final CompletableFuture<T> future;
+
+    private Task(boolean rw, Operation<T> operation,
+        CompletableFuture<T> future) {
+      this.rw = rw;
+      this.operation = operation;
+      this.future = future;
+    }
+
+    @Override
+    public void run() {
+      // timed out or cancelled while queued
+      if (future.isDone()) {
+        return;
+      }
+
+      Session session;
+      try {
+        session = sessionPool.borrowSession(rw);
+      } catch (TokenException | RuntimeException ex) {
+        future.completeExceptionally(ex);
+        return;
+      }
+
+      boolean operationActive = true;
+      try {
+        T result;
+        try {
+          result = operation.execute(session);
+        } catch (PKCS11Exception ex) {
+          if (ex.getErrorCode() != PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+            throw ex;
+          }
+          // the application has been logged out, e.g. by another
+          // application: log in again and retry once
+          sessionPool.relogin(session);
+          result = operation.execute(session);
+        }
+        operationActive = false;
+        future.complete(result);
+      } catch (PKCS11Exception ex) {
+        operationActive =
+            ex.getErrorCode() == PKCS11Constants.CKR_BUFFER_TOO_SMALL;
+        future.completeExceptionally(ex);
+      } catch (TokenException ex) {
+        operationActive = false;
+        future.completeExceptionally(ex);
+      } catch (RuntimeException | Error ex) {
+        future.completeExceptionally(ex);
+      } finally {
+        if (operationActive) {
+          sessionPool.invalidateSession(session);
+        } else {
+          sessionPool.requiteSession(session);
+        }
+      }
+    }
+
+  }
+
+  private final SessionPool sessionPool;
+
+  private final ThreadPoolExecutor executor;
+
+  private final ScheduledThreadPoolExecutor timer;
+
+  private final long defaultTimeout;
+
+  /**
+   * Creates an asynchronous facade with one worker per read-only session of
+   * the pool, a queue of {@link #DEFAULT_QUEUE_CAPACITY} operations and the
+   * timeout {@link #DEFAULT_TIMEOUT}.
+   *
+   * @param sessionPool
+   *          The session pool. Must not be null.
+   */
+  public AsyncToken(SessionPool sessionPool) {
+    this(sessionPool, Util.requireNonNull("sessionPool", sessionPool)
+        .getMaxRoSessions(), DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * Creates an asynchronous facade.
+   *
+   * @param sessionPool
+   *          The session pool. Must not be null.
+   * @param workers
+   *          The number of worker threads. It is limited to the number of
+   *          read-only sessions of the pool.
+   * @param queueCapacity
+   *          The maximal number of queued operations.
+   * @param defaultTimeout
+   *          The timeout of an operation in milliseconds; 0 for no timeout.
+   */
+  public AsyncToken(SessionPool sessionPool, int workers, int queueCapacity,
+      long defaultTimeout) {
+    this.sessionPool = Util.requireNonNull("sessionPool", sessionPool);
+    if (workers < 1 || queueCapacity < 1 || defaultTimeout < 0) {
+      throw new IllegalArgumentException("workers and queueCapacity must be"
+          + " positive, defaultTimeout must not be negative");
+    }
+
+    int threads = Math.max(1, Math.min(workers,
+        sessionPool.getMaxRoSessions()));
+    String prefix = "pkcs11-async-" + INSTANCE_COUNTER.incrementAndGet();
+    this.executor = new ThreadPoolExecutor(threads, threads, 60,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity),
+        newThreadFactory(prefix + "-worker-"));
+    this.executor.allowCoreThreadTimeOut(true);
+    this.timer = new ScheduledThreadPoolExecutor(1,
+        newThreadFactory(prefix + "-timer-"));
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.defaultTimeout = defaultTimeout;
+  }
+
+  private static ThreadFactory newThreadFactory(final String prefix) {
+    return new ThreadFactory() {
+
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable,
+            prefix + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+
+    };
+  }
+
+  /**
+   * Gets the session pool.
+   *
+   * @return the session pool.
+   */
+  public SessionPool getSessionPool() {
+    return sessionPool;
+  }
+
+  /**
+   * Gets the number of worker threads.
+   *
+   * @return the number of worker threads.
+   */
+  public int getWorkers() {
+    return executor.getMaximumPoolSize();
+  }
+
+  /**
+   * Submits an operation with the default timeout.
+   *
+   * @param <T>
+   *          The type of the result.
+   * @param rw
+   *          true to execute the operation in a read-write session.
+   * @param operation
+   *          The operation. Must not be null.
+   * @return the future result.
+   */
+  public <T> CompletableFuture<T> submit(boolean rw, Operation<T> operation) {
+    return submit(rw, operation, defaultTimeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Submits an operation.
+   *
+   * @param <T>
+   *          The type of the result.
+   * @param rw
+   *          true to execute the operation in a read-write session.
+   * @param operation
+   *          The operation. Must not be null.
+   * @param timeout
+   *          The timeout; 0 for no timeout.
+   * @param unit
+   *          The unit of the timeout. Must not be null.
+   * @return the future result.
+   */
+  public <T> CompletableFuture<T> submit(boolean rw, Operation<T> operation,
+      long timeout, TimeUnit unit) {
+    Util.requireNonNull("operation", operation);
+    Util.requireNonNull("unit", unit);
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final Task<T> task = new Task<>(rw, operation, future);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException ex) {
+      future.completeExceptionally(ex);
+      return future;
+    }
+
+    if (timeout > 0) {
+      final ScheduledFuture<?> timeoutFuture = timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          if (future.completeExceptionally(
+              new TimeoutException("PKCS#11 operation timed out"))) {
+            executor.remove(task);
+          }
+        }
+      }, timeout, unit);
+
+      future.whenComplete(new BiConsumer<T, Throwable>() {
+        @Override
+        public void accept(T result, Throwable error) {
+          timeoutFuture.cancel(false);
+          if (future.isCancelled()) {
+            executor.remove(task);
+          }
+        }
+      });
+    }
+    return future;
+  }
+
+  /**
+   * Signs data.
+   *
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The private key. Must not be null.
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @return the future signature.
+   */
+  public CompletableFuture<byte[]> sign(final Mechanism mechanism,
+      final Key key, final byte[] data) {
+    checkParams(mechanism, key, data);
+    return submit(false, new Operation<byte[]>() {
+      @Override
+      public byte[] execute(Session session) throws TokenException {
+        session.signInit(mechanism, key);
+        return session.sign(data);
+      }
+    });
+  }
+
+  /**
+   * Verifies a signature.
+   *
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The public key. Must not be null.
+   * @param data
+   *          The signed data. Must not be null.
+   * @param signature
+   *          The signature. Must not be null.
+   * @return the future result; false if the signature is invalid.
+   */
+  public CompletableFuture<Boolean> verify(final Mechanism mechanism,
+      final Key key, final byte[] data, final byte[] signature) {
+    checkParams(mechanism, key, data);
+    Util.requireNonNull("signature", signature);
+    return submit(false, new Operation<Boolean>() {
+      @Override
+      public Boolean execute(Session session) throws TokenException {
+        session.verifyInit(mechanism, key);
+        try {
+          session.verify(data, signature);
+          return Boolean.TRUE;
+        } catch (PKCS11Exception ex) {
+          long code = ex.getErrorCode();
+          if (code == PKCS11Constants.CKR_SIGNATURE_INVALID
+              || code == PKCS11Constants.CKR_SIGNATURE_LEN_RANGE) {
+            return Boolean.FALSE;
+          }
+          throw ex;
+        }
+      }
+    });
+  }
+
+  /**
+   * Encrypts data.
+   *
+   * @param mechanism
+   *          The encryption mechanism. Must not be null.
+   * @param key
+   *          The encryption key. Must not be null.
+   * @param data
+   *          The to-be-encrypted data. Must not be null.
+   * @return the future encrypted data.
+   */
+  public CompletableFuture<byte[]> encrypt(final Mechanism mechanism,
+      final Key key, final byte[] data) {
+    checkParams(mechanism, key, data);
+    return submit(false, new Operation<byte[]>() {
+      @Override
+      public byte[] execute(Session session) throws TokenException {
+        session.encryptInit(mechanism, key);
+        return crypt(session, true, data);
+      }
+    });
+  }
+
+  /**
+   * Decrypts data.
+   *
+   * @param mechanism
+   *          The decryption mechanism. Must not be null.
+   * @param key
+   *          The decryption key. Must not be null.
+   * @param data
+   *          The to-be-decrypted data. Must not be null.
+   * @return the future decrypted data.
+   */
+  public CompletableFuture<byte[]> decrypt(final Mechanism mechanism,
+      final Key key, final byte[] data) {
+    checkParams(mechanism, key, data);
+    return submit(false, new Operation<byte[]>() {
+      @Override
+      public byte[] execute(Session session) throws TokenException {
+        session.decryptInit(mechanism, key);
+        return crypt(session, false, data);
+      }
+    });
+  }
+
+  /**
+   * Generates random bytes.
+   *
+   * @param numberOfBytes
+   *          The number of bytes to generate.
+   * @return the future random bytes.
+   */
+  public CompletableFuture<byte[]> generateRandom(final int numberOfBytes) {
+    return submit(false, new Operation<byte[]>() {
+      @Override
+      public byte[] execute(Session session) throws TokenException {
+        return session.generateRandom(numberOfBytes);
+      }
+    });
+  }
+
+  /**
+   * Wraps a key.
+   *
+   * @param mechanism
+   *          The wrapping mechanism. Must not be null.
+   * @param wrappingKey
+   *          The wrapping key. Must not be null.
+   * @param key
+   *          The key to wrap. Must not be null.
+   * @return the future wrapped key.
+   */
+  public CompletableFuture<byte[]> wrapKey(final Mechanism mechanism,
+      final Key wrappingKey, final Key key) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("wrappingKey", wrappingKey);
+    Util.requireNonNull("key", key);
+    return submit(false, new Operation<byte[]>() {
+      @Override
+      public byte[] execute(Session session) throws TokenException {
+        return session.wrapKey(mechanism, wrappingKey, key);
+      }
+    });
+  }
+
+  /**
+   * Unwraps a key. A read-write session is used if the template requests a
+   * token object.
+   *
+   * @param mechanism
+   *          The unwrapping mechanism. Must not be null.
+   * @param unwrappingKey
+   *          The unwrapping key. Must not be null.
+   * @param wrappedKey
+   *          The wrapped key. Must not be null.
+   * @param keyTemplate
+   *          The template of the new key. Must not be null.
+   * @return the future unwrapped key.
+   */
+  public CompletableFuture<Key> unwrapKey(final Mechanism mechanism,
+      final Key unwrappingKey, final byte[] wrappedKey,
+      final PKCS11Object keyTemplate) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("unwrappingKey", unwrappingKey);
+    Util.requireNonNull("wrappedKey", wrappedKey);
+    Util.requireNonNull("keyTemplate", keyTemplate);
+    return submit(isTokenObject(keyTemplate), new Operation<Key>() {
+      @Override
+      public Key execute(Session session) throws TokenException {
+        return session.unwrapKey(mechanism, unwrappingKey, wrappedKey,
+            keyTemplate);
+      }
+    });
+  }
+
+  /**
+   * Derives a key. A read-write session is used if the template requests a
+   * token object.
+   *
+   * @param mechanism
+   *          The derivation mechanism. Must not be null.
+   * @param baseKey
+   *          The base key. Must not be null.
+   * @param template
+   *          The template of the new key. Must not be null.
+   * @return the future derived key.
+   */
+  public CompletableFuture<Key> deriveKey(final Mechanism mechanism,
+      final Key baseKey, final Key template) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("baseKey", baseKey);
+    Util.requireNonNull("template", template);
+    return submit(isTokenObject(template), new Operation<Key>() {
+      @Override
+      public Key execute(Session session) throws TokenException {
+        return session.deriveKey(mechanism, baseKey, template);
+      }
+    });
+  }
+
+  /**
+   * Stops the worker threads. Queued operations fail with a
+   * {@link TokenException}; the session pool is not closed.
+   */
+  public void close() {
+    timer.shutdownNow();
+    List<Runnable> queued = executor.shutdownNow();
+    for (Runnable runnable : queued) {
+      if (runnable instanceof Task) {
+        ((Task<?>) runnable).future.completeExceptionally(
+            new TokenException("AsyncToken is closed"));
+      }
+    }
+  }
+
+  private static void checkParams(Mechanism mechanism, Key key,
+      byte[] data) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    Util.requireNonNull("data", data);
+  }
+
+  private static boolean isTokenObject(PKCS11Object template) {
+    return template instanceof Storage && Boolean.TRUE.equals(
+        ((Storage) template).getToken().getBooleanValue());
+  }
+
+  private static byte[] crypt(Session session, boolean encrypt, byte[] data)
+      throws TokenException {
+    byte[] out = new byte[data.length + OUTPUT_RESERVE];
+    while (true) {
+      try {
+        int len = encrypt
+            ? session.encrypt(data, 0, data.length, out, 0, out.length)
+            : session.decrypt(data, 0, data.length, out, 0, out.length);
+        return Arrays.copyOf(out, len);
+      } catch (PKCS11Exception ex) {
+        // the operation is still active, retry with a larger buffer
+        if (ex.getErrorCode() != PKCS11Constants.CKR_BUFFER_TOO_SMALL
+            || out.length > Integer.MAX_VALUE / 4) {
+          throw ex;
+        }
+        out = new byte[out.length * 2];
+      }
+    }
+  }
+
+}
@@ -0,0 +1,261 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs and verifies batches in parallel with the sessions of an
+ * {@link AsyncToken}. A batch is split into contiguous ranges, a few per
+ * worker; each range is processed in one borrowed session with one prepared
+ * mechanism, see {@link Session#signAll(PreparedMechanism, Key, List,
+ * byte[][], TokenException[])}. The results are written into the arrays of
+ * the caller, and a failed item does not abort the batch.
+ * <p>
+ * The batch operations are not limited by the timeout of the AsyncToken.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class BatchSigner {
+
+  /**
+   * Number of ranges per worker, so that fast workers take over the items
+   * of slow ones.
+   */
+  private static final int RANGES_PER_WORKER = 4;
+
+  private final AsyncToken asyncToken;
+
+  /**
+   * Creates a batch signer.
+   *
+   * @param asyncToken
+   *          The asynchronous token whose workers process the batches. Must
+   *          not be null.
+   */
+  public BatchSigner(AsyncToken asyncToken) {
+    this.asyncToken = Util.requireNonNull("asyncToken", asyncToken);
+  }
+
+  /**
+   * Signs each of the given data with the same key.
+   *
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The signing key. Must not be null.
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @param signatures
+   *          Receives the signatures, in the order of the data; null for
+   *          failed signatures. Must not be null, and must not be shorter
+   *          than data.
+   * @param errors
+   *          Receives the errors of failed signatures, and null for the
+   *          others, in the order of the data. May be null; otherwise it must
+   *          not be shorter than data.
+   * @return the number of failed signatures.
+   */
+  public int signAll(final Mechanism mechanism, final Key key,
+      final List<byte[]> data, final byte[][] signatures,
+      final TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    Util.requireNonNull("data", data);
+    Session.checkBatchArrays(data.size(), signatures, errors);
+    return run(data.size(), new Range() {
+      @Override
+      public int process(Session session, int from, int to) {
+        return session.signAll(session.prepare(mechanism), key, data, from,
+            to, signatures, errors);
+      }
+
+      @Override
+      public void fail(int from, int to, TokenException error) {
+        for (int i = from; i < to; i++) {
+          signatures[i] = null;
+          if (errors != null) {
+            errors[i] = error;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Signs the given data with each of the given keys.
+   *
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param keys
+   *          The signing keys. Must not be null.
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @param signatures
+   *          Receives the signatures, in the order of the keys; null for
+   *          failed signatures. Must not be null, and must not be shorter
+   *          than keys.
+   * @param errors
+   *          Receives the errors of failed signatures, and null for the
+   *          others, in the order of the keys. May be null; otherwise it must
+   *          not be shorter than keys.
+   * @return the number of failed signatures.
+   */
+  public int signWithAll(final Mechanism mechanism,
+      final List<? extends Key> keys, final byte[] data,
+      final byte[][] signatures, final TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("keys", keys);
+    Util.requireNonNull("data", data);
+    Session.checkBatchArrays(keys.size(), signatures, errors);
+    return run(keys.size(), new Range() {
+      @Override
+      public int process(Session session, int from, int to) {
+        return session.signWithAll(session.prepare(mechanism), keys, data,
+            from, to, signatures, errors);
+      }
+
+      @Override
+      public void fail(int from, int to, TokenException error) {
+        for (int i = from; i < to; i++) {
+          signatures[i] = null;
+          if (errors != null) {
+            errors[i] = error;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Verifies each of the given signatures with the same key.
+   *
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The verification key. Must not be null.
+   * @param data
+   *          The signed data. Must not be null.
+   * @param signatures
+   *          The signatures, in the order of the data. Must not be null.
+   * @param results
+   *          Receives whether the signatures are valid, in the order of the
+   *          data. Must not be null, and must not be shorter than data.
+   * @param errors
+   *          Receives the errors other than invalid signatures, and null for
+   *          the others, in the order of the data. May be null; otherwise it
+   *          must not be shorter than data.
+   * @return the number of invalid or failed verifications.
+   */
+  public int verifyAll(final Mechanism mechanism, final Key key,
+      final List<byte[]> data, final List<byte[]> signatures,
+      final boolean[] results, final TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    Util.requireNonNull("data", data);
+    Util.requireNonNull("signatures", signatures);
+    Util.requireNonNull("results", results);
+    int size = data.size();
+    if (signatures.size() != size) {
+      throw new IllegalArgumentException(
+          "data and signatures differ in size");
+    }
+    if (results.length < size || (errors != null && errors.length < size)) {
+      throw new IllegalArgumentException(
+          "result arrays are shorter than the batch");
+    }
+
+    return run(size, new Range() {
+      @Override
+      public int process(Session session, int from, int to) {
+        return session.verifyAll(session.prepare(mechanism), key, data,
+            signatures, from, to, results, errors);
+      }
+
+      @Override
+      public void fail(int from, int to, TokenException error) {
+        for (int i = from; i < to; i++) {
+          results[i] = false;
+          if (errors != null) {
+            errors[i] = error;
+          }
+        }
+      }
+    });
+  }
+
+  private interface Range {
+
+    int process(Session session, int from, int to);
+
+    void fail(int from, int to, TokenException error);
+
+  }
+
+  private int run(int size, final Range range) {
+    if (size == 0) {
+      return 0;
+    }
+
+    int ranges = Math.min(size, asyncToken.getWorkers() * RANGES_PER_WORKER);
+    List<CompletableFuture<Integer>> futures = new ArrayList<>(ranges);
+    int[] bounds = new int[ranges + 1];
+    for (int i = 0; i < ranges; i++) {
+      final int from = (int) ((long) size * i / ranges);
+      final int to = (int) ((long) size * (i + 1) / ranges);
+      bounds[i] = from;
+      bounds[i + 1] = to;
+      futures.add(asyncToken.submit(false,
+          new AsyncToken.Operation<Integer>() {
+            @Override
+            public Integer execute(Session session) {
+              return range.process(session, from, to);
+            }
+          }, 0, TimeUnit.MILLISECONDS));
+    }
+
+    int failures = 0;
+    for (int i = 0; i < ranges; i++) {
+      try {
+        failures += futures.get(i).join();
+      } catch (CompletionException ex) {
+        // no session could be borrowed, or the mechanism could not be
+        // prepared: no item of the range has been processed. Failures of
+        // single items are recorded per item by the session.
+        Throwable cause = (ex.getCause() == null) ? ex : ex.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        TokenException error = (cause instanceof TokenException)
+            ? (TokenException) cause : new TokenException(
+                cause.getMessage(), (Exception) cause);
+        range.fail(bounds[i], bounds[i + 1], error);
+        failures += bounds[i + 1] - bounds[i];
+      }
+    }
+    return failures;
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.Functions;
+
+import java.util.Arrays;
+
+/**
+ * An immutable byte array, usable as key of hash maps; e.g. for CKA_ID
+ * values. Unlike {@link Util#hashCode(byte[])}, the hash code is computed
+ * over the whole content.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class ByteArrayKey {
+
+  private final byte[] bytes;
+
+  private final int hashCode;
+
+  /**
+   * Constructor.
+   *
+   * @param bytes
+   *          The byte array. It is copied. Must not be null.
+   */
+  public ByteArrayKey(byte[] bytes) {
+    this.bytes = Util.requireNonNull("bytes", bytes).clone();
+    this.hashCode = Arrays.hashCode(this.bytes);
+  }
+
+  /**
+   * Gets a copy of the byte array.
+   *
+   * @return the byte array.
+   */
+  public byte[] getBytes() {
+    return bytes.clone();
+  }
+
+  /**
+   * Gets the length of the byte array.
+   *
+   * @return the length.
+   */
+  public int length() {
+    return bytes.length;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof ByteArrayKey)) {
+      return false;
+    }
+
+    ByteArrayKey other = (ByteArrayKey) obj;
+    return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return Functions.toHexString(bytes);
+  }
+
+}
@@ -0,0 +1,287 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The multi-part encryption or decryption operation behind the cipher streams
+ * and channels. It owns one session for its lifetime and reuses a fixed pair
+ * of input and output buffers. The output buffer is only enlarged if the
+ * token reports CKR_BUFFER_TOO_SMALL.
+ * <p>
+ * The chunk size starts at {@link #MIN_CHUNK_SIZE} and is doubled as long as
+ * the measured throughput of the token improves noticeably, up to the maximal
+ * chunk size.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class CipherStreamEngine {
+
+  static final int MIN_CHUNK_SIZE = 16 * 1024;
+
+  static final int DEFAULT_MAX_CHUNK_SIZE = 256 * 1024;
+
+  /**
+   * Space for a padding block or an authentication tag, in addition to the
+   * chunk size.
+   */
+  private static final int OUTPUT_RESERVE = 64;
+
+  private static final int MAX_OUTPUT_SIZE = 1 << 30;
+
+  private final Session session;
+
+  private final SessionPool pool;
+
+  private final boolean encrypt;
+
+  private final int maxChunkSize;
+
+  private final byte[] inBuffer;
+
+  private byte[] outBuffer;
+
+  private int chunkSize = MIN_CHUNK_SIZE;
+
+  private boolean chunkSizeSettled;
+
+  private double lastThroughput;
+
+  private boolean finished;
+
+  private boolean released;
+
+  CipherStreamEngine(Session session, SessionPool pool, Mechanism mechanism,
+      Key key, boolean encrypt, int maxChunkSize) throws TokenException {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    if (maxChunkSize < 1) {
+      throw new IllegalArgumentException("maxChunkSize must be positive");
+    }
+
+    this.pool = pool;
+    this.encrypt = encrypt;
+    this.maxChunkSize = maxChunkSize;
+    if (chunkSize > maxChunkSize) {
+      chunkSize = maxChunkSize;
+      chunkSizeSettled = true;
+    }
+    this.inBuffer = new byte[maxChunkSize];
+    this.outBuffer = new byte[maxChunkSize + OUTPUT_RESERVE];
+
+    this.session = (pool == null)
+        ? Util.requireNonNull("session", session) : pool.borrowSession(false);
+    try {
+      if (encrypt) {
+        this.session.encryptInit(mechanism, key);
+      } else {
+        this.session.decryptInit(mechanism, key);
+      }
+    } catch (TokenException | RuntimeException ex) {
+      finished = true;
+      release();
+      throw ex;
+    }
+  }
+
+  static int toMaxChunkSize(int maxChunkSize) {
+    return (maxChunkSize <= 0) ? DEFAULT_MAX_CHUNK_SIZE : maxChunkSize;
+  }
+
+  static IOException toIOException(TokenException ex) {
+    return new IOException(ex.getMessage(), ex);
+  }
+
+  int getChunkSize() {
+    return chunkSize;
+  }
+
+  byte[] getInBuffer() {
+    return inBuffer;
+  }
+
+  /**
+   * Gets the output buffer. It may be replaced by a larger one during
+   * {@link #update(byte[], int, int)} and {@link #doFinal()}.
+   *
+   * @return the output buffer.
+   */
+  byte[] getOutBuffer() {
+    return outBuffer;
+  }
+
+  boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Processes at most {@link #getChunkSize()} bytes.
+   *
+   * @param in
+   *          buffer containing the data
+   * @param inOfs
+   *          buffer offset of the data
+   * @param inLen
+   *          length of the data, must not exceed the chunk size.
+   * @return the number of bytes written to the start of the output buffer.
+   * @exception TokenException
+   *              If processing the data failed.
+   */
+  int update(byte[] in, int inOfs, int inLen) throws TokenException {
+    assertNotFinished();
+    long start = System.nanoTime();
+    while (true) {
+      try {
+        int len = encrypt
+            ? session.encryptUpdate(in, inOfs, inLen,
+                outBuffer, 0, outBuffer.length)
+            : session.decryptUpdate(in, inOfs, inLen,
+                outBuffer, 0, outBuffer.length);
+        adaptChunkSize(inLen, System.nanoTime() - start);
+        return len;
+      } catch (PKCS11Exception ex) {
+        handleException(ex);
+      }
+    }
+  }
+
+  /**
+   * Processes the remaining bytes of the given buffer, at most
+   * {@link #getChunkSize()} bytes.
+   *
+   * @param in
+   *          buffer containing the data
+   * @return the number of bytes written to the start of the output buffer.
+   * @exception TokenException
+   *              If processing the data failed.
+   */
+  int update(ByteBuffer in) throws TokenException {
+    assertNotFinished();
+    int inLen = in.remaining();
+    long start = System.nanoTime();
+    while (true) {
+      ByteBuffer out = ByteBuffer.wrap(outBuffer);
+      try {
+        int len = encrypt ? session.encryptUpdate(in, out)
+            : session.decryptUpdate(in, out);
+        adaptChunkSize(inLen, System.nanoTime() - start);
+        return len;
+      } catch (PKCS11Exception ex) {
+        handleException(ex);
+      }
+    }
+  }
+
+  /**
+   * Finishes the operation, e.g. writes the last padded block or the
+   * authentication tag, or verifies the tag.
+   *
+   * @return the number of bytes written to the start of the output buffer.
+   * @exception TokenException
+   *              If finishing the operation failed.
+   */
+  int doFinal() throws TokenException {
+    assertNotFinished();
+    while (true) {
+      try {
+        int len = encrypt
+            ? session.encryptFinal(outBuffer, 0, outBuffer.length)
+            : session.decryptFinal(outBuffer, 0, outBuffer.length);
+        finished = true;
+        return len;
+      } catch (PKCS11Exception ex) {
+        handleException(ex);
+      }
+    }
+  }
+
+  /**
+   * Releases the session. If the operation is not finished, it is aborted.
+   */
+  void release() {
+    if (released) {
+      return;
+    }
+    released = true;
+
+    if (!finished) {
+      finished = true;
+      if (pool != null) {
+        pool.invalidateSession(session);
+        return;
+      }
+
+      // terminate the pending operation
+      try {
+        if (encrypt) {
+          session.encryptFinal(outBuffer, 0, outBuffer.length);
+        } else {
+          session.decryptFinal(outBuffer, 0, outBuffer.length);
+        }
+      } catch (TokenException | RuntimeException ex) { // CHECKSTYLE:SKIP
+      }
+    }
+
+    if (pool != null) {
+      pool.requiteSession(session);
+    }
+  }
+
+  private void assertNotFinished() throws TokenException {
+    if (finished) {
+      throw new TokenException("operation is finished");
+    }
+  }
+
+  private void handleException(PKCS11Exception ex)
+      throws PKCS11Exception {
+    if (ex.getErrorCode() != PKCS11Constants.CKR_BUFFER_TOO_SMALL
+        || outBuffer.length >= MAX_OUTPUT_SIZE) {
+      finished = true;
+      throw ex;
+    }
+
+    // the operation is not terminated, retry with a larger output buffer
+    outBuffer = new byte[Math.min(MAX_OUTPUT_SIZE, outBuffer.length * 2)];
+  }
+
+  private void adaptChunkSize(int inLen, long nanos) {
+    if (chunkSizeSettled || inLen < chunkSize || nanos <= 0) {
+      return;
+    }
+
+    double throughput = (double) inLen / nanos;
+    if (throughput > lastThroughput * 1.1) {
+      lastThroughput = throughput;
+      if (chunkSize < maxChunkSize) {
+        chunkSize = Math.min(maxChunkSize, chunkSize * 2);
+        return;
+      }
+    }
+
+    chunkSizeSettled = true;
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
+import sun.security.pkcs11.wrapper.CK_DATE;
+
+/**
+ * An immutable attribute template, compiled once from a
+ * {@link iaik.pkcs.pkcs11.objects.PKCS11Object} by
+ * {@link Session#compileTemplate(iaik.pkcs.pkcs11.objects.PKCS11Object)}.
+ * The set attributes are collected, the generic key type is converted to the
+ * vendor specific one, and all values are copied, so later changes of the
+ * source object are not reflected.
+ * <p>
+ * A compiled template can be used by all sessions of the same module, also
+ * concurrently.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class CompiledTemplate {
+
+  private final Module module;
+
+  private final CK_ATTRIBUTE[] ckAttributes;
+
+  CompiledTemplate(Module module, CK_ATTRIBUTE[] ckAttributes) {
+    this.module = module;
+    if (ckAttributes == null) {
+      this.ckAttributes = new CK_ATTRIBUTE[0];
+    } else {
+      this.ckAttributes = new CK_ATTRIBUTE[ckAttributes.length];
+      for (int i = 0; i < ckAttributes.length; i++) {
+        this.ckAttributes[i] = copy(ckAttributes[i]);
+      }
+    }
+  }
+
+  private static CK_ATTRIBUTE copy(CK_ATTRIBUTE attr) {
+    Object value = attr.pValue;
+    if (value instanceof byte[]) {
+      value = ((byte[]) value).clone();
+    } else if (value instanceof char[]) {
+      value = ((char[]) value).clone();
+    } else if (value instanceof long[]) {
+      value = ((long[]) value).clone();
+    } else if (value instanceof CK_DATE) {
+      CK_DATE date = (CK_DATE) value;
+      value = new CK_DATE(date.year.clone(), date.month.clone(),
+          date.day.clone());
+    } else if (value instanceof CK_ATTRIBUTE[]) {
+      CK_ATTRIBUTE[] attrs = (CK_ATTRIBUTE[]) value;
+      CK_ATTRIBUTE[] copies = new CK_ATTRIBUTE[attrs.length];
+      for (int i = 0; i < attrs.length; i++) {
+        copies[i] = copy(attrs[i]);
+      }
+      value = copies;
+    }
+
+    return new CK_ATTRIBUTE(attr.type, value);
+  }
+
+  /**
+   * Gets the number of attributes in this template.
+   *
+   * @return The number of attributes.
+   */
+  public int size() {
+    return ckAttributes.length;
+  }
+
+  /**
+   * Gets the types of the attributes in this template.
+   *
+   * @return The attribute types.
+   */
+  public long[] getAttributeTypes() {
+    long[] types = new long[ckAttributes.length];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = ckAttributes[i].type;
+    }
+    return types;
+  }
+
+  CK_ATTRIBUTE[] getCkAttributes(Module module) {
+    if (module != this.module) {
+      throw new IllegalArgumentException(
+          "template is compiled for another module");
+    }
+    return ckAttributes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(30 * ckAttributes.length + 20);
+    sb.append("CompiledTemplate:");
+    for (CK_ATTRIBUTE attr : ckAttributes) {
+      sb.append("\n  0x").append(Functions.toFullHex(attr.type));
+    }
+    return sb.toString();
+  }
+
+}
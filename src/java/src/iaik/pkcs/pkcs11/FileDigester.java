@@ -0,0 +1,191 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Digests files with a session. Small files are digested with one call of
+ * C_Digest. Larger files are memory-mapped in chunks and fed to
+ * C_DigestUpdate without copying; the next chunk is paged in by the
+ * read-ahead executor while the token processes the current one.
+ * <p>
+ * On JDK 9 and later, the chunks are only passed without copying if the
+ * JVM runs with {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}.
+ * Otherwise each chunk is copied into a reusable array of the session first.
+ * <p>
+ * This class is not thread-safe, since it uses its session.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class FileDigester {
+
+  /**
+   * The default size of the chunks passed to C_DigestUpdate.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = FileSigner.DEFAULT_CHUNK_SIZE;
+
+  /**
+   * Files up to this size are digested in one part by default.
+   */
+  public static final int DEFAULT_SINGLE_PART_THRESHOLD =
+      FileSigner.DEFAULT_SINGLE_PART_THRESHOLD;
+
+  /**
+   * Large enough for all digests, e.g. SHA-512 and SHA3-512.
+   */
+  private static final int MAX_DIGEST_SIZE = 128;
+
+  private final Session session;
+
+  private final Mechanism mechanism;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  private long singlePartThreshold = DEFAULT_SINGLE_PART_THRESHOLD;
+
+  private Executor readAheadExecutor =
+      MappedFileReader.DefaultExecutor.INSTANCE;
+
+  /**
+   * Constructor.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The digest mechanism, e.g. CKM_SHA256. Must not be null.
+   */
+  public FileDigester(Session session, Mechanism mechanism) {
+    this.session = Util.requireNonNull("session", session);
+    this.mechanism = Util.requireNonNull("mechanism", mechanism);
+  }
+
+  /**
+   * Sets the size of the chunks passed to C_DigestUpdate.
+   *
+   * @param chunkSize
+   *          The chunk size in bytes. Must be positive.
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets the maximal size of the files which are digested in one part.
+   *
+   * @param singlePartThreshold
+   *          The threshold in bytes.
+   */
+  public void setSinglePartThreshold(long singlePartThreshold) {
+    this.singlePartThreshold = singlePartThreshold;
+  }
+
+  /**
+   * Sets the executor which pages in the next chunk. Default is a shared
+   * pool of daemon threads.
+   *
+   * @param readAheadExecutor
+   *          The executor, or null to disable the read-ahead.
+   */
+  public void setReadAheadExecutor(Executor readAheadExecutor) {
+    this.readAheadExecutor = readAheadExecutor;
+  }
+
+  /**
+   * Digests the content of a file.
+   *
+   * @param file
+   *          The file. Must not be null.
+   * @return the digest.
+   * @exception TokenException
+   *              If digesting failed.
+   * @exception IOException
+   *              If reading the file failed.
+   */
+  public byte[] digest(File file) throws TokenException, IOException {
+    return digest(Util.requireNonNull("file", file).toPath());
+  }
+
+  /**
+   * Digests the content of a file.
+   *
+   * @param file
+   *          The file. Must not be null.
+   * @return the digest.
+   * @exception TokenException
+   *              If digesting failed.
+   * @exception IOException
+   *              If reading the file failed.
+   */
+  public byte[] digest(Path file) throws TokenException, IOException {
+    Util.requireNonNull("file", file);
+    byte[] digest = new byte[MAX_DIGEST_SIZE];
+    int len;
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      boolean multiPart = size > singlePartThreshold;
+      MappedFileReader reader = new MappedFileReader(channel, size,
+          chunkSize, multiPart ? readAheadExecutor : null);
+
+      if (!multiPart) {
+        byte[] content = reader.readFully();
+        session.digestInit(mechanism);
+        len = session.digest(content, 0, content.length,
+            digest, 0, digest.length);
+      } else {
+        session.digestInit(mechanism);
+        boolean finished = false;
+        try {
+          ByteBuffer chunk;
+          while ((chunk = reader.next()) != null) {
+            session.digestUpdate(chunk);
+          }
+          finished = true;
+          len = session.digestFinal(digest, 0, digest.length);
+        } finally {
+          if (!finished) {
+            abort(digest);
+          }
+        }
+      }
+    }
+
+    return Arrays.copyOf(digest, len);
+  }
+
+  private void abort(byte[] buffer) {
+    // terminate the pending operation, the result is discarded
+    try {
+      session.digestFinal(buffer, 0, buffer.length);
+    } catch (TokenException | RuntimeException ex) { // CHECKSTYLE:SKIP
+    }
+  }
+
+}
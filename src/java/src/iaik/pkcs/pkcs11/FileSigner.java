@@ -0,0 +1,191 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+
+/**
+ * Signs files with a session. Small files, and all files signed with a
+ * mechanism which does not support multi-part signing (see
+ * {@link Functions#isFullSignVerifyMechanism(long)}), are signed with one
+ * call of C_Sign. Larger files are memory-mapped in chunks and fed to
+ * C_SignUpdate without copying; the next chunk is paged in by the read-ahead
+ * executor while the token processes the current one.
+ * <p>
+ * On JDK 9 and later, the chunks are only passed without copying if the
+ * JVM runs with {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}.
+ * Otherwise each chunk is copied into a reusable array of the session first.
+ * <p>
+ * This class is not thread-safe, since it uses its session.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class FileSigner {
+
+  /**
+   * The default size of the chunks passed to C_SignUpdate.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  /**
+   * Files up to this size are signed in one part by default.
+   */
+  public static final int DEFAULT_SINGLE_PART_THRESHOLD = 64 * 1024;
+
+  private final Session session;
+
+  private final Mechanism mechanism;
+
+  private final Key key;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+  private long singlePartThreshold = DEFAULT_SINGLE_PART_THRESHOLD;
+
+  private Executor readAheadExecutor =
+      MappedFileReader.DefaultExecutor.INSTANCE;
+
+  /**
+   * Constructor.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The signature mechanism, e.g. CKM_SHA256_RSA_PKCS. Must not be
+   *          null.
+   * @param key
+   *          The signing key. Must not be null.
+   */
+  public FileSigner(Session session, Mechanism mechanism, Key key) {
+    this.session = Util.requireNonNull("session", session);
+    this.mechanism = Util.requireNonNull("mechanism", mechanism);
+    this.key = Util.requireNonNull("key", key);
+  }
+
+  /**
+   * Sets the size of the chunks passed to C_SignUpdate.
+   *
+   * @param chunkSize
+   *          The chunk size in bytes. Must be positive.
+   */
+  public void setChunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets the maximal size of the files which are signed in one part.
+   *
+   * @param singlePartThreshold
+   *          The threshold in bytes.
+   */
+  public void setSinglePartThreshold(long singlePartThreshold) {
+    this.singlePartThreshold = singlePartThreshold;
+  }
+
+  /**
+   * Sets the executor which pages in the next chunk. Default is a shared
+   * pool of daemon threads.
+   *
+   * @param readAheadExecutor
+   *          The executor, or null to disable the read-ahead.
+   */
+  public void setReadAheadExecutor(Executor readAheadExecutor) {
+    this.readAheadExecutor = readAheadExecutor;
+  }
+
+  /**
+   * Signs the content of a file.
+   *
+   * @param file
+   *          The file. Must not be null.
+   * @return the signature value.
+   * @exception TokenException
+   *              If signing failed.
+   * @exception IOException
+   *              If reading the file failed.
+   */
+  public byte[] sign(File file) throws TokenException, IOException {
+    return sign(Util.requireNonNull("file", file).toPath());
+  }
+
+  /**
+   * Signs the content of a file.
+   *
+   * @param file
+   *          The file. Must not be null.
+   * @return the signature value.
+   * @exception TokenException
+   *              If signing failed.
+   * @exception IOException
+   *              If reading the file failed.
+   */
+  public byte[] sign(Path file) throws TokenException, IOException {
+    Util.requireNonNull("file", file);
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      boolean multiPart = size > singlePartThreshold
+          && Functions.isFullSignVerifyMechanism(mechanism.getMechanismCode());
+      MappedFileReader reader = new MappedFileReader(channel, size,
+          chunkSize, multiPart ? readAheadExecutor : null);
+
+      if (!multiPart) {
+        byte[] content = reader.readFully();
+        session.signInit(mechanism, key);
+        return session.sign(content);
+      }
+
+      session.signInit(mechanism, key);
+      boolean finished = false;
+      try {
+        ByteBuffer chunk;
+        while ((chunk = reader.next()) != null) {
+          session.signUpdate(chunk);
+        }
+        finished = true;
+        return session.signFinal(0);
+      } finally {
+        if (!finished) {
+          abort();
+        }
+      }
+    }
+  }
+
+  private void abort() {
+    // terminate the pending operation, the result is discarded
+    try {
+      session.signFinal(0);
+    } catch (TokenException | RuntimeException ex) { // CHECKSTYLE:SKIP
+    }
+  }
+
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.LazyObject;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the handles of the objects found by a find operation, as
+ * returned by {@link Session#find(iaik.pkcs.pkcs11.objects.PKCS11Object)}.
+ * The handles are fetched from the token on demand, in batches which start
+ * small (so that the first result is available quickly) and grow up to a
+ * maximal size. No attribute is read; use {@link #nextObject()} to get
+ * objects which read their attributes on first access.
+ * <p>
+ * The find operation is finalized as soon as the token returns no more
+ * handles, or when {@link #close()} is called. The iterator must be closed if
+ * it is not iterated to the end, best with try-with-resources. Until then no
+ * other operation may be started in the session.
+ * <p>
+ * As {@link java.util.Iterator} does not allow checked exceptions,
+ * {@link #hasNext()} and {@link #nextLong()} throw a
+ * {@link TokenRuntimeException} which wraps the {@link TokenException}.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class FindObjectsIterator
+    implements PrimitiveIterator.OfLong, AutoCloseable {
+
+  /**
+   * The default size of the first batch.
+   */
+  public static final int DEFAULT_INITIAL_BATCH_SIZE = 16;
+
+  /**
+   * The default maximal batch size.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+  private final Session session;
+
+  private final int maxBatchSize;
+
+  private int batchSize;
+
+  private long[] batch = new long[0];
+
+  private int batchIndex;
+
+  private boolean finished;
+
+  FindObjectsIterator(Session session, int initialBatchSize,
+      int maxBatchSize) {
+    if (initialBatchSize < 1 || maxBatchSize < initialBatchSize) {
+      throw new IllegalArgumentException(Util.concatObjects(
+          "invalid batch sizes: initialBatchSize=", initialBatchSize,
+          ", maxBatchSize=", maxBatchSize));
+    }
+
+    this.session = session;
+    this.batchSize = initialBatchSize;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (batchIndex < batch.length) {
+      return true;
+    }
+
+    if (finished) {
+      return false;
+    }
+
+    try {
+      fetchBatch();
+    } catch (TokenException ex) {
+      throw new TokenRuntimeException(ex);
+    }
+    return batchIndex < batch.length;
+  }
+
+  @Override
+  public long nextLong() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return batch[batchIndex++];
+  }
+
+  /**
+   * Returns the next object. Its attributes are read from the token on the
+   * first call of {@link LazyObject#getObject()}, which must be done before
+   * the session is closed.
+   *
+   * @return the next object.
+   * @throws NoSuchElementException
+   *           If there is no more object.
+   */
+  public LazyObject nextObject() {
+    return new LazyObject(session, nextLong());
+  }
+
+  private void fetchBatch() throws TokenException {
+    long[] handles;
+    try {
+      handles = session.findObjectHandles(batchSize);
+    } catch (TokenException ex) {
+      close();
+      throw ex;
+    }
+
+    batch = handles;
+    batchIndex = 0;
+    if (handles.length < batchSize) {
+      // no more objects
+      close();
+    } else if (batchSize < maxBatchSize) {
+      batchSize = Math.min(maxBatchSize, batchSize * 2);
+    }
+  }
+
+  /**
+   * Returns a sequential stream of the remaining handles. Closing the stream
+   * closes this iterator.
+   *
+   * @return the stream of handles.
+   */
+  public LongStream stream() {
+    return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(this,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+        false).onClose(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              close();
+            } catch (TokenException ex) {
+              throw new TokenRuntimeException(ex);
+            }
+          }
+        });
+  }
+
+  /**
+   * Returns a sequential stream of the remaining objects. Closing the stream
+   * closes this iterator.
+   *
+   * @return the stream of objects.
+   */
+  public Stream<LazyObject> objectStream() {
+    return stream().mapToObj(new LongFunction<LazyObject>() {
+      @Override
+      public LazyObject apply(long handle) {
+        return new LazyObject(session, handle);
+      }
+    });
+  }
+
+  /**
+   * Finalizes the find operation, if not done yet. The handles already
+   * fetched can still be iterated.
+   *
+   * @exception TokenException
+   *              If finalizing the find operation failed.
+   */
+  @Override
+  public void close() throws TokenException {
+    if (!finished) {
+      finished = true;
+      session.findObjectsFinal();
+    }
+  }
+
+}
@@ -0,0 +1,407 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Signs with a hash-and-sign mechanism (e.g. CKM_SHA256_RSA_PKCS,
+ * CKM_SHA256_RSA_PKCS_PSS, CKM_ECDSA_SHA256 or CKM_VENDOR_SM2_SM3), either
+ * on the token, or by hashing locally and signing only the digest with the
+ * corresponding raw mechanism (CKM_RSA_PKCS over the DigestInfo,
+ * CKM_RSA_PKCS_PSS with the same parameters, CKM_ECDSA, CKM_DSA or
+ * CKM_VENDOR_SM2). Both ways produce the same signature for deterministic
+ * schemes, and equally valid signatures for randomized ones.
+ * <p>
+ * Data larger than the threshold is hashed locally, if the mechanism has a
+ * raw counterpart and the hash algorithm is available in the JCA. The methods
+ * {@link #digest(byte[])} (which does not use the session and may be called
+ * concurrently) and {@link #signDigest(byte[])} allow to hash many documents
+ * in parallel and sign them one after another.
+ * <p>
+ * For CKM_VENDOR_SM2_SM3 the public key must be set via
+ * {@link #setSM2PublicKey(byte[])}, since the digest covers the identifier
+ * value Z which is computed from it.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class HybridSigner {
+
+  /**
+   * Data up to this size is signed on the token by default.
+   */
+  public static final int DEFAULT_THRESHOLD = 16 * 1024;
+
+  private static final class Scheme {
+
+    private final String digestAlgorithm;
+
+    private final long rawMechanism;
+
+    private final byte[] digestInfoPrefix;
+
+    private Scheme(String digestAlgorithm, long rawMechanism,
+        byte[] digestInfoPrefix) {
+      this.digestAlgorithm = digestAlgorithm;
+      this.rawMechanism = rawMechanism;
+      this.digestInfoPrefix = digestInfoPrefix;
+    }
+
+  }
+
+  private static final LongObjectMap<Scheme> schemes = newSchemes();
+
+  /**
+   * The default user ID of SM2 signatures, 1234567812345678.
+   */
+  private static final byte[] SM2_DEFAULT_USER_ID = {
+    0x31, 0x32, 0x33, 0x34, 0x35, 0x36, 0x37, 0x38,
+    0x31, 0x32, 0x33, 0x34, 0x35, 0x36, 0x37, 0x38};
+
+  // a, b, xG and yG of the curve sm2p256v1
+  private static final byte[] SM2_CURVE_PARAMS = Functions.decodeHex(
+      "FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF00000000FFFFFFFFFFFFFFFC"
+      + "28E9FA9E9D9F5E344D5A9E4BCF6509A7F39789F515AB8F92DDBCBD414D940E93"
+      + "32C4AE2C1F1981195F9904466A39C9948FE30BBFF2660BE1715A4589334C74C7"
+      + "BC3736A2F4F6779C59BDCEE36B692153D0A9877CC62A474002DF32E52139F0A0");
+
+  private final Session session;
+
+  private final Mechanism mechanism;
+
+  private final Key key;
+
+  private final Scheme scheme;
+
+  private final boolean digestAvailable;
+
+  private int threshold = DEFAULT_THRESHOLD;
+
+  private byte[] sm2Z;
+
+  /**
+   * Constructor.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The signature mechanism, e.g. CKM_SHA256_RSA_PKCS. Must not be
+   *          null.
+   * @param key
+   *          The signing key. Must not be null.
+   */
+  public HybridSigner(Session session, Mechanism mechanism, Key key) {
+    this.session = Util.requireNonNull("session", session);
+    this.mechanism = Util.requireNonNull("mechanism", mechanism);
+    this.key = Util.requireNonNull("key", key);
+    this.scheme = schemes.get(mechanism.getMechanismCode());
+
+    boolean available = false;
+    if (scheme != null) {
+      try {
+        MessageDigest.getInstance(scheme.digestAlgorithm);
+        available = true;
+      } catch (NoSuchAlgorithmException ex) {
+        available = false;
+      }
+    }
+    this.digestAvailable = available;
+  }
+
+  /**
+   * Sets the size above which the data is hashed locally.
+   *
+   * @param threshold
+   *          The threshold in bytes. 0 to hash all data locally.
+   */
+  public void setThreshold(int threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * Sets the public key of an SM2 key pair, with the default user ID
+   * 1234567812345678.
+   *
+   * @param ecPoint
+   *          The uncompressed EC point, optionally wrapped in a DER
+   *          OCTET STRING as in the attribute CKA_EC_POINT.
+   * @exception IllegalStateException
+   *              If the mechanism of this signer is not CKM_VENDOR_SM2_SM3.
+   */
+  public void setSM2PublicKey(byte[] ecPoint) {
+    setSM2PublicKey(ecPoint, SM2_DEFAULT_USER_ID);
+  }
+
+  /**
+   * Sets the public key and the user ID of an SM2 key pair.
+   *
+   * @param ecPoint
+   *          The uncompressed EC point, optionally wrapped in a DER
+   *          OCTET STRING as in the attribute CKA_EC_POINT.
+   * @param userId
+   *          The user ID.
+   * @exception IllegalStateException
+   *              If the mechanism of this signer is not CKM_VENDOR_SM2_SM3.
+   */
+  public void setSM2PublicKey(byte[] ecPoint, byte[] userId) {
+    Util.requireNonNull("ecPoint", ecPoint);
+    Util.requireNonNull("userId", userId);
+    if (ecPoint.length == 67 && ecPoint[0] == 0x04 && ecPoint[1] == 65) {
+      ecPoint = Arrays.copyOfRange(ecPoint, 2, 67);
+    }
+    if (ecPoint.length != 65 || ecPoint[0] != 0x04) {
+      throw new IllegalArgumentException("invalid uncompressed EC point");
+    }
+    if (userId.length > 8191) {
+      throw new IllegalArgumentException("userId is too long");
+    }
+    if (scheme == null
+        || scheme.rawMechanism != PKCS11Constants.CKM_VENDOR_SM2) {
+      throw new IllegalStateException(
+          mechanism.getName() + " is not an SM2 mechanism");
+    }
+    if (!digestAvailable) {
+      // SM3 is not available, the data is always signed on the token
+      return;
+    }
+
+    MessageDigest md = newDigest();
+    int entl = userId.length * 8;
+    md.update((byte) (entl >> 8));
+    md.update((byte) entl);
+    md.update(userId);
+    md.update(SM2_CURVE_PARAMS);
+    md.update(ecPoint, 1, 64);
+    this.sm2Z = md.digest();
+  }
+
+  /**
+   * Tells whether data of the given size is hashed locally.
+   *
+   * @param dataLen
+   *          Length of the data.
+   * @return whether the data is hashed locally.
+   */
+  public boolean isLocalHashing(int dataLen) {
+    return dataLen > threshold && supportsLocalHashing();
+  }
+
+  /**
+   * Tells whether the mechanism of this signer can be split into local
+   * hashing and signing on the token.
+   *
+   * @return whether {@link #digest(byte[])} and
+   *         {@link #signDigest(byte[])} can be used.
+   */
+  public boolean supportsLocalHashing() {
+    if (!digestAvailable) {
+      return false;
+    }
+
+    return scheme.rawMechanism != PKCS11Constants.CKM_VENDOR_SM2
+        || sm2Z != null;
+  }
+
+  /**
+   * Signs the data, on the token or with local hashing depending on its
+   * size.
+   *
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @return the signature value.
+   * @exception TokenException
+   *              If signing failed.
+   */
+  public byte[] sign(byte[] data) throws TokenException {
+    Util.requireNonNull("data", data);
+    if (isLocalHashing(data.length)) {
+      return signDigest(digest(data));
+    }
+
+    session.signInit(mechanism, key);
+    return session.sign(data);
+  }
+
+  /**
+   * Computes the digest which is signed by {@link #signDigest(byte[])}. This
+   * method does not use the session and may be called concurrently.
+   *
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @return the digest.
+   */
+  public byte[] digest(byte[] data) {
+    Util.requireNonNull("data", data);
+    assertLocalHashing();
+    MessageDigest md = newDigest();
+    if (sm2Z != null) {
+      md.update(sm2Z);
+    }
+    return md.digest(data);
+  }
+
+  /**
+   * Signs a digest computed by {@link #digest(byte[])} with the raw
+   * mechanism on the token.
+   *
+   * @param digest
+   *          The digest. Must not be null.
+   * @return the signature value.
+   * @exception TokenException
+   *              If signing failed.
+   */
+  public byte[] signDigest(byte[] digest) throws TokenException {
+    Util.requireNonNull("digest", digest);
+    assertLocalHashing();
+
+    byte[] input = digest;
+    byte[] prefix = scheme.digestInfoPrefix;
+    if (prefix != null) {
+      input = new byte[prefix.length + digest.length];
+      System.arraycopy(prefix, 0, input, 0, prefix.length);
+      System.arraycopy(digest, 0, input, prefix.length, digest.length);
+    }
+
+    Mechanism rawMechanism = new Mechanism(scheme.rawMechanism);
+    if (scheme.rawMechanism == PKCS11Constants.CKM_RSA_PKCS_PSS) {
+      // same hash, MGF and salt length
+      rawMechanism.setParameters(mechanism.getParameters());
+    }
+
+    session.signInit(rawMechanism, key);
+    return session.sign(input);
+  }
+
+  private void assertLocalHashing() {
+    if (!supportsLocalHashing()) {
+      throw new IllegalStateException(
+          "local hashing is not supported for " + mechanism.getName());
+    }
+  }
+
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(scheme.digestAlgorithm);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex.getMessage(), ex);
+    }
+  }
+
+  private static LongObjectMap<Scheme> newSchemes() {
+    LongObjectMap<Scheme> map = new LongObjectMap<>(64);
+
+    final long rsa = PKCS11Constants.CKM_RSA_PKCS;
+    map.put(PKCS11Constants.CKM_SHA1_RSA_PKCS, new Scheme("SHA-1", rsa,
+        Functions.decodeHex("3021300906052b0e03021a05000414")));
+    map.put(PKCS11Constants.CKM_SHA224_RSA_PKCS,
+        new Scheme("SHA-224", rsa, nistDigestInfoPrefix(4, 28)));
+    map.put(PKCS11Constants.CKM_SHA256_RSA_PKCS,
+        new Scheme("SHA-256", rsa, nistDigestInfoPrefix(1, 32)));
+    map.put(PKCS11Constants.CKM_SHA384_RSA_PKCS,
+        new Scheme("SHA-384", rsa, nistDigestInfoPrefix(2, 48)));
+    map.put(PKCS11Constants.CKM_SHA512_RSA_PKCS,
+        new Scheme("SHA-512", rsa, nistDigestInfoPrefix(3, 64)));
+    map.put(PKCS11Constants.CKM_SHA3_224_RSA_PKCS,
+        new Scheme("SHA3-224", rsa, nistDigestInfoPrefix(7, 28)));
+    map.put(PKCS11Constants.CKM_SHA3_256_RSA_PKCS,
+        new Scheme("SHA3-256", rsa, nistDigestInfoPrefix(8, 32)));
+    map.put(PKCS11Constants.CKM_SHA3_384_RSA_PKCS,
+        new Scheme("SHA3-384", rsa, nistDigestInfoPrefix(9, 48)));
+    map.put(PKCS11Constants.CKM_SHA3_512_RSA_PKCS,
+        new Scheme("SHA3-512", rsa, nistDigestInfoPrefix(10, 64)));
+
+    final long pss = PKCS11Constants.CKM_RSA_PKCS_PSS;
+    map.put(PKCS11Constants.CKM_SHA1_RSA_PKCS_PSS,
+        new Scheme("SHA-1", pss, null));
+    map.put(PKCS11Constants.CKM_SHA224_RSA_PKCS_PSS,
+        new Scheme("SHA-224", pss, null));
+    map.put(PKCS11Constants.CKM_SHA256_RSA_PKCS_PSS,
+        new Scheme("SHA-256", pss, null));
+    map.put(PKCS11Constants.CKM_SHA384_RSA_PKCS_PSS,
+        new Scheme("SHA-384", pss, null));
+    map.put(PKCS11Constants.CKM_SHA512_RSA_PKCS_PSS,
+        new Scheme("SHA-512", pss, null));
+    map.put(PKCS11Constants.CKM_SHA3_224_RSA_PKCS_PSS,
+        new Scheme("SHA3-224", pss, null));
+    map.put(PKCS11Constants.CKM_SHA3_256_RSA_PKCS_PSS,
+        new Scheme("SHA3-256", pss, null));
+    map.put(PKCS11Constants.CKM_SHA3_384_RSA_PKCS_PSS,
+        new Scheme("SHA3-384", pss, null));
+    map.put(PKCS11Constants.CKM_SHA3_512_RSA_PKCS_PSS,
+        new Scheme("SHA3-512", pss, null));
+
+    final long ecdsa = PKCS11Constants.CKM_ECDSA;
+    map.put(PKCS11Constants.CKM_ECDSA_SHA1, new Scheme("SHA-1", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA224,
+        new Scheme("SHA-224", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA256,
+        new Scheme("SHA-256", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA384,
+        new Scheme("SHA-384", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA512,
+        new Scheme("SHA-512", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_224,
+        new Scheme("SHA3-224", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_256,
+        new Scheme("SHA3-256", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_384,
+        new Scheme("SHA3-384", ecdsa, null));
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_512,
+        new Scheme("SHA3-512", ecdsa, null));
+
+    final long dsa = PKCS11Constants.CKM_DSA;
+    map.put(PKCS11Constants.CKM_DSA_SHA1, new Scheme("SHA-1", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA224, new Scheme("SHA-224", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA256, new Scheme("SHA-256", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA384, new Scheme("SHA-384", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA512, new Scheme("SHA-512", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA3_224,
+        new Scheme("SHA3-224", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA3_256,
+        new Scheme("SHA3-256", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA3_384,
+        new Scheme("SHA3-384", dsa, null));
+    map.put(PKCS11Constants.CKM_DSA_SHA3_512,
+        new Scheme("SHA3-512", dsa, null));
+
+    map.put(PKCS11Constants.CKM_VENDOR_SM2_SM3,
+        new Scheme("SM3", PKCS11Constants.CKM_VENDOR_SM2, null));
+    return map;
+  }
+
+  /**
+   * Gets the DER encoded DigestInfo without the digest value for the hash
+   * algorithms with the OID 2.16.840.1.101.3.4.2.&lt;arc&gt;.
+   */
+  private static byte[] nistDigestInfoPrefix(int arc, int hashLen) {
+    byte[] prefix =
+        Functions.decodeHex("3000300d060960864801650304020005000400");
+    prefix[1] = (byte) (17 + hashLen);
+    prefix[14] = (byte) arc;
+    prefix[18] = (byte) hashLen;
+    return prefix;
+  }
+
+}
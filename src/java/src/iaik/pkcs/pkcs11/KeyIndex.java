@@ -0,0 +1,507 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory index of the objects of a token, which maps the object class
+ * and CKA_ID, the object class and CKA_LABEL, and RFC 7512 pkcs11: URIs to
+ * object handles. Once warmed up via {@link #warmUp(Session)}, resolving a
+ * key is a map lookup instead of a find operation on the token.
+ * <p>
+ * If an object is not in the index, the token is searched and the found
+ * object is added. The methods of {@link Session} which use a key invalidate
+ * its handle if the token rejects it as invalid, e.g. because the key has
+ * been deleted by another application, so that the next lookup searches the
+ * token again. The methods of {@link Session} which modify or destroy
+ * objects invalidate the affected handles, closing a session invalidates
+ * the session objects it has created, and logging out clears the index.
+ * <p>
+ * If several objects have the same class and ID (or label), any of them is
+ * returned. Lookups which search the token use the find operation of the
+ * given session, so no other find operation must be active in it.
+ * <p>
+ * There is one index per slot, shared by all {@link Token} objects of the
+ * slot, see {@link Token#getKeyIndex()}. It is thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class KeyIndex {
+
+  private static final long ANY_CLASS = -1;
+
+  private static final long[] URI_CLASSES = {
+    PKCS11Constants.CKO_PRIVATE_KEY, PKCS11Constants.CKO_SECRET_KEY,
+    PKCS11Constants.CKO_PUBLIC_KEY, PKCS11Constants.CKO_CERTIFICATE,
+    PKCS11Constants.CKO_DATA};
+
+  private static final long[] INDEXED_TYPES = {PKCS11Constants.CKA_CLASS,
+    PKCS11Constants.CKA_ID, PKCS11Constants.CKA_LABEL};
+
+  private static final int FIND_BATCH_SIZE = 1024;
+
+  private static final class IndexKey {
+
+    private final long objectClass;
+
+    // ByteArrayKey for the ID, String for the label
+    private final Object value;
+
+    private IndexKey(long objectClass, Object value) {
+      this.objectClass = objectClass;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof IndexKey)) {
+        return false;
+      }
+
+      IndexKey other = (IndexKey) obj;
+      return objectClass == other.objectClass && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(objectClass) + value.hashCode();
+    }
+
+  }
+
+  private static final class Entry {
+
+    private final long objectHandle;
+
+    private final long objectClass;
+
+    private final ByteArrayKey id;
+
+    private final String label;
+
+    private Entry(long objectHandle, long objectClass, ByteArrayKey id,
+        String label) {
+      this.objectHandle = objectHandle;
+      this.objectClass = objectClass;
+      this.id = id;
+      this.label = label;
+    }
+
+  }
+
+  private final Token token;
+
+  private final ConcurrentHashMap<IndexKey, Entry> byId =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<IndexKey, Entry> byLabel =
+      new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<Long, Entry> byHandle =
+      new ConcurrentHashMap<>();
+
+  private volatile TokenInfo tokenInfo;
+
+  KeyIndex(Token token) {
+    this.token = token;
+  }
+
+  /**
+   * Gets the token of this index.
+   *
+   * @return The token.
+   */
+  public Token getToken() {
+    return token;
+  }
+
+  /**
+   * Replaces the content of this index by all objects visible to the given
+   * session. The handles are found with one find operation, and the class,
+   * ID and label of each object are read with one C_GetAttributeValue.
+   *
+   * @param session
+   *          The session to use. Must not be null.
+   * @return the number of indexed objects.
+   * @exception TokenException
+   *              If finding or reading the objects failed.
+   */
+  public int warmUp(Session session) throws TokenException {
+    checkSession(session);
+    List<long[]> batches = new ArrayList<>();
+    int count = 0;
+    session.findObjectsInit((PKCS11Object) null);
+    try {
+      long[] batch;
+      do {
+        batch = session.findObjectHandles(FIND_BATCH_SIZE);
+        batches.add(batch);
+        count += batch.length;
+      } while (batch.length == FIND_BATCH_SIZE);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    long[] handles = new long[count];
+    int off = 0;
+    for (long[] batch : batches) {
+      System.arraycopy(batch, 0, handles, off, batch.length);
+      off += batch.length;
+    }
+
+    AttributeValues[] valuesList =
+        session.readAttributes(handles, INDEXED_TYPES);
+    clear();
+    for (AttributeValues values : valuesList) {
+      add(values);
+    }
+    return byHandle.size();
+  }
+
+  /**
+   * Gets the handle of the object with the given class and CKA_ID.
+   *
+   * @param session
+   *          The session to search the token with, if the object is not in
+   *          the index. Must not be null.
+   * @param objectClass
+   *          The object class; e.g. CKO_PRIVATE_KEY.
+   * @param id
+   *          The CKA_ID. Must not be null.
+   * @return the object handle, or CK_INVALID_HANDLE if there is no such
+   *         object.
+   * @exception TokenException
+   *              If searching the token failed.
+   */
+  public long findHandleById(Session session, long objectClass, byte[] id)
+      throws TokenException {
+    Util.requireNonNull("id", id);
+    return findHandle(session, objectClass, new ByteArrayKey(id), null);
+  }
+
+  /**
+   * Gets the handle of the object with the given class and CKA_LABEL.
+   *
+   * @param session
+   *          The session to search the token with, if the object is not in
+   *          the index. Must not be null.
+   * @param objectClass
+   *          The object class; e.g. CKO_PRIVATE_KEY.
+   * @param label
+   *          The CKA_LABEL. Must not be null.
+   * @return the object handle, or CK_INVALID_HANDLE if there is no such
+   *         object.
+   * @exception TokenException
+   *              If searching the token failed.
+   */
+  public long findHandleByLabel(Session session, long objectClass,
+      String label) throws TokenException {
+    Util.requireNonNull("label", label);
+    return findHandle(session, objectClass, null, label);
+  }
+
+  /**
+   * Gets the handle of the object identified by the given RFC 7512 URI;
+   * e.g. {@code pkcs11:token=My%20Token;object=signer;type=private}. The
+   * path attributes id, object and type select the object, the attributes
+   * token, manufacturer, serial and model are compared with the
+   * {@link TokenInfo}, and the library-* and slot-* attributes as well as
+   * the query are ignored. Without the type attribute, the object is
+   * searched among private keys, secret keys, public keys, certificates and
+   * data objects, in this order.
+   *
+   * @param session
+   *          The session to search the token with, if the object is not in
+   *          the index. Must not be null.
+   * @param uri
+   *          The pkcs11: URI. Must not be null.
+   * @return the object handle, or CK_INVALID_HANDLE if there is no such
+   *         object, or the URI identifies another token.
+   * @exception TokenException
+   *              If searching the token failed.
+   * @throws IllegalArgumentException
+   *           If the URI is invalid, or does not contain the attribute id
+   *           or object.
+   */
+  public long findHandleByUri(Session session, String uri)
+      throws TokenException {
+    Util.requireNonNull("uri", uri);
+    if (!uri.regionMatches(true, 0, "pkcs11:", 0, 7)) {
+      throw new IllegalArgumentException("not a pkcs11 URI: " + uri);
+    }
+
+    int queryIndex = uri.indexOf('?');
+    String path = uri.substring(7,
+        (queryIndex == -1) ? uri.length() : queryIndex);
+
+    long objectClass = ANY_CLASS;
+    ByteArrayKey id = null;
+    String label = null;
+    for (String attr : path.split(";")) {
+      if (attr.isEmpty()) {
+        continue;
+      }
+
+      int eqIndex = attr.indexOf('=');
+      if (eqIndex == -1) {
+        throw new IllegalArgumentException(
+            "invalid attribute in pkcs11 URI: " + attr);
+      }
+
+      String name = attr.substring(0, eqIndex);
+      byte[] value = percentDecode(attr.substring(eqIndex + 1));
+      String strValue = new String(value, StandardCharsets.UTF_8);
+      if ("id".equals(name)) {
+        id = new ByteArrayKey(value);
+      } else if ("object".equals(name)) {
+        label = strValue;
+      } else if ("type".equals(name)) {
+        objectClass = toObjectClass(strValue);
+      } else if ("token".equals(name)) {
+        if (!matches(getTokenInfo().getLabel(), strValue)) {
+          return PKCS11Constants.CK_INVALID_HANDLE;
+        }
+      } else if ("manufacturer".equals(name)) {
+        if (!matches(getTokenInfo().getManufacturerID(), strValue)) {
+          return PKCS11Constants.CK_INVALID_HANDLE;
+        }
+      } else if ("serial".equals(name)) {
+        if (!matches(getTokenInfo().getSerialNumber(), strValue)) {
+          return PKCS11Constants.CK_INVALID_HANDLE;
+        }
+      } else if ("model".equals(name)) {
+        if (!matches(getTokenInfo().getModel(), strValue)) {
+          return PKCS11Constants.CK_INVALID_HANDLE;
+        }
+      } else if (!name.startsWith("library-") && !name.startsWith("slot-")) {
+        throw new IllegalArgumentException(
+            "unsupported attribute in pkcs11 URI: " + name);
+      }
+    }
+
+    if (id == null && label == null) {
+      throw new IllegalArgumentException(
+          "pkcs11 URI contains neither id nor object: " + uri);
+    }
+
+    if (objectClass != ANY_CLASS) {
+      return findHandle(session, objectClass, id, label);
+    }
+
+    for (long clazz : URI_CLASSES) {
+      Entry entry = lookup(clazz, id, label);
+      if (entry != null) {
+        return entry.objectHandle;
+      }
+    }
+    return search(session, ANY_CLASS, id, label);
+  }
+
+  /**
+   * Removes the object with the given handle from this index.
+   *
+   * @param objectHandle
+   *          The object handle.
+   */
+  public void invalidate(long objectHandle) {
+    Entry entry = byHandle.remove(objectHandle);
+    if (entry == null) {
+      return;
+    }
+
+    if (entry.id != null) {
+      byId.remove(new IndexKey(entry.objectClass, entry.id), entry);
+    }
+    if (entry.label != null) {
+      byLabel.remove(new IndexKey(entry.objectClass, entry.label), entry);
+    }
+  }
+
+  /**
+   * Removes all objects from this index.
+   */
+  public void clear() {
+    byHandle.clear();
+    byId.clear();
+    byLabel.clear();
+  }
+
+  /**
+   * Gets the number of indexed objects.
+   *
+   * @return the number of indexed objects.
+   */
+  public int size() {
+    return byHandle.size();
+  }
+
+  private long findHandle(Session session, long objectClass, ByteArrayKey id,
+      String label) throws TokenException {
+    Entry entry = lookup(objectClass, id, label);
+    return (entry != null) ? entry.objectHandle
+        : search(session, objectClass, id, label);
+  }
+
+  private Entry lookup(long objectClass, ByteArrayKey id, String label) {
+    Entry entry = (id != null) ? byId.get(new IndexKey(objectClass, id))
+        : byLabel.get(new IndexKey(objectClass, label));
+    if (entry != null && label != null && !label.equals(entry.label)) {
+      return null;
+    }
+    return entry;
+  }
+
+  private long search(Session session, long objectClass, ByteArrayKey id,
+      String label) throws TokenException {
+    checkSession(session);
+    List<CK_ATTRIBUTE> attrs = new ArrayList<>(3);
+    if (objectClass != ANY_CLASS) {
+      attrs.add(new CK_ATTRIBUTE(PKCS11Constants.CKA_CLASS, objectClass));
+    }
+    if (id != null) {
+      attrs.add(new CK_ATTRIBUTE(PKCS11Constants.CKA_ID, id.getBytes()));
+    }
+    if (label != null) {
+      attrs.add(new CK_ATTRIBUTE(PKCS11Constants.CKA_LABEL,
+          label.toCharArray()));
+    }
+
+    CompiledTemplate template = new CompiledTemplate(session.getModule(),
+        attrs.toArray(new CK_ATTRIBUTE[attrs.size()]));
+    long[] handles;
+    session.findObjectsInitCompiled(template);
+    try {
+      handles = session.findObjectHandles(1);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    if (handles.length == 0) {
+      return PKCS11Constants.CK_INVALID_HANDLE;
+    }
+
+    add(session.readAttributes(handles[0], INDEXED_TYPES));
+    return handles[0];
+  }
+
+  private void add(AttributeValues values) {
+    if (!values.isPresent(PKCS11Constants.CKA_CLASS)) {
+      return;
+    }
+
+    long objectClass = values.getLong(PKCS11Constants.CKA_CLASS);
+    byte[] id = values.getByteArray(PKCS11Constants.CKA_ID);
+    String label = values.getString(PKCS11Constants.CKA_LABEL);
+    Entry entry = new Entry(values.getObjectHandle(), objectClass,
+        (id == null) ? null : new ByteArrayKey(id), label);
+
+    // replace the old entry of the same handle
+    invalidate(entry.objectHandle);
+    byHandle.put(entry.objectHandle, entry);
+    if (entry.id != null) {
+      byId.put(new IndexKey(objectClass, entry.id), entry);
+    }
+    if (entry.label != null) {
+      byLabel.put(new IndexKey(objectClass, entry.label), entry);
+    }
+  }
+
+  private void checkSession(Session session) {
+    Util.requireNonNull("session", session);
+    if (!token.equals(session.getToken())) {
+      throw new IllegalArgumentException(
+          "session does not belong to the token of this index");
+    }
+  }
+
+  private TokenInfo getTokenInfo() throws TokenException {
+    TokenInfo info = tokenInfo;
+    if (info == null) {
+      info = token.getTokenInfo();
+      tokenInfo = info;
+    }
+    return info;
+  }
+
+  private static boolean matches(String tokenValue, String uriValue) {
+    return tokenValue != null && tokenValue.trim().equals(uriValue.trim());
+  }
+
+  private static long toObjectClass(String type) {
+    switch (type) {
+      case "private":
+        return PKCS11Constants.CKO_PRIVATE_KEY;
+      case "public":
+        return PKCS11Constants.CKO_PUBLIC_KEY;
+      case "secret-key":
+        return PKCS11Constants.CKO_SECRET_KEY;
+      case "cert":
+        return PKCS11Constants.CKO_CERTIFICATE;
+      case "data":
+        return PKCS11Constants.CKO_DATA;
+      default:
+        throw new IllegalArgumentException(
+            "unsupported type in pkcs11 URI: " + type);
+    }
+  }
+
+  private static byte[] percentDecode(String str) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(str.length());
+    int len = str.length();
+    int start = 0;
+    for (int i = 0; i < len; i++) {
+      if (str.charAt(i) != '%') {
+        continue;
+      }
+
+      byte[] plain = str.substring(start, i).getBytes(StandardCharsets.UTF_8);
+      out.write(plain, 0, plain.length);
+      if (i + 2 >= len) {
+        throw new IllegalArgumentException(
+            "invalid percent-encoding in pkcs11 URI: " + str);
+      }
+
+      try {
+        out.write(Integer.parseInt(str.substring(i + 1, i + 3), 16));
+      } catch (NumberFormatException ex) {
+        throw new IllegalArgumentException(
+            "invalid percent-encoding in pkcs11 URI: " + str);
+      }
+      i += 2;
+      start = i + 1;
+    }
+
+    byte[] plain = str.substring(start).getBytes(StandardCharsets.UTF_8);
+    out.write(plain, 0, plain.length);
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,227 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.util.Arrays;
+
+/**
+ * A map from long to long with open addressing and linear probing, without
+ * boxing. Lookups do not allocate.
+ * <p>
+ * This class is not thread-safe. A map which is not modified any more can be
+ * read by several threads, if it has been safely published.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class LongLongMap {
+
+  /**
+   * Marks the free slots. The value of this key is stored in
+   * {@link #freeKeyValue}.
+   */
+  private static final long FREE_KEY = -1L;
+
+  private long[] keys;
+
+  private long[] values;
+
+  private int mask;
+
+  private int size;
+
+  private boolean hasFreeKey;
+
+  private long freeKeyValue;
+
+  /**
+   * Creates an empty map.
+   */
+  public LongLongMap() {
+    this(8);
+  }
+
+  /**
+   * Creates an empty map.
+   *
+   * @param expectedSize
+   *          The expected number of entries.
+   */
+  public LongLongMap(int expectedSize) {
+    allocate(tableSize(expectedSize));
+  }
+
+  /**
+   * Gets the table size for the given number of entries, so that the table
+   * is at most half full.
+   */
+  static int tableSize(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("expectedSize must not be negative");
+    }
+
+    int capacity = 8;
+    while (capacity < 2 * expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Gets the start index of the given key.
+   */
+  static int index(long key, int mask) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  /**
+   * Gets the value of the given key.
+   *
+   * @param key
+   *          The key.
+   * @param defaultValue
+   *          The value to return if there is no such key.
+   * @return the value, or defaultValue if there is no such key.
+   */
+  public long get(long key, long defaultValue) {
+    if (key == FREE_KEY) {
+      return hasFreeKey ? freeKeyValue : defaultValue;
+    }
+
+    int idx = index(key, mask);
+    while (true) {
+      long k = keys[idx];
+      if (k == key) {
+        return values[idx];
+      } else if (k == FREE_KEY) {
+        return defaultValue;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Returns whether this map contains the given key.
+   *
+   * @param key
+   *          The key.
+   * @return true if this map contains the key.
+   */
+  public boolean containsKey(long key) {
+    if (key == FREE_KEY) {
+      return hasFreeKey;
+    }
+
+    int idx = index(key, mask);
+    while (true) {
+      long k = keys[idx];
+      if (k == key) {
+        return true;
+      } else if (k == FREE_KEY) {
+        return false;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Puts the value of the given key.
+   *
+   * @param key
+   *          The key.
+   * @param value
+   *          The value.
+   */
+  public void put(long key, long value) {
+    if (key == FREE_KEY) {
+      if (!hasFreeKey) {
+        hasFreeKey = true;
+        size++;
+      }
+      freeKeyValue = value;
+      return;
+    }
+
+    int idx = index(key, mask);
+    while (true) {
+      long k = keys[idx];
+      if (k == key) {
+        values[idx] = value;
+        return;
+      } else if (k == FREE_KEY) {
+        keys[idx] = key;
+        values[idx] = value;
+        size++;
+        if (2 * size > keys.length) {
+          rehash();
+        }
+        return;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return the number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the keys of this map, in no particular order.
+   *
+   * @return the keys.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int idx = 0;
+    if (hasFreeKey) {
+      result[idx++] = FREE_KEY;
+    }
+    for (long key : keys) {
+      if (key != FREE_KEY) {
+        result[idx++] = key;
+      }
+    }
+    return result;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, FREE_KEY);
+    values = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    allocate(oldKeys.length * 2);
+    size = hasFreeKey ? 1 : 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE_KEY) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+}
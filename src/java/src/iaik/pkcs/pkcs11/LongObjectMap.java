@@ -0,0 +1,195 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.util.Arrays;
+
+/**
+ * A map from long to objects with open addressing and linear probing,
+ * without boxing the keys. Lookups do not allocate. Null values are not
+ * allowed.
+ * <p>
+ * This class is not thread-safe. A map which is not modified any more can be
+ * read by several threads, if it has been safely published.
+ *
+ * @param <V> the type of the values.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class LongObjectMap<V> {
+
+  /**
+   * Marks the free slots. The value of this key is stored in
+   * {@link #freeKeyValue}.
+   */
+  private static final long FREE_KEY = -1L;
+
+  private long[] keys;
+
+  private Object[] values;
+
+  private int mask;
+
+  private int size;
+
+  private V freeKeyValue;
+
+  /**
+   * Creates an empty map.
+   */
+  public LongObjectMap() {
+    this(8);
+  }
+
+  /**
+   * Creates an empty map.
+   *
+   * @param expectedSize
+   *          The expected number of entries.
+   */
+  public LongObjectMap(int expectedSize) {
+    allocate(LongLongMap.tableSize(expectedSize));
+  }
+
+  /**
+   * Gets the value of the given key.
+   *
+   * @param key
+   *          The key.
+   * @return the value, or null if there is no such key.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    if (key == FREE_KEY) {
+      return freeKeyValue;
+    }
+
+    int idx = LongLongMap.index(key, mask);
+    while (true) {
+      long k = keys[idx];
+      if (k == key) {
+        return (V) values[idx];
+      } else if (k == FREE_KEY) {
+        return null;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Returns whether this map contains the given key.
+   *
+   * @param key
+   *          The key.
+   * @return true if this map contains the key.
+   */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Puts the value of the given key.
+   *
+   * @param key
+   *          The key.
+   * @param value
+   *          The value. Must not be null.
+   * @return the previous value, or null.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Util.requireNonNull("value", value);
+    if (key == FREE_KEY) {
+      V old = freeKeyValue;
+      if (old == null) {
+        size++;
+      }
+      freeKeyValue = value;
+      return old;
+    }
+
+    int idx = LongLongMap.index(key, mask);
+    while (true) {
+      long k = keys[idx];
+      if (k == key) {
+        V old = (V) values[idx];
+        values[idx] = value;
+        return old;
+      } else if (k == FREE_KEY) {
+        keys[idx] = key;
+        values[idx] = value;
+        size++;
+        if (2 * size > keys.length) {
+          rehash();
+        }
+        return null;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return the number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the keys of this map, in no particular order.
+   *
+   * @return the keys.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int idx = 0;
+    if (freeKeyValue != null) {
+      result[idx++] = FREE_KEY;
+    }
+    for (long key : keys) {
+      if (key != FREE_KEY) {
+        result[idx++] = key;
+      }
+    }
+    return result;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, FREE_KEY);
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void rehash() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(oldKeys.length * 2);
+    size = (freeKeyValue != null) ? 1 : 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE_KEY) {
+        put(oldKeys[i], (V) oldValues[i]);
+      }
+    }
+  }
+
+}
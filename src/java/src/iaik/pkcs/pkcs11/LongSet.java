@@ -0,0 +1,189 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.util.Arrays;
+
+/**
+ * A set of long values with open addressing and linear probing, without
+ * boxing. Lookups do not allocate.
+ * <p>
+ * This class is not thread-safe. A set which is not modified any more can be
+ * read by several threads, if it has been safely published.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class LongSet {
+
+  /**
+   * Marks the free slots. The value itself is stored in {@link #hasFreeKey}.
+   */
+  private static final long FREE_KEY = -1L;
+
+  private long[] keys;
+
+  private int mask;
+
+  private int size;
+
+  private boolean hasFreeKey;
+
+  /**
+   * Creates an empty set.
+   */
+  public LongSet() {
+    this(8);
+  }
+
+  /**
+   * Creates an empty set.
+   *
+   * @param expectedSize
+   *          The expected number of elements.
+   */
+  public LongSet(int expectedSize) {
+    allocate(LongLongMap.tableSize(expectedSize));
+  }
+
+  /**
+   * Creates a set containing the given values.
+   *
+   * @param values
+   *          The values. Must not be null.
+   * @return the set.
+   */
+  public static LongSet of(long... values) {
+    Util.requireNonNull("values", values);
+    LongSet set = new LongSet(values.length);
+    for (long value : values) {
+      set.add(value);
+    }
+    return set;
+  }
+
+  /**
+   * Returns whether this set contains the given value.
+   *
+   * @param value
+   *          The value.
+   * @return true if this set contains the value.
+   */
+  public boolean contains(long value) {
+    if (value == FREE_KEY) {
+      return hasFreeKey;
+    }
+
+    int idx = LongLongMap.index(value, mask);
+    while (true) {
+      long key = keys[idx];
+      if (key == value) {
+        return true;
+      } else if (key == FREE_KEY) {
+        return false;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Adds the given value.
+   *
+   * @param value
+   *          The value.
+   * @return true if the value has been added, false if it was already in
+   *         this set.
+   */
+  public boolean add(long value) {
+    if (value == FREE_KEY) {
+      if (hasFreeKey) {
+        return false;
+      }
+      hasFreeKey = true;
+      size++;
+      return true;
+    }
+
+    int idx = LongLongMap.index(value, mask);
+    while (true) {
+      long key = keys[idx];
+      if (key == value) {
+        return false;
+      } else if (key == FREE_KEY) {
+        keys[idx] = value;
+        size++;
+        if (2 * size > keys.length) {
+          rehash();
+        }
+        return true;
+      }
+      idx = (idx + 1) & mask;
+    }
+  }
+
+  /**
+   * Gets the number of values.
+   *
+   * @return the number of values.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the values of this set, in no particular order.
+   *
+   * @return the values.
+   */
+  public long[] toArray() {
+    long[] values = new long[size];
+    int idx = 0;
+    if (hasFreeKey) {
+      values[idx++] = FREE_KEY;
+    }
+    for (long key : keys) {
+      if (key != FREE_KEY) {
+        values[idx++] = key;
+      }
+    }
+    return values;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, FREE_KEY);
+    mask = capacity - 1;
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    allocate(oldKeys.length * 2);
+    size = hasFreeKey ? 1 : 0;
+    for (long key : oldKeys) {
+      if (key != FREE_KEY) {
+        add(key);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+}
@@ -8,13 +8,13 @@ import java.util.Map;
 
 public class MapVendorCodeConverter implements VendorCodeConverter {
 
-    private final Map<Long, Long> ckkGenericToVendorMap = new HashMap<>();
+    private final LongLongMap ckkGenericToVendorMap = new LongLongMap();
 
-    private final Map<Long, Long> ckkVendorToGenericMap = new HashMap<>();
+    private final LongLongMap ckkVendorToGenericMap = new LongLongMap();
 
-    private final Map<Long, Long> ckmGenericToVendorMap = new HashMap<>();
+    private final LongLongMap ckmGenericToVendorMap = new LongLongMap();
 
-    private final Map<Long, Long> ckmVendorToGenericMap = new HashMap<>();
+    private final LongLongMap ckmVendorToGenericMap = new LongLongMap();
 
     public MapVendorCodeConverter(
             Map<Long, Long> ckkGenericToVendorMap,
@@ -64,29 +64,24 @@ public class MapVendorCodeConverter implements VendorCodeConverter {
 
     private static void copyMapIfNotNull(
             Map<Long, Long> source,
-            Map<Long, Long> genericToVendorMap,
-            Map<Long, Long> vendorToGenericMap) {
+            LongLongMap genericToVendorMap,
+            LongLongMap vendorToGenericMap) {
         if (source == null || source.isEmpty()) {
             return;
         }
 
-        for (Long generic : source.keySet())  {
-            if (generic == null) {
+        for (Map.Entry<Long, Long> entry : source.entrySet()) {
+            Long generic = entry.getKey();
+            Long vendor = entry.getValue();
+            if (generic == null || vendor == null) {
                 continue;
             }
 
-            Long vendor = source.get(generic);
-            if (vendor != null) {
-                genericToVendorMap.put(generic, vendor);
-            }
-        }
-
-        for (Long generic : genericToVendorMap.keySet()) {
-            Long vendor = genericToVendorMap.get(generic);
             if (vendorToGenericMap.containsKey(vendor)) {
                 throw new IllegalArgumentException(
                         "duplicated vendor code 0x" + Functions.toFullHex(vendor));
             }
+            genericToVendorMap.put(generic, vendor);
             vendorToGenericMap.put(vendor, generic);
         }
     }
@@ -111,26 +106,22 @@ public class MapVendorCodeConverter implements VendorCodeConverter {
 
     @Override
     public long genericToVendorCKK(long ckk) {
-        Long newValue = ckkGenericToVendorMap.get(ckk);
-        return newValue == null ? ckk : newValue;
+        return ckkGenericToVendorMap.get(ckk, ckk);
     }
 
     @Override
     public long vendorToGenericCKK(long ckk) {
-        Long newValue = ckkVendorToGenericMap.get(ckk);
-        return newValue == null ? ckk : newValue;
+        return ckkVendorToGenericMap.get(ckk, ckk);
     }
 
     @Override
     public long genericToVendorCKM(long ckm) {
-        Long newValue = ckmGenericToVendorMap.get(ckm);
-        return newValue == null ? ckm : newValue;
+        return ckmGenericToVendorMap.get(ckm, ckm);
     }
 
     @Override
     public long vendorToGenericCKM(long ckm) {
-        Long newValue = ckmVendorToGenericMap.get(ckm);
-        return newValue == null ? ckm : newValue;
+        return ckmVendorToGenericMap.get(ckm, ckm);
     }
 
 }
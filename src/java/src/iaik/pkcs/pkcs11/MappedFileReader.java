@@ -0,0 +1,160 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a file as a sequence of memory-mapped chunks. If an executor is
+ * given, the next chunk is mapped and paged in by the executor while the
+ * caller processes the current one.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class MappedFileReader {
+
+  /**
+   * Holds the executor used for the read-ahead by default. It is created on
+   * first use; its threads are daemon threads and terminate when idle.
+   */
+  static final class DefaultExecutor {
+
+    static final ExecutorService INSTANCE =
+        Executors.newCachedThreadPool(new ThreadFactory() {
+
+          private final AtomicInteger index = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                "pkcs11-read-ahead-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+
+        });
+
+  }
+
+  private final FileChannel channel;
+
+  private final long size;
+
+  private final int chunkSize;
+
+  private final Executor executor;
+
+  private long position;
+
+  private FutureTask<MappedByteBuffer> nextChunk;
+
+  MappedFileReader(FileChannel channel, long size, int chunkSize,
+      Executor executor) {
+    this.channel = channel;
+    this.size = size;
+    this.chunkSize = chunkSize;
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the next chunk.
+   *
+   * @return the next chunk, or null if the end of the file is reached.
+   * @exception IOException
+   *              If mapping the file failed.
+   */
+  ByteBuffer next() throws IOException {
+    if (position >= size) {
+      return null;
+    }
+
+    MappedByteBuffer chunk;
+    if (nextChunk == null) {
+      chunk = map(position);
+    } else {
+      try {
+        chunk = nextChunk.get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted while mapping the file", ex);
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        throw (cause instanceof IOException) ? (IOException) cause
+            : new IOException(cause.getMessage(), cause);
+      }
+      nextChunk = null;
+    }
+    position += chunk.remaining();
+
+    if (executor != null && position < size) {
+      final long nextPosition = position;
+      nextChunk = new FutureTask<>(new Callable<MappedByteBuffer>() {
+        @Override
+        public MappedByteBuffer call() throws IOException {
+          return map(nextPosition).load();
+        }
+      });
+      executor.execute(nextChunk);
+    }
+
+    return chunk;
+  }
+
+  /**
+   * Reads the remaining content of the file into one array.
+   *
+   * @return the content.
+   * @exception IOException
+   *              If reading the file failed, or the file is too large.
+   */
+  byte[] readFully() throws IOException {
+    long len = size - position;
+    if (len > Integer.MAX_VALUE - 8) {
+      throw new IOException("file is too large for a single-part operation");
+    }
+
+    byte[] content = new byte[(int) len];
+    ByteBuffer buffer = ByteBuffer.wrap(content);
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position + buffer.position());
+      if (n < 0) {
+        throw new IOException("unexpected end of file");
+      }
+    }
+    position = size;
+    return content;
+  }
+
+  private MappedByteBuffer map(long pos) throws IOException {
+    long len = Math.min(chunkSize, size - pos);
+    return channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+  }
+
+}
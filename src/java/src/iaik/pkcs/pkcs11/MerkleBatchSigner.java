@@ -0,0 +1,382 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Signs documents in batches: the documents submitted within a window are
+ * collected, a Merkle tree of their hashes is built in the JVM, and only
+ * the root is signed on the token. Each document receives the root
+ * signature together with its inclusion proof, see {@link MerkleSignature}.
+ * The signatures can be verified in the JVM with {@link MerkleVerifier}.
+ * <p>
+ * The number of token operations is proportional to the number of batches,
+ * not of documents. A batch is signed when its window has elapsed since its
+ * first document, or as soon as it is full, so the added latency is bounded
+ * by the window.
+ * <p>
+ * The root is passed as data to the signature mechanism, so any mechanism
+ * which signs arbitrary data (e.g. CKM_ECDSA_SHA256 or
+ * CKM_SHA256_RSA_PKCS) can be used.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class MerkleBatchSigner {
+
+  /**
+   * The default hash algorithm of the Merkle tree.
+   */
+  public static final String DEFAULT_HASH_ALGORITHM = "SHA-256";
+
+  /**
+   * The default window in milliseconds.
+   */
+  public static final long DEFAULT_WINDOW = 50;
+
+  /**
+   * The default maximal number of documents of a batch.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+  /**
+   * The collected documents of one batch.
+   */
+  private final class Batch implements Runnable {
+
+    private final List<byte[]> leaves;
+
+    private final List<CompletableFuture<MerkleSignature>> futures;
+
+    private Batch(List<byte[]> leaves,
+        List<CompletableFuture<MerkleSignature>> futures) {
+      this.leaves = leaves;
+      this.futures = futures;
+    }
+
+    @Override
+    public void run() {
+      final int treeSize = leaves.size();
+      final byte[][][] proofs = new byte[treeSize][][];
+      byte[] root;
+      try {
+        root = buildTree(leaves, proofs);
+      } catch (RuntimeException ex) {
+        fail(ex);
+        return;
+      }
+
+      asyncToken.sign(mechanism, key, root).whenComplete(
+          new BiConsumer<byte[], Throwable>() {
+            @Override
+            public void accept(byte[] signature, Throwable error) {
+              if (error != null) {
+                fail(error);
+                return;
+              }
+
+              for (int i = 0; i < treeSize; i++) {
+                futures.get(i).complete(
+                    new MerkleSignature(i, treeSize, proofs[i], signature));
+              }
+            }
+          });
+    }
+
+    private void fail(Throwable error) {
+      Throwable cause = (error instanceof CompletionException
+          && error.getCause() != null) ? error.getCause() : error;
+      for (CompletableFuture<MerkleSignature> future : futures) {
+        future.completeExceptionally(cause);
+      }
+    }
+
+  }
+
+  private final AsyncToken asyncToken;
+
+  private final Mechanism mechanism;
+
+  private final Key key;
+
+  private final String hashAlgorithm;
+
+  private final long window;
+
+  private final int maxBatchSize;
+
+  private final ScheduledThreadPoolExecutor scheduler;
+
+  private final Object lock = new Object();
+
+  private List<byte[]> leaves = new ArrayList<>();
+
+  private List<CompletableFuture<MerkleSignature>> futures =
+      new ArrayList<>();
+
+  /**
+   * Counts the taken batches, so that the timer of a batch which has
+   * already been signed because it was full does not cut the next one short.
+   */
+  private long batchId;
+
+  private boolean closed;
+
+  /**
+   * Creates a signer with the default hash algorithm, window and maximal
+   * batch size.
+   *
+   * @param asyncToken
+   *          The asynchronous token which signs the roots. Must not be null.
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The private key. Must not be null.
+   */
+  public MerkleBatchSigner(AsyncToken asyncToken, Mechanism mechanism,
+      Key key) {
+    this(asyncToken, mechanism, key, DEFAULT_HASH_ALGORITHM, DEFAULT_WINDOW,
+        DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a signer.
+   *
+   * @param asyncToken
+   *          The asynchronous token which signs the roots. Must not be null.
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The private key. Must not be null.
+   * @param hashAlgorithm
+   *          The JCA name of the hash algorithm of the Merkle tree. Must not
+   *          be null.
+   * @param window
+   *          The maximal time in milliseconds a document waits for further
+   *          documents of its batch. Must be positive.
+   * @param maxBatchSize
+   *          The maximal number of documents of a batch. Must be positive.
+   */
+  public MerkleBatchSigner(AsyncToken asyncToken, Mechanism mechanism,
+      Key key, String hashAlgorithm, long window, int maxBatchSize) {
+    this.asyncToken = Util.requireNonNull("asyncToken", asyncToken);
+    this.mechanism = Util.requireNonNull("mechanism", mechanism);
+    this.key = Util.requireNonNull("key", key);
+    this.hashAlgorithm = Util.requireNonNull("hashAlgorithm", hashAlgorithm);
+    if (window <= 0 || maxBatchSize <= 0) {
+      throw new IllegalArgumentException(
+          "window and maxBatchSize must be positive");
+    }
+    this.window = window;
+    this.maxBatchSize = maxBatchSize;
+    // fails fast if the hash algorithm is not available
+    newDigest(hashAlgorithm);
+
+    this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "merkle-batch-signer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  static MessageDigest newDigest(String hashAlgorithm) {
+    try {
+      return MessageDigest.getInstance(hashAlgorithm);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalArgumentException(
+          "unsupported hash algorithm " + hashAlgorithm, ex);
+    }
+  }
+
+  /**
+   * Gets the hash algorithm of the Merkle tree.
+   *
+   * @return the JCA name of the hash algorithm.
+   */
+  public String getHashAlgorithm() {
+    return hashAlgorithm;
+  }
+
+  /**
+   * Gets the window.
+   *
+   * @return the window in milliseconds.
+   */
+  public long getWindow() {
+    return window;
+  }
+
+  /**
+   * Gets the maximal number of documents of a batch.
+   *
+   * @return the maximal batch size.
+   */
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Adds a document to the current batch. The document is hashed in the
+   * calling thread, and is not referenced afterwards.
+   *
+   * @param document
+   *          The to-be-signed document. Must not be null.
+   * @return the future signature of the document.
+   * @exception IllegalStateException
+   *              If this signer is closed.
+   */
+  public CompletableFuture<MerkleSignature> sign(byte[] document) {
+    byte[] leaf = MerkleSignature.leafHash(newDigest(hashAlgorithm),
+        Util.requireNonNull("document", document));
+    CompletableFuture<MerkleSignature> future = new CompletableFuture<>();
+
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("signer is closed");
+      }
+
+      leaves.add(leaf);
+      futures.add(future);
+      if (leaves.size() >= maxBatchSize) {
+        scheduler.execute(takeBatch());
+      } else if (leaves.size() == 1) {
+        final long id = batchId;
+        scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            flush(id);
+          }
+        }, window, TimeUnit.MILLISECONDS);
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Signs the current batch now, without waiting for the end of its window.
+   */
+  public void flush() {
+    synchronized (lock) {
+      if (!leaves.isEmpty()) {
+        scheduler.execute(takeBatch());
+      }
+    }
+  }
+
+  private void flush(long id) {
+    Batch batch;
+    synchronized (lock) {
+      batch = (id != batchId || leaves.isEmpty()) ? null : takeBatch();
+    }
+
+    if (batch != null) {
+      batch.run();
+    }
+  }
+
+  private Batch takeBatch() {
+    Batch batch = new Batch(leaves, futures);
+    leaves = new ArrayList<>();
+    futures = new ArrayList<>();
+    batchId++;
+    return batch;
+  }
+
+  /**
+   * Signs the current batch and stops accepting documents. The AsyncToken
+   * is not closed.
+   */
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      flush();
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Builds the Merkle tree of the given leaf hashes.
+   *
+   * @param leaves
+   *          The leaf hashes.
+   * @param proofs
+   *          Receives the inclusion proof of each leaf.
+   * @return the root.
+   */
+  private byte[] buildTree(List<byte[]> leaves, byte[][][] proofs) {
+    MessageDigest md = newDigest(hashAlgorithm);
+    int treeSize = leaves.size();
+    int height = 0;
+    for (int size = treeSize; size > 1; size = (size + 1) >>> 1) {
+      height++;
+    }
+
+    // levels[0] are the leaves, levels[height] contains only the root
+    byte[][][] levels = new byte[height + 1][][];
+    levels[0] = leaves.toArray(new byte[treeSize][]);
+    for (int h = 0; h < height; h++) {
+      byte[][] level = levels[h];
+      byte[][] parents = new byte[(level.length + 1) >>> 1][];
+      for (int i = 0; i < parents.length; i++) {
+        int left = 2 * i;
+        parents[i] = (left + 1 < level.length)
+            ? MerkleSignature.nodeHash(md, level[left], level[left + 1])
+            : level[left];
+      }
+      levels[h + 1] = parents;
+    }
+
+    byte[][] path = new byte[height][];
+    for (int leaf = 0; leaf < treeSize; leaf++) {
+      int count = 0;
+      int index = leaf;
+      for (int h = 0; h < height; h++) {
+        int sibling = index ^ 1;
+        if (sibling < levels[h].length) {
+          path[count++] = levels[h][sibling];
+        }
+        index >>>= 1;
+      }
+
+      byte[][] proof = new byte[count][];
+      System.arraycopy(path, 0, proof, 0, count);
+      proofs[leaf] = proof;
+    }
+
+    return levels[height][0];
+  }
+
+}
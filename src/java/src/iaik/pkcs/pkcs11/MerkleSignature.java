@@ -0,0 +1,215 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * The signature of one document of a batch signed by a
+ * {@link MerkleBatchSigner}: the signature of the Merkle tree root, the
+ * position of the document in the tree, and the inclusion proof (the
+ * sibling hashes from the leaf up to the root).
+ * <p>
+ * The tree uses domain separated hashes as in RFC 6962: a leaf is
+ * H(0x00 || document), an inner node H(0x01 || left || right). A node
+ * without sibling is promoted unchanged to the next level.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class MerkleSignature {
+
+  private static final byte LEAF_PREFIX = 0x00;
+
+  private static final byte NODE_PREFIX = 0x01;
+
+  private final int leafIndex;
+
+  private final int treeSize;
+
+  private final byte[][] proof;
+
+  private final byte[] rootSignature;
+
+  MerkleSignature(int leafIndex, int treeSize, byte[][] proof,
+      byte[] rootSignature) {
+    this.leafIndex = leafIndex;
+    this.treeSize = treeSize;
+    this.proof = proof;
+    this.rootSignature = rootSignature;
+  }
+
+  /**
+   * Gets the index of the document in the batch.
+   *
+   * @return the leaf index.
+   */
+  public int getLeafIndex() {
+    return leafIndex;
+  }
+
+  /**
+   * Gets the number of documents in the batch.
+   *
+   * @return the tree size.
+   */
+  public int getTreeSize() {
+    return treeSize;
+  }
+
+  /**
+   * Gets the sibling hashes from the leaf up to the root.
+   *
+   * @return the inclusion proof.
+   */
+  public byte[][] getProof() {
+    byte[][] copy = new byte[proof.length][];
+    for (int i = 0; i < proof.length; i++) {
+      copy[i] = proof[i].clone();
+    }
+    return copy;
+  }
+
+  /**
+   * Gets the signature of the tree root, as returned by the token.
+   *
+   * @return the root signature.
+   */
+  public byte[] getRootSignature() {
+    return rootSignature.clone();
+  }
+
+  /**
+   * Encodes this signature as: leaf index (4 bytes), tree size (4 bytes),
+   * number of proof hashes (1 byte), hash length (1 byte), the proof hashes
+   * and the root signature.
+   *
+   * @return the encoded signature.
+   */
+  public byte[] getEncoded() {
+    int hashLen = (proof.length == 0) ? 0 : proof[0].length;
+    ByteBuffer buffer = ByteBuffer.allocate(10 + proof.length * hashLen
+        + rootSignature.length);
+    buffer.putInt(leafIndex).putInt(treeSize).put((byte) proof.length)
+        .put((byte) hashLen);
+    for (byte[] hash : proof) {
+      buffer.put(hash);
+    }
+    return buffer.put(rootSignature).array();
+  }
+
+  /**
+   * Decodes a signature encoded by {@link #getEncoded()}.
+   *
+   * @param encoded
+   *          The encoded signature. Must not be null.
+   * @return the decoded signature.
+   * @exception IllegalArgumentException
+   *              If the encoding is invalid.
+   */
+  public static MerkleSignature decode(byte[] encoded) {
+    ByteBuffer buffer = ByteBuffer.wrap(
+        Util.requireNonNull("encoded", encoded));
+    try {
+      int leafIndex = buffer.getInt();
+      int treeSize = buffer.getInt();
+      byte[][] proof = new byte[buffer.get() & 0xFF][];
+      int hashLen = buffer.get() & 0xFF;
+      for (int i = 0; i < proof.length; i++) {
+        proof[i] = new byte[hashLen];
+        buffer.get(proof[i]);
+      }
+      byte[] rootSignature = new byte[buffer.remaining()];
+      buffer.get(rootSignature);
+
+      if (treeSize < 1 || leafIndex < 0 || leafIndex >= treeSize) {
+        throw new IllegalArgumentException("invalid leaf index or tree size");
+      }
+      return new MerkleSignature(leafIndex, treeSize, proof, rootSignature);
+    } catch (BufferUnderflowException ex) {
+      throw new IllegalArgumentException("encoded signature is too short");
+    }
+  }
+
+  static byte[] leafHash(MessageDigest md, byte[] document) {
+    md.update(LEAF_PREFIX);
+    return md.digest(document);
+  }
+
+  static byte[] nodeHash(MessageDigest md, byte[] left, byte[] right) {
+    md.update(NODE_PREFIX);
+    md.update(left);
+    return md.digest(right);
+  }
+
+  /**
+   * Computes the root from the leaf hash and the inclusion proof.
+   *
+   * @return the root, or null if the proof does not match the tree size.
+   */
+  byte[] computeRoot(MessageDigest md, byte[] leafHash) {
+    byte[] hash = leafHash;
+    int index = leafIndex;
+    int size = treeSize;
+    int proofIndex = 0;
+    while (size > 1) {
+      if ((index & 1) == 1 || index + 1 < size) {
+        if (proofIndex == proof.length) {
+          return null;
+        }
+        byte[] sibling = proof[proofIndex++];
+        hash = ((index & 1) == 1) ? nodeHash(md, sibling, hash)
+            : nodeHash(md, hash, sibling);
+      }
+      // else: no sibling, the node is promoted
+      index >>>= 1;
+      size = (size + 1) >>> 1;
+    }
+    return (proofIndex == proof.length) ? hash : null;
+  }
+
+  @Override
+  public String toString() {
+    return Util.concatObjects("MerkleSignature: leaf ", leafIndex, " of ",
+        treeSize, ", proof length ", proof.length, ", root signature ",
+        Util.toHex(rootSignature));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof MerkleSignature)) {
+      return false;
+    }
+
+    MerkleSignature other = (MerkleSignature) obj;
+    return leafIndex == other.leafIndex && treeSize == other.treeSize
+        && Arrays.deepEquals(proof, other.proof)
+        && Arrays.equals(rootSignature, other.rootSignature);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * leafIndex + Arrays.hashCode(rootSignature);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verifies the signatures created by a {@link MerkleBatchSigner} in the JVM.
+ * The root is recomputed from the document and its inclusion proof, and the
+ * root signature is verified with a java.security public key, e.g. one
+ * extracted from the token via
+ * {@link PublicKeyEngine#getJcaPublicKey(Session,
+ * iaik.pkcs.pkcs11.objects.PublicKey)}.
+ * <p>
+ * Since all documents of a batch share the root signature, the verified
+ * roots are cached, and the signature is verified only once per batch.
+ * Instances of this class are thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class MerkleVerifier {
+
+  /**
+   * The default maximal number of cached verified roots.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 1024;
+
+  private final String hashAlgorithm;
+
+  private final Mechanism mechanism;
+
+  private final java.security.PublicKey publicKey;
+
+  private final int cacheSize;
+
+  /**
+   * Verified roots, each followed by its signature.
+   */
+  private final ConcurrentHashMap<ByteBuffer, Boolean> verifiedRoots =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Creates a verifier with {@link MerkleBatchSigner#DEFAULT_HASH_ALGORITHM}
+   * and a cache of {@link #DEFAULT_CACHE_SIZE} roots.
+   *
+   * @param mechanism
+   *          The signature mechanism used by the signer. Must not be null.
+   * @param publicKey
+   *          The public key. Must not be null.
+   */
+  public MerkleVerifier(Mechanism mechanism,
+      java.security.PublicKey publicKey) {
+    this(MerkleBatchSigner.DEFAULT_HASH_ALGORITHM, mechanism, publicKey,
+        DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a verifier.
+   *
+   * @param hashAlgorithm
+   *          The hash algorithm used by the signer. Must not be null.
+   * @param mechanism
+   *          The signature mechanism used by the signer. Must not be null.
+   * @param publicKey
+   *          The public key. Must not be null.
+   * @param cacheSize
+   *          The maximal number of cached verified roots, 0 to disable the
+   *          cache.
+   * @exception IllegalArgumentException
+   *              If the mechanism cannot be verified in the JVM with the
+   *              given key.
+   */
+  public MerkleVerifier(String hashAlgorithm, Mechanism mechanism,
+      java.security.PublicKey publicKey, int cacheSize) {
+    this.hashAlgorithm = Util.requireNonNull("hashAlgorithm", hashAlgorithm);
+    this.mechanism = Util.requireNonNull("mechanism", mechanism);
+    this.publicKey = Util.requireNonNull("publicKey", publicKey);
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("cacheSize must not be negative");
+    }
+    this.cacheSize = cacheSize;
+
+    MerkleBatchSigner.newDigest(hashAlgorithm);
+    if (!PublicKeyEngine.supportsLocally(mechanism, publicKey)) {
+      throw new IllegalArgumentException(Util.concatObjects("mechanism ",
+          mechanism, " is not supported for ", publicKey.getAlgorithm(),
+          " keys"));
+    }
+  }
+
+  /**
+   * Verifies the signature of a document.
+   *
+   * @param document
+   *          The signed document. Must not be null.
+   * @param signature
+   *          The signature. Must not be null.
+   * @return whether the signature is valid.
+   */
+  public boolean verify(byte[] document, MerkleSignature signature) {
+    Util.requireNonNull("document", document);
+    Util.requireNonNull("signature", signature);
+
+    MessageDigest md = MerkleBatchSigner.newDigest(hashAlgorithm);
+    byte[] root = signature.computeRoot(md,
+        MerkleSignature.leafHash(md, document));
+    if (root == null) {
+      return false;
+    }
+
+    byte[] rootSignature = signature.getRootSignature();
+    ByteBuffer cacheKey = null;
+    if (cacheSize > 0) {
+      cacheKey = ByteBuffer.allocate(root.length + rootSignature.length)
+          .put(root).put(rootSignature);
+      cacheKey.flip();
+      if (verifiedRoots.containsKey(cacheKey)) {
+        return true;
+      }
+    }
+
+    Boolean valid = PublicKeyEngine.verifyLocally(mechanism, publicKey,
+        root, rootSignature);
+    if (valid == null || !valid) {
+      return false;
+    }
+
+    if (cacheKey != null) {
+      if (verifiedRoots.size() >= cacheSize) {
+        verifiedRoots.clear();
+      }
+      verifiedRoots.put(cacheKey, Boolean.TRUE);
+    }
+    return true;
+  }
+
+}
@@ -43,6 +43,7 @@
 package iaik.pkcs.pkcs11;
 
 import iaik.pkcs.pkcs11.objects.Key;
+import iaik.pkcs.pkcs11.objects.ObjectReader;
 import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
 import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
 import sun.security.pkcs11.wrapper.*;
@@ -50,6 +51,7 @@ import sun.security.pkcs11.wrapper.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <B>Caution:
@@ -173,6 +175,14 @@ public class Module {
    */
   private Key.VendorDefinedKeyBuilder vendorKeyBuilder;
 
+  private final ObjectReader objectReader = new ObjectReader(this);
+
+  /**
+   * The state of the tokens, per slot ID.
+   */
+  private final ConcurrentHashMap<Long, TokenState> tokenStates =
+      new ConcurrentHashMap<>();
+
   /**
    * Create a new module that uses the given PKCS11 interface to interact with
    * the token.
@@ -243,6 +253,30 @@ public class Module {
     return vendorKeyBuilder;
   }
 
+  /**
+   * Get the reader used to create the objects of this module.
+   *
+   * @return The object reader.
+   */
+  public ObjectReader getObjectReader() {
+    return objectReader;
+  }
+
+  /**
+   * Gets the state shared by all Token objects of the given slot.
+   */
+  TokenState getTokenState(long slotId) {
+    TokenState state = tokenStates.get(slotId);
+    if (state == null) {
+      state = new TokenState();
+      TokenState old = tokenStates.putIfAbsent(slotId, state);
+      if (old != null) {
+        state = old;
+      }
+    }
+    return state;
+  }
+
   /**
    * Get an instance of this class by giving the name of the PKCS#11 module,
    * e.g. "slbck.dll" and the absolute path to the PKCS#11-wrapper native
@@ -0,0 +1,141 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes native calls of virtual threads (Java 21+) in a small pool of
+ * platform threads. A virtual thread in a native call cannot unmount and
+ * blocks its carrier thread for the whole round trip to the token; waiting
+ * for the result of a platform thread instead parks the virtual thread and
+ * frees the carrier. On JDKs without virtual threads,
+ * {@link #isVirtualThread()} is always false and nothing is offloaded.
+ * <p>
+ * There is one executor per {@link Token} instance, with at most as many
+ * threads as the token allows sessions.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class NativeCallExecutor {
+
+  /**
+   * A native call.
+   *
+   * @param <T>
+   *          The type of the result.
+   */
+  interface NativeCall<T> {
+
+    T call() throws TokenException;
+
+  }
+
+  private static final MethodHandle isVirtualHandle = Util.findVirtual(
+      Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+
+  private final ThreadPoolExecutor executor;
+
+  NativeCallExecutor(final String name, int threads) {
+    executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+          private final AtomicInteger counter = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable,
+                name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Tells whether the current thread is a virtual thread.
+   *
+   * @return whether the current thread is a virtual thread.
+   */
+  static boolean isVirtualThread() {
+    if (isVirtualHandle == null) {
+      return false;
+    }
+
+    try {
+      return (boolean) isVirtualHandle.invokeExact(Thread.currentThread());
+    } catch (Throwable th) {
+      return false;
+    }
+  }
+
+  /**
+   * Executes the call in a platform thread, and waits for its result. The
+   * wait is not interruptible, since the native call cannot be cancelled
+   * and the session must not be used before it returns; the interrupt
+   * status is restored afterwards.
+   */
+  <T> T call(final NativeCall<T> call) throws TokenException {
+    FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+      @Override
+      public T call() throws TokenException {
+        return call.call();
+      }
+    });
+    executor.execute(task);
+
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof TokenException) {
+            throw (TokenException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new TokenException((Exception) cause);
+          }
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
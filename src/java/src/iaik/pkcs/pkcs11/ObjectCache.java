@@ -0,0 +1,232 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.PKCS11Object;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the objects of a token, keyed by the object handle. It is
+ * enabled per token via {@link Token#setObjectCache(ObjectCache)} and is
+ * used by all sessions of the token, opened by any {@link Token} object of
+ * the same slot.
+ * <p>
+ * Objects read via {@link PKCS11Object#getInstance(Session, long)} (and thus
+ * by findObjects, createObject, generateKey, etc.) are put into the cache,
+ * and {@link Session#readAttributes(long, long...)} is answered from it. The
+ * methods of {@link Session} which modify or destroy objects remove them
+ * from the cache, and closing a session removes the session objects it has
+ * created. Logging out clears the cache. Changes made by other applications
+ * are only seen after the entry has expired.
+ * <p>
+ * The least recently used entry is evicted if the cache is full. The
+ * {@link iaik.pkcs.pkcs11.objects.ObjectReader} puts copies into the cache
+ * and returns copies of the cached objects, so that the objects returned to
+ * the application can be modified. Objects put into the cache directly
+ * must not be modified afterwards.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class ObjectCache {
+
+  private static final class Entry {
+
+    private final PKCS11Object object;
+
+    private final long expiresAt;
+
+    private Entry(PKCS11Object object, long expiresAt) {
+      this.object = object;
+      this.expiresAt = expiresAt;
+    }
+
+  }
+
+  private final int maxSize;
+
+  private final long ttlNanos;
+
+  private final LinkedHashMap<Long, Entry> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize
+   *          Maximal number of cached objects. Must be positive.
+   * @param ttl
+   *          Time to live of an entry. Must be positive.
+   * @param unit
+   *          Unit of the time to live. Must not be null.
+   */
+  public ObjectCache(int maxSize, long ttl, TimeUnit unit) {
+    Util.requireNonNull("unit", unit);
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    if (ttl < 1) {
+      throw new IllegalArgumentException("ttl must be positive");
+    }
+
+    this.maxSize = maxSize;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        if (size() > ObjectCache.this.maxSize) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+
+    };
+  }
+
+  /**
+   * Gets the cached object with the given handle.
+   *
+   * @param objectHandle
+   *          The object handle.
+   * @return the cached object, or null if not cached or expired.
+   */
+  public PKCS11Object get(long objectHandle) {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(objectHandle);
+      if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+        entries.remove(objectHandle);
+        evictions.incrementAndGet();
+        entry = null;
+      }
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return entry.object;
+  }
+
+  /**
+   * Puts an object into the cache.
+   *
+   * @param object
+   *          The object. Must not be null.
+   */
+  public void put(PKCS11Object object) {
+    Util.requireNonNull("object", object);
+    Entry entry = new Entry(object, System.nanoTime() + ttlNanos);
+    synchronized (entries) {
+      entries.put(object.getObjectHandle(), entry);
+    }
+  }
+
+  /**
+   * Removes the object with the given handle from the cache.
+   *
+   * @param objectHandle
+   *          The object handle.
+   */
+  public void invalidate(long objectHandle) {
+    synchronized (entries) {
+      entries.remove(objectHandle);
+    }
+  }
+
+  /**
+   * Removes all objects from the cache.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * Gets the number of cached objects, including the expired ones which have
+   * not been removed yet.
+   *
+   * @return the number of cached objects.
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Gets the maximal number of cached objects.
+   *
+   * @return the maximal number of cached objects.
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Gets the number of lookups which found an object.
+   *
+   * @return the number of hits.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of lookups which found no object.
+   *
+   * @return the number of misses.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the number of objects removed because the cache was full or they
+   * had expired.
+   *
+   * @return the number of evictions.
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return Util.concatObjects("ObjectCache(size=", size(), ", maxSize=",
+        maxSize, ", hits=", hits.get(), ", misses=", misses.get(),
+        ", evictions=", evictions.get(), ")");
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel which encrypts or decrypts the written data on the token via a
+ * multi-part operation, and writes the result to the target channel. Closing
+ * this channel finishes the operation, i.e. writes the last padded block or
+ * the authentication tag (e.g. of AES-GCM), or verifies it.
+ * <p>
+ * Direct buffers are passed to the token via their native address, heap
+ * buffers via their array, so the written data is not copied. The target
+ * channel must be in blocking mode.
+ * <p>
+ * The channel uses one session exclusively from its construction until it is
+ * closed. The data is passed to the token in chunks; the chunk size is chosen
+ * adaptively from the measured throughput, up to the given maximal chunk
+ * size.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class PKCS11CipherChannel implements WritableByteChannel {
+
+  private final WritableByteChannel target;
+
+  private final CipherStreamEngine engine;
+
+  private boolean closed;
+
+  /**
+   * Creates a channel which uses the given session. The session must not be
+   * used otherwise until this channel is closed.
+   *
+   * @param target
+   *          The channel to write the result to. Must not be null.
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If initializing the operation failed.
+   */
+  public PKCS11CipherChannel(WritableByteChannel target, Session session,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.target = Util.requireNonNull("target", target);
+    this.engine = new CipherStreamEngine(session, null, mechanism, key,
+        encrypt, CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  /**
+   * Creates a channel which borrows a read-only session from the given pool,
+   * and returns it when this channel is closed.
+   *
+   * @param target
+   *          The channel to write the result to. Must not be null.
+   * @param pool
+   *          The session pool. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If borrowing the session or initializing the operation
+   *              failed.
+   */
+  public PKCS11CipherChannel(WritableByteChannel target, SessionPool pool,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.target = Util.requireNonNull("target", target);
+    this.engine = new CipherStreamEngine(null,
+        Util.requireNonNull("pool", pool), mechanism, key, encrypt,
+        CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    Util.requireNonNull("src", src);
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+
+    int total = src.remaining();
+    while (src.hasRemaining()) {
+      ByteBuffer chunk = src.duplicate();
+      chunk.limit(chunk.position()
+          + Math.min(chunk.remaining(), engine.getChunkSize()));
+      int len;
+      try {
+        len = engine.update(chunk);
+      } catch (TokenException ex) {
+        throw CipherStreamEngine.toIOException(ex);
+      }
+      src.position(chunk.position());
+      writeOutput(len);
+    }
+    return total;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !closed;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      // nothing to finish if the operation has been aborted by an error
+      if (!engine.isFinished()) {
+        int len;
+        try {
+          len = engine.doFinal();
+        } catch (TokenException ex) {
+          throw CipherStreamEngine.toIOException(ex);
+        }
+        writeOutput(len);
+      }
+    } finally {
+      engine.release();
+      target.close();
+    }
+  }
+
+  private void writeOutput(int len) throws IOException {
+    ByteBuffer out = ByteBuffer.wrap(engine.getOutBuffer(), 0, len);
+    while (out.hasRemaining()) {
+      target.write(out);
+    }
+  }
+
+}
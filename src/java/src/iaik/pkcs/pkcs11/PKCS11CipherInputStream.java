@@ -0,0 +1,203 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which reads the data from the underlying stream and
+ * encrypts or decrypts it on the token via a multi-part operation. The
+ * operation is finished when the end of the underlying stream is reached,
+ * i.e. the last padded block or the authentication tag (e.g. of AES-GCM) is
+ * returned, or verified. If the operation fails, e.g. because the
+ * authentication tag does not verify, the read that detects it and every
+ * later read throw the exception; the end of the stream is only reported
+ * after the operation succeeded.
+ * <p>
+ * The stream uses one session exclusively from its construction until it is
+ * closed. The data is passed to the token in chunks; the chunk size is chosen
+ * adaptively from the measured throughput, up to the given maximal chunk
+ * size. Two buffers are allocated once per stream and reused for all chunks.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class PKCS11CipherInputStream extends InputStream {
+
+  private final InputStream in;
+
+  private final CipherStreamEngine engine;
+
+  private int outOfs;
+
+  private int outLen;
+
+  private boolean eof;
+
+  private boolean closed;
+
+  /**
+   * The failure of the operation on the token. It is thrown by all later
+   * reads.
+   */
+  private IOException failure;
+
+  /**
+   * Creates a stream which uses the given session. The session must not be
+   * used otherwise until this stream is closed.
+   *
+   * @param in
+   *          The stream to read the data from. Must not be null.
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If initializing the operation failed.
+   */
+  public PKCS11CipherInputStream(InputStream in, Session session,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.in = Util.requireNonNull("in", in);
+    this.engine = new CipherStreamEngine(session, null, mechanism, key,
+        encrypt, CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  /**
+   * Creates a stream which borrows a read-only session from the given pool,
+   * and returns it when this stream is closed.
+   *
+   * @param in
+   *          The stream to read the data from. Must not be null.
+   * @param pool
+   *          The session pool. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If borrowing the session or initializing the operation
+   *              failed.
+   */
+  public PKCS11CipherInputStream(InputStream in, SessionPool pool,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.in = Util.requireNonNull("in", in);
+    this.engine = new CipherStreamEngine(null,
+        Util.requireNonNull("pool", pool), mechanism, key, encrypt,
+        CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int len;
+    while ((len = read(b, 0, 1)) == 0) { // CHECKSTYLE:SKIP
+    }
+    return (len == -1) ? -1 : (b[0] & 0xFF);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Util.requireNonNull("b", b);
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    ensureOpen();
+    if (failure != null) {
+      throw failure;
+    }
+    if (len == 0) {
+      return 0;
+    }
+
+    while (outOfs == outLen) {
+      if (eof) {
+        return -1;
+      }
+      fill();
+    }
+
+    int n = Math.min(len, outLen - outOfs);
+    System.arraycopy(engine.getOutBuffer(), outOfs, b, off, n);
+    outOfs += n;
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return outLen - outOfs;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      engine.release();
+    } finally {
+      in.close();
+    }
+  }
+
+  private void fill() throws IOException {
+    byte[] inBuffer = engine.getInBuffer();
+    int len = in.read(inBuffer, 0, engine.getChunkSize());
+    outOfs = 0;
+    try {
+      if (len == -1) {
+        outLen = engine.doFinal();
+        eof = true;
+      } else {
+        outLen = engine.update(inBuffer, 0, len);
+      }
+    } catch (TokenException ex) {
+      outLen = 0;
+      failure = CipherStreamEngine.toIOException(ex);
+      throw failure;
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("stream is closed");
+    }
+  }
+
+}
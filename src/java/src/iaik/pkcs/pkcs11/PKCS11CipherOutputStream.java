@@ -0,0 +1,217 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.Key;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream which encrypts or decrypts the written data on the token
+ * via a multi-part operation, and writes the result to the underlying
+ * stream. Closing this stream finishes the operation, i.e. writes the last
+ * padded block or the authentication tag (e.g. of AES-GCM), or verifies it.
+ * <p>
+ * The stream uses one session exclusively from its construction until it is
+ * closed. The data is passed to the token in chunks; the chunk size is chosen
+ * adaptively from the measured throughput, up to the given maximal chunk
+ * size. Two buffers are allocated once per stream and reused for all chunks.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class PKCS11CipherOutputStream extends OutputStream {
+
+  private final OutputStream out;
+
+  private final CipherStreamEngine engine;
+
+  private int pending;
+
+  private boolean closed;
+
+  /**
+   * Creates a stream which uses the given session. The session must not be
+   * used otherwise until this stream is closed.
+   *
+   * @param out
+   *          The stream to write the result to. Must not be null.
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If initializing the operation failed.
+   */
+  public PKCS11CipherOutputStream(OutputStream out, Session session,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.out = Util.requireNonNull("out", out);
+    this.engine = new CipherStreamEngine(session, null, mechanism, key,
+        encrypt, CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  /**
+   * Creates a stream which borrows a read-only session from the given pool,
+   * and returns it when this stream is closed.
+   *
+   * @param out
+   *          The stream to write the result to. Must not be null.
+   * @param pool
+   *          The session pool. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism, e.g. CKM_AES_CBC_PAD. Must not be null.
+   * @param key
+   *          The key. Must not be null.
+   * @param encrypt
+   *          true to encrypt, false to decrypt.
+   * @param maxChunkSize
+   *          The maximal number of bytes passed to the token in one call, or
+   *          0 to use the default (256 KiB).
+   * @exception TokenException
+   *              If borrowing the session or initializing the operation
+   *              failed.
+   */
+  public PKCS11CipherOutputStream(OutputStream out, SessionPool pool,
+      Mechanism mechanism, Key key, boolean encrypt, int maxChunkSize)
+      throws TokenException {
+    this.out = Util.requireNonNull("out", out);
+    this.engine = new CipherStreamEngine(null,
+        Util.requireNonNull("pool", pool), mechanism, key, encrypt,
+        CipherStreamEngine.toMaxChunkSize(maxChunkSize));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    engine.getInBuffer()[pending++] = (byte) b;
+    if (pending >= engine.getChunkSize()) {
+      writePending();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    Util.requireNonNull("b", b);
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    ensureOpen();
+
+    byte[] inBuffer = engine.getInBuffer();
+    if (pending > 0) {
+      int n = Math.min(len, engine.getChunkSize() - pending);
+      System.arraycopy(b, off, inBuffer, pending, n);
+      pending += n;
+      off += n;
+      len -= n;
+      if (pending < engine.getChunkSize()) {
+        return;
+      }
+      writePending();
+    }
+
+    // pass complete chunks directly from the caller's array
+    int chunkSize;
+    while (len >= (chunkSize = engine.getChunkSize())) {
+      update(b, off, chunkSize);
+      off += chunkSize;
+      len -= chunkSize;
+    }
+
+    if (len > 0) {
+      System.arraycopy(b, off, inBuffer, 0, len);
+      pending = len;
+    }
+  }
+
+  /**
+   * Passes the buffered data to the token and flushes the underlying stream.
+   * Data buffered by the token itself (e.g. an incomplete block) is written
+   * when this stream is closed.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    writePending();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      // nothing to finish if the operation has been aborted by an error
+      if (!engine.isFinished()) {
+        writePending();
+        int len;
+        try {
+          len = engine.doFinal();
+        } catch (TokenException ex) {
+          throw CipherStreamEngine.toIOException(ex);
+        }
+        out.write(engine.getOutBuffer(), 0, len);
+      }
+      out.flush();
+    } finally {
+      engine.release();
+      out.close();
+    }
+  }
+
+  private void writePending() throws IOException {
+    if (pending > 0) {
+      int len = pending;
+      pending = 0;
+      update(engine.getInBuffer(), 0, len);
+    }
+  }
+
+  private void update(byte[] in, int inOfs, int inLen) throws IOException {
+    int len;
+    try {
+      len = engine.update(in, inOfs, inLen);
+    } catch (TokenException ex) {
+      throw CipherStreamEngine.toIOException(ex);
+    }
+    if (len > 0) {
+      out.write(engine.getOutBuffer(), 0, len);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("stream is closed");
+    }
+  }
+
+}
@@ -0,0 +1,440 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.parameters.GCMParameters;
+import iaik.pkcs.pkcs11.parameters.InitializationVectorParameters;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.io.ByteArrayOutputStream;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * The Cipher service of the {@link PKCS11Provider}, for one transformation.
+ * The data is collected in memory and processed with one C_Encrypt or
+ * C_Decrypt call in doFinal(); the update methods return no output. RSA keys
+ * can only be used to decrypt.
+ * <p>
+ * As in SunJCE, a GCM encryption cannot be repeated with the same key and
+ * IV: after doFinal() in ENCRYPT_MODE the cipher must be initialized with a
+ * new IV before it can be used again.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class PKCS11CipherSpi extends CipherSpi {
+
+  /**
+   * Maximal length of an RSA block, for keys up to 16384 bits.
+   */
+  private static final int MAX_RSA_LENGTH = 2048;
+
+  private static final int GCM_IV_LENGTH = 12;
+
+  private static final int GCM_TAG_BITS = 128;
+
+  private final PKCS11Provider provider;
+
+  private final String transformation;
+
+  private final long mechanismCode;
+
+  private final boolean rsa;
+
+  private final boolean gcm;
+
+  private final boolean cbc;
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+  private final ByteArrayOutputStream aad = new ByteArrayOutputStream();
+
+  private PKCS11Key key;
+
+  private boolean encrypt;
+
+  private byte[] iv;
+
+  private int tagBits;
+
+  /**
+   * The key handle and the IV of the last GCM encryption, which must not be
+   * used again. The IV remains available via getIV() until the next init.
+   */
+  private long lastGcmKeyHandle;
+
+  private byte[] lastGcmIv;
+
+  /**
+   * True after a GCM encryption until the next init.
+   */
+  private boolean reinitRequired;
+
+  /**
+   * The result of the last doFinal which did not fit into the output
+   * buffer. It is returned by the next doFinal, which repeats the call with
+   * a larger buffer.
+   */
+  private byte[] pendingOutput;
+
+  PKCS11CipherSpi(PKCS11Provider provider, String transformation,
+      long mechanismCode) {
+    this.provider = provider;
+    this.transformation = transformation;
+    this.mechanismCode = mechanismCode;
+    this.rsa = transformation.startsWith("RSA/");
+    this.gcm = mechanismCode == PKCS11Constants.CKM_AES_GCM;
+    this.cbc = mechanismCode == PKCS11Constants.CKM_AES_CBC
+        || mechanismCode == PKCS11Constants.CKM_AES_CBC_PAD;
+  }
+
+  @Override
+  protected void engineSetMode(String mode) throws NoSuchAlgorithmException {
+    if (!mode.equalsIgnoreCase(transformation.split("/")[1])) {
+      throw new NoSuchAlgorithmException("unsupported mode " + mode);
+    }
+  }
+
+  @Override
+  protected void engineSetPadding(String padding)
+      throws NoSuchPaddingException {
+    if (!padding.equalsIgnoreCase(transformation.split("/")[2])) {
+      throw new NoSuchPaddingException("unsupported padding " + padding);
+    }
+  }
+
+  @Override
+  protected int engineGetBlockSize() {
+    return rsa ? 0 : 16;
+  }
+
+  @Override
+  protected int engineGetOutputSize(int inputLen) {
+    if (pendingOutput != null) {
+      return pendingOutput.length;
+    }
+
+    if (rsa) {
+      return MAX_RSA_LENGTH;
+    }
+
+    int len = buffer.size() + inputLen;
+    return encrypt ? len + (gcm ? GCM_TAG_BITS / 8 : 16) : len;
+  }
+
+  @Override
+  protected byte[] engineGetIV() {
+    byte[] ivValue = currentIv();
+    return (ivValue == null) ? null : ivValue.clone();
+  }
+
+  @Override
+  protected AlgorithmParameters engineGetParameters() {
+    byte[] ivValue = currentIv();
+    if (ivValue == null) {
+      return null;
+    }
+
+    try {
+      AlgorithmParameters params;
+      if (gcm) {
+        params = AlgorithmParameters.getInstance("GCM");
+        params.init(new GCMParameterSpec(tagBits, ivValue));
+      } else {
+        params = AlgorithmParameters.getInstance("AES");
+        params.init(new IvParameterSpec(ivValue));
+      }
+      return params;
+    } catch (NoSuchAlgorithmException | InvalidParameterSpecException ex) {
+      return null;
+    }
+  }
+
+  @Override
+  protected void engineInit(int opmode, Key key, SecureRandom random)
+      throws InvalidKeyException {
+    try {
+      engineInit(opmode, key, (AlgorithmParameterSpec) null, random);
+    } catch (InvalidAlgorithmParameterException ex) {
+      throw new InvalidKeyException(ex.getMessage(), ex);
+    }
+  }
+
+  @Override
+  protected void engineInit(int opmode, Key key, AlgorithmParameters params,
+      SecureRandom random)
+      throws InvalidKeyException, InvalidAlgorithmParameterException {
+    AlgorithmParameterSpec spec = null;
+    if (params != null) {
+      try {
+        spec = gcm ? params.getParameterSpec(GCMParameterSpec.class)
+            : params.getParameterSpec(IvParameterSpec.class);
+      } catch (InvalidParameterSpecException ex) {
+        throw new InvalidAlgorithmParameterException(ex.getMessage(), ex);
+      }
+    }
+    engineInit(opmode, key, spec, random);
+  }
+
+  @Override
+  protected void engineInit(int opmode, Key key,
+      AlgorithmParameterSpec params, SecureRandom random)
+      throws InvalidKeyException, InvalidAlgorithmParameterException {
+    if (opmode != Cipher.ENCRYPT_MODE && opmode != Cipher.DECRYPT_MODE) {
+      throw new InvalidKeyException("unsupported operation mode " + opmode);
+    }
+
+    PKCS11Key p11Key = PKCS11Key.toPKCS11Key(provider, key);
+    if (rsa) {
+      if (!(p11Key instanceof PKCS11PrivateKey)
+          || !"RSA".equals(p11Key.getAlgorithm())) {
+        throw new InvalidKeyException(transformation
+            + " requires an RSA private key");
+      }
+      if (opmode != Cipher.DECRYPT_MODE) {
+        throw new InvalidKeyException(
+            "RSA private keys can only be used to decrypt");
+      }
+    } else if (!(p11Key instanceof PKCS11SecretKey)
+        || !"AES".equals(p11Key.getAlgorithm())) {
+      throw new InvalidKeyException(transformation + " requires an AES key");
+    }
+
+    byte[] newIv = null;
+    int newTagBits = 0;
+    if (gcm) {
+      if (params instanceof GCMParameterSpec) {
+        newIv = ((GCMParameterSpec) params).getIV();
+        newTagBits = ((GCMParameterSpec) params).getTLen();
+      } else if (params == null && opmode == Cipher.ENCRYPT_MODE) {
+        newIv = randomIv(GCM_IV_LENGTH, random);
+        newTagBits = GCM_TAG_BITS;
+      } else {
+        throw new InvalidAlgorithmParameterException(
+            "GCMParameterSpec is required");
+      }
+    } else if (cbc) {
+      if (params instanceof IvParameterSpec) {
+        newIv = ((IvParameterSpec) params).getIV();
+      } else if (params == null && opmode == Cipher.ENCRYPT_MODE) {
+        newIv = randomIv(16, random);
+      } else {
+        throw new InvalidAlgorithmParameterException(
+            "IvParameterSpec is required");
+      }
+    } else if (params != null) {
+      throw new InvalidAlgorithmParameterException(
+          transformation + " has no parameters");
+    }
+
+    if (gcm && opmode == Cipher.ENCRYPT_MODE && lastGcmIv != null
+        && Arrays.equals(newIv, lastGcmIv) && lastGcmKeyHandle
+            == p11Key.getTokenKey().getObjectHandle()) {
+      throw new InvalidAlgorithmParameterException(
+          "Cannot reuse iv for GCM encryption");
+    }
+
+    this.key = p11Key;
+    this.encrypt = opmode == Cipher.ENCRYPT_MODE;
+    this.iv = newIv;
+    this.tagBits = newTagBits;
+    this.reinitRequired = false;
+    clearPendingOutput();
+    buffer.reset();
+    aad.reset();
+  }
+
+  private void clearPendingOutput() {
+    if (pendingOutput != null) {
+      Arrays.fill(pendingOutput, (byte) 0);
+      pendingOutput = null;
+    }
+  }
+
+  private byte[] currentIv() {
+    return reinitRequired ? lastGcmIv : iv;
+  }
+
+  private static byte[] randomIv(int len, SecureRandom random) {
+    byte[] iv = new byte[len];
+    (random == null ? new SecureRandom() : random).nextBytes(iv);
+    return iv;
+  }
+
+  @Override
+  protected byte[] engineUpdate(byte[] input, int inputOffset,
+      int inputLen) {
+    checkInitialized();
+    buffer.write(input, inputOffset, inputLen);
+    return new byte[0];
+  }
+
+  @Override
+  protected int engineUpdate(byte[] input, int inputOffset, int inputLen,
+      byte[] output, int outputOffset) {
+    engineUpdate(input, inputOffset, inputLen);
+    return 0;
+  }
+
+  @Override
+  protected void engineUpdateAAD(byte[] src, int offset, int len) {
+    checkInitialized();
+    if (!gcm) {
+      throw new IllegalStateException(transformation + " does not use AAD");
+    }
+    if (buffer.size() > 0) {
+      throw new IllegalStateException("AAD must be supplied before the data");
+    }
+    aad.write(src, offset, len);
+  }
+
+  @Override
+  protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+      throws IllegalBlockSizeException, BadPaddingException {
+    if (pendingOutput != null) {
+      // repeated call after a ShortBufferException, the input has already
+      // been processed
+      byte[] result = pendingOutput;
+      pendingOutput = null;
+      return result;
+    }
+
+    checkInitialized();
+    if (input != null) {
+      buffer.write(input, inputOffset, inputLen);
+    }
+    byte[] data = buffer.toByteArray();
+    buffer.reset();
+
+    Mechanism mechanism = new Mechanism(mechanismCode);
+    if (gcm) {
+      mechanism.setParameters(
+          new GCMParameters(tagBits, iv, aad.toByteArray()));
+      aad.reset();
+    } else if (cbc) {
+      mechanism.setParameters(new InitializationVectorParameters(iv));
+    }
+
+    iaik.pkcs.pkcs11.objects.Key tokenKey = key.getTokenKey();
+    if (gcm && encrypt) {
+      // never encrypt twice with the same key and IV
+      lastGcmKeyHandle = tokenKey.getObjectHandle();
+      lastGcmIv = iv;
+      reinitRequired = true;
+      key = null;
+      iv = null;
+    }
+
+    Session session;
+    try {
+      session = provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    }
+
+    boolean operationActive = true;
+    try {
+      byte[] out = new byte[rsa ? MAX_RSA_LENGTH : data.length + 16];
+      if (gcm || cbc) {
+        if (encrypt) {
+          session.encryptInit(mechanism, tokenKey);
+        } else {
+          session.decryptInit(mechanism, tokenKey);
+        }
+      } else {
+        PreparedMechanism prepared =
+            provider.prepare(session, transformation, mechanism);
+        if (encrypt) {
+          session.encryptInit(prepared, tokenKey);
+        } else {
+          session.decryptInit(prepared, tokenKey);
+        }
+      }
+
+      int len = encrypt
+          ? session.encrypt(data, 0, data.length, out, 0, out.length)
+          : session.decrypt(data, 0, data.length, out, 0, out.length);
+      operationActive = false;
+      return Arrays.copyOf(out, len);
+    } catch (PKCS11Exception ex) {
+      long code = ex.getErrorCode();
+      operationActive = code == PKCS11Constants.CKR_BUFFER_TOO_SMALL;
+      if (code == PKCS11Constants.CKR_DATA_LEN_RANGE
+          || code == PKCS11Constants.CKR_ENCRYPTED_DATA_LEN_RANGE) {
+        throw new IllegalBlockSizeException(ex.getMessage());
+      } else if (code == PKCS11Constants.CKR_ENCRYPTED_DATA_INVALID) {
+        throw gcm ? new AEADBadTagException(ex.getMessage())
+            : new BadPaddingException(ex.getMessage());
+      }
+      throw new ProviderException(ex);
+    } catch (TokenException ex) {
+      operationActive = false;
+      throw new ProviderException(ex);
+    } finally {
+      provider.releaseSession(session, operationActive);
+    }
+  }
+
+  @Override
+  protected int engineDoFinal(byte[] input, int inputOffset, int inputLen,
+      byte[] output, int outputOffset) throws ShortBufferException,
+      IllegalBlockSizeException, BadPaddingException {
+    byte[] result = engineDoFinal(input, inputOffset, inputLen);
+    if (output.length - outputOffset < result.length) {
+      // the operation cannot be repeated, e.g. the IV of a GCM encryption
+      // is used up, so the result is kept for the retry
+      pendingOutput = result;
+      throw new ShortBufferException(Util.concatObjects("need ",
+          result.length, " bytes for the output"));
+    }
+    System.arraycopy(result, 0, output, outputOffset, result.length);
+    Arrays.fill(result, (byte) 0);
+    return result.length;
+  }
+
+  private void checkInitialized() {
+    if (reinitRequired) {
+      throw new IllegalStateException("Cannot reuse iv for GCM encryption,"
+          + " init must be called with a new IV");
+    }
+    if (key == null) {
+      throw new IllegalStateException("not initialized");
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.security.InvalidKeyException;
+import java.security.Key;
+
+/**
+ * A key on the token, referenced by its object handle, which can be used
+ * with the JCA services of the {@link PKCS11Provider} which created it. The
+ * key value is never read; {@link #getEncoded()} returns null.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public abstract class PKCS11Key implements Key {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient PKCS11Provider provider;
+
+  private final transient iaik.pkcs.pkcs11.objects.Key tokenKey;
+
+  private final long keyType;
+
+  private final String algorithm;
+
+  PKCS11Key(PKCS11Provider provider, iaik.pkcs.pkcs11.objects.Key tokenKey,
+      long objectHandle, long keyType) {
+    this.provider = provider;
+    this.tokenKey = tokenKey;
+    this.keyType = keyType;
+    this.algorithm = getAlgorithm(keyType);
+    tokenKey.setObjectHandle(objectHandle);
+  }
+
+  private static String getAlgorithm(long keyType) {
+    if (keyType == PKCS11Constants.CKK_RSA) {
+      return "RSA";
+    } else if (keyType == PKCS11Constants.CKK_EC) {
+      return "EC";
+    } else if (keyType == PKCS11Constants.CKK_DSA) {
+      return "DSA";
+    } else if (keyType == PKCS11Constants.CKK_AES) {
+      return "AES";
+    } else if (keyType == PKCS11Constants.CKK_DES3) {
+      return "DESede";
+    } else {
+      return "Generic";
+    }
+  }
+
+  /**
+   * Gets the handle of the key object.
+   *
+   * @return the object handle.
+   */
+  public long getObjectHandle() {
+    return tokenKey.getObjectHandle();
+  }
+
+  /**
+   * Gets the key type; e.g. CKK_RSA.
+   *
+   * @return the key type.
+   */
+  public long getKeyType() {
+    return keyType;
+  }
+
+  @Override
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Returns null, since the key value is not exported.
+   *
+   * @return null.
+   */
+  @Override
+  public String getFormat() {
+    return null;
+  }
+
+  /**
+   * Returns null, since the key value is not exported.
+   *
+   * @return null.
+   */
+  @Override
+  public byte[] getEncoded() {
+    return null;
+  }
+
+  iaik.pkcs.pkcs11.objects.Key getTokenKey() {
+    return tokenKey;
+  }
+
+  static PKCS11Key toPKCS11Key(PKCS11Provider provider, Key key)
+      throws InvalidKeyException {
+    if (!(key instanceof PKCS11Key)) {
+      throw new InvalidKeyException("key is not held by a PKCS#11 token");
+    }
+
+    PKCS11Key p11Key = (PKCS11Key) key;
+    if (p11Key.provider != provider) {
+      throw new InvalidKeyException("key belongs to another provider");
+    }
+    return p11Key;
+  }
+
+  private void writeObject(ObjectOutputStream out)
+      throws NotSerializableException {
+    throw new NotSerializableException(getClass().getName());
+  }
+
+  @Override
+  public String toString() {
+    return Util.concatObjects(getClass().getSimpleName(), ": ", algorithm,
+        ", handle ", getObjectHandle());
+  }
+
+}
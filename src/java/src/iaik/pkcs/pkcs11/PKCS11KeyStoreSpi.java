@@ -0,0 +1,372 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.ProviderException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The read-only KeyStore service of the {@link PKCS11Provider}. Loading the
+ * key store finds the private keys, secret keys and X.509 certificates of
+ * the token (one find operation per object class) and reads only their
+ * CKA_LABEL and CKA_ID. The key objects and certificates are created on
+ * first access.
+ * <p>
+ * The alias of an entry is its CKA_LABEL, or the hex encoded CKA_ID if there
+ * is no label; duplicates get the object handle appended. A private key
+ * entry contains the certificate with the same CKA_ID as its chain; the
+ * other certificates are trusted certificate entries. The passwords given
+ * to load() and getKey() are ignored, the sessions of the provider are
+ * already logged in.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class PKCS11KeyStoreSpi extends KeyStoreSpi {
+
+  private static final int FIND_BATCH_SIZE = 1024;
+
+  private static final class Entry {
+
+    private final long objectClass;
+
+    private final long objectHandle;
+
+    private final long keyType;
+
+    private Entry certificateEntry;
+
+    private volatile Key key;
+
+    private volatile Certificate certificate;
+
+    private Entry(long objectClass, long objectHandle, long keyType) {
+      this.objectClass = objectClass;
+      this.objectHandle = objectHandle;
+      this.keyType = keyType;
+    }
+
+  }
+
+  private final PKCS11Provider provider;
+
+  private Map<String, Entry> entries = Collections.emptyMap();
+
+  private Date loadDate;
+
+  PKCS11KeyStoreSpi(PKCS11Provider provider) {
+    this.provider = provider;
+  }
+
+  @Override
+  public void engineLoad(InputStream stream, char[] password)
+      throws IOException {
+    Session session;
+    try {
+      session = provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+
+    AttributeValues[] privateKeys;
+    AttributeValues[] secretKeys;
+    AttributeValues[] certificates;
+    boolean operationActive = true;
+    try {
+      privateKeys = find(session, PKCS11Constants.CKO_PRIVATE_KEY,
+          PKCS11Constants.CKA_KEY_TYPE);
+      secretKeys = find(session, PKCS11Constants.CKO_SECRET_KEY,
+          PKCS11Constants.CKA_KEY_TYPE);
+      certificates = find(session, PKCS11Constants.CKO_CERTIFICATE,
+          PKCS11Constants.CKA_CERTIFICATE_TYPE);
+      operationActive = false;
+    } catch (TokenException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    } finally {
+      provider.releaseSession(session, operationActive);
+    }
+
+    Map<String, Entry> newEntries = new HashMap<>(
+        (privateKeys.length + secretKeys.length + certificates.length) * 2);
+    Map<ByteArrayKey, Entry> privateKeysById = new HashMap<>();
+    for (AttributeValues values : privateKeys) {
+      Entry entry = add(newEntries, values, PKCS11Constants.CKO_PRIVATE_KEY,
+          values.getLong(PKCS11Constants.CKA_KEY_TYPE, -1));
+      byte[] id = values.getByteArray(PKCS11Constants.CKA_ID);
+      if (id != null) {
+        privateKeysById.put(new ByteArrayKey(id), entry);
+      }
+    }
+
+    for (AttributeValues values : secretKeys) {
+      add(newEntries, values, PKCS11Constants.CKO_SECRET_KEY,
+          values.getLong(PKCS11Constants.CKA_KEY_TYPE, -1));
+    }
+
+    for (AttributeValues values : certificates) {
+      if (values.getLong(PKCS11Constants.CKA_CERTIFICATE_TYPE, -1)
+          != PKCS11Constants.CKC_X_509) {
+        continue;
+      }
+
+      byte[] id = values.getByteArray(PKCS11Constants.CKA_ID);
+      Entry keyEntry = (id == null) ? null
+          : privateKeysById.get(new ByteArrayKey(id));
+      if (keyEntry != null && keyEntry.certificateEntry == null) {
+        keyEntry.certificateEntry = new Entry(PKCS11Constants.CKO_CERTIFICATE,
+            values.getObjectHandle(), -1);
+      } else {
+        add(newEntries, values, PKCS11Constants.CKO_CERTIFICATE, -1);
+      }
+    }
+
+    this.entries = newEntries;
+    this.loadDate = new Date();
+  }
+
+  private static AttributeValues[] find(Session session, long objectClass,
+      long typeAttribute) throws TokenException {
+    CompiledTemplate template = new CompiledTemplate(session.getModule(),
+        new CK_ATTRIBUTE[] {
+          new CK_ATTRIBUTE(PKCS11Constants.CKA_CLASS, objectClass)});
+
+    List<long[]> batches = new ArrayList<>();
+    int count = 0;
+    session.findObjectsInitCompiled(template);
+    try {
+      long[] batch;
+      do {
+        batch = session.findObjectHandles(FIND_BATCH_SIZE);
+        batches.add(batch);
+        count += batch.length;
+      } while (batch.length == FIND_BATCH_SIZE);
+    } finally {
+      session.findObjectsFinal();
+    }
+
+    long[] handles = new long[count];
+    int off = 0;
+    for (long[] batch : batches) {
+      System.arraycopy(batch, 0, handles, off, batch.length);
+      off += batch.length;
+    }
+
+    return session.readAttributes(handles, PKCS11Constants.CKA_LABEL,
+        PKCS11Constants.CKA_ID, typeAttribute);
+  }
+
+  private static Entry add(Map<String, Entry> entries, AttributeValues values,
+      long objectClass, long keyType) {
+    long handle = values.getObjectHandle();
+    String alias = values.getString(PKCS11Constants.CKA_LABEL);
+    if (alias == null || alias.isEmpty()) {
+      byte[] id = values.getByteArray(PKCS11Constants.CKA_ID);
+      alias = (id == null || id.length == 0) ? Long.toString(handle)
+          : Util.toHex(id);
+    }
+    if (entries.containsKey(alias)) {
+      alias = Util.concatObjects(alias, "#", handle);
+    }
+
+    Entry entry = new Entry(objectClass, handle, keyType);
+    entries.put(alias, entry);
+    return entry;
+  }
+
+  @Override
+  public Key engineGetKey(String alias, char[] password) {
+    Entry entry = entries.get(alias);
+    if (entry == null
+        || entry.objectClass == PKCS11Constants.CKO_CERTIFICATE) {
+      return null;
+    }
+
+    Key key = entry.key;
+    if (key == null) {
+      key = (entry.objectClass == PKCS11Constants.CKO_PRIVATE_KEY)
+          ? new PKCS11PrivateKey(provider, entry.objectHandle, entry.keyType)
+          : new PKCS11SecretKey(provider, entry.objectHandle, entry.keyType);
+      entry.key = key;
+    }
+    return key;
+  }
+
+  @Override
+  public Certificate[] engineGetCertificateChain(String alias) {
+    Entry entry = entries.get(alias);
+    if (entry == null || entry.certificateEntry == null) {
+      return null;
+    }
+    return new Certificate[] {getCertificate(entry.certificateEntry)};
+  }
+
+  @Override
+  public Certificate engineGetCertificate(String alias) {
+    Entry entry = entries.get(alias);
+    if (entry == null) {
+      return null;
+    } else if (entry.certificateEntry != null) {
+      return getCertificate(entry.certificateEntry);
+    } else if (entry.objectClass == PKCS11Constants.CKO_CERTIFICATE) {
+      return getCertificate(entry);
+    } else {
+      return null;
+    }
+  }
+
+  private Certificate getCertificate(Entry entry) {
+    Certificate certificate = entry.certificate;
+    if (certificate != null) {
+      return certificate;
+    }
+
+    Session session;
+    try {
+      session = provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    }
+
+    byte[] encoded;
+    try {
+      encoded = session.readAttributes(entry.objectHandle,
+          PKCS11Constants.CKA_VALUE).getByteArray(PKCS11Constants.CKA_VALUE);
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    } finally {
+      provider.releaseSession(session, false);
+    }
+
+    if (encoded == null) {
+      return null;
+    }
+
+    try {
+      certificate = CertificateFactory.getInstance("X.509")
+          .generateCertificate(new ByteArrayInputStream(encoded));
+    } catch (CertificateException ex) {
+      throw new ProviderException(ex);
+    }
+    entry.certificate = certificate;
+    return certificate;
+  }
+
+  @Override
+  public Date engineGetCreationDate(String alias) {
+    return (loadDate == null || !entries.containsKey(alias)) ? null
+        : new Date(loadDate.getTime());
+  }
+
+  @Override
+  public void engineSetKeyEntry(String alias, Key key, char[] password,
+      Certificate[] chain) throws KeyStoreException {
+    throw new KeyStoreException("key store is read-only");
+  }
+
+  @Override
+  public void engineSetKeyEntry(String alias, byte[] key,
+      Certificate[] chain) throws KeyStoreException {
+    throw new KeyStoreException("key store is read-only");
+  }
+
+  @Override
+  public void engineSetCertificateEntry(String alias, Certificate cert)
+      throws KeyStoreException {
+    throw new KeyStoreException("key store is read-only");
+  }
+
+  @Override
+  public void engineDeleteEntry(String alias) throws KeyStoreException {
+    throw new KeyStoreException("key store is read-only");
+  }
+
+  @Override
+  public Enumeration<String> engineAliases() {
+    return Collections.enumeration(entries.keySet());
+  }
+
+  @Override
+  public boolean engineContainsAlias(String alias) {
+    return entries.containsKey(alias);
+  }
+
+  @Override
+  public int engineSize() {
+    return entries.size();
+  }
+
+  @Override
+  public boolean engineIsKeyEntry(String alias) {
+    Entry entry = entries.get(alias);
+    return entry != null
+        && entry.objectClass != PKCS11Constants.CKO_CERTIFICATE;
+  }
+
+  @Override
+  public boolean engineIsCertificateEntry(String alias) {
+    Entry entry = entries.get(alias);
+    return entry != null
+        && entry.objectClass == PKCS11Constants.CKO_CERTIFICATE;
+  }
+
+  /**
+   * Gets the alias of the given certificate. This reads all certificates
+   * which have not been read before.
+   */
+  @Override
+  public String engineGetCertificateAlias(Certificate cert) {
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      Entry entry = e.getValue();
+      Entry certEntry = (entry.certificateEntry != null)
+          ? entry.certificateEntry
+          : (entry.objectClass == PKCS11Constants.CKO_CERTIFICATE)
+              ? entry : null;
+      if (certEntry != null && cert.equals(getCertificate(certEntry))) {
+        return e.getKey();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void engineStore(OutputStream stream, char[] password)
+      throws IOException {
+    throw new IOException("key store is read-only");
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.io.ByteArrayOutputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.ProviderException;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.MacSpi;
+
+/**
+ * The Mac service of the {@link PKCS11Provider}. The data is collected in
+ * memory and MACed with one C_Sign call in {@link #engineDoFinal()}.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class PKCS11MacSpi extends MacSpi {
+
+  private final PKCS11Provider provider;
+
+  private final String algorithm;
+
+  private final Mechanism mechanism;
+
+  private final int macLength;
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+  private PKCS11Key key;
+
+  PKCS11MacSpi(PKCS11Provider provider, String algorithm,
+      long mechanismCode) {
+    this.provider = provider;
+    this.algorithm = algorithm;
+    this.mechanism = new Mechanism(mechanismCode);
+    // HmacSHA1, HmacSHA256, HmacSHA3-256, ...
+    String bits = algorithm.substring(algorithm.length() - 3);
+    this.macLength = "HA1".equals(bits) ? 20 : Integer.parseInt(bits) / 8;
+  }
+
+  @Override
+  protected int engineGetMacLength() {
+    return macLength;
+  }
+
+  @Override
+  protected void engineInit(Key key, AlgorithmParameterSpec params)
+      throws InvalidKeyException, InvalidAlgorithmParameterException {
+    if (params != null) {
+      throw new InvalidAlgorithmParameterException(
+          algorithm + " has no parameters");
+    }
+
+    PKCS11Key p11Key = PKCS11Key.toPKCS11Key(provider, key);
+    if (!(p11Key instanceof PKCS11SecretKey)) {
+      throw new InvalidKeyException(algorithm + " requires a secret key");
+    }
+    this.key = p11Key;
+    buffer.reset();
+  }
+
+  @Override
+  protected void engineUpdate(byte input) {
+    buffer.write(input);
+  }
+
+  @Override
+  protected void engineUpdate(byte[] input, int offset, int len) {
+    buffer.write(input, offset, len);
+  }
+
+  @Override
+  protected byte[] engineDoFinal() {
+    if (key == null) {
+      throw new IllegalStateException("not initialized");
+    }
+
+    byte[] data = buffer.toByteArray();
+    buffer.reset();
+
+    Session session;
+    try {
+      session = provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    }
+
+    boolean operationActive = true;
+    try {
+      session.signInit(provider.prepare(session, algorithm, mechanism),
+          key.getTokenKey());
+      // C_Sign terminates the operation, also if it fails
+      byte[] mac = session.sign(data);
+      operationActive = false;
+      return mac;
+    } catch (TokenException ex) {
+      operationActive = false;
+      throw new ProviderException(ex);
+    } finally {
+      provider.releaseSession(session, operationActive);
+    }
+  }
+
+  @Override
+  protected void engineReset() {
+    buffer.reset();
+  }
+
+}
@@ -0,0 +1,38 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import java.security.PrivateKey;
+
+/**
+ * A private key on the token. See {@link PKCS11Key}.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class PKCS11PrivateKey extends PKCS11Key implements PrivateKey {
+
+  private static final long serialVersionUID = 1L;
+
+  PKCS11PrivateKey(PKCS11Provider provider, long objectHandle,
+      long keyType) {
+    super(provider, new iaik.pkcs.pkcs11.objects.PrivateKey(), objectHandle,
+        keyType);
+  }
+
+}
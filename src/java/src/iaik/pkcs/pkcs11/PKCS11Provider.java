@@ -0,0 +1,237 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A JCA provider for the keys of one token. It offers the services
+ * Signature, Cipher, Mac (for the mechanisms supported by the token),
+ * SecureRandom "PKCS11" (if the token has a random number generator) and
+ * KeyStore "PKCS11". RSA-PSS is offered both as "SHAxxxwithRSAandMGF1"
+ * with fixed parameters, and as "RSASSA-PSS" with the parameters set via a
+ * PSSParameterSpec, as used by JSSE for TLS 1.3. The keys of the token are
+ * obtained from the KeyStore, which must be loaded with
+ * {@code load(null, null)}.
+ * <p>
+ * The services borrow the sessions of the given {@link SessionPool} only
+ * for the single-part operation in Signature.sign(), Cipher.doFinal() and
+ * Mac.doFinal(); the data given to the update methods is collected in
+ * memory. Mechanisms without per-operation parameters are prepared once
+ * per provider. Signature verification and public-key encryption are not
+ * offered; the JCA selects another provider for keys other than
+ * {@link PKCS11Key}.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class PKCS11Provider extends Provider {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String KEY_CLASSES = PKCS11Key.class.getName();
+
+  private static final String[][] SIGNATURES = {
+    {"NONEwithRSA", "CKM_RSA_PKCS"},
+    {"SHA1withRSA", "CKM_SHA1_RSA_PKCS"},
+    {"SHA224withRSA", "CKM_SHA224_RSA_PKCS"},
+    {"SHA256withRSA", "CKM_SHA256_RSA_PKCS"},
+    {"SHA384withRSA", "CKM_SHA384_RSA_PKCS"},
+    {"SHA512withRSA", "CKM_SHA512_RSA_PKCS"},
+    {"SHA3-224withRSA", "CKM_SHA3_224_RSA_PKCS"},
+    {"SHA3-256withRSA", "CKM_SHA3_256_RSA_PKCS"},
+    {"SHA3-384withRSA", "CKM_SHA3_384_RSA_PKCS"},
+    {"SHA3-512withRSA", "CKM_SHA3_512_RSA_PKCS"},
+    {"SHA1withRSAandMGF1", "CKM_SHA1_RSA_PKCS_PSS"},
+    {"SHA224withRSAandMGF1", "CKM_SHA224_RSA_PKCS_PSS"},
+    {"SHA256withRSAandMGF1", "CKM_SHA256_RSA_PKCS_PSS"},
+    {"SHA384withRSAandMGF1", "CKM_SHA384_RSA_PKCS_PSS"},
+    {"SHA512withRSAandMGF1", "CKM_SHA512_RSA_PKCS_PSS"},
+    {"RSASSA-PSS", "CKM_RSA_PKCS_PSS"},
+    {"NONEwithECDSA", "CKM_ECDSA"},
+    {"SHA1withECDSA", "CKM_ECDSA_SHA1"},
+    {"SHA224withECDSA", "CKM_ECDSA_SHA224"},
+    {"SHA256withECDSA", "CKM_ECDSA_SHA256"},
+    {"SHA384withECDSA", "CKM_ECDSA_SHA384"},
+    {"SHA512withECDSA", "CKM_ECDSA_SHA512"},
+    {"SHA3-224withECDSA", "CKM_ECDSA_SHA3_224"},
+    {"SHA3-256withECDSA", "CKM_ECDSA_SHA3_256"},
+    {"SHA3-384withECDSA", "CKM_ECDSA_SHA3_384"},
+    {"SHA3-512withECDSA", "CKM_ECDSA_SHA3_512"},
+    {"NONEwithDSA", "CKM_DSA"},
+    {"SHA1withDSA", "CKM_DSA_SHA1"},
+    {"SHA224withDSA", "CKM_DSA_SHA224"},
+    {"SHA256withDSA", "CKM_DSA_SHA256"}};
+
+  private static final String[][] CIPHERS = {
+    {"RSA/ECB/PKCS1Padding", "CKM_RSA_PKCS"},
+    {"RSA/ECB/NoPadding", "CKM_RSA_X_509"},
+    {"AES/ECB/NoPadding", "CKM_AES_ECB"},
+    {"AES/CBC/NoPadding", "CKM_AES_CBC"},
+    {"AES/CBC/PKCS5Padding", "CKM_AES_CBC_PAD"},
+    {"AES/GCM/NoPadding", "CKM_AES_GCM"}};
+
+  private static final String[][] MACS = {
+    {"HmacSHA1", "CKM_SHA_1_HMAC"},
+    {"HmacSHA224", "CKM_SHA224_HMAC"},
+    {"HmacSHA256", "CKM_SHA256_HMAC"},
+    {"HmacSHA384", "CKM_SHA384_HMAC"},
+    {"HmacSHA512", "CKM_SHA512_HMAC"},
+    {"HmacSHA3-224", "CKM_SHA3_224_HMAC"},
+    {"HmacSHA3-256", "CKM_SHA3_256_HMAC"},
+    {"HmacSHA3-384", "CKM_SHA3_384_HMAC"},
+    {"HmacSHA3-512", "CKM_SHA3_512_HMAC"}};
+
+  private static final class SpiService extends Service {
+
+    private final long mechanismCode;
+
+    private SpiService(PKCS11Provider provider, String type,
+        String algorithm, long mechanismCode,
+        Map<String, String> attributes) {
+      super(provider, type, algorithm, PKCS11Provider.class.getName(), null,
+          attributes);
+      this.mechanismCode = mechanismCode;
+    }
+
+    @Override
+    public Object newInstance(Object constructorParameter)
+        throws NoSuchAlgorithmException {
+      PKCS11Provider provider = (PKCS11Provider) getProvider();
+      switch (getType()) {
+        case "Signature":
+          return new PKCS11SignatureSpi(provider, getAlgorithm(),
+              mechanismCode);
+        case "Cipher":
+          return new PKCS11CipherSpi(provider, getAlgorithm(), mechanismCode);
+        case "Mac":
+          return new PKCS11MacSpi(provider, getAlgorithm(), mechanismCode);
+        case "SecureRandom":
+          return new PKCS11SecureRandomSpi(provider);
+        case "KeyStore":
+          return new PKCS11KeyStoreSpi(provider);
+        default:
+          throw new NoSuchAlgorithmException(
+              "unsupported service type " + getType());
+      }
+    }
+
+  }
+
+  private final transient SessionPool sessionPool;
+
+  private final transient ConcurrentHashMap<String, PreparedMechanism>
+      preparedMechanisms = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a provider for the token of the given session pool. Only the
+   * mechanisms supported by the token are offered.
+   *
+   * @param name
+   *          The name of the provider. Must not be null.
+   * @param sessionPool
+   *          The pool to borrow the sessions from. Must not be null.
+   * @exception TokenException
+   *              If reading the token info or the mechanism list failed.
+   */
+  // Provider(String, double, String) is deprecated since Java 9, but its
+  // replacement Provider(String, String, String) does not exist in Java 8.
+  @SuppressWarnings("deprecation")
+  public PKCS11Provider(String name, SessionPool sessionPool)
+      throws TokenException {
+    super(Util.requireNonNull("name", name), 1.0,
+        "PKCS#11 provider based on the PKCS#11 wrapper");
+    this.sessionPool = Util.requireNonNull("sessionPool", sessionPool);
+
+    LongSet mechanisms = new LongSet();
+    for (Mechanism mechanism : sessionPool.getToken().getMechanismList()) {
+      mechanisms.add(mechanism.getMechanismCode());
+    }
+
+    Map<String, String> keyAttributes =
+        Collections.singletonMap("SupportedKeyClasses", KEY_CLASSES);
+    putServices("Signature", SIGNATURES, mechanisms, keyAttributes);
+    putServices("Cipher", CIPHERS, mechanisms, keyAttributes);
+    putServices("Mac", MACS, mechanisms, keyAttributes);
+    if (sessionPool.getToken().getTokenInfo().isRNG()) {
+      putService(new SpiService(this, "SecureRandom", "PKCS11",
+          PKCS11Constants.CKM_VENDOR_DEFINED, null));
+    }
+    putService(new SpiService(this, "KeyStore", "PKCS11",
+        PKCS11Constants.CKM_VENDOR_DEFINED, null));
+  }
+
+  private void putServices(String type, String[][] algorithms,
+      LongSet mechanisms, Map<String, String> attributes) {
+    for (String[] algorithm : algorithms) {
+      long code = Functions.mechanismStringToCode(algorithm[1]);
+      if (mechanisms.contains(code)) {
+        putService(new SpiService(this, type, algorithm[0], code,
+            attributes));
+      }
+    }
+  }
+
+  /**
+   * Gets the session pool of this provider.
+   *
+   * @return the session pool.
+   */
+  public SessionPool getSessionPool() {
+    return sessionPool;
+  }
+
+  Session borrowSession() throws TokenException {
+    return sessionPool.borrowSession(false);
+  }
+
+  /**
+   * Returns the session to the pool, or closes it if an operation may still
+   * be active in it.
+   */
+  void releaseSession(Session session, boolean operationActive) {
+    if (operationActive) {
+      sessionPool.invalidateSession(session);
+    } else {
+      sessionPool.requiteSession(session);
+    }
+  }
+
+  /**
+   * Gets the prepared mechanism of the given JCA algorithm, preparing it if
+   * necessary. Must be used only for mechanisms whose parameters are fixed
+   * for the algorithm.
+   */
+  PreparedMechanism prepare(Session session, String algorithm,
+      Mechanism mechanism) {
+    PreparedMechanism prepared = preparedMechanisms.get(algorithm);
+    if (prepared == null) {
+      prepared = session.prepare(mechanism);
+      preparedMechanisms.putIfAbsent(algorithm, prepared);
+    }
+    return prepared;
+  }
+
+}
@@ -15,20 +15,23 @@
  * limitations under the License.
  */
 
-package demo.pkcs.pkcs11.wrapper.speed;
+package iaik.pkcs.pkcs11;
 
-import iaik.pkcs.pkcs11.Session;
-import org.xipki.util.concurrent.ConcurrentBagEntry;
+import javax.crypto.SecretKey;
 
 /**
- * Concurrent bag entry for {@link Session}.
+ * A secret key on the token. See {@link PKCS11Key}.
  *
  * @author Lijun Liao
+ * @since 1.4.9
  */
-public class ConcurrentSessionBagEntry extends ConcurrentBagEntry<Session> {
+public final class PKCS11SecretKey extends PKCS11Key implements SecretKey {
 
-  public ConcurrentSessionBagEntry(Session value) {
-    super(value);
+  private static final long serialVersionUID = 1L;
+
+  PKCS11SecretKey(PKCS11Provider provider, long objectHandle, long keyType) {
+    super(provider, new iaik.pkcs.pkcs11.objects.SecretKey(), objectHandle,
+        keyType);
   }
 
 }
@@ -0,0 +1,116 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.security.ProviderException;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+/**
+ * The SecureRandom service of the {@link PKCS11Provider}. Small requests are
+ * served from a buffer filled with one C_GenerateRandom call, so that not
+ * every request borrows a session.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class PKCS11SecureRandomSpi extends SecureRandomSpi {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int BUFFER_SIZE = 256;
+
+  private final transient PKCS11Provider provider;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  private int available;
+
+  PKCS11SecureRandomSpi(PKCS11Provider provider) {
+    this.provider = provider;
+  }
+
+  @Override
+  protected synchronized void engineSetSeed(byte[] seed) {
+    Session session = borrowSession();
+    try {
+      session.seedRandom(seed);
+    } catch (PKCS11Exception ex) {
+      // tokens which cannot be seeded mix in their own entropy
+      if (ex.getErrorCode() != PKCS11Constants.CKR_RANDOM_SEED_NOT_SUPPORTED
+          && ex.getErrorCode() != PKCS11Constants.CKR_RANDOM_NO_RNG) {
+        throw new ProviderException(ex);
+      }
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    } finally {
+      provider.releaseSession(session, false);
+    }
+    // discard the random bytes generated before seeding
+    available = 0;
+  }
+
+  @Override
+  protected synchronized void engineNextBytes(byte[] bytes) {
+    if (bytes.length > available) {
+      if (bytes.length >= BUFFER_SIZE / 2) {
+        byte[] random = generateRandom(bytes.length);
+        System.arraycopy(random, 0, bytes, 0, bytes.length);
+        return;
+      }
+
+      byte[] random = generateRandom(BUFFER_SIZE);
+      System.arraycopy(random, 0, buffer, 0, BUFFER_SIZE);
+      available = BUFFER_SIZE;
+    }
+
+    int off = BUFFER_SIZE - available;
+    System.arraycopy(buffer, off, bytes, 0, bytes.length);
+    // do not hand out the same bytes twice
+    Arrays.fill(buffer, off, off + bytes.length, (byte) 0);
+    available -= bytes.length;
+  }
+
+  @Override
+  protected byte[] engineGenerateSeed(int numBytes) {
+    return generateRandom(numBytes);
+  }
+
+  private byte[] generateRandom(int numBytes) {
+    Session session = borrowSession();
+    try {
+      return session.generateRandom(numBytes);
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    } finally {
+      provider.releaseSession(session, false);
+    }
+  }
+
+  private Session borrowSession() {
+    try {
+      return provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new ProviderException(ex);
+    }
+  }
+
+}
@@ -0,0 +1,360 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.parameters.RSAPkcsPssParameters;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.SignatureSpi;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.Locale;
+
+/**
+ * The Signature service of the {@link PKCS11Provider}. The data is collected
+ * in memory and signed with one C_Sign call in {@link #engineSign()}.
+ * ECDSA and DSA signatures are returned DER encoded, as required by the JCA.
+ * <p>
+ * RSASSA-PSS (e.g. as used by JSSE for TLS 1.3) requires a
+ * {@link PSSParameterSpec} with MGF1 and a SHA-1 or SHA-2 digest; the data is
+ * hashed in the JVM and the digest is signed with CKM_RSA_PKCS_PSS.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class PKCS11SignatureSpi extends SignatureSpi {
+
+  private final PKCS11Provider provider;
+
+  private final String algorithm;
+
+  private final Mechanism mechanism;
+
+  private final String keyAlgorithm;
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+  private final boolean rsassaPss;
+
+  private PKCS11Key key;
+
+  /**
+   * The parameters of RSASSA-PSS, or null if not set.
+   */
+  private PSSParameterSpec pssSpec;
+
+  private Mechanism pssMechanism;
+
+  private MessageDigest pssDigest;
+
+  PKCS11SignatureSpi(PKCS11Provider provider, String algorithm,
+      long mechanismCode) {
+    this.provider = provider;
+    this.algorithm = algorithm;
+    this.mechanism = new Mechanism(mechanismCode);
+    this.rsassaPss = "RSASSA-PSS".equals(algorithm);
+    if (algorithm.endsWith("ECDSA")) {
+      keyAlgorithm = "EC";
+    } else if (algorithm.endsWith("DSA")) {
+      keyAlgorithm = "DSA";
+    } else {
+      keyAlgorithm = "RSA";
+    }
+
+    long hashCode = getPssHashMechanism(mechanismCode);
+    if (hashCode != -1) {
+      mechanism.setParameters(new RSAPkcsPssParameters(hashCode,
+          getPssMgf(hashCode), getPssSaltLength(hashCode)));
+    }
+  }
+
+  private static long getPssHashMechanism(long mechanismCode) {
+    if (mechanismCode == PKCS11Constants.CKM_SHA1_RSA_PKCS_PSS) {
+      return PKCS11Constants.CKM_SHA_1;
+    } else if (mechanismCode == PKCS11Constants.CKM_SHA224_RSA_PKCS_PSS) {
+      return PKCS11Constants.CKM_SHA224;
+    } else if (mechanismCode == PKCS11Constants.CKM_SHA256_RSA_PKCS_PSS) {
+      return PKCS11Constants.CKM_SHA256;
+    } else if (mechanismCode == PKCS11Constants.CKM_SHA384_RSA_PKCS_PSS) {
+      return PKCS11Constants.CKM_SHA384;
+    } else if (mechanismCode == PKCS11Constants.CKM_SHA512_RSA_PKCS_PSS) {
+      return PKCS11Constants.CKM_SHA512;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * Gets the hash mechanism of a JCA digest name, e.g. SHA-256.
+   *
+   * @return the mechanism code, or -1 if the digest is not supported.
+   */
+  private static long getPssHashMechanism(String digestAlgorithm) {
+    String name = digestAlgorithm.toUpperCase(Locale.ROOT).replace("-", "");
+    switch (name) {
+      case "SHA":
+      case "SHA1":
+        return PKCS11Constants.CKM_SHA_1;
+      case "SHA224":
+        return PKCS11Constants.CKM_SHA224;
+      case "SHA256":
+        return PKCS11Constants.CKM_SHA256;
+      case "SHA384":
+        return PKCS11Constants.CKM_SHA384;
+      case "SHA512":
+        return PKCS11Constants.CKM_SHA512;
+      default:
+        return -1;
+    }
+  }
+
+  private static long getPssMgf(long hashCode) {
+    if (hashCode == PKCS11Constants.CKM_SHA_1) {
+      return PKCS11Constants.CKG_MGF1_SHA1;
+    } else if (hashCode == PKCS11Constants.CKM_SHA224) {
+      return PKCS11Constants.CKG_MGF1_SHA224;
+    } else if (hashCode == PKCS11Constants.CKM_SHA256) {
+      return PKCS11Constants.CKG_MGF1_SHA256;
+    } else if (hashCode == PKCS11Constants.CKM_SHA384) {
+      return PKCS11Constants.CKG_MGF1_SHA384;
+    } else {
+      return PKCS11Constants.CKG_MGF1_SHA512;
+    }
+  }
+
+  private static long getPssSaltLength(long hashCode) {
+    if (hashCode == PKCS11Constants.CKM_SHA_1) {
+      return 20;
+    } else if (hashCode == PKCS11Constants.CKM_SHA224) {
+      return 28;
+    } else if (hashCode == PKCS11Constants.CKM_SHA256) {
+      return 32;
+    } else if (hashCode == PKCS11Constants.CKM_SHA384) {
+      return 48;
+    } else {
+      return 64;
+    }
+  }
+
+  @Override
+  protected void engineInitVerify(PublicKey publicKey)
+      throws InvalidKeyException {
+    throw new InvalidKeyException(
+        "verification is not supported, use another provider");
+  }
+
+  @Override
+  protected void engineInitSign(PrivateKey privateKey)
+      throws InvalidKeyException {
+    PKCS11Key p11Key = PKCS11Key.toPKCS11Key(provider, privateKey);
+    if (!keyAlgorithm.equals(p11Key.getAlgorithm())) {
+      throw new InvalidKeyException(Util.concat(algorithm,
+          " requires a ", keyAlgorithm, " key"));
+    }
+    this.key = p11Key;
+    buffer.reset();
+    if (pssDigest != null) {
+      pssDigest.reset();
+    }
+  }
+
+  @Override
+  protected void engineUpdate(byte input) throws SignatureException {
+    checkInitialized();
+    if (rsassaPss) {
+      checkPssParameters();
+      pssDigest.update(input);
+    } else {
+      buffer.write(input);
+    }
+  }
+
+  @Override
+  protected void engineUpdate(byte[] input, int off, int len)
+      throws SignatureException {
+    checkInitialized();
+    if (rsassaPss) {
+      checkPssParameters();
+      pssDigest.update(input, off, len);
+    } else {
+      buffer.write(input, off, len);
+    }
+  }
+
+  @Override
+  protected byte[] engineSign() throws SignatureException {
+    checkInitialized();
+    byte[] data;
+    if (rsassaPss) {
+      checkPssParameters();
+      data = pssDigest.digest();
+    } else {
+      data = buffer.toByteArray();
+      buffer.reset();
+    }
+
+    byte[] signature;
+    Session session;
+    try {
+      session = provider.borrowSession();
+    } catch (TokenException ex) {
+      throw new SignatureException(ex);
+    }
+
+    boolean operationActive = true;
+    try {
+      if (rsassaPss) {
+        // the parameters may change per operation
+        session.signInit(pssMechanism, key.getTokenKey());
+      } else {
+        session.signInit(provider.prepare(session, algorithm, mechanism),
+            key.getTokenKey());
+      }
+      // C_Sign terminates the operation, also if it fails
+      signature = session.sign(data);
+      operationActive = false;
+    } catch (TokenException ex) {
+      operationActive = false;
+      throw new SignatureException(ex);
+    } finally {
+      provider.releaseSession(session, operationActive);
+    }
+
+    if ("RSA".equals(keyAlgorithm)) {
+      return signature;
+    }
+
+    byte[] derSignature = PublicKeyEngine.plainToDerSignature(signature);
+    if (derSignature == null) {
+      throw new SignatureException("invalid signature length "
+          + signature.length);
+    }
+    return derSignature;
+  }
+
+  @Override
+  protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
+    throw new SignatureException("verification is not supported");
+  }
+
+  @Override
+  protected void engineSetParameter(AlgorithmParameterSpec params)
+      throws InvalidAlgorithmParameterException {
+    if (!rsassaPss) {
+      throw new InvalidAlgorithmParameterException(
+          "no parameters are supported");
+    }
+    if (!(params instanceof PSSParameterSpec)) {
+      throw new InvalidAlgorithmParameterException(
+          "PSSParameterSpec is required");
+    }
+
+    PSSParameterSpec spec = (PSSParameterSpec) params;
+    long hashCode = getPssHashMechanism(spec.getDigestAlgorithm());
+    if (hashCode == -1) {
+      throw new InvalidAlgorithmParameterException(
+          "unsupported digest algorithm " + spec.getDigestAlgorithm());
+    }
+    if (!"MGF1".equalsIgnoreCase(spec.getMGFAlgorithm())
+        || !(spec.getMGFParameters() instanceof MGF1ParameterSpec)) {
+      throw new InvalidAlgorithmParameterException("only MGF1 is supported");
+    }
+    long mgfHashCode = getPssHashMechanism(
+        ((MGF1ParameterSpec) spec.getMGFParameters()).getDigestAlgorithm());
+    if (mgfHashCode == -1) {
+      throw new InvalidAlgorithmParameterException(
+          "unsupported MGF1 digest algorithm");
+    }
+    if (spec.getTrailerField() != 1) {
+      throw new InvalidAlgorithmParameterException(
+          "only the trailer field 1 is supported");
+    }
+    if (spec.getSaltLength() < 0) {
+      throw new InvalidAlgorithmParameterException("negative salt length");
+    }
+
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(spec.getDigestAlgorithm());
+    } catch (NoSuchAlgorithmException ex) {
+      throw new InvalidAlgorithmParameterException(ex.getMessage(), ex);
+    }
+
+    Mechanism newMechanism = new Mechanism(mechanism.getMechanismCode());
+    newMechanism.setParameters(new RSAPkcsPssParameters(hashCode,
+        getPssMgf(mgfHashCode), spec.getSaltLength()));
+    this.pssSpec = spec;
+    this.pssMechanism = newMechanism;
+    this.pssDigest = digest;
+  }
+
+  @Override
+  protected AlgorithmParameters engineGetParameters() {
+    if (pssSpec == null) {
+      return null;
+    }
+
+    try {
+      // not available in older JDKs
+      AlgorithmParameters params =
+          AlgorithmParameters.getInstance("RSASSA-PSS");
+      params.init(pssSpec);
+      return params;
+    } catch (GeneralSecurityException ex) {
+      return null;
+    }
+  }
+
+  @Override
+  @Deprecated
+  protected void engineSetParameter(String param, Object value) {
+    throw new InvalidParameterException("no parameters are supported");
+  }
+
+  @Override
+  @Deprecated
+  protected Object engineGetParameter(String param) {
+    throw new InvalidParameterException("no parameters are supported");
+  }
+
+  private void checkInitialized() throws SignatureException {
+    if (key == null) {
+      throw new SignatureException("not initialized");
+    }
+  }
+
+  private void checkPssParameters() throws SignatureException {
+    if (pssSpec == null) {
+      throw new SignatureException(
+          "RSASSA-PSS requires a PSSParameterSpec via setParameter()");
+    }
+  }
+
+}
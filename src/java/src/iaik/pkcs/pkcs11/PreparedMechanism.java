@@ -0,0 +1,83 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import sun.security.pkcs11.wrapper.CK_MECHANISM;
+
+/**
+ * A mechanism whose native CK_MECHANISM structure has been built (including
+ * the conversion to the vendor code and of the parameters) once by
+ * {@link Session#prepare(Mechanism)}. It can be passed to the *Init methods
+ * of all sessions of the same module, instead of the {@link Mechanism}.
+ * <p>
+ * Changes of the mechanism or of its parameters made after the preparation
+ * are not reflected. Mechanisms with parameters which must differ for each
+ * operation (e.g. the IV of AES-GCM) should not be prepared. Mechanisms which
+ * return values through their parameters (e.g. CKM_SSL3_KEY_AND_MAC_DERIVE)
+ * must not be used by several threads concurrently.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class PreparedMechanism {
+
+  private final Module module;
+
+  private final Mechanism mechanism;
+
+  private final CK_MECHANISM ckMechanism;
+
+  PreparedMechanism(Module module, Mechanism mechanism,
+      CK_MECHANISM ckMechanism) {
+    this.module = module;
+    this.mechanism = mechanism;
+    this.ckMechanism = ckMechanism;
+  }
+
+  /**
+   * Gets the mechanism which has been prepared.
+   *
+   * @return The mechanism.
+   */
+  public Mechanism getMechanism() {
+    return mechanism;
+  }
+
+  /**
+   * Gets the (generic) code of the mechanism which has been prepared.
+   *
+   * @return The mechanism code.
+   */
+  public long getMechanismCode() {
+    return mechanism.getMechanismCode();
+  }
+
+  CK_MECHANISM getCkMechanism(Module module) {
+    if (module != this.module) {
+      throw new IllegalArgumentException(
+          "mechanism is prepared for another module");
+    }
+    return ckMechanism;
+  }
+
+  @Override
+  public String toString() {
+    return mechanism.toString();
+  }
+
+}
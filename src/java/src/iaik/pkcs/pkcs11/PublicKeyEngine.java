@@ -0,0 +1,762 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.objects.AttributeValues;
+import iaik.pkcs.pkcs11.objects.PublicKey;
+import iaik.pkcs.pkcs11.parameters.Parameters;
+import iaik.pkcs.pkcs11.parameters.RSAPkcsOaepParameters;
+import iaik.pkcs.pkcs11.parameters.RSAPkcsPssParameters;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.DSAPublicKeySpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+
+/**
+ * Runs public-key operations (verify, verifyRecover and encrypt) in the JVM
+ * instead of on the token. The RSA, EC and DSA public keys are read from the
+ * token once, converted to java.security public keys and cached by their
+ * object handle.
+ * <p>
+ * An operation runs on the token if the key or the mechanism is not
+ * supported by the JCA of the current JDK (e.g. RSASSA-PSS before Java 11),
+ * or if token operations are forced, e.g. for compliance reasons, via
+ * {@link #setForceTokenOperations(boolean)}.
+ * <p>
+ * The engine of a token is created by {@link Token#getPublicKeyEngine()} and
+ * shared by all Token objects of the same slot and module. Its cache entries
+ * are removed by all sessions of the slot if the objects are modified or
+ * destroyed, or destroyed with their session, so that a reused handle never
+ * resolves to a stale key. Changes made outside this module (e.g. by
+ * another process) are not seen; call {@link #invalidate(long)} or
+ * {@link #clear()} after them. The methods only accept sessions of the
+ * token of this engine.
+ * <p>
+ * This class is thread-safe; the session passed to the methods is used only
+ * by the calling thread.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class PublicKeyEngine {
+
+  /**
+   * Minimal number of signatures verified by one fork-join task.
+   */
+  private static final int BATCH_GRANULARITY = 8;
+
+  /**
+   * Size of the output buffer of the token operations, enough for RSA keys
+   * up to 65536 bits.
+   */
+  private static final int MAX_OUTPUT_SIZE = 8192;
+
+  private static final Object UNSUPPORTED = new Object();
+
+  // DER encoded OID 1.2.840.10045.2.1 (id-ecPublicKey)
+  private static final byte[] OID_EC_PUBLIC_KEY =
+      {0x06, 0x07, 0x2a, (byte) 0x86, 0x48, (byte) 0xce, 0x3d, 0x02, 0x01};
+
+  private static final LongObjectMap<String> signatureAlgorithms =
+      newSignatureAlgorithms();
+
+  private static final LongObjectMap<String> digestNames = newDigestNames();
+
+  private final ConcurrentHashMap<Long, Object> keys =
+      new ConcurrentHashMap<>();
+
+  private final Token token;
+
+  private volatile boolean forceTokenOperations;
+
+  PublicKeyEngine(Token token) {
+    this.token = token;
+  }
+
+  /**
+   * Gets the token of this engine.
+   *
+   * @return the token.
+   */
+  public Token getToken() {
+    return token;
+  }
+
+  /**
+   * Forces all operations to run on the token.
+   *
+   * @param forceTokenOperations
+   *          true to run all operations on the token.
+   */
+  public void setForceTokenOperations(boolean forceTokenOperations) {
+    this.forceTokenOperations = forceTokenOperations;
+  }
+
+  /**
+   * Tells whether all operations run on the token.
+   *
+   * @return whether all operations run on the token.
+   */
+  public boolean isForceTokenOperations() {
+    return forceTokenOperations;
+  }
+
+  /**
+   * Gets the java.security public key of the given key, reading it from the
+   * token if it is not cached.
+   *
+   * @param session
+   *          The session to read the key with. Must not be null.
+   * @param key
+   *          The public key on the token. Must not be null.
+   * @return the java.security public key, or null if the key type is not
+   *         supported.
+   * @exception TokenException
+   *              If reading the key failed.
+   * @exception IllegalArgumentException
+   *              If the session does not belong to the token of this engine.
+   */
+  public java.security.PublicKey getJcaPublicKey(Session session,
+      PublicKey key) throws TokenException {
+    checkSession(session);
+    long handle = Util.requireNonNull("key", key).getObjectHandle();
+    Object jcaKey = keys.get(handle);
+    if (jcaKey == null) {
+      jcaKey = readJcaPublicKey(session, handle);
+      keys.put(handle, (jcaKey == null) ? UNSUPPORTED : jcaKey);
+    }
+    return (jcaKey == UNSUPPORTED) ? null : (java.security.PublicKey) jcaKey;
+  }
+
+  /**
+   * Verifies a signature.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The public key. Must not be null.
+   * @param data
+   *          The signed data. Must not be null.
+   * @param signature
+   *          The signature value, in the format of the token (e.g. r||s for
+   *          ECDSA). Must not be null.
+   * @return whether the signature is valid.
+   * @exception TokenException
+   *              If verifying on the token failed for another reason than an
+   *              invalid signature.
+   * @exception IllegalArgumentException
+   *              If the session does not belong to the token of this engine.
+   */
+  public boolean verify(Session session, Mechanism mechanism, PublicKey key,
+      byte[] data, byte[] signature) throws TokenException {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("data", data);
+    Util.requireNonNull("signature", signature);
+
+    java.security.PublicKey jcaKey = getLocalKey(session, key);
+    if (jcaKey != null) {
+      Boolean valid = verifyLocally(mechanism, jcaKey, data, signature);
+      if (valid != null) {
+        return valid;
+      }
+    }
+
+    return verifyOnToken(session, mechanism, key, data, signature);
+  }
+
+  /**
+   * Verifies several signatures made with the same key. The local
+   * verifications run in parallel in the common fork-join pool.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The public key. Must not be null.
+   * @param data
+   *          The signed data. Must not be null.
+   * @param signatures
+   *          The signature values, in the order of the data. Must not be
+   *          null.
+   * @return whether the signatures are valid, in the order of the data.
+   * @exception TokenException
+   *              If verifying on the token failed for another reason than an
+   *              invalid signature.
+   * @exception IllegalArgumentException
+   *              If the session does not belong to the token of this engine.
+   */
+  public boolean[] verifyAll(Session session, Mechanism mechanism,
+      PublicKey key, byte[][] data, byte[][] signatures)
+      throws TokenException {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("data", data);
+    Util.requireNonNull("signatures", signatures);
+    if (data.length != signatures.length) {
+      throw new IllegalArgumentException(
+          "data and signatures differ in length");
+    }
+
+    Boolean[] localResults = new Boolean[data.length];
+    java.security.PublicKey jcaKey = getLocalKey(session, key);
+    if (jcaKey != null) {
+      ForkJoinPool.commonPool().invoke(new VerifyTask(mechanism, jcaKey,
+          data, signatures, localResults, 0, data.length));
+    }
+
+    boolean[] results = new boolean[data.length];
+    for (int i = 0; i < data.length; i++) {
+      Boolean valid = localResults[i];
+      results[i] = (valid != null) ? valid
+          : verifyOnToken(session, mechanism, key, data[i], signatures[i]);
+    }
+    return results;
+  }
+
+  /**
+   * Recovers the data from a signature, e.g. with CKM_RSA_PKCS.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The signature mechanism. Must not be null.
+   * @param key
+   *          The public key. Must not be null.
+   * @param signature
+   *          The signature value. Must not be null.
+   * @return the recovered data.
+   * @exception TokenException
+   *              If the signature is invalid, or recovering failed.
+   * @exception IllegalArgumentException
+   *              If the session does not belong to the token of this engine.
+   */
+  public byte[] verifyRecover(Session session, Mechanism mechanism,
+      PublicKey key, byte[] signature) throws TokenException {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("signature", signature);
+
+    java.security.PublicKey jcaKey = getLocalKey(session, key);
+    if (jcaKey != null) {
+      long code = mechanism.getMechanismCode();
+      String transformation = (code == PKCS11Constants.CKM_RSA_PKCS)
+          ? "RSA/ECB/PKCS1Padding"
+          : (code == PKCS11Constants.CKM_RSA_X_509) ? "RSA/ECB/NoPadding"
+          : null;
+      if (transformation != null && "RSA".equals(jcaKey.getAlgorithm())) {
+        Cipher cipher = newCipher(transformation, Cipher.DECRYPT_MODE,
+            jcaKey, null);
+        if (cipher != null) {
+          try {
+            return cipher.doFinal(signature);
+          } catch (GeneralSecurityException ex) {
+            throw new PKCS11Exception(PKCS11Constants.CKR_SIGNATURE_INVALID);
+          }
+        }
+      }
+    }
+
+    session.verifyRecoverInit(mechanism, key);
+    byte[] out = new byte[MAX_OUTPUT_SIZE];
+    int len = session.verifyRecover(signature, 0, signature.length,
+        out, 0, out.length);
+    return Arrays.copyOf(out, len);
+  }
+
+  /**
+   * Encrypts data with CKM_RSA_PKCS, CKM_RSA_PKCS_OAEP or CKM_RSA_X_509.
+   *
+   * @param session
+   *          The session. Must not be null.
+   * @param mechanism
+   *          The encryption mechanism. Must not be null.
+   * @param key
+   *          The public key. Must not be null.
+   * @param data
+   *          The to-be-encrypted data. Must not be null.
+   * @return the encrypted data.
+   * @exception TokenException
+   *              If encrypting failed.
+   * @exception IllegalArgumentException
+   *              If the session does not belong to the token of this engine.
+   */
+  public byte[] encrypt(Session session, Mechanism mechanism, PublicKey key,
+      byte[] data) throws TokenException {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("data", data);
+
+    java.security.PublicKey jcaKey = getLocalKey(session, key);
+    if (jcaKey != null && "RSA".equals(jcaKey.getAlgorithm())) {
+      Cipher cipher = newEncryptCipher(mechanism, jcaKey);
+      if (cipher != null) {
+        try {
+          return cipher.doFinal(data);
+        } catch (GeneralSecurityException ex) {
+          throw new PKCS11Exception(PKCS11Constants.CKR_DATA_LEN_RANGE);
+        }
+      }
+    }
+
+    session.encryptInit(mechanism, key);
+    byte[] out = new byte[MAX_OUTPUT_SIZE];
+    int len = session.encrypt(data, 0, data.length, out, 0, out.length);
+    return Arrays.copyOf(out, len);
+  }
+
+  /**
+   * Removes the key with the given handle from the cache.
+   *
+   * @param objectHandle
+   *          The object handle.
+   */
+  public void invalidate(long objectHandle) {
+    keys.remove(objectHandle);
+  }
+
+  /**
+   * Removes all keys from the cache.
+   */
+  public void clear() {
+    keys.clear();
+  }
+
+  /**
+   * Gets the number of cached keys.
+   *
+   * @return the number of cached keys.
+   */
+  public int size() {
+    return keys.size();
+  }
+
+  private java.security.PublicKey getLocalKey(Session session, PublicKey key)
+      throws TokenException {
+    checkSession(session);
+    Util.requireNonNull("key", key);
+    return forceTokenOperations ? null : getJcaPublicKey(session, key);
+  }
+
+  private void checkSession(Session session) {
+    Util.requireNonNull("session", session);
+    if (!token.equals(session.getToken())) {
+      throw new IllegalArgumentException(
+          "session does not belong to the token of this engine");
+    }
+  }
+
+  private static boolean verifyOnToken(Session session, Mechanism mechanism,
+      PublicKey key, byte[] data, byte[] signature) throws TokenException {
+    session.verifyInit(mechanism, key);
+    try {
+      session.verify(data, signature);
+      return true;
+    } catch (PKCS11Exception ex) {
+      long code = ex.getErrorCode();
+      if (code == PKCS11Constants.CKR_SIGNATURE_INVALID
+          || code == PKCS11Constants.CKR_SIGNATURE_LEN_RANGE) {
+        return false;
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Verifies the signature in the JVM.
+   *
+   * @return whether the signature is valid, or null if the mechanism is not
+   *         supported by the JCA.
+   */
+  static Boolean verifyLocally(Mechanism mechanism,
+      java.security.PublicKey jcaKey, byte[] data, byte[] signature) {
+    Signature verifier = newSignature(mechanism, jcaKey);
+    if (verifier == null) {
+      return null;
+    }
+
+    byte[] jcaSignature = signature;
+    String keyAlg = jcaKey.getAlgorithm();
+    if ("EC".equals(keyAlg) || "DSA".equals(keyAlg)) {
+      jcaSignature = plainToDerSignature(signature);
+      if (jcaSignature == null) {
+        return Boolean.FALSE;
+      }
+    }
+
+    try {
+      verifier.update(data);
+      return verifier.verify(jcaSignature);
+    } catch (SignatureException ex) {
+      return Boolean.FALSE;
+    }
+  }
+
+  /**
+   * Checks whether signatures of the given mechanism can be verified in the
+   * JVM with the given key.
+   */
+  static boolean supportsLocally(Mechanism mechanism,
+      java.security.PublicKey jcaKey) {
+    return newSignature(mechanism, jcaKey) != null;
+  }
+
+  private static Signature newSignature(Mechanism mechanism,
+      java.security.PublicKey jcaKey) {
+    String algorithm = signatureAlgorithms.get(mechanism.getMechanismCode());
+    String keyAlg = jcaKey.getAlgorithm();
+    if (algorithm == null || !"RSASSA-PSS".equals(algorithm)
+        && !algorithm.endsWith("EC".equals(keyAlg) ? "ECDSA" : keyAlg)) {
+      return null;
+    }
+
+    try {
+      Signature signature = Signature.getInstance(algorithm);
+      if ("RSASSA-PSS".equals(algorithm)) {
+        Parameters params = mechanism.getParameters();
+        if (!(params instanceof RSAPkcsPssParameters)
+            || !"RSA".equals(keyAlg)) {
+          return null;
+        }
+
+        RSAPkcsPssParameters pssParams = (RSAPkcsPssParameters) params;
+        String hashName = digestNames.get(pssParams.getHashAlgorithm());
+        String mgfHashName =
+            getMgfHashName(pssParams.getMaskGenerationFunction());
+        if (hashName == null || mgfHashName == null) {
+          return null;
+        }
+
+        signature.setParameter(new PSSParameterSpec(hashName, "MGF1",
+            new MGF1ParameterSpec(mgfHashName),
+            (int) pssParams.getSaltLength(), 1));
+      }
+      signature.initVerify(jcaKey);
+      return signature;
+    } catch (GeneralSecurityException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private static Cipher newEncryptCipher(Mechanism mechanism,
+      java.security.PublicKey jcaKey) {
+    long code = mechanism.getMechanismCode();
+    if (code == PKCS11Constants.CKM_RSA_PKCS) {
+      return newCipher("RSA/ECB/PKCS1Padding", Cipher.ENCRYPT_MODE, jcaKey,
+          null);
+    } else if (code == PKCS11Constants.CKM_RSA_X_509) {
+      return newCipher("RSA/ECB/NoPadding", Cipher.ENCRYPT_MODE, jcaKey,
+          null);
+    } else if (code != PKCS11Constants.CKM_RSA_PKCS_OAEP
+        || !(mechanism.getParameters() instanceof RSAPkcsOaepParameters)) {
+      return null;
+    }
+
+    RSAPkcsOaepParameters params =
+        (RSAPkcsOaepParameters) mechanism.getParameters();
+    String hashName = digestNames.get(params.getHashAlgorithm());
+    String mgfHashName = getMgfHashName(params.getMaskGenerationFunction());
+    if (hashName == null || mgfHashName == null) {
+      return null;
+    }
+
+    byte[] label = params.getSourceData();
+    OAEPParameterSpec spec = new OAEPParameterSpec(hashName, "MGF1",
+        new MGF1ParameterSpec(mgfHashName), (label == null)
+            ? PSource.PSpecified.DEFAULT : new PSource.PSpecified(label));
+    return newCipher("RSA/ECB/OAEPPadding", Cipher.ENCRYPT_MODE, jcaKey,
+        spec);
+  }
+
+  private static Cipher newCipher(String transformation, int mode,
+      java.security.PublicKey jcaKey, OAEPParameterSpec spec) {
+    try {
+      Cipher cipher = Cipher.getInstance(transformation);
+      if (spec == null) {
+        cipher.init(mode, jcaKey);
+      } else {
+        cipher.init(mode, jcaKey, spec);
+      }
+      return cipher;
+    } catch (GeneralSecurityException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private static java.security.PublicKey readJcaPublicKey(Session session,
+      long handle) throws TokenException {
+    long keyType = session.readAttributes(handle,
+        PKCS11Constants.CKA_KEY_TYPE).getLong(PKCS11Constants.CKA_KEY_TYPE,
+            -1);
+
+    try {
+      if (keyType == PKCS11Constants.CKK_RSA) {
+        AttributeValues attrs = session.readAttributes(handle,
+            PKCS11Constants.CKA_MODULUS, PKCS11Constants.CKA_PUBLIC_EXPONENT);
+        byte[] modulus = attrs.getByteArray(PKCS11Constants.CKA_MODULUS);
+        byte[] exponent =
+            attrs.getByteArray(PKCS11Constants.CKA_PUBLIC_EXPONENT);
+        if (modulus == null || exponent == null) {
+          return null;
+        }
+        return KeyFactory.getInstance("RSA").generatePublic(
+            new RSAPublicKeySpec(new BigInteger(1, modulus),
+                new BigInteger(1, exponent)));
+      } else if (keyType == PKCS11Constants.CKK_DSA) {
+        AttributeValues attrs = session.readAttributes(handle,
+            PKCS11Constants.CKA_VALUE, PKCS11Constants.CKA_PRIME,
+            PKCS11Constants.CKA_SUBPRIME, PKCS11Constants.CKA_BASE);
+        byte[] y = attrs.getByteArray(PKCS11Constants.CKA_VALUE);
+        byte[] p = attrs.getByteArray(PKCS11Constants.CKA_PRIME);
+        byte[] q = attrs.getByteArray(PKCS11Constants.CKA_SUBPRIME);
+        byte[] g = attrs.getByteArray(PKCS11Constants.CKA_BASE);
+        if (y == null || p == null || q == null || g == null) {
+          return null;
+        }
+        return KeyFactory.getInstance("DSA").generatePublic(
+            new DSAPublicKeySpec(new BigInteger(1, y), new BigInteger(1, p),
+                new BigInteger(1, q), new BigInteger(1, g)));
+      } else if (keyType == PKCS11Constants.CKK_EC) {
+        AttributeValues attrs = session.readAttributes(handle,
+            PKCS11Constants.CKA_EC_PARAMS, PKCS11Constants.CKA_EC_POINT);
+        byte[] ecParams = attrs.getByteArray(PKCS11Constants.CKA_EC_PARAMS);
+        byte[] ecPoint = attrs.getByteArray(PKCS11Constants.CKA_EC_POINT);
+        if (ecParams == null || ecPoint == null) {
+          return null;
+        }
+        return generateECPublicKey(ecParams, ecPoint);
+      } else {
+        return null;
+      }
+    } catch (GeneralSecurityException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  private static java.security.PublicKey generateECPublicKey(
+      byte[] ecParams, byte[] ecPoint) throws GeneralSecurityException {
+    KeyFactory kf = KeyFactory.getInstance("EC");
+    // CKA_EC_POINT is the DER encoded OCTET STRING, but some tokens return
+    // the plain point.
+    byte[] point = unwrapOctetString(ecPoint);
+    if (point != null) {
+      try {
+        return kf.generatePublic(
+            new X509EncodedKeySpec(toSubjectPublicKeyInfo(ecParams, point)));
+      } catch (GeneralSecurityException | RuntimeException ex) {
+        // try the plain point
+      }
+    }
+
+    return kf.generatePublic(
+        new X509EncodedKeySpec(toSubjectPublicKeyInfo(ecParams, ecPoint)));
+  }
+
+  private static byte[] toSubjectPublicKeyInfo(byte[] ecParams,
+      byte[] point) {
+    byte[] algId = derTlv(0x30, concat(OID_EC_PUBLIC_KEY, ecParams));
+    byte[] bitString = new byte[point.length + 1];
+    System.arraycopy(point, 0, bitString, 1, point.length);
+    return derTlv(0x30, concat(algId, derTlv(0x03, bitString)));
+  }
+
+  private static byte[] unwrapOctetString(byte[] der) {
+    if (der.length < 2 || der[0] != 0x04) {
+      return null;
+    }
+
+    int len = der[1] & 0xFF;
+    int ofs = 2;
+    if (len == 0x81) {
+      len = (der.length > 2) ? der[2] & 0xFF : -1;
+      ofs = 3;
+    } else if (len == 0x82) {
+      len = (der.length > 3) ? ((der[2] & 0xFF) << 8) | (der[3] & 0xFF) : -1;
+      ofs = 4;
+    } else if (len > 0x7F) {
+      return null;
+    }
+
+    return (ofs + len == der.length)
+        ? Arrays.copyOfRange(der, ofs, der.length) : null;
+  }
+
+  /**
+   * Converts a signature r||s to the DER encoded SEQUENCE of two INTEGERs.
+   */
+  static byte[] plainToDerSignature(byte[] signature) {
+    if (signature.length == 0 || signature.length % 2 != 0) {
+      return null;
+    }
+
+    int len = signature.length / 2;
+    byte[] r = new BigInteger(1, Arrays.copyOfRange(signature, 0, len))
+        .toByteArray();
+    byte[] s = new BigInteger(1, Arrays.copyOfRange(signature, len,
+        signature.length)).toByteArray();
+    return derTlv(0x30, concat(derTlv(0x02, r), derTlv(0x02, s)));
+  }
+
+  private static byte[] derTlv(int tag, byte[] value) {
+    int len = value.length;
+    byte[] header;
+    if (len < 0x80) {
+      header = new byte[] {(byte) tag, (byte) len};
+    } else if (len < 0x100) {
+      header = new byte[] {(byte) tag, (byte) 0x81, (byte) len};
+    } else {
+      header = new byte[] {(byte) tag, (byte) 0x82, (byte) (len >> 8),
+          (byte) len};
+    }
+    return concat(header, value);
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  private static String getMgfHashName(long mgf) {
+    if (mgf == PKCS11Constants.CKG_MGF1_SHA1) {
+      return "SHA-1";
+    } else if (mgf == PKCS11Constants.CKG_MGF1_SHA224) {
+      return "SHA-224";
+    } else if (mgf == PKCS11Constants.CKG_MGF1_SHA256) {
+      return "SHA-256";
+    } else if (mgf == PKCS11Constants.CKG_MGF1_SHA384) {
+      return "SHA-384";
+    } else if (mgf == PKCS11Constants.CKG_MGF1_SHA512) {
+      return "SHA-512";
+    } else {
+      return null;
+    }
+  }
+
+  private static LongObjectMap<String> newDigestNames() {
+    LongObjectMap<String> map = new LongObjectMap<>(8);
+    map.put(PKCS11Constants.CKM_SHA_1, "SHA-1");
+    map.put(PKCS11Constants.CKM_SHA224, "SHA-224");
+    map.put(PKCS11Constants.CKM_SHA256, "SHA-256");
+    map.put(PKCS11Constants.CKM_SHA384, "SHA-384");
+    map.put(PKCS11Constants.CKM_SHA512, "SHA-512");
+    return map;
+  }
+
+  private static LongObjectMap<String> newSignatureAlgorithms() {
+    LongObjectMap<String> map = new LongObjectMap<>(64);
+    map.put(PKCS11Constants.CKM_RSA_PKCS, "NONEwithRSA");
+    map.put(PKCS11Constants.CKM_SHA1_RSA_PKCS, "SHA1withRSA");
+    map.put(PKCS11Constants.CKM_SHA224_RSA_PKCS, "SHA224withRSA");
+    map.put(PKCS11Constants.CKM_SHA256_RSA_PKCS, "SHA256withRSA");
+    map.put(PKCS11Constants.CKM_SHA384_RSA_PKCS, "SHA384withRSA");
+    map.put(PKCS11Constants.CKM_SHA512_RSA_PKCS, "SHA512withRSA");
+    map.put(PKCS11Constants.CKM_SHA3_224_RSA_PKCS, "SHA3-224withRSA");
+    map.put(PKCS11Constants.CKM_SHA3_256_RSA_PKCS, "SHA3-256withRSA");
+    map.put(PKCS11Constants.CKM_SHA3_384_RSA_PKCS, "SHA3-384withRSA");
+    map.put(PKCS11Constants.CKM_SHA3_512_RSA_PKCS, "SHA3-512withRSA");
+
+    map.put(PKCS11Constants.CKM_SHA1_RSA_PKCS_PSS, "RSASSA-PSS");
+    map.put(PKCS11Constants.CKM_SHA224_RSA_PKCS_PSS, "RSASSA-PSS");
+    map.put(PKCS11Constants.CKM_SHA256_RSA_PKCS_PSS, "RSASSA-PSS");
+    map.put(PKCS11Constants.CKM_SHA384_RSA_PKCS_PSS, "RSASSA-PSS");
+    map.put(PKCS11Constants.CKM_SHA512_RSA_PKCS_PSS, "RSASSA-PSS");
+
+    map.put(PKCS11Constants.CKM_ECDSA, "NONEwithECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA1, "SHA1withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA224, "SHA224withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA256, "SHA256withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA384, "SHA384withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA512, "SHA512withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_224, "SHA3-224withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_256, "SHA3-256withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_384, "SHA3-384withECDSA");
+    map.put(PKCS11Constants.CKM_ECDSA_SHA3_512, "SHA3-512withECDSA");
+
+    map.put(PKCS11Constants.CKM_DSA_SHA1, "SHA1withDSA");
+    map.put(PKCS11Constants.CKM_DSA_SHA224, "SHA224withDSA");
+    map.put(PKCS11Constants.CKM_DSA_SHA256, "SHA256withDSA");
+    return map;
+  }
+
+  private static final class VerifyTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Mechanism mechanism;
+
+    private final java.security.PublicKey jcaKey;
+
+    private final byte[][] data;
+
+    private final byte[][] signatures;
+
+    private final Boolean[] results;
+
+    private final int from;
+
+    private final int to;
+
+    private VerifyTask(Mechanism mechanism, java.security.PublicKey jcaKey,
+        byte[][] data, byte[][] signatures, Boolean[] results, int from,
+        int to) {
+      this.mechanism = mechanism;
+      this.jcaKey = jcaKey;
+      this.data = data;
+      this.signatures = signatures;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= BATCH_GRANULARITY) {
+        for (int i = from; i < to; i++) {
+          results[i] = verifyLocally(mechanism, jcaKey, data[i],
+              signatures[i]);
+        }
+        return;
+      }
+
+      int mid = (from + to) >>> 1;
+      invokeAll(new VerifyTask(mechanism, jcaKey, data, signatures, results,
+              from, mid),
+          new VerifyTask(mechanism, jcaKey, data, signatures, results,
+              mid, to));
+    }
+
+  }
+
+}
@@ -48,11 +48,15 @@ import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
 import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
 import sun.security.pkcs11.wrapper.*;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Vector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Session objects are used to perform cryptographic operations on a token. The
@@ -162,28 +166,71 @@ public class Session {
 
   }
 
-  private static final Method encrypt0;
+  /**
+   * C_Encrypt of the underlying PKCS11, adapted to the type
+   * (PKCS11, long, byte[], int, int, byte[], int, int)int.
+   */
+  private static final MethodHandle encryptHandle;
+
+  /**
+   * C_Decrypt of the underlying PKCS11, adapted to the type
+   * (PKCS11, long, byte[], int, int, byte[], int, int)int.
+   */
+  private static final MethodHandle decryptHandle;
+
+  /**
+   * Sets the CK_RSA_PKCS_PSS_PARAMS of a CK_MECHANISM, adapted to the type
+   * (CK_MECHANISM, CK_RSA_PKCS_PSS_PARAMS)void.
+   */
+  private static final MethodHandle pssParameterSetter;
 
-  private static final Method encrypt1;
+  // constructors of CK_MECHANISM with parameters, adapted to the type
+  // (long, Object)CK_MECHANISM
+  private static final MethodHandle constructor_CK_MECHANISM_CCM;
 
-  private static final Method decrypt0;
+  private static final MethodHandle constructor_CK_MECHANISM_GCM;
 
-  private static final Method decrypt1;
+  private static final MethodHandle constructor_CK_MECHANISM_TLS12KeyMat;
 
-  private static final Field field_CK_MECHANISM_pParameter;
+  private static final MethodHandle
+      constructor_CK_MECHANISM_TLS12MasterKeyDerive;
+
+  private static final MethodHandle constructor_CK_MECHANISM_TLSMac;
+
+  /**
+   * sun.nio.ch.DirectBuffer.address(), adapted to the type (ByteBuffer)long.
+   * It is null if the JDK does not allow access to it; then the content of
+   * direct buffers is copied.
+   */
+  private static final MethodHandle directBufferAddress;
 
-  private static final Method method_CK_MECHANISM_setParameter;
+  /**
+   * Maximal size of the reusable arrays into which the content of buffers
+   * without an accessible array or address is copied. Larger contents are
+   * passed to the token in chunks of this size.
+   */
+  private static final int MAX_COPY_BUFFER_SIZE = 1024 * 1024;
 
-  private static final Constructor<?> constructor_CK_MECHANISM_CCM;
+  private static final int OP_DIGEST = 0;
 
-  private static final Constructor<?> constructor_CK_MECHANISM_GCM;
+  private static final int OP_SIGN = 1;
 
-  private static final Constructor<?> constructor_CK_MECHANISM_TLS12KeyMat;
+  private static final int OP_VERIFY = 2;
 
-  private static final Constructor<?>
-      constructor_CK_MECHANISM_TLS12MasterKeyDerive;
+  private static final int OP_ENCRYPT = 3;
 
-  private static final Constructor<?> constructor_CK_MECHANISM_TLSMac;
+  private static final int OP_DECRYPT = 4;
+
+  private static final int OP_SIGN_RECOVER = 5;
+
+  private static final int OP_VERIFY_RECOVER = 6;
+
+  /**
+   * The CK_MECHANISMs without parameters, which are shared by all sessions.
+   * The key is the mechanism code (after the conversion to vendor code).
+   */
+  private static final ConcurrentHashMap<Long, CK_MECHANISM>
+      parameterlessMechanisms = new ConcurrentHashMap<>();
 
   /**
    * A reference to the underlying PKCS#11 module to perform the operations.
@@ -205,36 +252,35 @@ public class Session {
    */
   private final Token token;
 
-  static {
-    Class<?> clazz = PKCS11.class;
-    decrypt0 = Util.getMethod(clazz, "C_Decrypt",
-        long.class, byte[].class, int.class, int.class,
-        byte[].class, int.class, int.class);
-
-    encrypt0 = Util.getMethod(clazz, "C_Encrypt",
-        long.class, byte[].class, int.class, int.class,
-        byte[].class, int.class, int.class);
-
-    if (decrypt0 == null) {
-      decrypt1 = Util.getMethod(clazz, "C_Decrypt",
-          long.class, long.class, byte[].class, int.class, int.class,
-          long.class, byte[].class, int.class, int.class);
-    } else {
-      decrypt1 = null;
-    }
+  /**
+   * The handles of the objects created by this session which may be session
+   * objects. They are destroyed by the token if this session is closed.
+   */
+  private final Set<Long> sessionObjectHandles =
+      ConcurrentHashMap.newKeySet();
 
-    if (encrypt0 == null) {
-      encrypt1 = Util.getMethod(clazz, "C_Encrypt",
-          long.class, long.class, byte[].class, int.class, int.class,
-          long.class, byte[].class, int.class, int.class);
-    } else {
-      encrypt1 = null;
-    }
+  /**
+   * The reusable arrays for the input and output data of buffers without an
+   * accessible array or address, e.g. direct buffers on JDK 9+ if the
+   * package sun.nio.ch is not exported to this module.
+   */
+  private byte[] inCopyBuffer;
+
+  private byte[] outCopyBuffer;
 
-    clazz = CK_MECHANISM.class;
-    field_CK_MECHANISM_pParameter = Util.getField(clazz, "pParameter");
-    method_CK_MECHANISM_setParameter = Util.getMethod(clazz, "setParameter",
-        CK_RSA_PKCS_PSS_PARAMS.class);
+  static {
+    encryptHandle = getCryptHandle("C_Encrypt");
+    decryptHandle = getCryptHandle("C_Decrypt");
+
+    Class<?> clazz = CK_MECHANISM.class;
+    MethodType setterType = MethodType.methodType(void.class,
+        CK_MECHANISM.class, CK_RSA_PKCS_PSS_PARAMS.class);
+    MethodHandle setter = Util.findSetter(clazz, "pParameter", Object.class);
+    if (setter == null) {
+      setter = Util.findVirtual(clazz, "setParameter", MethodType.methodType(
+          void.class, CK_RSA_PKCS_PSS_PARAMS.class));
+    }
+    pssParameterSetter = (setter == null) ? null : setter.asType(setterType);
 
     constructor_CK_MECHANISM_CCM =
         getConstructofOfCK_MECHANISM(CCMParameters.CLASS_CK_PARAMS);
@@ -252,9 +298,43 @@ public class Session {
 
     constructor_CK_MECHANISM_TLSMac =
         getConstructofOfCK_MECHANISM(TLSMacParameters.CLASS_CK_PARAMS);
+
+    MethodHandle mh = null;
+    try {
+      mh = Util.findVirtual(Class.forName("sun.nio.ch.DirectBuffer"),
+          "address", MethodType.methodType(long.class));
+    } catch (ClassNotFoundException ex) {
+      mh = null;
+    }
+    directBufferAddress = (mh == null) ? null
+        : mh.asType(MethodType.methodType(long.class, ByteBuffer.class));
+  }
+
+  private static MethodHandle getCryptHandle(String name) {
+    Class<?> clazz = PKCS11.class;
+    // older JDKs
+    MethodHandle mh = Util.findVirtual(clazz, name,
+        MethodType.methodType(int.class, long.class,
+            byte[].class, int.class, int.class,
+            byte[].class, int.class, int.class));
+    if (mh != null) {
+      return mh;
+    }
+
+    mh = Util.findVirtual(clazz, name,
+        MethodType.methodType(int.class, long.class,
+            long.class, byte[].class, int.class, int.class,
+            long.class, byte[].class, int.class, int.class));
+    if (mh == null) {
+      return null;
+    }
+
+    // set directOut and directIn to 0
+    mh = MethodHandles.insertArguments(mh, 6, 0L);
+    return MethodHandles.insertArguments(mh, 2, 0L);
   }
 
-  private static Constructor<?> getConstructofOfCK_MECHANISM(
+  private static MethodHandle getConstructofOfCK_MECHANISM(
       String paramsClassName) {
     Class<?> paramsClass;
     try {
@@ -263,7 +343,30 @@ public class Session {
       return null;
     }
 
-    return Util.getConstructor(CK_MECHANISM.class, long.class, paramsClass);
+    MethodHandle mh =
+        Util.findConstructor(CK_MECHANISM.class, long.class, paramsClass);
+    return (mh == null) ? null : mh.asType(MethodType.methodType(
+        CK_MECHANISM.class, long.class, Object.class));
+  }
+
+  /**
+   * Gets the native address of a direct buffer.
+   *
+   * @param buffer
+   *          The buffer.
+   * @return the address, or 0 if the buffer is not direct or its address is
+   *         not accessible.
+   */
+  private static long address(ByteBuffer buffer) {
+    if (directBufferAddress == null || !buffer.isDirect()) {
+      return 0;
+    }
+
+    try {
+      return (long) directBufferAddress.invokeExact(buffer);
+    } catch (Throwable th) {
+      return 0;
+    }
   }
 
   /**
@@ -330,6 +433,12 @@ public class Session {
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
+
+    // the session objects of this session have been destroyed
+    for (Long objectHandle : sessionObjectHandles) {
+      invalidateCachedObject(objectHandle);
+    }
+    sessionObjectHandles.clear();
   }
 
   /**
@@ -413,6 +522,95 @@ public class Session {
     return token;
   }
 
+  private ObjectCache getObjectCache() {
+    return token.getObjectCache();
+  }
+
+  /**
+   * Removes the object with the given handle from the object cache, the key
+   * index and the public-key engine of the token, if present. The handle of
+   * a newly created object is removed too, since the token may reuse the
+   * handles of destroyed objects.
+   *
+   * @param objectHandle
+   *          The object handle.
+   * @return The given object handle.
+   */
+  private long invalidateCachedObject(long objectHandle) {
+    ObjectCache objectCache = getObjectCache();
+    if (objectCache != null) {
+      objectCache.invalidate(objectHandle);
+    }
+
+    KeyIndex keyIndex = token.getKeyIndexIfCreated();
+    if (keyIndex != null) {
+      keyIndex.invalidate(objectHandle);
+    }
+
+    PublicKeyEngine publicKeyEngine = token.getPublicKeyEngineIfCreated();
+    if (publicKeyEngine != null) {
+      publicKeyEngine.invalidate(objectHandle);
+    }
+    return objectHandle;
+  }
+
+  /**
+   * Converts the exception of a call which uses the given keys. If the token
+   * rejects a key handle as invalid, e.g. because the key has been deleted
+   * by another application, the handles of the keys are removed from the
+   * object cache and the key index, so that the next lookup searches the
+   * token again.
+   *
+   * @param ex
+   *          The exception thrown by the call.
+   * @param keys
+   *          The keys used by the call.
+   * @return The converted exception.
+   */
+  private PKCS11Exception keyException(
+      sun.security.pkcs11.wrapper.PKCS11Exception ex, Key... keys) {
+    long code = ex.getErrorCode();
+    if (code == PKCS11Constants.CKR_KEY_HANDLE_INVALID
+        || code == PKCS11Constants.CKR_OBJECT_HANDLE_INVALID
+        || code == PKCS11Constants.CKR_WRAPPING_KEY_HANDLE_INVALID
+        || code == PKCS11Constants.CKR_UNWRAPPING_KEY_HANDLE_INVALID) {
+      for (Key key : keys) {
+        invalidateCachedObject(key.getObjectHandle());
+      }
+    }
+    return new PKCS11Exception(ex);
+  }
+
+  /**
+   * Invalidates the cached object with the handle of a newly created object,
+   * and remembers the handle if the object is a session object, unless the
+   * template requests a token object.
+   *
+   * @param objectHandle
+   *          The handle of the new object.
+   * @param template
+   *          The template of the new object.
+   * @return The given object handle.
+   */
+  private long newObjectCreated(long objectHandle, CK_ATTRIBUTE[] template) {
+    invalidateCachedObject(objectHandle);
+    if (!isTokenObject(template)) {
+      sessionObjectHandles.add(objectHandle);
+    }
+    return objectHandle;
+  }
+
+  private static boolean isTokenObject(CK_ATTRIBUTE[] template) {
+    if (template != null) {
+      for (CK_ATTRIBUTE attr : template) {
+        if (attr.type == PKCS11Constants.CKA_TOKEN) {
+          return Boolean.TRUE.equals(attr.pValue);
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * Get the current operation state. This state can be used later to restore
    * the operation to exactly this state.
@@ -522,6 +720,22 @@ public class Session {
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
+
+    // private objects are not accessible any more
+    ObjectCache objectCache = getObjectCache();
+    if (objectCache != null) {
+      objectCache.clear();
+    }
+
+    KeyIndex keyIndex = token.getKeyIndexIfCreated();
+    if (keyIndex != null) {
+      keyIndex.clear();
+    }
+
+    PublicKeyEngine publicKeyEngine = token.getPublicKeyEngineIfCreated();
+    if (publicKeyEngine != null) {
+      publicKeyEngine.clear();
+    }
   }
 
   /**
@@ -562,15 +776,72 @@ public class Session {
    */
   public PKCS11Object createObject(PKCS11Object templateObject)
       throws TokenException {
-    CK_ATTRIBUTE[] ckAttributes = getSetAttributes(templateObject);
-    long objectHandle;
+    return createObject(getSetAttributes(templateObject));
+  }
+
+  /**
+   * Create a new object on the token (or in the session) from a compiled
+   * template. See {@link #createObject(PKCS11Object)}.
+   *
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return A new PKCS#11 PKCS11Object that holds all the (readable)
+   *         attributes of the object on the token.
+   * @exception TokenException
+   *              If the creation of the new object fails. If it fails, the no
+   *              new object was created on the token.
+   */
+  public PKCS11Object createObjectCompiled(CompiledTemplate template)
+      throws TokenException {
+    return createObject(toCkAttributes(template));
+  }
+
+  private PKCS11Object createObject(CK_ATTRIBUTE[] ckAttributes)
+      throws TokenException {
+    return PKCS11Object.getInstance(this, createObjectHandle(ckAttributes));
+  }
+
+  /**
+   * Create a new object on the token (or in the session), and returns only
+   * the handle of the new object. In contrast to
+   * {@link #createObject(PKCS11Object)}, no attribute is read from the token.
+   *
+   * @param templateObject
+   *          The template object that serves as a template for creating the
+   *          new object.
+   * @return The handle of the new object.
+   * @exception TokenException
+   *              If the creation of the new object fails.
+   */
+  public long createObjectHandle(PKCS11Object templateObject)
+      throws TokenException {
+    return createObjectHandle(getSetAttributes(templateObject));
+  }
+
+  /**
+   * Create a new object on the token (or in the session) from a compiled
+   * template, and returns only the handle of the new object.
+   *
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return The handle of the new object.
+   * @exception TokenException
+   *              If the creation of the new object fails.
+   */
+  public long createObjectHandleCompiled(CompiledTemplate template)
+      throws TokenException {
+    return createObjectHandle(toCkAttributes(template));
+  }
+
+  private long createObjectHandle(CK_ATTRIBUTE[] ckAttributes)
+      throws TokenException {
     try {
-      objectHandle = pkcs11Module.C_CreateObject(sessionHandle, ckAttributes);
+      return newObjectCreated(
+          pkcs11Module.C_CreateObject(sessionHandle, ckAttributes),
+          ckAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
-
-    return PKCS11Object.getInstance(this, objectHandle);
   }
 
   /**
@@ -593,17 +864,33 @@ public class Session {
    */
   public PKCS11Object copyObject(PKCS11Object sourceObject,
       PKCS11Object templateObject) throws TokenException {
+    long newObjectHandle = copyObjectHandle(sourceObject, templateObject);
+    return PKCS11Object.getInstance(this, newObjectHandle);
+  }
+
+  /**
+   * Copy an existing object, and returns only the handle of the new object.
+   * See {@link #copyObject(PKCS11Object, PKCS11Object)}.
+   *
+   * @param sourceObject
+   *          The source object of the copy operation.
+   * @param templateObject
+   *          A template object which's attribute values are used for the new
+   *          object. May be null.
+   * @return The handle of the new object.
+   * @exception TokenException
+   *              If copying the object fails for some reason.
+   */
+  public long copyObjectHandle(PKCS11Object sourceObject,
+      PKCS11Object templateObject) throws TokenException {
     long sourceObjectHandle = sourceObject.getObjectHandle();
     CK_ATTRIBUTE[] ckAttributes = getSetAttributes(templateObject);
-    long newObjectHandle;
     try {
-      newObjectHandle = pkcs11Module.C_CopyObject(sessionHandle,
-          sourceObjectHandle, ckAttributes);
+      return newObjectCreated(pkcs11Module.C_CopyObject(sessionHandle,
+          sourceObjectHandle, ckAttributes), ckAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
-
-    return PKCS11Object.getInstance(this, newObjectHandle);
   }
 
   /**
@@ -635,6 +922,9 @@ public class Session {
           objectToUpdateHandle, ckAttributesTemplates);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
+    } finally {
+      // the object may have been partially modified even if failed
+      invalidateCachedObject(objectToUpdateHandle);
     }
   }
 
@@ -658,6 +948,42 @@ public class Session {
     return PKCS11Object.getInstance(this, objectHandle);
   }
 
+  /**
+   * Reads only the given attributes of an object. In contrast to
+   * {@link #getAttributeValues(PKCS11Object)}, neither the object class nor
+   * any other attribute is read, and no {@link PKCS11Object} is created.
+   *
+   * @param objectHandle
+   *          The handle of the object to read.
+   * @param types
+   *          The types of the attributes to read; e.g.
+   *          PKCS11Constants.CKA_ID.
+   * @return the attribute values.
+   * @exception TokenException
+   *              If reading the attributes fails.
+   */
+  public AttributeValues readAttributes(long objectHandle, long... types)
+      throws TokenException {
+    return module.getObjectReader().readAttributes(this, objectHandle, types);
+  }
+
+  /**
+   * Reads only the given attributes of several objects. See
+   * {@link #readAttributes(long, long...)}.
+   *
+   * @param objectHandles
+   *          The handles of the objects to read.
+   * @param types
+   *          The types of the attributes to read.
+   * @return the attribute values, in the order of the object handles.
+   * @exception TokenException
+   *              If reading the attributes fails.
+   */
+  public AttributeValues[] readAttributes(long[] objectHandles, long... types)
+      throws TokenException {
+    return module.getObjectReader().readAttributes(this, objectHandles, types);
+  }
+
   /**
    * Destroy a certain object on the token (or in the session). Give the
    * object that you want to destroy. This method uses only the internal
@@ -674,7 +1000,10 @@ public class Session {
       pkcs11Module.C_DestroyObject(sessionHandle, objectHandle);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
+    } finally {
+      invalidateCachedObject(objectHandle);
     }
+    sessionObjectHandles.remove(objectHandle);
   }
 
   /**
@@ -718,6 +1047,24 @@ public class Session {
     }
   }
 
+  /**
+   * Initializes a find operations that provides means to find objects by
+   * passing a compiled template. See {@link #findObjectsInit(PKCS11Object)}.
+   *
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @exception TokenException
+   *              If initializing the find operation fails.
+   */
+  public void findObjectsInitCompiled(CompiledTemplate template)
+      throws TokenException {
+    try {
+      pkcs11Module.C_FindObjectsInit(sessionHandle, toCkAttributes(template));
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      throw new PKCS11Exception(ex);
+    }
+  }
+
   /**
    * Finds objects that match the template object passed to findObjectsInit.
    * The application must call findObjectsInit before calling this method.
@@ -736,21 +1083,13 @@ public class Session {
    *              the Exception is raised during object parsing.
    */
   public PKCS11Object[] findObjects(int maxObjectCount) throws TokenException {
-    Vector<PKCS11Object> foundObjects = new Vector<>();
-    long[] objectHandles;
-    try {
-      objectHandles = pkcs11Module.C_FindObjects(sessionHandle, maxObjectCount);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    long[] objectHandles = findObjectHandles(maxObjectCount);
 
     try {
-      for (long objectHandle : objectHandles) {
-        PKCS11Object object = PKCS11Object.getInstance(this, objectHandle);
-        foundObjects.addElement(object);
+      PKCS11Object[] objectArray = new PKCS11Object[objectHandles.length];
+      for (int i = 0; i < objectHandles.length; i++) {
+        objectArray[i] = PKCS11Object.getInstance(this, objectHandles[i]);
       }
-      PKCS11Object[] objectArray = new PKCS11Object[foundObjects.size()];
-      foundObjects.copyInto(objectArray);
 
       return objectArray;
     } catch (TokenException e) {
@@ -759,6 +1098,118 @@ public class Session {
     }
   }
 
+  /**
+   * Finds objects that match the template object passed to findObjectsInit,
+   * and returns only their handles. In contrast to {@link #findObjects(int)},
+   * no attribute is read from the token.
+   *
+   * @param maxObjectCount
+   *          Specifies how many objects to return with this call.
+   * @return An array of the handles of the found objects. The maximum size of
+   *         this array is maxObjectCount, the minimum length is 0. Never
+   *         returns null.
+   * @exception TokenException
+   *              If something during PKCS11 FindObject went wrong.
+   */
+  public long[] findObjectHandles(int maxObjectCount) throws TokenException {
+    try {
+      return pkcs11Module.C_FindObjects(sessionHandle, maxObjectCount);
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      throw new PKCS11Exception(ex);
+    }
+  }
+
+  /**
+   * Starts a find operation and returns an iterator over the handles of the
+   * found objects, which fetches the handles in batches of growing size (see
+   * {@link FindObjectsIterator}). The iterator must be closed, e.g.
+   *
+   * <pre><code>
+   *   try (FindObjectsIterator iter = session.find(template)) {
+   *     while (iter.hasNext()) {
+   *       long handle = iter.nextLong();
+   *       ...
+   *     }
+   *   }
+   * </code></pre>
+   *
+   * @param template
+   *          The template object. Null (cast to PKCS11Object) to find all
+   *          objects.
+   * @return the iterator.
+   * @exception TokenException
+   *              If initializing the find operation fails.
+   */
+  public FindObjectsIterator find(PKCS11Object template)
+      throws TokenException {
+    return find(template, FindObjectsIterator.DEFAULT_INITIAL_BATCH_SIZE,
+        FindObjectsIterator.DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Starts a find operation and returns an iterator over the handles of the
+   * found objects. See {@link #find(PKCS11Object)}.
+   *
+   * @param template
+   *          The template object. Null (cast to PKCS11Object) to find all
+   *          objects.
+   * @param initialBatchSize
+   *          The number of handles to fetch with the first call of
+   *          C_FindObjects.
+   * @param maxBatchSize
+   *          The maximal number of handles to fetch with one call.
+   * @return the iterator.
+   * @exception TokenException
+   *              If initializing the find operation fails.
+   */
+  public FindObjectsIterator find(PKCS11Object template, int initialBatchSize,
+      int maxBatchSize) throws TokenException {
+    FindObjectsIterator iterator =
+        new FindObjectsIterator(this, initialBatchSize, maxBatchSize);
+    findObjectsInit(template);
+    return iterator;
+  }
+
+  /**
+   * Starts a find operation with a compiled template and returns an iterator
+   * over the handles of the found objects. See {@link #find(PKCS11Object)}.
+   *
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return the iterator.
+   * @exception TokenException
+   *              If initializing the find operation fails.
+   */
+  public FindObjectsIterator findCompiled(CompiledTemplate template)
+      throws TokenException {
+    return findCompiled(template,
+        FindObjectsIterator.DEFAULT_INITIAL_BATCH_SIZE,
+        FindObjectsIterator.DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Starts a find operation with a compiled template and returns an iterator
+   * over the handles of the found objects. See {@link #find(PKCS11Object)}.
+   *
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @param initialBatchSize
+   *          The number of handles to fetch with the first call of
+   *          C_FindObjects.
+   * @param maxBatchSize
+   *          The maximal number of handles to fetch with one call.
+   * @return the iterator.
+   * @exception TokenException
+   *              If initializing the find operation fails.
+   */
+  public FindObjectsIterator findCompiled(CompiledTemplate template,
+      int initialBatchSize, int maxBatchSize) throws TokenException {
+    FindObjectsIterator iterator =
+        new FindObjectsIterator(this, initialBatchSize, maxBatchSize);
+    findObjectsInitCompiled(template);
+    return iterator;
+  }
+
   /**
    * Finalizes a find operation. The application must call this method to
    * finalize a find operation before attempting to start any other operation.
@@ -774,6 +1225,40 @@ public class Session {
     }
   }
 
+  /**
+   * Prepares the given mechanism for repeated use: the native mechanism
+   * structure is built and validated once, and can be used by all sessions
+   * of the same module.
+   *
+   * @param mechanism
+   *          The mechanism to prepare.
+   * @return The prepared mechanism.
+   */
+  public PreparedMechanism prepare(Mechanism mechanism) {
+    Util.requireNonNull("mechanism", mechanism);
+    return new PreparedMechanism(module, mechanism, toCkMechanism(mechanism));
+  }
+
+  /**
+   * Compiles the set attributes of the given object into an immutable
+   * template, which can be used by all sessions of the same module in the
+   * *Compiled methods, e.g. {@link #createObjectCompiled(CompiledTemplate)}
+   * and {@link #findObjectsInitCompiled(CompiledTemplate)}. These methods
+   * have distinct names, so that passing null to the methods taking a
+   * {@link PKCS11Object} template stays unambiguous.
+   *
+   * @param template
+   *          The template object.
+   * @return The compiled template.
+   * @exception TokenException
+   *              If converting the attributes failed.
+   */
+  public CompiledTemplate compileTemplate(PKCS11Object template)
+      throws TokenException {
+    Util.requireNonNull("template", template);
+    return new CompiledTemplate(module, getSetAttributes(template));
+  }
+
   /**
    * Initializes a new encryption operation. The application must call this
    * method before calling any other encrypt* operation. Before initializing a
@@ -793,12 +1278,23 @@ public class Session {
    *              If initializing this operation failed.
    */
   public void encryptInit(Mechanism mechanism, Key key) throws TokenException {
-    try {
-      pkcs11Module.C_EncryptInit(sessionHandle, toCkMechanism(mechanism),
-              key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_ENCRYPT, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new encryption operation with a prepared mechanism. See
+   * {@link #encryptInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The encryption key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void encryptInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_ENCRYPT, toCkMechanism(mechanism), key);
   }
 
   /**
@@ -824,33 +1320,33 @@ public class Session {
    * @exception TokenException
    *              If encrypting failed.
    */
-  public int encrypt(byte[] in, int inOfs, int inLen,
-      byte[] out, int outOfs, int outLen) throws TokenException {
+  public int encrypt(final byte[] in, final int inOfs, final int inLen,
+      final byte[] out, final int outOfs, final int outLen)
+      throws TokenException {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
-    try {
-      if (encrypt0 != null) {
-        return (int) encrypt0.invoke(pkcs11Module,
-            sessionHandle, in, inOfs, inLen, out, outOfs, outLen);
-      } else if (encrypt1 != null) {
-        return (int) encrypt1.invoke(pkcs11Module,
-            sessionHandle, 0, in, inOfs, inLen, 0, out, outOfs, outLen);
-      } else {
-        throw new IllegalStateException("could not find C_ENCRYPT method");
-      }
-    } catch (IllegalAccessException ex) {
-      throw new TokenException("", ex);
-    } catch (InvocationTargetException ex) {
-      Throwable cause = ex.getCause();
-      if (cause instanceof sun.security.pkcs11.wrapper.PKCS11Exception) {
-        throw new PKCS11Exception(
-            ((sun.security.pkcs11.wrapper.PKCS11Exception) cause)
-                .getErrorCode());
-      } else if (cause instanceof RuntimeException) {
-        throw (RuntimeException) cause;
-      } else {
-        throw new TokenException("Error " + ex.getMessage(), ex);
-      }
+    if (encryptHandle == null) {
+      throw new IllegalStateException("could not find C_Encrypt method");
+    }
+
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return encrypt0(in, inOfs, inLen, out, outOfs, outLen);
+        }
+      });
+    }
+    return encrypt0(in, inOfs, inLen, out, outOfs, outLen);
+  }
+
+  private int encrypt0(byte[] in, int inOfs, int inLen,
+      byte[] out, int outOfs, int outLen) throws TokenException {
+    try {
+      return (int) encryptHandle.invokeExact(pkcs11Module,
+          sessionHandle, in, inOfs, inLen, out, outOfs, outLen);
+    } catch (Throwable th) {
+      throw toTokenException(th);
     }
   }
 
@@ -882,12 +1378,33 @@ public class Session {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
 
-    try {
-      return pkcs11Module.C_EncryptUpdate(sessionHandle, 0, in, inOfs,
-          inLen, 0, out, outOfs, outLen);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    return cryptUpdate(true, 0, in, inOfs, inLen, 0, out, outOfs, outLen);
+  }
+
+  /**
+   * Encrypts the remaining bytes of the input buffer in the same way as
+   * {@link #encryptUpdate(byte[], int, int, byte[], int, int)}, and writes
+   * the result to the output buffer. The position of the input buffer is set
+   * to its limit, the position of the output buffer is advanced by the
+   * returned length.
+   * <p>
+   * The addresses of direct buffers and the arrays of heap buffers are passed
+   * to the token without copying the data. On JDK 9 and later, the addresses
+   * are only accessible with
+   * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}; otherwise the
+   * content of direct buffers is copied.
+   *
+   * @param in
+   *          buffer containing the to-be-encrypted data
+   * @param out
+   *          buffer for the encrypted data
+   * @return the length of encrypted data for this update
+   * @exception TokenException
+   *              If encrypting the data failed.
+   */
+  public int encryptUpdate(ByteBuffer in, ByteBuffer out)
+      throws TokenException {
+    return cryptUpdate(true, in, out);
   }
 
   /**
@@ -910,12 +1427,22 @@ public class Session {
       throws TokenException {
     Util.requireNonNull("out", out);
 
-    try {
-      return pkcs11Module.C_EncryptFinal(sessionHandle, 0,
-          out, outOfs, outLen);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    return cryptFinal(true, 0, out, outOfs, outLen);
+  }
+
+  /**
+   * Finalizes an encryption operation in the same way as
+   * {@link #encryptFinal(byte[], int, int)}, and writes the result to the
+   * output buffer, whose position is advanced by the returned length.
+   *
+   * @param out
+   *          buffer for the encrypted data
+   * @return the length of the last part of the encrypted data
+   * @exception TokenException
+   *              If calculating the final result failed.
+   */
+  public int encryptFinal(ByteBuffer out) throws TokenException {
+    return cryptFinal(true, out);
   }
 
   /**
@@ -937,12 +1464,23 @@ public class Session {
    *              If initializing this operation failed.
    */
   public void decryptInit(Mechanism mechanism, Key key) throws TokenException {
-    try {
-      pkcs11Module.C_DecryptInit(sessionHandle, toCkMechanism(mechanism),
-          key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_DECRYPT, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new decryption operation with a prepared mechanism. See
+   * {@link #decryptInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The decryption key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void decryptInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_DECRYPT, toCkMechanism(mechanism), key);
   }
 
   /**
@@ -968,34 +1506,34 @@ public class Session {
    * @exception TokenException
    *              If decrypting failed.
    */
-  public int decrypt(byte[] in, int inOfs, int inLen,
-      byte[] out, int outOfs, int outLen) throws TokenException {
+  public int decrypt(final byte[] in, final int inOfs, final int inLen,
+      final byte[] out, final int outOfs, final int outLen)
+      throws TokenException {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
 
+    if (decryptHandle == null) {
+      throw new IllegalStateException("could not find C_Decrypt method");
+    }
+
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return decrypt0(in, inOfs, inLen, out, outOfs, outLen);
+        }
+      });
+    }
+    return decrypt0(in, inOfs, inLen, out, outOfs, outLen);
+  }
+
+  private int decrypt0(byte[] in, int inOfs, int inLen,
+      byte[] out, int outOfs, int outLen) throws TokenException {
     try {
-      if (decrypt0 != null) {
-        return (int) decrypt0.invoke(pkcs11Module,
-            sessionHandle, in, inOfs, inLen, out, outOfs, outLen);
-      } else if (decrypt1 != null) {
-        return (int) decrypt1.invoke(pkcs11Module,
-            sessionHandle, 0, in, inOfs, inLen, 0, out, outOfs, outLen);
-      } else {
-        throw new IllegalStateException("could not find C_DECRYPT method");
-      }
-    } catch (IllegalAccessException ex) {
-      throw new TokenException("", ex);
-    } catch (InvocationTargetException ex) {
-      Throwable cause = ex.getCause();
-      if (cause instanceof sun.security.pkcs11.wrapper.PKCS11Exception) {
-        throw new PKCS11Exception(
-            ((sun.security.pkcs11.wrapper.PKCS11Exception) cause)
-                .getErrorCode());
-      } else if (cause instanceof RuntimeException) {
-        throw (RuntimeException) cause;
-      } else {
-        throw new TokenException("Error " + ex.getMessage(), ex);
-      }
+      return (int) decryptHandle.invokeExact(pkcs11Module,
+          sessionHandle, in, inOfs, inLen, out, outOfs, outLen);
+    } catch (Throwable th) {
+      throw toTokenException(th);
     }
   }
 
@@ -1027,12 +1565,33 @@ public class Session {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
 
-    try {
-      return pkcs11Module.C_DecryptUpdate(sessionHandle, 0, in, inOfs,
-          inLen, 0, out, outOfs, outLen);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    return cryptUpdate(false, 0, in, inOfs, inLen, 0, out, outOfs, outLen);
+  }
+
+  /**
+   * Decrypts the remaining bytes of the input buffer in the same way as
+   * {@link #decryptUpdate(byte[], int, int, byte[], int, int)}, and writes
+   * the result to the output buffer. The position of the input buffer is set
+   * to its limit, the position of the output buffer is advanced by the
+   * returned length.
+   * <p>
+   * The addresses of direct buffers and the arrays of heap buffers are passed
+   * to the token without copying the data. On JDK 9 and later, the addresses
+   * are only accessible with
+   * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}; otherwise the
+   * content of direct buffers is copied.
+   *
+   * @param in
+   *          buffer containing the to-be-decrypted data
+   * @param out
+   *          buffer for the decrypted data
+   * @return the length of decrypted data for this update
+   * @exception TokenException
+   *              If decrypting the data failed.
+   */
+  public int decryptUpdate(ByteBuffer in, ByteBuffer out)
+      throws TokenException {
+    return cryptUpdate(false, in, out);
   }
 
   /**
@@ -1055,9 +1614,171 @@ public class Session {
       throws TokenException {
     Util.requireNonNull("out", out);
 
+    return cryptFinal(false, 0, out, outOfs, outLen);
+  }
+
+  /**
+   * Finalizes a decryption operation in the same way as
+   * {@link #decryptFinal(byte[], int, int)}, and writes the result to the
+   * output buffer, whose position is advanced by the returned length.
+   *
+   * @param out
+   *          buffer for the decrypted data
+   * @return the length of this last part of decrypted data
+   * @exception TokenException
+   *              If calculating the final result failed.
+   */
+  public int decryptFinal(ByteBuffer out) throws TokenException {
+    return cryptFinal(false, out);
+  }
+
+  private int cryptUpdate(boolean encrypt, ByteBuffer in, ByteBuffer out)
+      throws TokenException {
+    Util.requireNonNull("in", in);
+    Util.requireNonNull("out", out);
+    if (out.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+
+    final int inLen = in.remaining();
+    long inAddress = address(in);
+    byte[] inArray = null;
+    int inOfs;
+    if (inAddress != 0) {
+      inOfs = in.position();
+    } else if (in.hasArray()) {
+      inArray = in.array();
+      inOfs = in.arrayOffset() + in.position();
+    } else {
+      inArray = copyBuffer(true, inLen);
+      in.duplicate().get(inArray, 0, inLen);
+      inOfs = 0;
+    }
+
+    final int outLen = out.remaining();
+    long outAddress = address(out);
+    byte[] outArray = null;
+    int outOfs;
+    boolean copyOut = false;
+    if (outAddress != 0) {
+      outOfs = out.position();
+    } else if (out.hasArray()) {
+      outArray = out.array();
+      outOfs = out.arrayOffset() + out.position();
+    } else {
+      outArray = copyBuffer(false, outLen);
+      outOfs = 0;
+      copyOut = true;
+    }
+
+    int len;
     try {
-      return pkcs11Module.C_DecryptFinal(sessionHandle, 0,
-          out, outOfs, outLen);
+      len = cryptUpdate(encrypt, inAddress, inArray, inOfs, inLen,
+          outAddress, outArray, outOfs, outLen);
+      if (copyOut) {
+        out.put(outArray, 0, len);
+      } else {
+        out.position(out.position() + len);
+      }
+    } finally {
+      // the copies may contain plaintext
+      if (inArray != null && inArray == inCopyBuffer) {
+        Arrays.fill(inArray, 0, inLen, (byte) 0);
+      }
+      if (outArray != null && outArray == outCopyBuffer) {
+        Arrays.fill(outArray, 0, outLen, (byte) 0);
+      }
+    }
+
+    in.position(in.limit());
+    return len;
+  }
+
+  private int cryptUpdate(final boolean encrypt, final long inAddress,
+      final byte[] in, final int inOfs, final int inLen,
+      final long outAddress, final byte[] out, final int outOfs,
+      final int outLen) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return cryptUpdate0(encrypt, inAddress, in, inOfs, inLen,
+              outAddress, out, outOfs, outLen);
+        }
+      });
+    }
+    return cryptUpdate0(encrypt, inAddress, in, inOfs, inLen, outAddress,
+        out, outOfs, outLen);
+  }
+
+  private int cryptUpdate0(boolean encrypt, long inAddress, byte[] in,
+      int inOfs, int inLen, long outAddress, byte[] out, int outOfs,
+      int outLen) throws TokenException {
+    try {
+      return encrypt
+          ? pkcs11Module.C_EncryptUpdate(sessionHandle, inAddress, in,
+              inOfs, inLen, outAddress, out, outOfs, outLen)
+          : pkcs11Module.C_DecryptUpdate(sessionHandle, inAddress, in,
+              inOfs, inLen, outAddress, out, outOfs, outLen);
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      throw new PKCS11Exception(ex);
+    }
+  }
+
+  private int cryptFinal(boolean encrypt, ByteBuffer out)
+      throws TokenException {
+    Util.requireNonNull("out", out);
+    if (out.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+
+    final int outLen = out.remaining();
+    long outAddress = address(out);
+    byte[] outArray = null;
+    int outOfs;
+    boolean copyOut = false;
+    if (outAddress != 0) {
+      outOfs = out.position();
+    } else if (out.hasArray()) {
+      outArray = out.array();
+      outOfs = out.arrayOffset() + out.position();
+    } else {
+      outArray = new byte[outLen];
+      outOfs = 0;
+      copyOut = true;
+    }
+
+    int len = cryptFinal(encrypt, outAddress, outArray, outOfs, outLen);
+    if (copyOut) {
+      out.put(outArray, 0, len);
+    } else {
+      out.position(out.position() + len);
+    }
+    return len;
+  }
+
+  private int cryptFinal(final boolean encrypt, final long outAddress,
+      final byte[] out, final int outOfs, final int outLen)
+      throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return cryptFinal0(encrypt, outAddress, out, outOfs, outLen);
+        }
+      });
+    }
+    return cryptFinal0(encrypt, outAddress, out, outOfs, outLen);
+  }
+
+  private int cryptFinal0(boolean encrypt, long outAddress, byte[] out,
+      int outOfs, int outLen) throws TokenException {
+    try {
+      return encrypt
+          ? pkcs11Module.C_EncryptFinal(sessionHandle, outAddress, out,
+              outOfs, outLen)
+          : pkcs11Module.C_DecryptFinal(sessionHandle, outAddress, out,
+              outOfs, outLen);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
@@ -1078,11 +1799,20 @@ public class Session {
    *              If initializing this operation failed.
    */
   public void digestInit(Mechanism mechanism) throws TokenException {
-    try {
-      pkcs11Module.C_DigestInit(sessionHandle, toCkMechanism(mechanism));
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_DIGEST, toCkMechanism(mechanism), null);
+  }
+
+  /**
+   * Initializes a new digesting operation with a prepared mechanism. See
+   * {@link #digestInit(Mechanism)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void digestInit(PreparedMechanism mechanism) throws TokenException {
+    init(OP_DIGEST, toCkMechanism(mechanism), null);
   }
 
   /**
@@ -1134,15 +1864,31 @@ public class Session {
    * @throws TokenException
    *              If digesting the data failed.
    */
-  public int digestSingle(Mechanism mechanism, byte[] in, int inOfs,
-      int inLen, byte[] digest, int digestOfs, int digestLen)
-      throws TokenException {
+  public int digestSingle(Mechanism mechanism, final byte[] in,
+      final int inOfs, final int inLen, final byte[] digest,
+      final int digestOfs, final int digestLen) throws TokenException {
     Util.requireNonNull("in", in);
     Util.requireNonNull("digest", digest);
 
+    final CK_MECHANISM ckMechanism = toCkMechanism(mechanism);
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return digestSingle0(ckMechanism, in, inOfs, inLen, digest,
+              digestOfs, digestLen);
+        }
+      });
+    }
+    return digestSingle0(ckMechanism, in, inOfs, inLen, digest, digestOfs,
+        digestLen);
+  }
+
+  private int digestSingle0(CK_MECHANISM ckMechanism, byte[] in, int inOfs,
+      int inLen, byte[] digest, int digestOfs, int digestLen)
+      throws TokenException {
     try {
-      return pkcs11Module.C_DigestSingle(sessionHandle,
-          toCkMechanism(mechanism),
+      return pkcs11Module.C_DigestSingle(sessionHandle, ckMechanism,
           in, inOfs, inLen, digest, digestOfs, digestLen);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
@@ -1169,11 +1915,27 @@ public class Session {
       throws TokenException {
     Util.requireNonNull("part", part);
 
-    try {
-      pkcs11Module.C_DigestUpdate(sessionHandle, 0, part, partOfs, partLen);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    update(OP_DIGEST, 0, part, partOfs, partLen);
+  }
+
+  /**
+   * Digests the remaining bytes of the buffer in the same way as
+   * {@link #digestUpdate(byte[], int, int)}. The position of the buffer is
+   * set to its limit.
+   * <p>
+   * The address of a direct buffer and the array of a heap buffer are passed
+   * to the token without copying the data. On JDK 9 and later, the address
+   * is only accessible with
+   * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}; otherwise the
+   * content of a direct buffer is copied.
+   *
+   * @param part
+   *          buffer containing the to-be-digested data
+   * @exception TokenException
+   *              If digesting the data failed.
+   */
+  public void digestUpdate(ByteBuffer part) throws TokenException {
+    update(OP_DIGEST, Util.requireNonNull("part", part));
   }
 
   /**
@@ -1186,11 +1948,25 @@ public class Session {
    * @exception TokenException
    *              If digesting the key failed.
    */
-  public void digestKey(SecretKey key) throws TokenException {
+  public void digestKey(final SecretKey key) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      offload(new NativeCallExecutor.NativeCall<Void>() {
+        @Override
+        public Void call() throws TokenException {
+          digestKey0(key);
+          return null;
+        }
+      });
+    } else {
+      digestKey0(key);
+    }
+  }
+
+  private void digestKey0(SecretKey key) throws TokenException {
     try {
       pkcs11Module.C_DigestKey(sessionHandle, key.getObjectHandle());
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
+      throw keyException(ex, key);
     }
   }
 
@@ -1211,10 +1987,23 @@ public class Session {
    * @exception TokenException
    *              If calculating the final message digest failed.
    */
-  public int digestFinal(byte[] digest, int digestOfs, int digestLen)
-      throws TokenException {
+  public int digestFinal(final byte[] digest, final int digestOfs,
+      final int digestLen) throws TokenException {
     Util.requireNonNull("digest", digest);
 
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return digestFinal0(digest, digestOfs, digestLen);
+        }
+      });
+    }
+    return digestFinal0(digest, digestOfs, digestLen);
+  }
+
+  private int digestFinal0(byte[] digest, int digestOfs, int digestLen)
+      throws TokenException {
     try {
       return pkcs11Module.C_DigestFinal(sessionHandle,
           digest, digestOfs, digestLen);
@@ -1243,12 +2032,23 @@ public class Session {
    *              If initializing this operation failed.
    */
   public void signInit(Mechanism mechanism, Key key) throws TokenException {
-    try {
-      pkcs11Module.C_SignInit(sessionHandle, toCkMechanism(mechanism),
-          key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_SIGN, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new signing operation with a prepared mechanism. See
+   * {@link #signInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The signing key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void signInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_SIGN, toCkMechanism(mechanism), key);
   }
 
   /**
@@ -1263,9 +2063,21 @@ public class Session {
    * @exception TokenException
    *              If signing the data failed.
    */
-  public byte[] sign(byte[] data) throws TokenException {
+  public byte[] sign(final byte[] data) throws TokenException {
     Util.requireNonNull("data", data);
 
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<byte[]>() {
+        @Override
+        public byte[] call() throws TokenException {
+          return sign0(data);
+        }
+      });
+    }
+    return sign0(data);
+  }
+
+  private byte[] sign0(byte[] data) throws TokenException {
     try {
       return pkcs11Module.C_Sign(sessionHandle, data);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
@@ -1293,11 +2105,27 @@ public class Session {
       throws TokenException {
     Util.requireNonNull("in", in);
 
-    try {
-      pkcs11Module.C_SignUpdate(sessionHandle, 0, in, inOfs, inLen);
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    update(OP_SIGN, 0, in, inOfs, inLen);
+  }
+
+  /**
+   * Feeds the remaining bytes of the buffer into the signing operation in the
+   * same way as {@link #signUpdate(byte[], int, int)}. The position of the
+   * buffer is set to its limit.
+   * <p>
+   * The address of a direct buffer and the array of a heap buffer are passed
+   * to the token without copying the data. On JDK 9 and later, the address
+   * is only accessible with
+   * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}; otherwise the
+   * content of a direct buffer is copied.
+   *
+   * @param in
+   *          buffer containing the to-be-signed data
+   * @exception TokenException
+   *              If signing the data failed.
+   */
+  public void signUpdate(ByteBuffer in) throws TokenException {
+    update(OP_SIGN, Util.requireNonNull("in", in));
   }
 
   /**
@@ -1313,7 +2141,19 @@ public class Session {
    * @exception TokenException
    *              If calculating the final signature value failed.
    */
-  public byte[] signFinal(int expectedLen) throws TokenException {
+  public byte[] signFinal(final int expectedLen) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<byte[]>() {
+        @Override
+        public byte[] call() throws TokenException {
+          return signFinal0(expectedLen);
+        }
+      });
+    }
+    return signFinal0(expectedLen);
+  }
+
+  private byte[] signFinal0(int expectedLen) throws TokenException {
     try {
       return pkcs11Module.C_SignFinal(sessionHandle, expectedLen);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
@@ -1322,37 +2162,177 @@ public class Session {
   }
 
   /**
-   * Initializes a new signing operation for signing with recovery. The
-   * application must call this method before calling signRecover. Before
-   * initializing a new operation, any currently pending operation must be
-   * finalized using the appropriate *Final method (e.g. digestFinal()). There
-   * are exceptions for dual-function operations. This method requires the
-   * mechanism to use for signing and the key for this operation. The key must
-   * have set its sign-recover flag. For the mechanism the application may use
-   * a constant defined in the Mechanism class. Notice that the key and the
-   * mechanism must be compatible; i.e. you cannot use a DES key with the RSA
-   * mechanism.
+   * Signs each of the given data with the same key. Each signature is
+   * calculated by its own single-part operation with the prepared mechanism.
+   * A failed signature does not abort the batch: its slot in signatures is
+   * set to null, and the error is stored in errors. An unchecked exception
+   * is stored wrapped in a TokenException.
    *
    * @param mechanism
-   *          The mechanism to use; e.g. Mechanism.RSA_9796.
+   *          The signature mechanism prepared by {@link #prepare(Mechanism)}.
+   *          Must not be null.
    * @param key
-   *          The signing key to use.
-   * @exception TokenException
-   *              If initializing this operation failed.
-   */
-  public void signRecoverInit(Mechanism mechanism, Key key)
-      throws TokenException {
-    try {
-      pkcs11Module.C_SignRecoverInit(sessionHandle,
-          toCkMechanism(mechanism), key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
+   *          The signing key. Must not be null.
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @param signatures
+   *          Receives the signatures, in the order of the data. Must not be
+   *          null, and must not be shorter than data.
+   * @param errors
+   *          Receives the errors of failed signatures, and null for the
+   *          others, in the order of the data. May be null; otherwise it must
+   *          not be shorter than data.
+   * @return the number of failed signatures.
+   */
+  public int signAll(PreparedMechanism mechanism, Key key, List<byte[]> data,
+      byte[][] signatures, TokenException[] errors) {
+    Util.requireNonNull("data", data);
+    checkBatchArrays(data.size(), signatures, errors);
+    return signAll(mechanism, key, data, 0, data.size(), signatures, errors);
+  }
+
+  int signAll(PreparedMechanism mechanism, Key key, List<byte[]> data,
+      int from, int to, byte[][] signatures, TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    int failures = 0;
+    for (int i = from; i < to; i++) {
+      try {
+        signInit(mechanism, key);
+        signatures[i] = sign(data.get(i));
+        if (errors != null) {
+          errors[i] = null;
+        }
+      } catch (TokenException ex) {
+        failures++;
+        signatures[i] = null;
+        if (errors != null) {
+          errors[i] = ex;
+        }
+      } catch (RuntimeException ex) {
+        failures++;
+        signatures[i] = null;
+        if (errors != null) {
+          errors[i] = new TokenException(ex.getMessage(), ex);
+        }
+      }
     }
+    return failures;
   }
 
   /**
-   * Signs the given data with the key and mechanism given to the
-   * signRecoverInit method. This method finalizes the current sign-recover
+   * Signs the given data with each of the given keys. See
+   * {@link #signAll(PreparedMechanism, Key, List, byte[][],
+   * TokenException[])}.
+   *
+   * @param mechanism
+   *          The signature mechanism prepared by {@link #prepare(Mechanism)}.
+   *          Must not be null.
+   * @param keys
+   *          The signing keys. Must not be null.
+   * @param data
+   *          The to-be-signed data. Must not be null.
+   * @param signatures
+   *          Receives the signatures, in the order of the keys. Must not be
+   *          null, and must not be shorter than keys.
+   * @param errors
+   *          Receives the errors of failed signatures, and null for the
+   *          others, in the order of the keys. May be null; otherwise it must
+   *          not be shorter than keys.
+   * @return the number of failed signatures.
+   */
+  public int signWithAll(PreparedMechanism mechanism,
+      List<? extends Key> keys, byte[] data, byte[][] signatures,
+      TokenException[] errors) {
+    Util.requireNonNull("keys", keys);
+    checkBatchArrays(keys.size(), signatures, errors);
+    return signWithAll(mechanism, keys, data, 0, keys.size(), signatures,
+        errors);
+  }
+
+  int signWithAll(PreparedMechanism mechanism, List<? extends Key> keys,
+      byte[] data, int from, int to, byte[][] signatures,
+      TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("data", data);
+    int failures = 0;
+    for (int i = from; i < to; i++) {
+      try {
+        signInit(mechanism, keys.get(i));
+        signatures[i] = sign(data);
+        if (errors != null) {
+          errors[i] = null;
+        }
+      } catch (TokenException ex) {
+        failures++;
+        signatures[i] = null;
+        if (errors != null) {
+          errors[i] = ex;
+        }
+      } catch (RuntimeException ex) {
+        failures++;
+        signatures[i] = null;
+        if (errors != null) {
+          errors[i] = new TokenException(ex.getMessage(), ex);
+        }
+      }
+    }
+    return failures;
+  }
+
+  static void checkBatchArrays(int size, byte[][] signatures,
+      TokenException[] errors) {
+    Util.requireNonNull("signatures", signatures);
+    if (signatures.length < size
+        || (errors != null && errors.length < size)) {
+      throw new IllegalArgumentException(
+          "result arrays are shorter than the batch");
+    }
+  }
+
+  /**
+   * Initializes a new signing operation for signing with recovery. The
+   * application must call this method before calling signRecover. Before
+   * initializing a new operation, any currently pending operation must be
+   * finalized using the appropriate *Final method (e.g. digestFinal()). There
+   * are exceptions for dual-function operations. This method requires the
+   * mechanism to use for signing and the key for this operation. The key must
+   * have set its sign-recover flag. For the mechanism the application may use
+   * a constant defined in the Mechanism class. Notice that the key and the
+   * mechanism must be compatible; i.e. you cannot use a DES key with the RSA
+   * mechanism.
+   *
+   * @param mechanism
+   *          The mechanism to use; e.g. Mechanism.RSA_9796.
+   * @param key
+   *          The signing key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void signRecoverInit(Mechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_SIGN_RECOVER, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new signing operation for signing with recovery with a
+   * prepared mechanism. See {@link #signRecoverInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The signing key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void signRecoverInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_SIGN_RECOVER, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Signs the given data with the key and mechanism given to the
+   * signRecoverInit method. This method finalizes the current sign-recover
    * operation; there is no equivalent method to signUpdate for signing with
    * recovery.
    *
@@ -1372,11 +2352,25 @@ public class Session {
    * @exception TokenException
    *              If signing the data failed.
    */
-  public int signRecover(byte[] in, int inOfs,
-      int inLen, byte[] out, int outOfs, int outLen) throws TokenException {
+  public int signRecover(final byte[] in, final int inOfs, final int inLen,
+      final byte[] out, final int outOfs, final int outLen)
+      throws TokenException {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
 
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return signRecover0(in, inOfs, inLen, out, outOfs, outLen);
+        }
+      });
+    }
+    return signRecover0(in, inOfs, inLen, out, outOfs, outLen);
+  }
+
+  private int signRecover0(byte[] in, int inOfs, int inLen, byte[] out,
+      int outOfs, int outLen) throws TokenException {
     try {
       return pkcs11Module.C_SignRecover(sessionHandle, in, inOfs, inLen,
           out, outOfs, outLen);
@@ -1405,12 +2399,23 @@ public class Session {
    *              If initializing this operation failed.
    */
   public void verifyInit(Mechanism mechanism, Key key) throws TokenException {
-    try {
-      pkcs11Module.C_VerifyInit(sessionHandle, toCkMechanism(mechanism),
-          key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_VERIFY, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new verification operation with a prepared mechanism. See
+   * {@link #verifyInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The verification key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void verifyInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_VERIFY, toCkMechanism(mechanism), key);
   }
 
   /**
@@ -1429,9 +2434,24 @@ public class Session {
    *              If verifying the signature fails. This is also the case, if
    *              the signature is forged.
    */
-  public void verify(byte[] data, byte[] signature) throws TokenException {
+  public void verify(final byte[] data, final byte[] signature)
+      throws TokenException {
     Util.requireNonNull("signature", signature);
 
+    if (token.shallOffloadNativeCalls()) {
+      offload(new NativeCallExecutor.NativeCall<Void>() {
+        @Override
+        public Void call() throws TokenException {
+          verify0(data, signature);
+          return null;
+        }
+      });
+    } else {
+      verify0(data, signature);
+    }
+  }
+
+  private void verify0(byte[] data, byte[] signature) throws TokenException {
     try {
       pkcs11Module.C_Verify(sessionHandle, data, signature);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
@@ -1458,8 +2478,109 @@ public class Session {
       throws TokenException {
     Util.requireNonNull("in", in);
 
+    update(OP_VERIFY, 0, in, inOfs, inLen);
+  }
+
+  /**
+   * Feeds the remaining bytes of the buffer into the verification operation
+   * in the same way as {@link #verifyUpdate(byte[], int, int)}. The position
+   * of the buffer is set to its limit.
+   * <p>
+   * The address of a direct buffer and the array of a heap buffer are passed
+   * to the token without copying the data. On JDK 9 and later, the address
+   * is only accessible with
+   * {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED}; otherwise the
+   * content of a direct buffer is copied.
+   *
+   * @param in
+   *          buffer containing the to-be-verified data
+   * @exception TokenException
+   *              If verifying (e.g. digesting) the data failed.
+   */
+  public void verifyUpdate(ByteBuffer in) throws TokenException {
+    update(OP_VERIFY, Util.requireNonNull("in", in));
+  }
+
+  private void update(int op, ByteBuffer in) throws TokenException {
+    final int len = in.remaining();
+    long address = address(in);
+    if (address != 0) {
+      // the native update functions ignore the offset of direct data
+      update(op, address + in.position(), null, 0, len);
+    } else if (in.hasArray()) {
+      update(op, 0, in.array(), in.arrayOffset() + in.position(), len);
+    } else {
+      // e.g. read-only heap buffer, or direct buffer without address
+      ByteBuffer src = in.duplicate();
+      int maxChunkLen = Math.min(len, MAX_COPY_BUFFER_SIZE);
+      byte[] chunk = copyBuffer(true, maxChunkLen);
+      try {
+        while (src.hasRemaining()) {
+          int chunkLen = Math.min(MAX_COPY_BUFFER_SIZE, src.remaining());
+          src.get(chunk, 0, chunkLen);
+          update(op, 0, chunk, 0, chunkLen);
+        }
+      } finally {
+        // the reused copy may contain plaintext
+        Arrays.fill(chunk, 0, maxChunkLen, (byte) 0);
+      }
+    }
+    in.position(in.limit());
+  }
+
+  /**
+   * Returns an array of at least the given length for copying the content of
+   * a buffer. Arrays up to {@link #MAX_COPY_BUFFER_SIZE} are kept and reused
+   * by the next operations of this session.
+   *
+   * @param input
+   *          True for the input data, false for the output data.
+   * @param len
+   *          The required length.
+   * @return the array.
+   */
+  private byte[] copyBuffer(boolean input, int len) {
+    byte[] buffer = input ? inCopyBuffer : outCopyBuffer;
+    if (buffer != null && buffer.length >= len) {
+      return buffer;
+    }
+
+    buffer = new byte[len];
+    if (len <= MAX_COPY_BUFFER_SIZE) {
+      if (input) {
+        inCopyBuffer = buffer;
+      } else {
+        outCopyBuffer = buffer;
+      }
+    }
+    return buffer;
+  }
+
+  private void update(final int op, final long address, final byte[] in,
+      final int inOfs, final int inLen) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      offload(new NativeCallExecutor.NativeCall<Void>() {
+        @Override
+        public Void call() throws TokenException {
+          update0(op, address, in, inOfs, inLen);
+          return null;
+        }
+      });
+    } else {
+      update0(op, address, in, inOfs, inLen);
+    }
+  }
+
+  private void update0(int op, long address, byte[] in, int inOfs,
+      int inLen) throws TokenException {
     try {
-      pkcs11Module.C_VerifyUpdate(sessionHandle, 0, in, inOfs, inLen);
+      if (op == OP_DIGEST) {
+        pkcs11Module.C_DigestUpdate(sessionHandle, address, in, inOfs, inLen);
+      } else if (op == OP_SIGN) {
+        pkcs11Module.C_SignUpdate(sessionHandle, address, in, inOfs, inLen);
+      } else {
+        pkcs11Module.C_VerifyUpdate(sessionHandle, address, in, inOfs, inLen);
+      }
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
@@ -1480,9 +2601,23 @@ public class Session {
    *              If verifying the signature fails. This is also the case, if
    *              the signature is forged.
    */
-  public void verifyFinal(byte[] signature) throws TokenException {
+  public void verifyFinal(final byte[] signature) throws TokenException {
     Util.requireNonNull("signature", signature);
 
+    if (token.shallOffloadNativeCalls()) {
+      offload(new NativeCallExecutor.NativeCall<Void>() {
+        @Override
+        public Void call() throws TokenException {
+          verifyFinal0(signature);
+          return null;
+        }
+      });
+    } else {
+      verifyFinal0(signature);
+    }
+  }
+
+  private void verifyFinal0(byte[] signature) throws TokenException {
     try {
       pkcs11Module.C_VerifyFinal(sessionHandle, signature);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
@@ -1490,6 +2625,88 @@ public class Session {
     }
   }
 
+  /**
+   * Verifies each of the given signatures with the same key. Each signature
+   * is verified by its own single-part operation with the prepared
+   * mechanism. An invalid signature gives false; other errors do not abort
+   * the batch: they give false too, and are stored in errors, an unchecked
+   * exception wrapped in a TokenException.
+   *
+   * @param mechanism
+   *          The signature mechanism prepared by {@link #prepare(Mechanism)}.
+   *          Must not be null.
+   * @param key
+   *          The verification key. Must not be null.
+   * @param data
+   *          The signed data. Must not be null.
+   * @param signatures
+   *          The signatures, in the order of the data. Must not be null.
+   * @param results
+   *          Receives whether the signatures are valid, in the order of the
+   *          data. Must not be null, and must not be shorter than data.
+   * @param errors
+   *          Receives the errors other than invalid signatures, and null for
+   *          the others, in the order of the data. May be null; otherwise it
+   *          must not be shorter than data.
+   * @return the number of invalid or failed verifications.
+   */
+  public int verifyAll(PreparedMechanism mechanism, Key key,
+      List<byte[]> data, List<byte[]> signatures, boolean[] results,
+      TokenException[] errors) {
+    Util.requireNonNull("data", data);
+    Util.requireNonNull("signatures", signatures);
+    Util.requireNonNull("results", results);
+    int size = data.size();
+    if (signatures.size() != size) {
+      throw new IllegalArgumentException(
+          "data and signatures differ in size");
+    }
+    if (results.length < size || (errors != null && errors.length < size)) {
+      throw new IllegalArgumentException(
+          "result arrays are shorter than the batch");
+    }
+    return verifyAll(mechanism, key, data, signatures, 0, size, results,
+        errors);
+  }
+
+  int verifyAll(PreparedMechanism mechanism, Key key, List<byte[]> data,
+      List<byte[]> signatures, int from, int to, boolean[] results,
+      TokenException[] errors) {
+    Util.requireNonNull("mechanism", mechanism);
+    Util.requireNonNull("key", key);
+    int failures = 0;
+    for (int i = from; i < to; i++) {
+      results[i] = false;
+      if (errors != null) {
+        // an invalid signature is not reported as error
+        errors[i] = null;
+      }
+      try {
+        verifyInit(mechanism, key);
+        verify(data.get(i), signatures.get(i));
+        results[i] = true;
+      } catch (PKCS11Exception ex) {
+        failures++;
+        long code = ex.getErrorCode();
+        if (errors != null && code != PKCS11Constants.CKR_SIGNATURE_INVALID
+            && code != PKCS11Constants.CKR_SIGNATURE_LEN_RANGE) {
+          errors[i] = ex;
+        }
+      } catch (TokenException ex) {
+        failures++;
+        if (errors != null) {
+          errors[i] = ex;
+        }
+      } catch (RuntimeException ex) {
+        failures++;
+        if (errors != null) {
+          errors[i] = new TokenException(ex.getMessage(), ex);
+        }
+      }
+    }
+    return failures;
+  }
+
   /**
    * Initializes a new verification operation for verification with data
    * recovery. The application must call this method before calling
@@ -1510,12 +2727,24 @@ public class Session {
    */
   public void verifyRecoverInit(Mechanism mechanism, Key key)
       throws TokenException {
-    try {
-      pkcs11Module.C_VerifyRecoverInit(sessionHandle,
-          toCkMechanism(mechanism), key.getObjectHandle());
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
-    }
+    init(OP_VERIFY_RECOVER, toCkMechanism(mechanism), key);
+  }
+
+  /**
+   * Initializes a new verification operation for verification with
+   * recovery with a prepared mechanism. See
+   * {@link #verifyRecoverInit(Mechanism, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param key
+   *          The verification key to use.
+   * @exception TokenException
+   *              If initializing this operation failed.
+   */
+  public void verifyRecoverInit(PreparedMechanism mechanism, Key key)
+      throws TokenException {
+    init(OP_VERIFY_RECOVER, toCkMechanism(mechanism), key);
   }
 
   /**
@@ -1540,11 +2769,25 @@ public class Session {
    * @exception TokenException
    *              If signing the data failed.
    */
-  public int verifyRecover(byte[] in, int inOfs,
-      int inLen, byte[] out, int outOfs, int outLen) throws TokenException {
+  public int verifyRecover(final byte[] in, final int inOfs, final int inLen,
+      final byte[] out, final int outOfs, final int outLen)
+      throws TokenException {
     Util.requireNonNull("in", in);
     Util.requireNonNull("out", out);
 
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Integer>() {
+        @Override
+        public Integer call() throws TokenException {
+          return verifyRecover0(in, inOfs, inLen, out, outOfs, outLen);
+        }
+      });
+    }
+    return verifyRecover0(in, inOfs, inLen, out, outOfs, outLen);
+  }
+
+  private int verifyRecover0(byte[] in, int inOfs, int inLen, byte[] out,
+      int outOfs, int outLen) throws TokenException {
     try {
       return pkcs11Module.C_VerifyRecover(sessionHandle,
           in, inOfs, inLen, out, outOfs, outLen);
@@ -1649,17 +2892,115 @@ public class Session {
    */
   public PKCS11Object generateKey(Mechanism mechanism, PKCS11Object template)
       throws TokenException {
-    CK_ATTRIBUTE[] ckAttributes = getSetAttributes(template);
+    return generateKey(toCkMechanism(mechanism), getSetAttributes(template));
+  }
+
+  /**
+   * Generate a new secret key or a set of domain parameters from a compiled
+   * template. See {@link #generateKey(Mechanism, PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism to generate a key for; e.g. Mechanism.DES to
+   *          generate a DES key.
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return The newly generated secret key or domain parameters.
+   * @exception TokenException
+   *              If generating a new secret key or domain parameters failed.
+   */
+  public PKCS11Object generateKeyCompiled(Mechanism mechanism,
+      CompiledTemplate template) throws TokenException {
+    return generateKey(toCkMechanism(mechanism), toCkAttributes(template));
+  }
+
+  /**
+   * Generate a new secret key or a set of domain parameters with a prepared
+   * mechanism from a compiled template. See
+   * {@link #generateKey(Mechanism, PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return The newly generated secret key or domain parameters.
+   * @exception TokenException
+   *              If generating a new secret key or domain parameters failed.
+   */
+  public PKCS11Object generateKeyCompiled(PreparedMechanism mechanism,
+      CompiledTemplate template) throws TokenException {
+    return generateKey(toCkMechanism(mechanism), toCkAttributes(template));
+  }
+
+  private PKCS11Object generateKey(CK_MECHANISM ckMechanism,
+      CK_ATTRIBUTE[] ckAttributes) throws TokenException {
+    long objectHandle = generateKeyHandle(ckMechanism, ckAttributes);
+    return PKCS11Object.getInstance(this, objectHandle);
+  }
+
+  /**
+   * Generate a new secret key or a set of domain parameters, and returns
+   * only the handle of the new object. In contrast to
+   * {@link #generateKey(Mechanism, PKCS11Object)}, no attribute is read from
+   * the token.
+   *
+   * @param mechanism
+   *          The mechanism to generate a key for; e.g. Mechanism.DES to
+   *          generate a DES key.
+   * @param template
+   *          The template for the new key or domain parameters; e.g. a
+   *          DESSecretKey object which has set certain attributes.
+   * @return The handle of the newly generated secret key or domain
+   *         parameters.
+   * @exception TokenException
+   *              If generating a new secret key or domain parameters failed.
+   */
+  public long generateKeyHandle(Mechanism mechanism, PKCS11Object template)
+      throws TokenException {
+    return generateKeyHandle(toCkMechanism(mechanism),
+        getSetAttributes(template));
+  }
+
+  /**
+   * Generate a new secret key or a set of domain parameters with a prepared
+   * mechanism from a compiled template, and returns only the handle of the
+   * new object.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param template
+   *          The template compiled by {@link #compileTemplate(PKCS11Object)}.
+   * @return The handle of the newly generated secret key or domain
+   *         parameters.
+   * @exception TokenException
+   *              If generating a new secret key or domain parameters failed.
+   */
+  public long generateKeyHandleCompiled(PreparedMechanism mechanism,
+      CompiledTemplate template) throws TokenException {
+    return generateKeyHandle(toCkMechanism(mechanism),
+        toCkAttributes(template));
+  }
+
+  private long generateKeyHandle(final CK_MECHANISM ckMechanism,
+      final CK_ATTRIBUTE[] ckAttributes) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Long>() {
+        @Override
+        public Long call() throws TokenException {
+          return generateKeyHandle0(ckMechanism, ckAttributes);
+        }
+      });
+    }
+    return generateKeyHandle0(ckMechanism, ckAttributes);
+  }
 
-    long objectHandle;
+  private long generateKeyHandle0(CK_MECHANISM ckMechanism,
+      CK_ATTRIBUTE[] ckAttributes) throws TokenException {
     try {
-      objectHandle = pkcs11Module.C_GenerateKey(sessionHandle,
-          toCkMechanism(mechanism), ckAttributes);
+      return newObjectCreated(pkcs11Module.C_GenerateKey(sessionHandle,
+          ckMechanism, ckAttributes), ckAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
-
-    return PKCS11Object.getInstance(this, objectHandle);
   }
 
   /**
@@ -1672,37 +3013,167 @@ public class Session {
    *          The mechanism to generate a key for; e.g. Mechanism.RSA to
    *          generate a new RSA key-pair.
    * @param publicKeyTemplate
-   *          The template for the new public key part; e.g. a RSAPublicKey
-   *          object which has set certain attributes (e.g. public exponent
-   *          and verify).
+   *          The template for the new public key part; e.g. a RSAPublicKey
+   *          object which has set certain attributes (e.g. public exponent
+   *          and verify).
+   * @param privateKeyTemplate
+   *          The template for the new private key part; e.g. a RSAPrivateKey
+   *          object which has set certain attributes (e.g. sign and decrypt).
+   * @return The newly generated key-pair.
+   * @exception TokenException
+   *              If generating a new key-pair failed.
+   */
+  public KeyPair generateKeyPair(Mechanism mechanism,
+      PKCS11Object publicKeyTemplate, PKCS11Object privateKeyTemplate)
+      throws TokenException {
+    return generateKeyPair(toCkMechanism(mechanism),
+        getSetAttributes(publicKeyTemplate),
+        getSetAttributes(privateKeyTemplate));
+  }
+
+  /**
+   * Generate a new public key - private key key-pair from compiled templates.
+   * See {@link #generateKeyPair(Mechanism, PKCS11Object, PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism to generate a key for; e.g. Mechanism.RSA to
+   *          generate a new RSA key-pair.
+   * @param publicKeyTemplate
+   *          The template for the new public key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @param privateKeyTemplate
+   *          The template for the new private key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return The newly generated key-pair.
+   * @exception TokenException
+   *              If generating a new key-pair failed.
+   */
+  public KeyPair generateKeyPairCompiled(Mechanism mechanism,
+      CompiledTemplate publicKeyTemplate, CompiledTemplate privateKeyTemplate)
+      throws TokenException {
+    return generateKeyPair(toCkMechanism(mechanism),
+        toCkAttributes(publicKeyTemplate), toCkAttributes(privateKeyTemplate));
+  }
+
+  /**
+   * Generate a new public key - private key key-pair with a prepared mechanism
+   * from compiled templates. See
+   * {@link #generateKeyPair(Mechanism, PKCS11Object, PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param publicKeyTemplate
+   *          The template for the new public key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @param privateKeyTemplate
+   *          The template for the new private key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return The newly generated key-pair.
+   * @exception TokenException
+   *              If generating a new key-pair failed.
+   */
+  public KeyPair generateKeyPairCompiled(PreparedMechanism mechanism,
+      CompiledTemplate publicKeyTemplate, CompiledTemplate privateKeyTemplate)
+      throws TokenException {
+    return generateKeyPair(toCkMechanism(mechanism),
+        toCkAttributes(publicKeyTemplate), toCkAttributes(privateKeyTemplate));
+  }
+
+  private KeyPair generateKeyPair(CK_MECHANISM ckMechanism,
+      CK_ATTRIBUTE[] ckPublicKeyAttributes,
+      CK_ATTRIBUTE[] ckPrivateKeyAttributes) throws TokenException {
+    long[] objectHandles = generateKeyPairHandles(ckMechanism,
+        ckPublicKeyAttributes, ckPrivateKeyAttributes);
+
+    ObjectReader reader = module.getObjectReader();
+    PublicKey publicKey = (PublicKey) reader.readObject(this,
+        objectHandles[0], PKCS11Constants.CKO_PUBLIC_KEY);
+    PrivateKey privateKey = (PrivateKey) reader.readObject(this,
+        objectHandles[1], PKCS11Constants.CKO_PRIVATE_KEY);
+
+    return new KeyPair(publicKey, privateKey);
+  }
+
+  /**
+   * Generate a new public key - private key key-pair, and returns only the
+   * handles of the new objects. In contrast to
+   * {@link #generateKeyPair(Mechanism, PKCS11Object, PKCS11Object)}, no
+   * attribute is read from the token.
+   *
+   * @param mechanism
+   *          The mechanism to generate a key for; e.g. Mechanism.RSA to
+   *          generate a new RSA key-pair.
+   * @param publicKeyTemplate
+   *          The template for the new public key part.
+   * @param privateKeyTemplate
+   *          The template for the new private key part.
+   * @return An array of length 2, with the handle of the public key at
+   *         index 0 and the handle of the private key at index 1.
+   * @exception TokenException
+   *              If generating a new key-pair failed.
+   */
+  public long[] generateKeyPairHandles(Mechanism mechanism,
+      PKCS11Object publicKeyTemplate, PKCS11Object privateKeyTemplate)
+      throws TokenException {
+    return generateKeyPairHandles(toCkMechanism(mechanism),
+        getSetAttributes(publicKeyTemplate),
+        getSetAttributes(privateKeyTemplate));
+  }
+
+  /**
+   * Generate a new public key - private key key-pair with a prepared mechanism
+   * from compiled templates, and returns only the handles of the new objects.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param publicKeyTemplate
+   *          The template for the new public key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
    * @param privateKeyTemplate
-   *          The template for the new private key part; e.g. a RSAPrivateKey
-   *          object which has set certain attributes (e.g. sign and decrypt).
-   * @return The newly generated key-pair.
+   *          The template for the new private key part, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return An array of length 2, with the handle of the public key at
+   *         index 0 and the handle of the private key at index 1.
    * @exception TokenException
    *              If generating a new key-pair failed.
    */
-  public KeyPair generateKeyPair(Mechanism mechanism,
-      PKCS11Object publicKeyTemplate, PKCS11Object privateKeyTemplate)
+  public long[] generateKeyPairHandlesCompiled(PreparedMechanism mechanism,
+      CompiledTemplate publicKeyTemplate, CompiledTemplate privateKeyTemplate)
       throws TokenException {
-    CK_ATTRIBUTE[] ckPublicKeyAttributes = getSetAttributes(publicKeyTemplate);
-    CK_ATTRIBUTE[] ckPrivateKeyAttributes = getSetAttributes(privateKeyTemplate);
+    return generateKeyPairHandles(toCkMechanism(mechanism),
+        toCkAttributes(publicKeyTemplate), toCkAttributes(privateKeyTemplate));
+  }
+
+  private long[] generateKeyPairHandles(final CK_MECHANISM ckMechanism,
+      final CK_ATTRIBUTE[] ckPublicKeyAttributes,
+      final CK_ATTRIBUTE[] ckPrivateKeyAttributes) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<long[]>() {
+        @Override
+        public long[] call() throws TokenException {
+          return generateKeyPairHandles0(ckMechanism, ckPublicKeyAttributes,
+              ckPrivateKeyAttributes);
+        }
+      });
+    }
+    return generateKeyPairHandles0(ckMechanism, ckPublicKeyAttributes,
+        ckPrivateKeyAttributes);
+  }
 
+  private long[] generateKeyPairHandles0(CK_MECHANISM ckMechanism,
+      CK_ATTRIBUTE[] ckPublicKeyAttributes,
+      CK_ATTRIBUTE[] ckPrivateKeyAttributes) throws TokenException {
     long[] objectHandles;
     try {
       objectHandles = pkcs11Module.C_GenerateKeyPair(sessionHandle,
-          toCkMechanism(mechanism), ckPublicKeyAttributes,
-          ckPrivateKeyAttributes);
+          ckMechanism, ckPublicKeyAttributes, ckPrivateKeyAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
       throw new PKCS11Exception(ex);
     }
 
-    PublicKey publicKey =
-        (PublicKey) PKCS11Object.getInstance(this, objectHandles[0]);
-    PrivateKey privateKey =
-        (PrivateKey) PKCS11Object.getInstance(this, objectHandles[1]);
-
-    return new KeyPair(publicKey, privateKey);
+    newObjectCreated(objectHandles[0], ckPublicKeyAttributes);
+    newObjectCreated(objectHandles[1], ckPrivateKeyAttributes);
+    return objectHandles;
   }
 
   /**
@@ -1721,11 +3192,48 @@ public class Session {
    */
   public byte[] wrapKey(Mechanism mechanism, Key wrappingKey, Key key)
       throws TokenException {
+    return wrapKey(toCkMechanism(mechanism), wrappingKey, key);
+  }
+
+  /**
+   * Wraps (encrypts) the given key with the wrapping key using the given
+   * prepared mechanism.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param wrappingKey
+   *          The key to use for wrapping (encrypting).
+   * @param key
+   *          The key to wrap (encrypt).
+   * @return The wrapped key as byte array.
+   * @exception TokenException
+   *              If wrapping the key failed.
+   */
+  public byte[] wrapKey(PreparedMechanism mechanism, Key wrappingKey, Key key)
+      throws TokenException {
+    return wrapKey(toCkMechanism(mechanism), wrappingKey, key);
+  }
+
+  private byte[] wrapKey(final CK_MECHANISM ckMechanism,
+      final Key wrappingKey, final Key key) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<byte[]>() {
+        @Override
+        public byte[] call() throws TokenException {
+          return wrapKey0(ckMechanism, wrappingKey, key);
+        }
+      });
+    }
+    return wrapKey0(ckMechanism, wrappingKey, key);
+  }
+
+  private byte[] wrapKey0(CK_MECHANISM ckMechanism, Key wrappingKey, Key key)
+      throws TokenException {
     try {
-      return pkcs11Module.C_WrapKey(sessionHandle, toCkMechanism(mechanism),
+      return pkcs11Module.C_WrapKey(sessionHandle, ckMechanism,
           wrappingKey.getObjectHandle(), key.getObjectHandle());
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
+      throw keyException(ex, wrappingKey, key);
     }
   }
 
@@ -1750,20 +3258,168 @@ public class Session {
   public Key unwrapKey(Mechanism mechanism, Key unwrappingKey,
       byte[] wrappedKey, PKCS11Object keyTemplate)
       throws TokenException {
+    return unwrapKey(toCkMechanism(mechanism), unwrappingKey, wrappedKey,
+        getSetAttributes(keyTemplate));
+  }
+
+  /**
+   * Unwraps (decrypts) the given encrypted key with the unwrapping key using
+   * the given prepared mechanism. See
+   * {@link #unwrapKey(Mechanism, Key, byte[], PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param unwrappingKey
+   *          The key to use for unwrapping (decrypting).
+   * @param wrappedKey
+   *          The encrypted key to unwrap (decrypt).
+   * @param keyTemplate
+   *          The template for creating the new key object.
+   * @return A key object representing the newly created key object.
+   * @exception TokenException
+   *              If unwrapping the key or creating a new key object failed.
+   */
+  public Key unwrapKey(PreparedMechanism mechanism, Key unwrappingKey,
+      byte[] wrappedKey, PKCS11Object keyTemplate)
+      throws TokenException {
+    return unwrapKey(toCkMechanism(mechanism), unwrappingKey, wrappedKey,
+        getSetAttributes(keyTemplate));
+  }
+
+  /**
+   * Unwraps (decrypts) the given encrypted key with the unwrapping key using
+   * the given mechanism and a compiled template. See
+   * {@link #unwrapKey(Mechanism, Key, byte[], PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism to use for unwrapping the key.
+   * @param unwrappingKey
+   *          The key to use for unwrapping (decrypting).
+   * @param wrappedKey
+   *          The encrypted key to unwrap (decrypt).
+   * @param keyTemplate
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return A key object representing the newly created key object.
+   * @exception TokenException
+   *              If unwrapping the key or creating a new key object failed.
+   */
+  public Key unwrapKeyCompiled(Mechanism mechanism, Key unwrappingKey,
+      byte[] wrappedKey, CompiledTemplate keyTemplate)
+      throws TokenException {
+    return unwrapKey(toCkMechanism(mechanism), unwrappingKey, wrappedKey,
+        toCkAttributes(keyTemplate));
+  }
+
+  /**
+   * Unwraps (decrypts) the given encrypted key with the unwrapping key using
+   * the given prepared mechanism and a compiled template. See
+   * {@link #unwrapKey(Mechanism, Key, byte[], PKCS11Object)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param unwrappingKey
+   *          The key to use for unwrapping (decrypting).
+   * @param wrappedKey
+   *          The encrypted key to unwrap (decrypt).
+   * @param keyTemplate
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return A key object representing the newly created key object.
+   * @exception TokenException
+   *              If unwrapping the key or creating a new key object failed.
+   */
+  public Key unwrapKeyCompiled(PreparedMechanism mechanism, Key unwrappingKey,
+      byte[] wrappedKey, CompiledTemplate keyTemplate)
+      throws TokenException {
+    return unwrapKey(toCkMechanism(mechanism), unwrappingKey, wrappedKey,
+        toCkAttributes(keyTemplate));
+  }
+
+  private Key unwrapKey(CK_MECHANISM ckMechanism, Key unwrappingKey,
+      byte[] wrappedKey, CK_ATTRIBUTE[] ckAttributes)
+      throws TokenException {
+    long objectHandle = unwrapKeyHandle(ckMechanism, unwrappingKey,
+        wrappedKey, ckAttributes);
+    return (Key) PKCS11Object.getInstance(this, objectHandle);
+  }
+
+  /**
+   * Unwraps (decrypts) the given encrypted key with the unwrapping key using
+   * the given mechanism, and returns only the handle of the new key. In
+   * contrast to {@link #unwrapKey(Mechanism, Key, byte[], PKCS11Object)}, no
+   * attribute is read from the token.
+   *
+   * @param mechanism
+   *          The mechanism to use for unwrapping the key.
+   * @param unwrappingKey
+   *          The key to use for unwrapping (decrypting).
+   * @param wrappedKey
+   *          The encrypted key to unwrap (decrypt).
+   * @param keyTemplate
+   *          The template for creating the new key object.
+   * @return The handle of the newly created key object.
+   * @exception TokenException
+   *              If unwrapping the key or creating a new key object failed.
+   */
+  public long unwrapKeyHandle(Mechanism mechanism, Key unwrappingKey,
+      byte[] wrappedKey, PKCS11Object keyTemplate) throws TokenException {
+    return unwrapKeyHandle(toCkMechanism(mechanism), unwrappingKey,
+        wrappedKey, getSetAttributes(keyTemplate));
+  }
+
+  /**
+   * Unwraps (decrypts) the given encrypted key with the unwrapping key using
+   * the given prepared mechanism and a compiled template, and returns only
+   * the handle of the new key.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param unwrappingKey
+   *          The key to use for unwrapping (decrypting).
+   * @param wrappedKey
+   *          The encrypted key to unwrap (decrypt).
+   * @param keyTemplate
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return The handle of the newly created key object.
+   * @exception TokenException
+   *              If unwrapping the key or creating a new key object failed.
+   */
+  public long unwrapKeyHandleCompiled(PreparedMechanism mechanism,
+      Key unwrappingKey, byte[] wrappedKey, CompiledTemplate keyTemplate)
+      throws TokenException {
+    return unwrapKeyHandle(toCkMechanism(mechanism), unwrappingKey,
+        wrappedKey, toCkAttributes(keyTemplate));
+  }
+
+  private long unwrapKeyHandle(final CK_MECHANISM ckMechanism,
+      final Key unwrappingKey, final byte[] wrappedKey,
+      final CK_ATTRIBUTE[] ckAttributes) throws TokenException {
     Util.requireNonNull("wrappedKey", wrappedKey);
 
-    CK_ATTRIBUTE[] ckAttributes = getSetAttributes(keyTemplate);
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Long>() {
+        @Override
+        public Long call() throws TokenException {
+          return unwrapKeyHandle0(ckMechanism, unwrappingKey, wrappedKey,
+              ckAttributes);
+        }
+      });
+    }
+    return unwrapKeyHandle0(ckMechanism, unwrappingKey, wrappedKey,
+        ckAttributes);
+  }
 
-    long objectHandle;
+  private long unwrapKeyHandle0(CK_MECHANISM ckMechanism, Key unwrappingKey,
+      byte[] wrappedKey, CK_ATTRIBUTE[] ckAttributes) throws TokenException {
     try {
-      objectHandle = pkcs11Module.C_UnwrapKey(sessionHandle,
-          toCkMechanism(mechanism), unwrappingKey.getObjectHandle(),
-          wrappedKey, ckAttributes);
+      return newObjectCreated(pkcs11Module.C_UnwrapKey(sessionHandle,
+          ckMechanism, unwrappingKey.getObjectHandle(),
+          wrappedKey, ckAttributes), ckAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
+      throw keyException(ex, unwrappingKey);
     }
-
-    return (Key) PKCS11Object.getInstance(this, objectHandle);
   }
 
   /**
@@ -1786,17 +3442,167 @@ public class Session {
    */
   public Key deriveKey(Mechanism mechanism, Key baseKey, Key template)
       throws TokenException {
-    CK_MECHANISM ckMechanism = toCkMechanism(mechanism);
-    Parameters params = mechanism.getParameters();
-    CK_ATTRIBUTE[] ckAttributes = getSetAttributes(template);
+    return deriveKey(toCkMechanism(mechanism), mechanism.getParameters(),
+        baseKey, getSetAttributes(template));
+  }
+
+  /**
+   * Derives a new key from a specified base key using the given prepared
+   * mechanism. See {@link #deriveKey(Mechanism, Key, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param baseKey
+   *          The key to use as base for derivation.
+   * @param template
+   *          The template for creating the new key object.
+   * @return A key object representing the newly derived (created) key object
+   *         or null, if the used mechanism uses other means to return its
+   *         values; e.g. the CKM_SSL3_KEY_AND_MAC_DERIVE mechanism.
+   * @exception TokenException
+   *              If deriving the key or creating a new key object failed.
+   */
+  public Key deriveKey(PreparedMechanism mechanism, Key baseKey,
+      Key template) throws TokenException {
+    return deriveKey(toCkMechanism(mechanism),
+        mechanism.getMechanism().getParameters(), baseKey,
+        getSetAttributes(template));
+  }
+
+  /**
+   * Derives a new key from a specified base key using the given mechanism and
+   * a compiled template. See {@link #deriveKey(Mechanism, Key, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism to use for deriving the new key from the base key.
+   * @param baseKey
+   *          The key to use as base for derivation.
+   * @param template
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return A key object representing the newly derived (created) key object
+   *         or null, if the used mechanism uses other means to return its
+   *         values; e.g. the CKM_SSL3_KEY_AND_MAC_DERIVE mechanism.
+   * @exception TokenException
+   *              If deriving the key or creating a new key object failed.
+   */
+  public Key deriveKeyCompiled(Mechanism mechanism, Key baseKey,
+      CompiledTemplate template) throws TokenException {
+    return deriveKey(toCkMechanism(mechanism), mechanism.getParameters(),
+        baseKey, toCkAttributes(template));
+  }
+
+  /**
+   * Derives a new key from a specified base key using the given prepared
+   * mechanism and a compiled template. See
+   * {@link #deriveKey(Mechanism, Key, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param baseKey
+   *          The key to use as base for derivation.
+   * @param template
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return A key object representing the newly derived (created) key object
+   *         or null, if the used mechanism uses other means to return its
+   *         values; e.g. the CKM_SSL3_KEY_AND_MAC_DERIVE mechanism.
+   * @exception TokenException
+   *              If deriving the key or creating a new key object failed.
+   */
+  public Key deriveKeyCompiled(PreparedMechanism mechanism, Key baseKey,
+      CompiledTemplate template) throws TokenException {
+    return deriveKey(toCkMechanism(mechanism),
+        mechanism.getMechanism().getParameters(), baseKey,
+        toCkAttributes(template));
+  }
+
+  private Key deriveKey(CK_MECHANISM ckMechanism, Parameters params,
+      Key baseKey, CK_ATTRIBUTE[] ckAttributes) throws TokenException {
+    long objectHandle = deriveKeyHandle(ckMechanism, params, baseKey,
+        ckAttributes);
+    return (objectHandle == PKCS11Constants.CK_INVALID_HANDLE) ? null
+        : (Key) PKCS11Object.getInstance(this, objectHandle);
+  }
+
+  /**
+   * Derives a new key from a specified base key using the given mechanism,
+   * and returns only the handle of the new key. In contrast to
+   * {@link #deriveKey(Mechanism, Key, Key)}, no attribute is read from the
+   * token.
+   *
+   * @param mechanism
+   *          The mechanism to use for deriving the new key from the base key.
+   * @param baseKey
+   *          The key to use as base for derivation.
+   * @param template
+   *          The template for creating the new key object.
+   * @return The handle of the newly derived (created) key object, or
+   *         {@link PKCS11Constants#CK_INVALID_HANDLE} if the used mechanism
+   *         uses other means to return its values; e.g. the
+   *         CKM_SSL3_KEY_AND_MAC_DERIVE mechanism.
+   * @exception TokenException
+   *              If deriving the key or creating a new key object failed.
+   */
+  public long deriveKeyHandle(Mechanism mechanism, Key baseKey, Key template)
+      throws TokenException {
+    return deriveKeyHandle(toCkMechanism(mechanism),
+        mechanism.getParameters(), baseKey, getSetAttributes(template));
+  }
+
+  /**
+   * Derives a new key from a specified base key using the given prepared
+   * mechanism and a compiled template, and returns only the handle of the
+   * new key. See {@link #deriveKeyHandle(Mechanism, Key, Key)}.
+   *
+   * @param mechanism
+   *          The mechanism prepared by {@link #prepare(Mechanism)}.
+   * @param baseKey
+   *          The key to use as base for derivation.
+   * @param template
+   *          The template for creating the new key object, compiled by
+   *          {@link #compileTemplate(PKCS11Object)}.
+   * @return The handle of the newly derived (created) key object, or
+   *         {@link PKCS11Constants#CK_INVALID_HANDLE} if the used mechanism
+   *         uses other means to return its values.
+   * @exception TokenException
+   *              If deriving the key or creating a new key object failed.
+   */
+  public long deriveKeyHandleCompiled(PreparedMechanism mechanism, Key baseKey,
+      CompiledTemplate template) throws TokenException {
+    return deriveKeyHandle(toCkMechanism(mechanism),
+        mechanism.getMechanism().getParameters(), baseKey,
+        toCkAttributes(template));
+  }
+
+  private long deriveKeyHandle(final CK_MECHANISM ckMechanism,
+      final Key baseKey, final CK_ATTRIBUTE[] ckAttributes)
+      throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<Long>() {
+        @Override
+        public Long call() throws TokenException {
+          return deriveKeyHandle0(ckMechanism, baseKey, ckAttributes);
+        }
+      });
+    }
+    return deriveKeyHandle0(ckMechanism, baseKey, ckAttributes);
+  }
 
-    long objectHandle;
+  private long deriveKeyHandle0(CK_MECHANISM ckMechanism, Key baseKey,
+      CK_ATTRIBUTE[] ckAttributes) throws TokenException {
     try {
-      objectHandle = pkcs11Module.C_DeriveKey(sessionHandle,
-          ckMechanism, baseKey.getObjectHandle(), ckAttributes);
+      return pkcs11Module.C_DeriveKey(sessionHandle, ckMechanism,
+          baseKey.getObjectHandle(), ckAttributes);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      throw new PKCS11Exception(ex);
+      throw keyException(ex, baseKey);
     }
+  }
+
+  private long deriveKeyHandle(CK_MECHANISM ckMechanism, Parameters params,
+      Key baseKey, CK_ATTRIBUTE[] ckAttributes) throws TokenException {
+    long objectHandle = deriveKeyHandle(ckMechanism, baseKey, ckAttributes);
+    newObjectCreated(objectHandle, ckAttributes);
 
     /*
      * for certain mechanisms we must copy back the returned values to the
@@ -1818,7 +3624,7 @@ public class Session {
       version.setPKCS11ParamsObject(
           ((CK_SSL3_MASTER_KEY_DERIVE_PARAMS)
               (ckMechanism.pParameter)).pVersion);
-      return (Key) PKCS11Object.getInstance(this, objectHandle);
+      return objectHandle;
     } else if ((ckMechanism.mechanism
           == PKCS11Constants.CKM_TLS12_MASTER_KEY_DERIVE)
         && (params instanceof TLS12MasterKeyDeriveParameters)) {
@@ -1828,7 +3634,7 @@ public class Session {
       CK_VERSION ckVersion =
           TLS12MasterKeyDeriveParameters.getPVersion(ckMechanism.pParameter);
       version.setPKCS11ParamsObject(ckVersion);
-      return (Key) PKCS11Object.getInstance(this, objectHandle);
+      return objectHandle;
     } else if ((ckMechanism.mechanism
             == PKCS11Constants.CKM_SSL3_KEY_AND_MAC_DERIVE
           || ckMechanism.mechanism
@@ -1849,7 +3655,7 @@ public class Session {
        * this mechanism returns its keys and values through the parameters
        * object of the mechanism, but it does not return a key
        */
-      return null;
+      return PKCS11Constants.CK_INVALID_HANDLE;
     } else if ((ckMechanism.mechanism
             == PKCS11Constants.CKM_TLS12_KEY_AND_MAC_DERIVE)
         && (params instanceof TLS12KeyMaterialParameters)) {
@@ -1864,9 +3670,9 @@ public class Session {
        * this mechanism returns its keys and values through the parameters
        * object of the mechanism, but it does not return a key
        */
-      return null;
+      return PKCS11Constants.CK_INVALID_HANDLE;
     } else {
-      return (Key) PKCS11Object.getInstance(this, objectHandle);
+      return objectHandle;
     }
   }
 
@@ -1897,7 +3703,20 @@ public class Session {
    */
   public byte[] generateRandom(int numberOfBytesToGenerate)
       throws TokenException {
-    byte[] randomBytesBuffer = new byte[numberOfBytesToGenerate];
+    final byte[] randomBytesBuffer = new byte[numberOfBytesToGenerate];
+    if (token.shallOffloadNativeCalls()) {
+      return offload(new NativeCallExecutor.NativeCall<byte[]>() {
+        @Override
+        public byte[] call() throws TokenException {
+          return generateRandom0(randomBytesBuffer);
+        }
+      });
+    }
+    return generateRandom0(randomBytesBuffer);
+  }
+
+  private byte[] generateRandom0(byte[] randomBytesBuffer)
+      throws TokenException {
     try {
       pkcs11Module.C_GenerateRandom(sessionHandle, randomBytesBuffer);
     } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
@@ -1944,6 +3763,11 @@ public class Session {
         "\nToken: ", token);
   }
 
+  private CK_MECHANISM toCkMechanism(PreparedMechanism mechanism) {
+    Util.requireNonNull("mechanism", mechanism);
+    return mechanism.getCkMechanism(module);
+  }
+
   private CK_MECHANISM toCkMechanism(Mechanism mechanism) {
     long code = mechanism.getMechanismCode();
     if ((code & PKCS11Constants.CKM_VENDOR_DEFINED) != 0) {
@@ -1955,7 +3779,12 @@ public class Session {
 
     Parameters params = mechanism.getParameters();
     if (params == null) {
-      return new CK_MECHANISM(code);
+      CK_MECHANISM ckMechanism = parameterlessMechanisms.get(code);
+      if (ckMechanism == null) {
+        ckMechanism = new CK_MECHANISM(code);
+        parameterlessMechanisms.putIfAbsent(code, ckMechanism);
+      }
+      return ckMechanism;
     } else if (params instanceof AesCtrParameters) {
       return new CK_MECHANISM(code,
           ((AesCtrParameters) params).getPKCS11ParamsObject());
@@ -1996,18 +3825,16 @@ public class Session {
       CK_MECHANISM mech = new CK_MECHANISM(code);
       CK_RSA_PKCS_PSS_PARAMS pParams =
           ((RSAPkcsPssParameters) params).getPKCS11ParamsObject();
+      if (pssParameterSetter == null) {
+        throw new IllegalStateException(
+            "could not construct CK_MECHANISM for RSAPkcsPssParams");
+      }
+
       try {
-        if (field_CK_MECHANISM_pParameter != null) {
-          field_CK_MECHANISM_pParameter.set(mech, pParams);
-        } else if (method_CK_MECHANISM_setParameter != null) {
-          method_CK_MECHANISM_setParameter.invoke(mech, pParams);
-        } else {
-          throw new IllegalStateException(
-              "could not construct CK_MECHANISM for RSAPkcsPssParams");
-        }
-      } catch (IllegalAccessException | InvocationTargetException ex) {
+        pssParameterSetter.invokeExact(mech, pParams);
+      } catch (Throwable th) {
         throw new IllegalStateException(
-            "could not construct CK_MECHANISM for RSAPkcsPssParams", ex);
+            "could not construct CK_MECHANISM for RSAPkcsPssParams", th);
       }
       return mech;
     } else if (params instanceof SSL3KeyMaterialParameters) {
@@ -2032,7 +3859,7 @@ public class Session {
 //      return new CK_MECHANISM(code,
 //          ((X942DH2KeyDerivationParameters) params).getPKCS11ParamsObject());
     } else {
-      Constructor<?> constructor;
+      MethodHandle constructor;
       if (params instanceof CCMParameters) {
         constructor = constructor_CK_MECHANISM_CCM;
       } else if (params instanceof GCMParameters) {
@@ -2051,12 +3878,11 @@ public class Session {
         throw new IllegalArgumentException("could not find constructor");
       }
       try {
-        return (CK_MECHANISM) constructor.newInstance(
+        return (CK_MECHANISM) constructor.invokeExact(
             code, params.getPKCS11ParamsObject());
-      } catch (InstantiationException | IllegalAccessException
-          | IllegalArgumentException | InvocationTargetException ex) {
+      } catch (Throwable th) {
         throw new IllegalArgumentException(
-            "could not construct CK_MECHANISM", ex);
+            "could not construct CK_MECHANISM", th);
       }
     }
 
@@ -2064,6 +3890,88 @@ public class Session {
         "Unsupported Parameters " + params.getClass().getName());
   }
 
+  private CK_ATTRIBUTE[] toCkAttributes(CompiledTemplate template) {
+    Util.requireNonNull("template", template);
+    return template.getCkAttributes(module);
+  }
+
+  /**
+   * Initializes an operation.
+   *
+   * @param op
+   *          The operation; e.g. {@link #OP_SIGN}.
+   * @param ckMechanism
+   *          The mechanism.
+   * @param key
+   *          The key, or null for {@link #OP_DIGEST}.
+   * @exception TokenException
+   *              If initializing the operation failed.
+   */
+  private void init(final int op, final CK_MECHANISM ckMechanism,
+      final Key key) throws TokenException {
+    if (token.shallOffloadNativeCalls()) {
+      offload(new NativeCallExecutor.NativeCall<Void>() {
+        @Override
+        public Void call() throws TokenException {
+          init0(op, ckMechanism, key);
+          return null;
+        }
+      });
+    } else {
+      init0(op, ckMechanism, key);
+    }
+  }
+
+  private void init0(int op, CK_MECHANISM ckMechanism, Key key)
+      throws TokenException {
+    try {
+      if (op == OP_DIGEST) {
+        pkcs11Module.C_DigestInit(sessionHandle, ckMechanism);
+        return;
+      }
+
+      long keyHandle = key.getObjectHandle();
+      if (op == OP_ENCRYPT) {
+        pkcs11Module.C_EncryptInit(sessionHandle, ckMechanism, keyHandle);
+      } else if (op == OP_DECRYPT) {
+        pkcs11Module.C_DecryptInit(sessionHandle, ckMechanism, keyHandle);
+      } else if (op == OP_SIGN) {
+        pkcs11Module.C_SignInit(sessionHandle, ckMechanism, keyHandle);
+      } else if (op == OP_SIGN_RECOVER) {
+        pkcs11Module.C_SignRecoverInit(sessionHandle, ckMechanism, keyHandle);
+      } else if (op == OP_VERIFY) {
+        pkcs11Module.C_VerifyInit(sessionHandle, ckMechanism, keyHandle);
+      } else {
+        pkcs11Module.C_VerifyRecoverInit(sessionHandle, ckMechanism,
+            keyHandle);
+      }
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      throw (key == null) ? new PKCS11Exception(ex) : keyException(ex, key);
+    }
+  }
+
+  /**
+   * Executes a native call of a virtual thread in a platform thread of the
+   * token, see {@link Token#setOffloadNativeCalls(boolean)}.
+   */
+  private <T> T offload(NativeCallExecutor.NativeCall<T> call)
+      throws TokenException {
+    return token.getNativeCallExecutor().call(call);
+  }
+
+  private static TokenException toTokenException(Throwable th) {
+    if (th instanceof sun.security.pkcs11.wrapper.PKCS11Exception) {
+      return new PKCS11Exception(
+          (sun.security.pkcs11.wrapper.PKCS11Exception) th);
+    } else if (th instanceof RuntimeException) {
+      throw (RuntimeException) th;
+    } else if (th instanceof Error) {
+      throw (Error) th;
+    } else {
+      return new TokenException("Error " + th.getMessage(), (Exception) th);
+    }
+  }
+
   private CK_ATTRIBUTE[] getSetAttributes(PKCS11Object object) throws PKCS11Exception {
     return PKCS11Object.getSetAttributes(object, module.getVendorCodeConverter());
   }
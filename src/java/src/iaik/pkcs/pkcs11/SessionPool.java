@@ -0,0 +1,418 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of sessions of one token. The pool keeps separate lanes for
+ * read-only and read-write sessions, each bounded by the limits reported in
+ * the {@link TokenInfo} of the token (and by the caps given by the caller).
+ * Sessions are opened lazily when a lane has no idle session. The user is
+ * logged in when a new session is not yet in a user state, i.e. when the
+ * first session is opened, and again after the token has logged the
+ * application out because its last session was closed.
+ * <p>
+ * Borrowing an idle session does not block: it only acquires a permit of the
+ * lane and polls the idle queue. A caller waits (up to the given timeout) only
+ * if all sessions of the lane are in use.
+ * <p>
+ * A borrowed session must be returned exactly once, via
+ * {@link #requiteSession(Session)}, or, if it is not usable any more, via
+ * {@link #invalidateSession(Session)}.
+ * Any operation started on a session must be finished before the session is
+ * returned.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class SessionPool {
+
+  /**
+   * The default maximal number of sessions of each lane, applied if the token
+   * does not limit the number of sessions.
+   */
+  public static final int DEFAULT_MAX_SESSIONS = 32;
+
+  /**
+   * The default timeout in milliseconds to wait for an idle session.
+   */
+  public static final long DEFAULT_BORROW_TIMEOUT = 10000;
+
+  private final class Lane {
+
+    private final boolean rw;
+
+    private final int capacity;
+
+    private final Semaphore permits;
+
+    private final ConcurrentLinkedQueue<Session> idleSessions =
+        new ConcurrentLinkedQueue<>();
+
+    private Lane(boolean rw, int capacity) {
+      this.rw = rw;
+      this.capacity = capacity;
+      this.permits = new Semaphore(capacity);
+    }
+
+  }
+
+  private final Token token;
+
+  private final char[] pin;
+
+  private final boolean loginRequired;
+
+  private final boolean protectedAuthenticationPath;
+
+  private final Lane roLane;
+
+  private final Lane rwLane;
+
+  /**
+   * Maps the handle of each session opened by this pool to its lane.
+   */
+  private final ConcurrentHashMap<Long, Lane> lanes =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Maps the handle of each borrowed session to the session.
+   */
+  private final ConcurrentHashMap<Long, Session> borrowedSessions =
+      new ConcurrentHashMap<>();
+
+  private final Object loginLock = new Object();
+
+  private volatile boolean closed;
+
+  /**
+   * Creates a pool with at most {@link #DEFAULT_MAX_SESSIONS} sessions in
+   * each lane.
+   *
+   * @param token
+   *          The token. Must not be null.
+   * @param pin
+   *          The user PIN. May be null if the token does not require a login
+   *          or has a protected authentication path.
+   * @exception TokenException
+   *              If reading the token info failed.
+   */
+  public SessionPool(Token token, char[] pin) throws TokenException {
+    this(token, pin, DEFAULT_MAX_SESSIONS, DEFAULT_MAX_SESSIONS);
+  }
+
+  /**
+   * Creates a pool. The given maximal numbers of sessions are further limited
+   * by the maximal session counts reported by the token.
+   *
+   * @param token
+   *          The token. Must not be null.
+   * @param pin
+   *          The user PIN. May be null if the token does not require a login
+   *          or has a protected authentication path.
+   * @param maxRoSessions
+   *          Maximal number of read-only sessions.
+   * @param maxRwSessions
+   *          Maximal number of read-write sessions.
+   * @exception TokenException
+   *              If reading the token info failed.
+   */
+  public SessionPool(Token token, char[] pin, int maxRoSessions,
+      int maxRwSessions) throws TokenException {
+    this.token = Util.requireNonNull("token", token);
+    if (maxRoSessions < 0 || maxRwSessions < 0) {
+      throw new IllegalArgumentException(
+          "maxRoSessions and maxRwSessions must not be negative");
+    }
+    this.pin = (pin == null) ? null : pin.clone();
+
+    TokenInfo tokenInfo = token.getTokenInfo();
+    this.loginRequired = tokenInfo.isLoginRequired();
+    this.protectedAuthenticationPath =
+        tokenInfo.isProtectedAuthenticationPath();
+
+    long maxTotal = toLimit(tokenInfo.getMaxSessionCount());
+    long maxRw = Math.min(maxTotal, toLimit(tokenInfo.getMaxRwSessionCount()));
+    if (tokenInfo.isWriteProtected()) {
+      maxRw = 0;
+    }
+
+    int rwCapacity = (int) Math.min(maxRwSessions, maxRw);
+    int roCapacity = (int) Math.min(maxRoSessions, maxTotal - rwCapacity);
+    this.rwLane = new Lane(true, rwCapacity);
+    this.roLane = new Lane(false, roCapacity);
+  }
+
+  private static long toLimit(long count) {
+    return (count == TokenInfo.EFFECTIVELY_INFINITE
+        || count == TokenInfo.UNAVAILABLE_INFORMATION)
+        ? Integer.MAX_VALUE : count;
+  }
+
+  /**
+   * Gets the token of this pool.
+   *
+   * @return The token.
+   */
+  public Token getToken() {
+    return token;
+  }
+
+  /**
+   * Gets the maximal number of read-only sessions of this pool.
+   *
+   * @return The maximal number of read-only sessions.
+   */
+  public int getMaxRoSessions() {
+    return roLane.capacity;
+  }
+
+  /**
+   * Gets the maximal number of read-write sessions of this pool.
+   *
+   * @return The maximal number of read-write sessions.
+   */
+  public int getMaxRwSessions() {
+    return rwLane.capacity;
+  }
+
+  /**
+   * Borrows a session, and waits at most {@link #DEFAULT_BORROW_TIMEOUT}
+   * milliseconds for an idle one.
+   *
+   * @param rw
+   *          true to borrow a read-write session, false to borrow a
+   *          read-only session.
+   * @return The borrowed session.
+   * @exception TokenException
+   *              If no session is available within the timeout, or opening
+   *              a new session failed.
+   */
+  public Session borrowSession(boolean rw) throws TokenException {
+    return borrowSession(rw, DEFAULT_BORROW_TIMEOUT, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Borrows a session.
+   *
+   * @param rw
+   *          true to borrow a read-write session, false to borrow a
+   *          read-only session.
+   * @param timeout
+   *          The maximal time to wait for an idle session.
+   * @param unit
+   *          The unit of the timeout.
+   * @return The borrowed session.
+   * @exception TokenException
+   *              If no session is available within the timeout, or opening
+   *              a new session failed.
+   */
+  public Session borrowSession(boolean rw, long timeout, TimeUnit unit)
+      throws TokenException {
+    Util.requireNonNull("unit", unit);
+    if (closed) {
+      throw new TokenException("session pool is closed");
+    }
+
+    Lane lane = rw ? rwLane : roLane;
+    if (lane.capacity == 0) {
+      throw new TokenException(Util.concat(
+          "token allows no ", (rw ? "read-write" : "read-only"), " sessions"));
+    }
+
+    if (!lane.permits.tryAcquire()) {
+      boolean acquired;
+      try {
+        acquired = lane.permits.tryAcquire(timeout, unit);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new TokenException("interrupted while waiting for a session",
+            ex);
+      }
+
+      if (!acquired) {
+        throw new TokenException(Util.concat("no idle ",
+            (rw ? "read-write" : "read-only"), " session available"));
+      }
+    }
+
+    Session session = lane.idleSessions.poll();
+    if (session == null) {
+      try {
+        session = openSession(lane);
+      } catch (TokenException | RuntimeException ex) {
+        lane.permits.release();
+        throw ex;
+      }
+    }
+
+    borrowedSessions.put(session.getSessionHandle(), session);
+    return session;
+  }
+
+  /**
+   * Returns a session borrowed from this pool.
+   *
+   * @param session
+   *          The session to return. Must not be null.
+   * @exception IllegalArgumentException
+   *              If the session is not borrowed from this pool, or has
+   *              already been returned.
+   */
+  public void requiteSession(Session session) {
+    Lane lane = returnSession(session);
+    if (closed) {
+      discardSession(session);
+    } else {
+      lane.idleSessions.offer(session);
+      // close() may have drained the idle sessions before the offer
+      if (closed && lane.idleSessions.remove(session)) {
+        discardSession(session);
+      }
+    }
+    lane.permits.release();
+  }
+
+  /**
+   * Closes a session borrowed from this pool instead of returning it, e.g.
+   * because the session handle became invalid. A new session will be opened
+   * on demand.
+   *
+   * @param session
+   *          The session to discard. Must not be null.
+   * @exception IllegalArgumentException
+   *              If the session is not borrowed from this pool, or has
+   *              already been returned.
+   */
+  public void invalidateSession(Session session) {
+    Lane lane = returnSession(session);
+    discardSession(session);
+    lane.permits.release();
+  }
+
+  /**
+   * Closes all idle sessions of this pool. Sessions still borrowed are
+   * closed when they are returned.
+   */
+  public void close() {
+    closed = true;
+    closeIdleSessions(roLane);
+    closeIdleSessions(rwLane);
+    if (pin != null) {
+      Arrays.fill(pin, '\0');
+    }
+  }
+
+  private Lane returnSession(Session session) {
+    Util.requireNonNull("session", session);
+    long handle = session.getSessionHandle();
+    Lane lane = lanes.get(handle);
+    if (lane == null || !borrowedSessions.remove(handle, session)) {
+      throw new IllegalArgumentException(
+          "session is not borrowed from this pool");
+    }
+    return lane;
+  }
+
+  private void discardSession(Session session) {
+    lanes.remove(session.getSessionHandle());
+    closeQuietly(session);
+  }
+
+  private Session openSession(Lane lane) throws TokenException {
+    Session session = token.openSession(Token.SessionType.SERIAL_SESSION,
+        lane.rw, null, null);
+    try {
+      login(session);
+    } catch (TokenException | RuntimeException ex) {
+      closeQuietly(session);
+      throw ex;
+    }
+
+    lanes.put(session.getSessionHandle(), lane);
+    return session;
+  }
+
+  /**
+   * Logs the user in again with a session borrowed from this pool, e.g.
+   * after an operation failed with CKR_USER_NOT_LOGGED_IN because the
+   * application has been logged out of the token. Does nothing if the
+   * session is already in a user state.
+   *
+   * @param session
+   *          The borrowed session. Must not be null.
+   * @exception TokenException
+   *              If logging in failed.
+   */
+  public void relogin(Session session) throws TokenException {
+    Util.requireNonNull("session", session);
+    if (borrowedSessions.get(session.getSessionHandle()) != session) {
+      throw new IllegalArgumentException(
+          "session is not borrowed from this pool");
+    }
+    login(session);
+  }
+
+  private void login(Session session) throws TokenException {
+    if (!loginRequired) {
+      return;
+    }
+
+    synchronized (loginLock) {
+      // the token logs the application out when its last session is closed,
+      // so the state of the new session is checked instead of a flag
+      State state = session.getSessionInfo().getState();
+      if (State.RO_USER_FUNCTIONS.equals(state)
+          || State.RW_USER_FUNCTIONS.equals(state)) {
+        return;
+      }
+
+      try {
+        session.login(Session.UserType.USER,
+            protectedAuthenticationPath ? null : pin);
+      } catch (PKCS11Exception ex) {
+        if (ex.getErrorCode() != PKCS11Constants.CKR_USER_ALREADY_LOGGED_IN) {
+          throw ex;
+        }
+      }
+    }
+  }
+
+  private void closeIdleSessions(Lane lane) {
+    Session session;
+    while ((session = lane.idleSessions.poll()) != null) {
+      discardSession(session);
+    }
+  }
+
+  private static void closeQuietly(Session session) {
+    try {
+      session.closeSession();
+    } catch (TokenException | RuntimeException ex) { // CHECKSTYLE:SKIP
+    }
+  }
+
+}
@@ -48,7 +48,9 @@ import sun.security.pkcs11.wrapper.CK_MECHANISM_INFO;
 import sun.security.pkcs11.wrapper.CK_NOTIFY;
 import sun.security.pkcs11.wrapper.CK_TOKEN_INFO;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 /**
  * Objects of this class represent PKCS#11 tokens. The application can get
@@ -101,31 +103,37 @@ public class Token {
   public static final String CLASS_PKCS11Exception =
           "sun.security.pkcs11.wrapper.PKCS11Exception";
 
-  private static final Constructor<?> PKCS11ExceptionConstructor;
-
-  private static final int PKCS11ExceptionConstructorType;
+  /**
+   * Constructor of sun.security.pkcs11.wrapper.PKCS11Exception, adapted to
+   * the type (long)PKCS11Exception.
+   */
+  private static final MethodHandle PKCS11ExceptionConstructor;
 
   static {
-    Constructor<?> constructor = null;
-    int type = 0;
+    MethodHandle constructor = null;
 
     try {
       Class<?> clazz = Class.forName(CLASS_PKCS11Exception);
 
-      constructor = Util.getConstructor(clazz, long.class);
-      if (constructor != null) {
-        type = 1;
-      } else {
-        constructor= Util.getConstructor(clazz, long.class, String.class);
+      // JDK 8 - 16
+      constructor = Util.findConstructor(clazz, long.class);
+      if (constructor == null) {
+        // JDK 17+
+        constructor = Util.findConstructor(clazz, long.class, String.class);
         if (constructor != null) {
-          type = 2;
+          constructor = MethodHandles.insertArguments(constructor, 1,
+              (Object) null);
         }
       }
+
+      if (constructor != null) {
+        constructor = constructor.asType(MethodType.methodType(
+            sun.security.pkcs11.wrapper.PKCS11Exception.class, long.class));
+      }
     } catch (Exception ex) {
     }
 
     PKCS11ExceptionConstructor = constructor;
-    PKCS11ExceptionConstructorType = type;
   }
 
   /**
@@ -185,6 +193,12 @@ public class Token {
    */
   private final boolean useUtf8Encoding;
 
+  /**
+   * The state shared by all Token objects of the slot.
+   */
+  private final TokenState state;
+
+
   /**
    * The constructor that takes a reference to the module and the slot ID.
    *
@@ -194,6 +208,7 @@ public class Token {
   protected Token(Slot slot) {
     this.slot = Util.requireNonNull("slot", slot);
     this.useUtf8Encoding = slot.isUseUtf8Encoding();
+    this.state = slot.getModule().getTokenState(slot.getSlotID());
   }
 
   /**
@@ -229,6 +244,136 @@ public class Token {
     return useUtf8Encoding;
   }
 
+  /**
+   * Enables or disables caching of the objects of this token. The cache is
+   * shared by all Token objects of the same slot and module, and thus used
+   * by all their sessions.
+   *
+   * @param objectCache
+   *          The cache. Null to disable caching.
+   */
+  public void setObjectCache(ObjectCache objectCache) {
+    state.objectCache = objectCache;
+  }
+
+  /**
+   * Gets the cache of the objects of this token.
+   *
+   * @return the cache, or null if caching is disabled.
+   */
+  public ObjectCache getObjectCache() {
+    return state.objectCache;
+  }
+
+  /**
+   * Gets the index of the objects of this token, which maps IDs, labels and
+   * pkcs11: URIs to object handles. The index is created on the first call,
+   * and is shared by all Token objects of the same slot and module.
+   *
+   * @return the index.
+   */
+  public KeyIndex getKeyIndex() {
+    KeyIndex index = state.keyIndex;
+    if (index == null) {
+      synchronized (state) {
+        index = state.keyIndex;
+        if (index == null) {
+          index = new KeyIndex(this);
+          state.keyIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  KeyIndex getKeyIndexIfCreated() {
+    return state.keyIndex;
+  }
+
+  /**
+   * Gets the engine which runs public-key operations with the public keys of
+   * this token in the JVM. The engine is created on the first call, and is
+   * shared by all Token objects of the same slot and module, so that its
+   * cached keys are invalidated by all sessions of the slot.
+   *
+   * @return the engine.
+   */
+  public PublicKeyEngine getPublicKeyEngine() {
+    PublicKeyEngine engine = state.publicKeyEngine;
+    if (engine == null) {
+      synchronized (state) {
+        engine = state.publicKeyEngine;
+        if (engine == null) {
+          engine = new PublicKeyEngine(this);
+          state.publicKeyEngine = engine;
+        }
+      }
+    }
+    return engine;
+  }
+
+  PublicKeyEngine getPublicKeyEngineIfCreated() {
+    return state.publicKeyEngine;
+  }
+
+  /**
+   * Enables or disables the offloading of native calls of virtual threads
+   * (Java 21+). If enabled (the default), the cryptographic calls of a
+   * virtual thread (the initialization, update and final calls of sign,
+   * verify, encrypt, decrypt and digest operations, key and key pair
+   * generation, key wrapping, unwrapping and derivation, and random
+   * generation) are executed by a pool of platform threads, with at most as
+   * many threads as the token allows sessions, and the virtual thread is
+   * parked until the result arrives instead of blocking its carrier thread.
+   * Calls of platform threads are never offloaded.
+   * <p>
+   * The setting and the pool of platform threads are shared by all Token
+   * objects of the same slot and module.
+   *
+   * @param offloadNativeCalls
+   *          true to offload the native calls of virtual threads.
+   */
+  public void setOffloadNativeCalls(boolean offloadNativeCalls) {
+    state.offloadNativeCalls = offloadNativeCalls;
+  }
+
+  /**
+   * Tells whether the native calls of virtual threads are offloaded.
+   *
+   * @return whether the native calls of virtual threads are offloaded.
+   */
+  public boolean isOffloadNativeCalls() {
+    return state.offloadNativeCalls;
+  }
+
+  /**
+   * Tells whether the native calls of the current thread shall be executed
+   * by the {@link NativeCallExecutor}.
+   */
+  boolean shallOffloadNativeCalls() {
+    return state.offloadNativeCalls && NativeCallExecutor.isVirtualThread();
+  }
+
+  NativeCallExecutor getNativeCallExecutor() throws TokenException {
+    NativeCallExecutor executor = state.nativeCallExecutor;
+    if (executor == null) {
+      long maxSessions = getTokenInfo().getMaxSessionCount();
+      // 0 is effectively infinite, -1 unavailable
+      int threads = (maxSessions > 0)
+          ? (int) Math.min(maxSessions, SessionPool.DEFAULT_MAX_SESSIONS)
+          : SessionPool.DEFAULT_MAX_SESSIONS;
+      synchronized (state) {
+        executor = state.nativeCallExecutor;
+        if (executor == null) {
+          executor = new NativeCallExecutor(
+              "pkcs11-native-" + slot.getSlotID(), threads);
+          state.nativeCallExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
   /**
    * Get the ID of this token. This is the ID of the slot this token resides
    * in.
@@ -406,23 +551,19 @@ public class Token {
           try {
             notify.notify(newSession, surrender, pApplication);
           } catch (PKCS11Exception ex) {
-            long errorCode = ex.getErrorCode();
+            if (PKCS11ExceptionConstructor == null) {
+              return;
+            }
+
+            sun.security.pkcs11.wrapper.PKCS11Exception p11Ex;
             try {
-              if (PKCS11ExceptionConstructorType == 0) {
-                // ignore
-              } else if (PKCS11ExceptionConstructorType == 1) {
-                // JDK 8 - 16
-                throw (sun.security.pkcs11.wrapper.PKCS11Exception)
-                        PKCS11ExceptionConstructor.newInstance(errorCode);
-              } else if (PKCS11ExceptionConstructorType == 2) {
-                // JDK 17+
-                String extraInfo = null;
-                throw (sun.security.pkcs11.wrapper.PKCS11Exception)
-                        PKCS11ExceptionConstructor.newInstance(errorCode, extraInfo);
-              }
+              p11Ex = (sun.security.pkcs11.wrapper.PKCS11Exception)
+                  PKCS11ExceptionConstructor.invokeExact(ex.getErrorCode());
             } catch (Throwable th) {
               // ignore
+              return;
             }
+            throw p11Ex;
           }
         }
       };
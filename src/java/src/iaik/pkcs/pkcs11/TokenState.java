@@ -0,0 +1,57 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11;
+
+/**
+ * The state shared by all {@link Token} instances of one slot of a
+ * {@link Module}. {@link Slot#getToken()} creates a new Token object for
+ * each call, so caches and indexes kept in a Token object would only be
+ * invalidated by the sessions opened by that object.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class TokenState {
+
+  /**
+   * The cache of the objects of the token, or null.
+   */
+  volatile ObjectCache objectCache;
+
+  /**
+   * The index of the objects of the token, created on demand.
+   */
+  volatile KeyIndex keyIndex;
+
+  /**
+   * The engine for local public-key operations, created on demand.
+   */
+  volatile PublicKeyEngine publicKeyEngine;
+
+  /**
+   * Whether the native calls of virtual threads are offloaded.
+   */
+  volatile boolean offloadNativeCalls = true;
+
+  /**
+   * The platform threads executing the native calls of virtual threads,
+   * created on demand.
+   */
+  volatile NativeCallExecutor nativeCallExecutor;
+
+}
@@ -47,6 +47,9 @@ import iaik.pkcs.pkcs11.wrapper.Functions;
 import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
 import sun.security.pkcs11.wrapper.CK_DATE;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -437,4 +440,32 @@ public class Util {
     }
   }
 
+  public static MethodHandle findVirtual(Class<?> clazz, String name,
+      MethodType type) {
+    try {
+      return MethodHandles.lookup().findVirtual(clazz, name, type);
+    } catch (Throwable th) {
+      return null;
+    }
+  }
+
+  public static MethodHandle findSetter(Class<?> clazz, String fieldName,
+      Class<?> fieldType) {
+    try {
+      return MethodHandles.lookup().findSetter(clazz, fieldName, fieldType);
+    } catch (Throwable th) {
+      return null;
+    }
+  }
+
+  public static MethodHandle findConstructor(Class<?> clazz,
+      Class<?>... parameterTypes) {
+    try {
+      return MethodHandles.lookup().findConstructor(clazz,
+          MethodType.methodType(void.class, parameterTypes));
+    } catch (Throwable th) {
+      return null;
+    }
+  }
+
 }
@@ -45,8 +45,11 @@ package iaik.pkcs.pkcs11.objects;
 import iaik.pkcs.pkcs11.Util;
 import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Set;
 
 import static iaik.pkcs.pkcs11.wrapper.PKCS11Constants.*;
@@ -157,8 +160,50 @@ public abstract class Attribute {
   public static final long ENCODING_METHODS     = CKA_ENCODING_METHODS;
   public static final long MIME_TYPES           = CKA_MIME_TYPES;
 
-  protected static Hashtable<Long, String> attributeNames;
-  protected static Hashtable<Long, Class<?>> attributeClasses;
+  /**
+   * Creates an attribute of a given type, without reflection.
+   */
+  private abstract static class AttributeFactory {
+
+    abstract Attribute newAttribute(long type);
+
+  }
+
+  /**
+   * Maps the attribute types to their names. This map is unmodifiable.
+   */
+  private static final Map<Long, String> attributeNameMap =
+      newAttributeNames();
+
+  /**
+   * Maps the attribute types to the classes of their attributes. This map is
+   * unmodifiable.
+   */
+  private static final Map<Long, Class<?>> attributeClassMap =
+      newAttributeClasses();
+
+  private static final Map<Long, AttributeFactory> attributeFactories =
+      newAttributeFactories(attributeClassMap);
+
+  /**
+   * A copy of the attribute names, kept for subclasses. It is only consulted
+   * for types that are not known to this class.
+   *
+   * @deprecated Use {@link #getAttributeName(long)} instead.
+   */
+  @Deprecated
+  protected static Hashtable<Long, String> attributeNames =
+      new Hashtable<>(attributeNameMap);
+
+  /**
+   * A copy of the attribute classes, kept for subclasses. It is only
+   * consulted for types that are not known to this class.
+   *
+   * @deprecated Use {@link #getAttributeClass(long)} instead.
+   */
+  @Deprecated
+  protected static Hashtable<Long, Class<?>> attributeClasses =
+      new Hashtable<>(attributeClassMap);
 
   /**
    * True, if the object really possesses this attribute.
@@ -198,91 +243,302 @@ public abstract class Attribute {
     ckAttribute.type = type;
   }
 
+  private static Map<Long, String> newAttributeNames() {
+    Map<Long, String> names = new HashMap<>(128);
+    names.put(CLASS, "Class");
+    names.put(TOKEN, "Token");
+    names.put(PRIVATE, "Private");
+    names.put(LABEL, "Label");
+    names.put(APPLICATION, "Application");
+    names.put(VALUE, "Value");
+    names.put(OBJECT_ID, "PKCS11Object ID");
+    names.put(CERTIFICATE_TYPE, "Certificate Type");
+    names.put(ISSUER, "Issuer");
+    names.put(SERIAL_NUMBER, "Serial Number");
+    names.put(URL, "URL");
+    names.put(HASH_OF_SUBJECT_PUBLIC_KEY,
+        "Hash Of Subject Public Key");
+    names.put(HASH_OF_ISSUER_PUBLIC_KEY,
+        "Hash Of Issuer Public Key");
+    names.put(JAVA_MIDP_SECURITY_DOMAIN,
+        "Java MIDP Security Domain");
+    names.put(AC_ISSUER, "AC Issuer");
+    names.put(OWNER, "Owner");
+    names.put(ATTR_TYPES, "Attribute Types");
+    names.put(TRUSTED, "Trusted");
+    names.put(KEY_TYPE, "Key Type");
+    names.put(SUBJECT, "Subject");
+    names.put(ID, "ID");
+    names.put(CHECK_VALUE, "Check Value");
+    names.put(CERTIFICATE_CATEGORY, "Certificate Category");
+    names.put(SENSITIVE, "Sensitive");
+    names.put(ENCRYPT, "Encrypt");
+    names.put(DECRYPT, "Decrypt");
+    names.put(WRAP, "Wrap");
+    names.put(UNWRAP, "Unwrap");
+    names.put(WRAP_TEMPLATE, "Wrap Template");
+    names.put(UNWRAP_TEMPLATE, "Unwrap Template");
+    names.put(SIGN, "Sign");
+    names.put(SIGN_RECOVER, "Sign Recover");
+    names.put(VERIFY, "Verify");
+    names.put(VERIFY_RECOVER, "Verify Recover");
+    names.put(DERIVE, "Derive");
+    names.put(START_DATE, "Start Date");
+    names.put(END_DATE, "End Date");
+    names.put(MODULUS, "Modulus");
+    names.put(MODULUS_BITS, "Modulus Bits");
+    names.put(PUBLIC_EXPONENT, "Public Exponent");
+    names.put(PRIVATE_EXPONENT, "Private Exponent");
+    names.put(PRIME_1, "Prime 1");
+    names.put(PRIME_2, "Prime 2");
+    names.put(EXPONENT_1, "Exponent 1");
+    names.put(EXPONENT_2, "Exponent 2");
+    names.put(COEFFICIENT, "Coefficient");
+    names.put(PRIME, "Prime");
+    names.put(SUBPRIME, "Subprime");
+    names.put(BASE, "Base");
+    names.put(PRIME_BITS, "Prime Pits");
+    names.put(SUB_PRIME_BITS, "Subprime Bits");
+    names.put(VALUE_BITS, "Value Bits");
+    names.put(VALUE_LEN, "Value Length");
+    names.put(EXTRACTABLE, "Extractable");
+    names.put(LOCAL, "Local");
+    names.put(NEVER_EXTRACTABLE, "Never Extractable");
+    names.put(WRAP_WITH_TRUSTED, "Wrap With Trusted");
+    names.put(ALWAYS_SENSITIVE, "Always Sensitive");
+    names.put(ALWAYS_AUTHENTICATE, "Always Authenticate");
+    names.put(KEY_GEN_MECHANISM, "Key Generation Mechanism");
+    names.put(ALLOWED_MECHANISMS, "Allowed Mechanisms");
+    names.put(MODIFIABLE, "Modifiable");
+    names.put(EC_PARAMS, "EC Parameters");
+    names.put(EC_POINT, "EC Point");
+    names.put(SECONDARY_AUTH, "Secondary Authentication");
+    names.put(AUTH_PIN_FLAGS, "Authentication PIN Flags");
+    names.put(HW_FEATURE_TYPE, "Hardware Feature Type");
+    names.put(RESET_ON_INIT, "Reset on Initialization");
+    names.put(HAS_RESET, "Has been reset");
+    names.put(VENDOR_DEFINED, "Vendor Defined");
+    return Collections.unmodifiableMap(names);
+  }
+
+  private static Map<Long, Class<?>> newAttributeClasses() {
+    Set<Long> boolSet = new HashSet<>();
+    // CHECKSTYLE:SKIP
+    Set<Long> longSet = new HashSet<>();
+    // CHECKSTYLE:SKIP
+    Set<Long> barrSet = new HashSet<>();
+    // CHECKSTYLE:SKIP
+    Set<Long> carrSet = new HashSet<>();
+
+    Map<Long, Class<?>> classes = new HashMap<>(128);
+    classes.put(CLASS,
+        ObjectClassAttribute.class); //CK_OBJECT_CLASS
+    boolSet.add(TOKEN); //CK_BBOOL
+    boolSet.add(PRIVATE);//CK_BBOOL
+    carrSet.add(LABEL); //RFC2279 string
+    carrSet.add(APPLICATION); //RFC2279 string
+    barrSet.add(VALUE); //Byte Array
+    barrSet.add(OBJECT_ID); //Byte Array
+    classes.put(CERTIFICATE_TYPE,
+        CertificateTypeAttribute.class); //CK_CERTIFICATE_TYPE
+    barrSet.add(ISSUER); //Byte array
+    barrSet.add(SERIAL_NUMBER); //Byte array
+    carrSet.add(URL); //RFC2279 string
+    barrSet.add(HASH_OF_SUBJECT_PUBLIC_KEY); //Byte array
+    barrSet.add(HASH_OF_ISSUER_PUBLIC_KEY); //Byte array
+    longSet.add(JAVA_MIDP_SECURITY_DOMAIN); //CK_ULONG
+    barrSet.add(AC_ISSUER); //Byte array
+    barrSet.add(OWNER); //Byte array
+    barrSet.add(ATTR_TYPES); //Byte array
+    boolSet.add(TRUSTED); //CK_BBOOL
+    classes.put(KEY_TYPE, KeyTypeAttribute.class); //CK_KEY_TYPE
+    barrSet.add(SUBJECT); //Byte array
+    barrSet.add(ID); //Byte array
+    barrSet.add(CHECK_VALUE); //Byte array
+    longSet.add(CERTIFICATE_CATEGORY); //CK_ULONG
+    boolSet.add(SENSITIVE); //CK_BBOOL
+    boolSet.add(ENCRYPT); //CK_BBOOL
+    boolSet.add(DECRYPT); //CK_BBOOL
+    boolSet.add(WRAP); //CK_BBOOL
+    boolSet.add(UNWRAP); //CK_BBOOL
+    classes.put(WRAP_TEMPLATE,
+        AttributeArray.class); //CK_ATTRIBUTE_PTR
+    classes.put(Attribute.UNWRAP_TEMPLATE,
+        AttributeArray.class); //CK_ATTRIBUTE_PTR
+    boolSet.add(SIGN); //CK_BBOOL
+    boolSet.add(SIGN_RECOVER); //CK_BBOOL
+    boolSet.add(VERIFY); //CK_BBOOL
+    boolSet.add(VERIFY_RECOVER); //CK_BBOOL
+    boolSet.add(DERIVE); //CK_BBOOL
+    classes.put(START_DATE, DateAttribute.class); //CK_DATE
+    classes.put(END_DATE, DateAttribute.class); //CK_DATE
+    barrSet.add(MODULUS); //Big integer
+    classes.put(MODULUS_BITS, LongAttribute.class); //CK_ULONG
+    barrSet.add(PUBLIC_EXPONENT); //Big integer
+    barrSet.add(PRIVATE_EXPONENT); //Big integer
+    barrSet.add(PRIME_1); //Big integer
+    barrSet.add(PRIME_2); //Big integer
+    barrSet.add(EXPONENT_1); //Big integer
+    barrSet.add(EXPONENT_2); //Big integer
+    barrSet.add(COEFFICIENT); //Big integer
+    barrSet.add(PRIME); //Big integer
+    barrSet.add(SUBPRIME); //Big integer
+    barrSet.add(BASE); //Big integer
+    longSet.add(PRIME_BITS); //CK_ULONG
+    longSet.add(SUB_PRIME_BITS); //CK_ULONG
+    longSet.add(VALUE_BITS); //CK_ULONG
+    longSet.add(VALUE_LEN); //CK_ULONG
+    boolSet.add(EXTRACTABLE); //CK_BBOOL
+    boolSet.add(LOCAL); //CK_BBOOL
+    boolSet.add(NEVER_EXTRACTABLE); //CK_BBOOL
+    boolSet.add(WRAP_WITH_TRUSTED); //CK_BBOOL
+    boolSet.add(ALWAYS_SENSITIVE); //CK_BBOOL
+    boolSet.add(ALWAYS_AUTHENTICATE); //CK_BBOOL
+    classes.put(KEY_GEN_MECHANISM,
+        MechanismAttribute.class); //CK_MECHANISM_TYPE
+    classes.put(ALLOWED_MECHANISMS,
+        MechanismArrayAttribute.class); //CK_MECHANISM_TYPE_PTR
+    boolSet.add(MODIFIABLE); //CK_BBOOL
+    barrSet.add(EC_PARAMS); //Byte array
+    barrSet.add(EC_POINT); //Byte array
+    boolSet.add(SECONDARY_AUTH); //CK_BBOOL - deprecated
+    longSet.add(AUTH_PIN_FLAGS); //CK_ULONG - deprecated
+    classes.put(HW_FEATURE_TYPE,
+        HardwareFeatureTypeAttribute.class); //CK_HW_FEATURE
+    boolSet.add(RESET_ON_INIT); //CK_BBOOL
+    boolSet.add(HAS_RESET); //CK_BBOOL
+
+    for (Long m : boolSet) {
+      classes.put(m, BooleanAttribute.class);
+    }
+
+    for (Long m : longSet) {
+      classes.put(m, LongAttribute.class);
+    }
+
+    for (Long m : barrSet) {
+      classes.put(m, ByteArrayAttribute.class);
+    }
+
+    for (Long m : carrSet) {
+      classes.put(m, CharArrayAttribute.class);
+    }
+
+    return Collections.unmodifiableMap(classes);
+  }
+
+  private static Map<Long, AttributeFactory> newAttributeFactories(
+      Map<Long, Class<?>> classes) {
+    Map<Class<?>, AttributeFactory> factoryOfClass = new HashMap<>();
+    factoryOfClass.put(ObjectClassAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new ObjectClassAttribute();
+      }
+    });
+    factoryOfClass.put(CertificateTypeAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new CertificateTypeAttribute();
+      }
+    });
+    factoryOfClass.put(KeyTypeAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new KeyTypeAttribute();
+      }
+    });
+    factoryOfClass.put(HardwareFeatureTypeAttribute.class,
+        new AttributeFactory() {
+          @Override
+          Attribute newAttribute(long type) {
+            return new HardwareFeatureTypeAttribute();
+          }
+        });
+    factoryOfClass.put(AttributeArray.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new AttributeArray(type);
+      }
+    });
+    factoryOfClass.put(DateAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new DateAttribute(type);
+      }
+    });
+    factoryOfClass.put(LongAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new LongAttribute(type);
+      }
+    });
+    factoryOfClass.put(MechanismAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new MechanismAttribute(type);
+      }
+    });
+    factoryOfClass.put(MechanismArrayAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new MechanismArrayAttribute(type);
+      }
+    });
+    factoryOfClass.put(BooleanAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new BooleanAttribute(type);
+      }
+    });
+    factoryOfClass.put(ByteArrayAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new ByteArrayAttribute(type);
+      }
+    });
+    factoryOfClass.put(CharArrayAttribute.class, new AttributeFactory() {
+      @Override
+      Attribute newAttribute(long type) {
+        return new CharArrayAttribute(type);
+      }
+    });
+
+    Map<Long, AttributeFactory> factories = new HashMap<>(classes.size() * 2);
+    for (Map.Entry<Long, Class<?>> entry : classes.entrySet()) {
+      factories.put(entry.getKey(), factoryOfClass.get(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(factories);
+  }
+
   /**
-   * Get the name of the given attribute type.
+   * Creates an empty attribute of the given type, of the class returned by
+   * {@link #getAttributeClass(long)}, or an {@link OtherAttribute} for
+   * unknown types.
    *
    * @param type
    *          The attribute type.
-   * @return The name of the attribute type, or null if there is no such type.
+   * @return the new attribute.
    */
-  protected static synchronized String getAttributeName(long type) {
-    if (attributeNames == null) {
-      attributeNames = new Hashtable<>(85);
-      attributeNames.put(CLASS, "Class");
-      attributeNames.put(TOKEN, "Token");
-      attributeNames.put(PRIVATE, "Private");
-      attributeNames.put(LABEL, "Label");
-      attributeNames.put(APPLICATION, "Application");
-      attributeNames.put(VALUE, "Value");
-      attributeNames.put(OBJECT_ID, "PKCS11Object ID");
-      attributeNames.put(CERTIFICATE_TYPE, "Certificate Type");
-      attributeNames.put(ISSUER, "Issuer");
-      attributeNames.put(SERIAL_NUMBER, "Serial Number");
-      attributeNames.put(URL, "URL");
-      attributeNames.put(HASH_OF_SUBJECT_PUBLIC_KEY,
-          "Hash Of Subject Public Key");
-      attributeNames.put(HASH_OF_ISSUER_PUBLIC_KEY,
-          "Hash Of Issuer Public Key");
-      attributeNames.put(JAVA_MIDP_SECURITY_DOMAIN,
-          "Java MIDP Security Domain");
-      attributeNames.put(AC_ISSUER, "AC Issuer");
-      attributeNames.put(OWNER, "Owner");
-      attributeNames.put(ATTR_TYPES, "Attribute Types");
-      attributeNames.put(TRUSTED, "Trusted");
-      attributeNames.put(KEY_TYPE, "Key Type");
-      attributeNames.put(SUBJECT, "Subject");
-      attributeNames.put(ID, "ID");
-      attributeNames.put(CHECK_VALUE, "Check Value");
-      attributeNames.put(CERTIFICATE_CATEGORY, "Certificate Category");
-      attributeNames.put(SENSITIVE, "Sensitive");
-      attributeNames.put(ENCRYPT, "Encrypt");
-      attributeNames.put(DECRYPT, "Decrypt");
-      attributeNames.put(WRAP, "Wrap");
-      attributeNames.put(UNWRAP, "Unwrap");
-      attributeNames.put(WRAP_TEMPLATE, "Wrap Template");
-      attributeNames.put(UNWRAP_TEMPLATE, "Unwrap Template");
-      attributeNames.put(SIGN, "Sign");
-      attributeNames.put(SIGN_RECOVER, "Sign Recover");
-      attributeNames.put(VERIFY, "Verify");
-      attributeNames.put(VERIFY_RECOVER, "Verify Recover");
-      attributeNames.put(DERIVE, "Derive");
-      attributeNames.put(START_DATE, "Start Date");
-      attributeNames.put(END_DATE, "End Date");
-      attributeNames.put(MODULUS, "Modulus");
-      attributeNames.put(MODULUS_BITS, "Modulus Bits");
-      attributeNames.put(PUBLIC_EXPONENT, "Public Exponent");
-      attributeNames.put(PRIVATE_EXPONENT, "Private Exponent");
-      attributeNames.put(PRIME_1, "Prime 1");
-      attributeNames.put(PRIME_2, "Prime 2");
-      attributeNames.put(EXPONENT_1, "Exponent 1");
-      attributeNames.put(EXPONENT_2, "Exponent 2");
-      attributeNames.put(COEFFICIENT, "Coefficient");
-      attributeNames.put(PRIME, "Prime");
-      attributeNames.put(SUBPRIME, "Subprime");
-      attributeNames.put(BASE, "Base");
-      attributeNames.put(PRIME_BITS, "Prime Pits");
-      attributeNames.put(SUB_PRIME_BITS, "Subprime Bits");
-      attributeNames.put(VALUE_BITS, "Value Bits");
-      attributeNames.put(VALUE_LEN, "Value Length");
-      attributeNames.put(EXTRACTABLE, "Extractable");
-      attributeNames.put(LOCAL, "Local");
-      attributeNames.put(NEVER_EXTRACTABLE, "Never Extractable");
-      attributeNames.put(WRAP_WITH_TRUSTED, "Wrap With Trusted");
-      attributeNames.put(ALWAYS_SENSITIVE, "Always Sensitive");
-      attributeNames.put(ALWAYS_AUTHENTICATE, "Always Authenticate");
-      attributeNames.put(KEY_GEN_MECHANISM, "Key Generation Mechanism");
-      attributeNames.put(ALLOWED_MECHANISMS, "Allowed Mechanisms");
-      attributeNames.put(MODIFIABLE, "Modifiable");
-      attributeNames.put(EC_PARAMS, "EC Parameters");
-      attributeNames.put(EC_POINT, "EC Point");
-      attributeNames.put(SECONDARY_AUTH, "Secondary Authentication");
-      attributeNames.put(AUTH_PIN_FLAGS, "Authentication PIN Flags");
-      attributeNames.put(HW_FEATURE_TYPE, "Hardware Feature Type");
-      attributeNames.put(RESET_ON_INIT, "Reset on Initialization");
-      attributeNames.put(HAS_RESET, "Has been reset");
-      attributeNames.put(VENDOR_DEFINED, "Vendor Defined");
+  protected static Attribute newAttribute(long type) {
+    AttributeFactory factory = attributeFactories.get(type);
+    if (factory != null) {
+      return factory.newAttribute(type);
     }
 
+    Attribute attribute = new OtherAttribute();
+    attribute.setType(type);
+    return attribute;
+  }
+
+  /**
+   * Get the name of the given attribute type.
+   *
+   * @param type
+   *          The attribute type.
+   * @return The name of the attribute type, or null if there is no such type.
+   */
+  protected static String getAttributeName(long type) {
     String name;
 
     if ((type & VENDOR_DEFINED) != 0L) {
@@ -292,7 +548,10 @@ public abstract class Attribute {
       nameBuffer.append(']');
       name = nameBuffer.toString();
     } else {
-      name = attributeNames.get(type);
+      name = attributeNameMap.get(type);
+      if (name == null) {
+        name = attributeNames.get(type);
+      }
       if (name == null) {
         StringBuilder nameBuffer = new StringBuilder(25);
         nameBuffer.append("[0x");
@@ -325,112 +584,9 @@ public abstract class Attribute {
    * @return The class of the attribute type, or null if there is no such
    *         type.
    */
-  protected static synchronized Class<?> getAttributeClass(long type) {
-    if (attributeClasses == null) {
-      Set<Long> boolSet = new HashSet<>();
-      // CHECKSTYLE:SKIP
-      Set<Long> longSet = new HashSet<>();
-      // CHECKSTYLE:SKIP
-      Set<Long> barrSet = new HashSet<>();
-      // CHECKSTYLE:SKIP
-      Set<Long> carrSet = new HashSet<>();
-
-      attributeClasses = new Hashtable<>(85);
-      attributeClasses.put(CLASS,
-          ObjectClassAttribute.class); //CK_OBJECT_CLASS
-      boolSet.add(TOKEN); //CK_BBOOL
-      boolSet.add(PRIVATE);//CK_BBOOL
-      carrSet.add(LABEL); //RFC2279 string
-      carrSet.add(APPLICATION); //RFC2279 string
-      barrSet.add(VALUE); //Byte Array
-      barrSet.add(OBJECT_ID); //Byte Array
-      attributeClasses.put(CERTIFICATE_TYPE,
-          CertificateTypeAttribute.class); //CK_CERTIFICATE_TYPE
-      barrSet.add(ISSUER); //Byte array
-      barrSet.add(SERIAL_NUMBER); //Byte array
-      carrSet.add(URL); //RFC2279 string
-      barrSet.add(HASH_OF_SUBJECT_PUBLIC_KEY); //Byte array
-      barrSet.add(HASH_OF_ISSUER_PUBLIC_KEY); //Byte array
-      longSet.add(JAVA_MIDP_SECURITY_DOMAIN); //CK_ULONG
-      barrSet.add(AC_ISSUER); //Byte array
-      barrSet.add(OWNER); //Byte array
-      barrSet.add(ATTR_TYPES); //Byte array
-      boolSet.add(TRUSTED); //CK_BBOOL
-      attributeClasses.put(KEY_TYPE, KeyTypeAttribute.class); //CK_KEY_TYPE
-      barrSet.add(SUBJECT); //Byte array
-      barrSet.add(ID); //Byte array
-      barrSet.add(CHECK_VALUE); //Byte array
-      longSet.add(CERTIFICATE_CATEGORY); //CK_ULONG
-      boolSet.add(SENSITIVE); //CK_BBOOL
-      boolSet.add(ENCRYPT); //CK_BBOOL
-      boolSet.add(DECRYPT); //CK_BBOOL
-      boolSet.add(WRAP); //CK_BBOOL
-      boolSet.add(UNWRAP); //CK_BBOOL
-      attributeClasses.put(WRAP_TEMPLATE,
-          AttributeArray.class); //CK_ATTRIBUTE_PTR
-      attributeClasses.put(Attribute.UNWRAP_TEMPLATE,
-          AttributeArray.class); //CK_ATTRIBUTE_PTR
-      boolSet.add(SIGN); //CK_BBOOL
-      boolSet.add(SIGN_RECOVER); //CK_BBOOL
-      boolSet.add(VERIFY); //CK_BBOOL
-      boolSet.add(VERIFY_RECOVER); //CK_BBOOL
-      boolSet.add(DERIVE); //CK_BBOOL
-      attributeClasses.put(START_DATE, DateAttribute.class); //CK_DATE
-      attributeClasses.put(END_DATE, DateAttribute.class); //CK_DATE
-      barrSet.add(MODULUS); //Big integer
-      attributeClasses.put(MODULUS_BITS, LongAttribute.class); //CK_ULONG
-      barrSet.add(PUBLIC_EXPONENT); //Big integer
-      barrSet.add(PRIVATE_EXPONENT); //Big integer
-      barrSet.add(PRIME_1); //Big integer
-      barrSet.add(PRIME_2); //Big integer
-      barrSet.add(EXPONENT_1); //Big integer
-      barrSet.add(EXPONENT_2); //Big integer
-      barrSet.add(COEFFICIENT); //Big integer
-      barrSet.add(PRIME); //Big integer
-      barrSet.add(SUBPRIME); //Big integer
-      barrSet.add(BASE); //Big integer
-      longSet.add(PRIME_BITS); //CK_ULONG
-      longSet.add(SUB_PRIME_BITS); //CK_ULONG
-      longSet.add(VALUE_BITS); //CK_ULONG
-      longSet.add(VALUE_LEN); //CK_ULONG
-      boolSet.add(EXTRACTABLE); //CK_BBOOL
-      boolSet.add(LOCAL); //CK_BBOOL
-      boolSet.add(NEVER_EXTRACTABLE); //CK_BBOOL
-      boolSet.add(WRAP_WITH_TRUSTED); //CK_BBOOL
-      boolSet.add(ALWAYS_SENSITIVE); //CK_BBOOL
-      boolSet.add(ALWAYS_AUTHENTICATE); //CK_BBOOL
-      attributeClasses.put(KEY_GEN_MECHANISM,
-          MechanismAttribute.class); //CK_MECHANISM_TYPE
-      attributeClasses.put(ALLOWED_MECHANISMS,
-          MechanismArrayAttribute.class); //CK_MECHANISM_TYPE_PTR
-      boolSet.add(MODIFIABLE); //CK_BBOOL
-      barrSet.add(EC_PARAMS); //Byte array
-      barrSet.add(EC_POINT); //Byte array
-      boolSet.add(SECONDARY_AUTH); //CK_BBOOL - deprecated
-      longSet.add(AUTH_PIN_FLAGS); //CK_ULONG - deprecated
-      attributeClasses.put(HW_FEATURE_TYPE,
-          HardwareFeatureTypeAttribute.class); //CK_HW_FEATURE
-      boolSet.add(RESET_ON_INIT); //CK_BBOOL
-      boolSet.add(HAS_RESET); //CK_BBOOL
-
-      for (Long m : boolSet) {
-        attributeClasses.put(m, BooleanAttribute.class);
-      }
-
-      for (Long m : longSet) {
-        attributeClasses.put(m, LongAttribute.class);
-      }
-
-      for (Long m : barrSet) {
-        attributeClasses.put(m, ByteArrayAttribute.class);
-      }
-
-      for (Long m : carrSet) {
-        attributeClasses.put(m, CharArrayAttribute.class);
-      }
-    }
-
-    return attributeClasses.get(type);
+  protected static Class<?> getAttributeClass(long type) {
+    Class<?> clazz = attributeClassMap.get(type);
+    return (clazz != null) ? clazz : attributeClasses.get(type);
   }
 
   /**
@@ -45,7 +45,6 @@ package iaik.pkcs.pkcs11.objects;
 import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 
 /**
@@ -88,10 +87,8 @@ public class AttributeArray extends Attribute {
     template = value;
 
     List<CK_ATTRIBUTE> attributeList = new ArrayList<>();
-    Enumeration<Attribute> attributeEnumeration
-        = template.attributeTable.elements();
-    while (attributeEnumeration.hasMoreElements()) {
-      Attribute attribute = attributeEnumeration.nextElement();
+    for (int i = 0; i < template.attributes.size(); i++) {
+      Attribute attribute = template.attributes.attributeAt(i);
       if (attribute.present) {
         attributeList.add(attribute.getCkAttribute());
       }
@@ -118,27 +115,10 @@ public class AttributeArray extends Attribute {
     CK_ATTRIBUTE[] attributesArray = (CK_ATTRIBUTE[]) ckAttribute.pValue;
     GenericTemplate template = new GenericTemplate();
     for (CK_ATTRIBUTE ck_attribute : attributesArray) {
-      Long type = ck_attribute.type;
-      Class<?> implementation = Attribute.getAttributeClass(type);
-      Attribute attribute;
-      if (implementation == null) {
-        attribute = new OtherAttribute();
-        attribute.setType(type);
-        attribute.setCkAttribute(ck_attribute);
-      } else {
-        try {
-          attribute = (Attribute)
-                  implementation.getDeclaredConstructor(Attribute.class)
-                          .newInstance();
-          attribute.setCkAttribute(ck_attribute);
-          attribute.setPresent(true);
-          template.addAttribute(attribute);
-        } catch (Exception ex) {
-          System.err.println("Error when trying to create a "
-                  + implementation + " instance for " + type
-                  + ": " + ex.getMessage());
-        }
-      }
+      Attribute attribute = Attribute.newAttribute(ck_attribute.type);
+      attribute.setCkAttribute(ck_attribute);
+      attribute.setPresent(true);
+      template.addAttribute(attribute);
     }
     return template;
   }
@@ -0,0 +1,330 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11.objects;
+
+import iaik.pkcs.pkcs11.Util;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The attributes of a {@link PKCS11Object}, keyed by the attribute type. The
+ * types are kept in a sorted array and the attributes in a parallel array,
+ * without boxing the types. After an object has allocated its attributes,
+ * the array of types is shared with all other objects having the same
+ * attribute types; it is copied when an attribute is added or removed.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class AttributeTable {
+
+  private static final long[] NO_TYPES = new long[0];
+
+  private static final Attribute[] NO_ATTRIBUTES = new Attribute[0];
+
+  private static final int MAX_LAYOUTS = 1024;
+
+  /**
+   * The shared arrays of attribute types.
+   */
+  private static final ConcurrentHashMap<Layout, long[]> LAYOUTS =
+      new ConcurrentHashMap<>();
+
+  private static final class Layout {
+
+    private final long[] types;
+
+    private final int hashCode;
+
+    private Layout(long[] types) {
+      this.types = types;
+      this.hashCode = Arrays.hashCode(types);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof Layout)
+          && Arrays.equals(types, ((Layout) obj).types);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+  }
+
+  private long[] types = NO_TYPES;
+
+  private Attribute[] attributes = NO_ATTRIBUTES;
+
+  private int size;
+
+  /**
+   * True if the array of types is shared and must be copied before it is
+   * modified.
+   */
+  private boolean sharedTypes;
+
+  /**
+   * Creates an empty table.
+   */
+  public AttributeTable() {
+  }
+
+  /**
+   * Gets the number of attributes.
+   *
+   * @return the number of attributes.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether this table contains no attribute.
+   *
+   * @return true if this table contains no attribute.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the attribute type at the given index. The types are sorted in
+   * ascending order.
+   *
+   * @param index
+   *          The index, from 0 to {@code size() - 1}.
+   * @return the attribute type.
+   */
+  public long typeAt(int index) {
+    checkIndex(index);
+    return types[index];
+  }
+
+  /**
+   * Gets the attribute at the given index.
+   *
+   * @param index
+   *          The index, from 0 to {@code size() - 1}.
+   * @return the attribute.
+   */
+  public Attribute attributeAt(int index) {
+    checkIndex(index);
+    return attributes[index];
+  }
+
+  /**
+   * Gets the attribute of the given type.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the attribute, or null if this table has no attribute of the
+   *         given type.
+   */
+  public Attribute get(long type) {
+    int index = Arrays.binarySearch(types, 0, size, type);
+    return (index < 0) ? null : attributes[index];
+  }
+
+  /**
+   * Returns whether this table contains an attribute of the given type.
+   *
+   * @param type
+   *          The attribute type.
+   * @return true if this table contains an attribute of the given type.
+   */
+  public boolean containsKey(long type) {
+    return Arrays.binarySearch(types, 0, size, type) >= 0;
+  }
+
+  /**
+   * Puts the attribute of the given type.
+   *
+   * @param type
+   *          The attribute type.
+   * @param attribute
+   *          The attribute. Must not be null.
+   * @return the replaced attribute, or null.
+   */
+  public Attribute put(long type, Attribute attribute) {
+    Util.requireNonNull("attribute", attribute);
+    int index = Arrays.binarySearch(types, 0, size, type);
+    if (index >= 0) {
+      Attribute old = attributes[index];
+      attributes[index] = attribute;
+      return old;
+    }
+
+    index = -index - 1;
+    if (sharedTypes || size == types.length) {
+      int capacity = (size == types.length)
+          ? Math.max(8, size + (size >> 1)) : types.length;
+      types = Arrays.copyOf(types, capacity);
+      attributes = Arrays.copyOf(attributes, capacity);
+      sharedTypes = false;
+    }
+
+    System.arraycopy(types, index, types, index + 1, size - index);
+    System.arraycopy(attributes, index, attributes, index + 1, size - index);
+    types[index] = type;
+    attributes[index] = attribute;
+    size++;
+    return null;
+  }
+
+  /**
+   * Puts all attributes of the given table.
+   *
+   * @param table
+   *          The table. Must not be null.
+   */
+  public void putAll(AttributeTable table) {
+    Util.requireNonNull("table", table);
+    for (int i = 0; i < table.size; i++) {
+      put(table.types[i], table.attributes[i]);
+    }
+  }
+
+  /**
+   * Removes the attribute of the given type.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the removed attribute, or null.
+   */
+  public Attribute remove(long type) {
+    int index = Arrays.binarySearch(types, 0, size, type);
+    if (index < 0) {
+      return null;
+    }
+
+    Attribute old = attributes[index];
+    if (sharedTypes) {
+      types = types.clone();
+      sharedTypes = false;
+    }
+
+    int moved = size - index - 1;
+    System.arraycopy(types, index + 1, types, index, moved);
+    System.arraycopy(attributes, index + 1, attributes, index, moved);
+    size--;
+    attributes[size] = null;
+    return old;
+  }
+
+  /**
+   * Removes all attributes.
+   */
+  public void clear() {
+    types = NO_TYPES;
+    attributes = NO_ATTRIBUTES;
+    size = 0;
+    sharedTypes = false;
+  }
+
+  /**
+   * Returns the attributes as a new hashtable, keyed by the attribute type.
+   *
+   * @return the hashtable.
+   */
+  public Hashtable<Long, Attribute> toHashtable() {
+    Hashtable<Long, Attribute> table = new Hashtable<>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      table.put(types[i], attributes[i]);
+    }
+    return table;
+  }
+
+  /**
+   * Trims the arrays to the size of this table, and shares the array of
+   * types with the other tables of the same types.
+   */
+  void compact() {
+    if (sharedTypes) {
+      return;
+    }
+
+    long[] compactTypes = (size == types.length)
+        ? types : Arrays.copyOf(types, size);
+    if (size != attributes.length) {
+      attributes = Arrays.copyOf(attributes, size);
+    }
+
+    Layout layout = new Layout(compactTypes);
+    long[] shared = LAYOUTS.get(layout);
+    if (shared == null && LAYOUTS.size() < MAX_LAYOUTS) {
+      shared = LAYOUTS.putIfAbsent(layout, compactTypes);
+      if (shared == null) {
+        shared = compactTypes;
+      }
+    }
+
+    if (shared == null) {
+      types = compactTypes;
+    } else {
+      types = shared;
+      sharedTypes = true;
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(Util.concatObjects(
+          "index ", index, " out of range [0, ", size, ")"));
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof AttributeTable)) {
+      return false;
+    }
+
+    AttributeTable other = (AttributeTable) obj;
+    if (size != other.size) {
+      return false;
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (types[i] != other.types[i]
+          || !attributes[i].equals(other.attributes[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    // same as the hash code of the equivalent Hashtable
+    int hash = 0;
+    for (int i = 0; i < size; i++) {
+      hash += Long.hashCode(types[i]) ^ attributes[i].hashCode();
+    }
+    return hash;
+  }
+
+}
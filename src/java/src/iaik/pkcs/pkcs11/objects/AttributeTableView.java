@@ -0,0 +1,389 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package iaik.pkcs.pkcs11.objects;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link Hashtable} view of an {@link AttributeTable}, backing the
+ * protected field {@link PKCS11Object#attributeTable}. All reads and writes
+ * go to the attribute table, so subclasses and vendor objects accessing the
+ * field see the same attributes as the object itself.
+ * <p>
+ * Like the attribute table, this class is not thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+class AttributeTableView extends Hashtable<Long, Attribute> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient AttributeTable table;
+
+  private final transient Map<Long, Attribute> map;
+
+  AttributeTableView(AttributeTable table) {
+    super(1);
+    this.table = table;
+    this.map = new MapView();
+  }
+
+  private final class MapView extends AbstractMap<Long, Attribute> {
+
+    private Set<Map.Entry<Long, Attribute>> entrySet;
+
+    @Override
+    public int size() {
+      return table.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof Long) && table.containsKey((Long) key);
+    }
+
+    @Override
+    public Attribute get(Object key) {
+      return (key instanceof Long) ? table.get((Long) key) : null;
+    }
+
+    @Override
+    public Attribute put(Long key, Attribute value) {
+      if (key == null || value == null) {
+        throw new NullPointerException();
+      }
+      return table.put(key, value);
+    }
+
+    @Override
+    public Attribute remove(Object key) {
+      return (key instanceof Long) ? table.remove((Long) key) : null;
+    }
+
+    @Override
+    public void clear() {
+      table.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<Long, Attribute>> entrySet() {
+      if (entrySet == null) {
+        entrySet = new AbstractSet<Map.Entry<Long, Attribute>>() {
+
+          @Override
+          public Iterator<Map.Entry<Long, Attribute>> iterator() {
+            return new EntryIterator();
+          }
+
+          @Override
+          public int size() {
+            return table.size();
+          }
+
+          @Override
+          public void clear() {
+            table.clear();
+          }
+
+        };
+      }
+      return entrySet;
+    }
+
+  }
+
+  private final class EntryIterator
+      implements Iterator<Map.Entry<Long, Attribute>> {
+
+    private int next;
+
+    private long lastType;
+
+    private boolean removable;
+
+    @Override
+    public boolean hasNext() {
+      return next < table.size();
+    }
+
+    @Override
+    public Map.Entry<Long, Attribute> next() {
+      if (next >= table.size()) {
+        throw new NoSuchElementException();
+      }
+
+      lastType = table.typeAt(next);
+      next++;
+      removable = true;
+      return new Entry(lastType);
+    }
+
+    @Override
+    public void remove() {
+      if (!removable) {
+        throw new IllegalStateException();
+      }
+
+      table.remove(lastType);
+      next--;
+      removable = false;
+    }
+
+  }
+
+  private final class Entry implements Map.Entry<Long, Attribute> {
+
+    private final long type;
+
+    private Entry(long type) {
+      this.type = type;
+    }
+
+    @Override
+    public Long getKey() {
+      return type;
+    }
+
+    @Override
+    public Attribute getValue() {
+      return table.get(type);
+    }
+
+    @Override
+    public Attribute setValue(Attribute value) {
+      if (value == null) {
+        throw new NullPointerException();
+      }
+      return table.put(type, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Map.Entry)) {
+        return false;
+      }
+
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+      Attribute value = getValue();
+      return getKey().equals(other.getKey())
+          && (value == null ? other.getValue() == null
+              : value.equals(other.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      Attribute value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+
+  }
+
+  @Override
+  public int size() {
+    return table.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return table.isEmpty();
+  }
+
+  @Override
+  public Enumeration<Long> keys() {
+    return Collections.enumeration(map.keySet());
+  }
+
+  @Override
+  public Enumeration<Attribute> elements() {
+    return Collections.enumeration(map.values());
+  }
+
+  @Override
+  public boolean contains(Object value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    return map.containsValue(value);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return contains(value);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override
+  public Attribute get(Object key) {
+    return map.get(key);
+  }
+
+  @Override
+  public Attribute put(Long key, Attribute value) {
+    return map.put(key, value);
+  }
+
+  @Override
+  public Attribute remove(Object key) {
+    return map.remove(key);
+  }
+
+  @Override
+  public void putAll(Map<? extends Long, ? extends Attribute> t) {
+    map.putAll(t);
+  }
+
+  @Override
+  public void clear() {
+    table.clear();
+  }
+
+  /**
+   * Returns a detached copy as a plain {@link Hashtable}.
+   *
+   * @return the copy.
+   */
+  @Override
+  public Object clone() {
+    return table.toHashtable();
+  }
+
+  @Override
+  public String toString() {
+    return map.toString();
+  }
+
+  @Override
+  public Set<Long> keySet() {
+    return map.keySet();
+  }
+
+  @Override
+  public Set<Map.Entry<Long, Attribute>> entrySet() {
+    return map.entrySet();
+  }
+
+  @Override
+  public Collection<Attribute> values() {
+    return map.values();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (obj == this) || map.equals(obj);
+  }
+
+  @Override
+  public int hashCode() {
+    return table.hashCode();
+  }
+
+  @Override
+  public Attribute getOrDefault(Object key, Attribute defaultValue) {
+    return map.getOrDefault(key, defaultValue);
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super Long, ? super Attribute> action) {
+    map.forEach(action);
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super Long, ? super Attribute,
+      ? extends Attribute> function) {
+    map.replaceAll(function);
+  }
+
+  @Override
+  public Attribute putIfAbsent(Long key, Attribute value) {
+    return map.putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    return map.remove(key, value);
+  }
+
+  @Override
+  public boolean replace(Long key, Attribute oldValue, Attribute newValue) {
+    return map.replace(key, oldValue, newValue);
+  }
+
+  @Override
+  public Attribute replace(Long key, Attribute value) {
+    return map.replace(key, value);
+  }
+
+  @Override
+  public Attribute computeIfAbsent(Long key,
+      Function<? super Long, ? extends Attribute> mappingFunction) {
+    return map.computeIfAbsent(key, mappingFunction);
+  }
+
+  @Override
+  public Attribute computeIfPresent(Long key, BiFunction<? super Long,
+      ? super Attribute, ? extends Attribute> remappingFunction) {
+    return map.computeIfPresent(key, remappingFunction);
+  }
+
+  @Override
+  public Attribute compute(Long key, BiFunction<? super Long,
+      ? super Attribute, ? extends Attribute> remappingFunction) {
+    return map.compute(key, remappingFunction);
+  }
+
+  @Override
+  public Attribute merge(Long key, Attribute value, BiFunction<
+      ? super Attribute, ? super Attribute, ? extends Attribute>
+      remappingFunction) {
+    return map.merge(key, value, remappingFunction);
+  }
+
+  /**
+   * Serializes a detached copy as a plain {@link Hashtable}.
+   *
+   * @return the copy.
+   * @exception ObjectStreamException
+   *              Never.
+   */
+  private Object writeReplace() throws ObjectStreamException {
+    return table.toHashtable();
+  }
+
+}
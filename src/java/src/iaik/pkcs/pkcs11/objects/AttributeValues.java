@@ -0,0 +1,240 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11.objects;
+
+import iaik.pkcs.pkcs11.wrapper.Functions;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+
+/**
+ * The values of selected attributes of one object, as read by
+ * {@link ObjectReader#readAttributes(iaik.pkcs.pkcs11.Session, long,
+ * long...)}. In contrast to the {@link PKCS11Object} hierarchy, no
+ * {@link Attribute} objects are created: the values are kept as returned
+ * by the token, i.e. as {@code byte[]}, {@code char[]}, {@link Long},
+ * {@link Boolean} or {@link sun.security.pkcs11.wrapper.CK_DATE}.
+ * <p>
+ * The values are not copied. Callers must not modify returned arrays.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public final class AttributeValues {
+
+  private final long objectHandle;
+
+  private final long[] types;
+
+  private final Object[] values;
+
+  private final long[] errors;
+
+  AttributeValues(long objectHandle, long[] types, Object[] values,
+      long[] errors) {
+    this.objectHandle = objectHandle;
+    this.types = types;
+    this.values = values;
+    this.errors = errors;
+  }
+
+  /**
+   * Gets the handle of the object.
+   *
+   * @return the object handle.
+   */
+  public long getObjectHandle() {
+    return objectHandle;
+  }
+
+  /**
+   * Gets the number of requested attributes.
+   *
+   * @return the number of requested attributes.
+   */
+  public int size() {
+    return types.length;
+  }
+
+  /**
+   * Gets the type of the attribute at the given index.
+   *
+   * @param index
+   *          Index of the attribute, in the order of the request.
+   * @return the attribute type.
+   */
+  public long getType(int index) {
+    return types[index];
+  }
+
+  /**
+   * Returns whether the object has the given attribute. Sensitive attributes
+   * are present, although their values are not available.
+   *
+   * @param type
+   *          The attribute type.
+   * @return true if the attribute has been requested and the object has it.
+   */
+  public boolean isPresent(long type) {
+    int idx = indexOf(type);
+    return idx != -1 && (errors == null
+        || errors[idx] != PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID);
+  }
+
+  /**
+   * Returns whether the token refused to reveal the value of the given
+   * attribute.
+   *
+   * @param type
+   *          The attribute type.
+   * @return true if the attribute is sensitive.
+   */
+  public boolean isSensitive(long type) {
+    int idx = indexOf(type);
+    return idx != -1 && errors != null
+        && errors[idx] == PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE;
+  }
+
+  /**
+   * Gets the value of the given attribute as returned by the token.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if the attribute has not been requested, is
+   *         not present, is sensitive or has no value.
+   */
+  public Object getValue(long type) {
+    int idx = indexOf(type);
+    return (idx == -1) ? null : values[idx];
+  }
+
+  /**
+   * Gets the value of the given attribute of type {@code byte[]}; e.g.
+   * CKA_ID or CKA_MODULUS.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type {@code byte[]}.
+   */
+  public byte[] getByteArray(long type) {
+    return (byte[]) getValue(type);
+  }
+
+  /**
+   * Gets the value of the given attribute of type {@code char[]}; e.g.
+   * CKA_LABEL.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type {@code char[]}.
+   */
+  public char[] getCharArray(long type) {
+    return (char[]) getValue(type);
+  }
+
+  /**
+   * Gets the value of the given attribute of type {@code char[]} as string.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type {@code char[]}.
+   */
+  public String getString(long type) {
+    char[] value = getCharArray(type);
+    return (value == null) ? null : new String(value);
+  }
+
+  /**
+   * Gets the value of the given attribute of type CK_ULONG; e.g.
+   * CKA_KEY_TYPE.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type CK_ULONG.
+   */
+  public Long getLong(long type) {
+    return (Long) getValue(type);
+  }
+
+  /**
+   * Gets the value of the given attribute of type CK_ULONG.
+   *
+   * @param type
+   *          The attribute type.
+   * @param defaultValue
+   *          The value to return if the attribute value is not available.
+   * @return the value, or defaultValue if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type CK_ULONG.
+   */
+  public long getLong(long type, long defaultValue) {
+    Long value = getLong(type);
+    return (value == null) ? defaultValue : value;
+  }
+
+  /**
+   * Gets the value of the given attribute of type CK_BBOOL; e.g. CKA_SIGN.
+   *
+   * @param type
+   *          The attribute type.
+   * @return the value, or null if not available.
+   * @throws ClassCastException
+   *           If the attribute is not of type CK_BBOOL.
+   */
+  public Boolean getBoolean(long type) {
+    return (Boolean) getValue(type);
+  }
+
+  private int indexOf(long type) {
+    for (int i = 0; i < types.length; i++) {
+      if (types[i] == type) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(40 * types.length + 40);
+    sb.append("AttributeValues(handle=").append(objectHandle).append("):");
+    for (int i = 0; i < types.length; i++) {
+      sb.append("\n  0x").append(Functions.toFullHex(types[i])).append(": ");
+      long error = (errors == null) ? PKCS11Constants.CKR_OK : errors[i];
+      if (error == PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE) {
+        sb.append("<sensitive>");
+      } else if (error == PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID) {
+        sb.append("<not present>");
+      } else if (values[i] instanceof byte[]) {
+        sb.append(Functions.toHexString((byte[]) values[i]));
+      } else if (values[i] instanceof char[]) {
+        sb.append((char[]) values[i]);
+      } else {
+        sb.append(values[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -46,10 +46,6 @@ import iaik.pkcs.pkcs11.Session;
 import iaik.pkcs.pkcs11.TokenException;
 import iaik.pkcs.pkcs11.Util;
 
-import java.util.Enumeration;
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * An object of this class is a generic template. Its purpose is to serve
  * as a container for a set of attributes that the application can use to search
@@ -70,7 +66,7 @@ public class GenericTemplate extends PKCS11Object {
    */
   public GenericTemplate() {
     // we do not want any attributes in this object by default
-    attributeTable.clear();
+    attributes.clear();
   }
 
   /**
@@ -82,7 +78,7 @@ public class GenericTemplate extends PKCS11Object {
   public void addAttribute(Attribute attribute) {
     Util.requireNonNull("attribute", attribute);
     //attributes.addElement(attribute);
-    attributeTable.put(attribute.getType(), attribute);
+    attributes.put(attribute.getType(), attribute);
   }
 
   /**
@@ -95,7 +91,7 @@ public class GenericTemplate extends PKCS11Object {
    */
   public void addAllAttributes(PKCS11Object object) {
     Util.requireNonNull("object", object);
-    attributeTable.putAll(object.attributeTable);
+    attributes.putAll(object.attributes);
   }
 
   /**
@@ -109,12 +105,10 @@ public class GenericTemplate extends PKCS11Object {
    */
   public void addAllPresentAttributes(PKCS11Object object) {
     Util.requireNonNull("object", object);
-    Enumeration<Attribute> attributeEnumaeration =
-        object.attributeTable.elements();
-    while (attributeEnumaeration.hasMoreElements()) {
-      Attribute attribute = attributeEnumaeration.nextElement();
+    for (int i = 0; i < object.attributes.size(); i++) {
+      Attribute attribute = object.attributes.attributeAt(i);
       if (attribute.isPresent()) {
-        attributeTable.put(attribute.getType(), attribute);
+        attributes.put(attribute.getType(), attribute);
       }
     }
   }
@@ -130,7 +124,7 @@ public class GenericTemplate extends PKCS11Object {
    */
   public boolean containsAttribute(Attribute attribute) {
     Util.requireNonNull("attribute", attribute);
-    return attributeTable.containsKey(attribute.getType());
+    return attributes.containsKey(attribute.getType());
   }
 
   /**
@@ -151,7 +145,7 @@ public class GenericTemplate extends PKCS11Object {
     }
 
     GenericTemplate other = (GenericTemplate) otherObject;
-    return this.attributeTable.equals(other.attributeTable);
+    return this.attributes.equals(other.attributes);
   }
 
   /**
@@ -162,7 +156,7 @@ public class GenericTemplate extends PKCS11Object {
    */
   @Override
   public int hashCode() {
-    return attributeTable.hashCode();
+    return attributes.hashCode();
   }
 
   /**
@@ -185,15 +179,13 @@ public class GenericTemplate extends PKCS11Object {
     }
 
     super.readAttributes(session);
-    List<Attribute> attrs = new LinkedList<>();
-    Enumeration<Attribute> attributeEnumeration = attributeTable.elements();
-    while (attributeEnumeration.hasMoreElements()) {
-      attrs.add(attributeEnumeration.nextElement());
-    }
-
-    if (!attrs.isEmpty()) {
-      PKCS11Object.getAttributeValues(session, objectHandle,
-          attrs.toArray(new Attribute[0]));
+    int size = attributes.size();
+    if (size != 0) {
+      Attribute[] attrs = new Attribute[size];
+      for (int i = 0; i < size; i++) {
+        attrs[i] = attributes.attributeAt(i);
+      }
+      PKCS11Object.getAttributeValues(session, objectHandle, attrs);
     }
   }
 
@@ -212,7 +204,7 @@ public class GenericTemplate extends PKCS11Object {
   public Attribute removeAttribute(Attribute attribute) {
     Util.requireNonNull("attribute", attribute);
 
-    return attributeTable.remove(attribute.getType());
+    return attributes.remove(attribute.getType());
   }
 
   /**
@@ -228,9 +220,8 @@ public class GenericTemplate extends PKCS11Object {
    */
   public void removeAllAttributes(PKCS11Object object) {
     Util.requireNonNull("object", object);
-    Enumeration<Long> keysToRemove = object.attributeTable.keys();
-    while (keysToRemove.hasMoreElements()) {
-      attributeTable.remove(keysToRemove.nextElement());
+    for (int i = 0; i < object.attributes.size(); i++) {
+      attributes.remove(object.attributes.typeAt(i));
     }
   }
 
@@ -248,12 +239,9 @@ public class GenericTemplate extends PKCS11Object {
    */
   public void removeAllPresentAttributes(PKCS11Object object) {
     Util.requireNonNull("object", object);
-    Enumeration<Long> keysToRemove = object.attributeTable.keys();
-    while (keysToRemove.hasMoreElements()) {
-      Long key = keysToRemove.nextElement();
-      Attribute attribute = object.attributeTable.get(key);
-      if (attribute.isPresent()) {
-        attributeTable.remove(key);
+    for (int i = 0; i < object.attributes.size(); i++) {
+      if (object.attributes.attributeAt(i).isPresent()) {
+        attributes.remove(object.attributes.typeAt(i));
       }
     }
   }
@@ -267,10 +255,8 @@ public class GenericTemplate extends PKCS11Object {
    */
   protected void setAllPresentFlags(boolean present) {
     // make a deep clone of all attributes
-    Enumeration<Attribute> attributesEnumeration = attributeTable.elements();
-    while (attributesEnumeration.hasMoreElements()) {
-      Attribute attribute = attributesEnumeration.nextElement();
-      attribute.setPresent(present);
+    for (int i = 0; i < attributes.size(); i++) {
+      attributes.attributeAt(i).setPresent(present);
     }
   }
 
@@ -304,10 +290,9 @@ public class GenericTemplate extends PKCS11Object {
   public String toString(boolean newline, boolean withName, String indent) {
     StringBuilder sb = new StringBuilder(1024);
 
-    Enumeration<Attribute> attributesEnumeration = attributeTable.elements();
     boolean firstAttribute = !newline;
-    while (attributesEnumeration.hasMoreElements()) {
-      Attribute attribute = attributesEnumeration.nextElement();
+    for (int i = 0; i < attributes.size(); i++) {
+      Attribute attribute = attributes.attributeAt(i);
       if (attribute.isPresent()) {
         if (!firstAttribute) {
           sb.append("\n");
@@ -48,7 +48,10 @@ import iaik.pkcs.pkcs11.Util;
 import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
 import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * An object of this class represents a key as defined by PKCS#11 2.11.
@@ -262,11 +265,54 @@ public class Key extends Storage {
   }
 
   /**
-   * A table holding string representations for all known key types. Table key
-   * is the key type as Long object.
+   * A map holding string representations for all known key types. Map key
+   * is the key type as Long object. This map is unmodifiable.
    */
+  private static final Map<Long, String> keyTypeNameMap;
+
+  /**
+   * A copy of the key type names, kept for subclasses. It is only consulted
+   * for key types that are not known to this class.
+   *
+   * @deprecated Use {@link #getKeyTypeName(long)} instead.
+   */
+  @Deprecated
   protected static Hashtable<Long, String> keyTypeNames;
 
+  static {
+    Map<Long, String> names = new HashMap<>(48);
+    names.put(KeyType.RSA, "RSA");
+    names.put(KeyType.DSA, "DSA");
+    names.put(KeyType.DH, "DH");
+    names.put(KeyType.EC, "EC");
+    names.put(KeyType.EC_EDWARDS, "EC_EDWARDS");
+    names.put(KeyType.EC_MONTGOMERY, "EC_MONTGOMERY");
+    names.put(KeyType.X9_42_DH, "X9_42_DH");
+    names.put(KeyType.KEA, "KEA");
+    names.put(KeyType.GENERIC_SECRET, "GENERIC_SECRET");
+    names.put(KeyType.RC2, "RC2");
+    names.put(KeyType.RC4, "RC4");
+    names.put(KeyType.DES, "DES");
+    names.put(KeyType.DES2, "DES2");
+    names.put(KeyType.DES3, "DES3");
+    names.put(KeyType.CAST, "CAST");
+    names.put(KeyType.CAST3, "CAST3");
+    names.put(KeyType.CAST128, "CAST128");
+    names.put(KeyType.RC5, "RC5");
+    names.put(KeyType.IDEA, "IDEA");
+    names.put(KeyType.SKIPJACK, "SKIPJACK");
+    names.put(KeyType.BATON, "BATON");
+    names.put(KeyType.JUNIPER, "JUNIPER");
+    names.put(KeyType.CDMF, "CDMF");
+    names.put(KeyType.AES, "AES");
+    names.put(KeyType.BLOWFISH, "BLOWFISH");
+    names.put(KeyType.TWOFISH, "TWOFISH");
+    names.put(KeyType.VENDOR_SM2, "SM2");
+    names.put(KeyType.VENDOR_SM4, "SM4");
+    keyTypeNameMap = Collections.unmodifiableMap(names);
+    keyTypeNames = new Hashtable<>(names);
+  }
+
   /**
    * The type of this key. Its value is one of KeyType, or one that has a
    * bigger value than VENDOR_DEFINED.
@@ -341,40 +387,10 @@ public class Key extends Storage {
    * @return A string denoting the key type; e.g. "RSA".
    */
   public static String getKeyTypeName(long keyType) {
-    if (keyTypeNames == null) {
-      // setup key type names table
-      keyTypeNames = new Hashtable<>(24);
-      keyTypeNames.put(KeyType.RSA, "RSA");
-      keyTypeNames.put(KeyType.DSA, "DSA");
-      keyTypeNames.put(KeyType.DH, "DH");
-      keyTypeNames.put(KeyType.EC, "EC");
-      keyTypeNames.put(KeyType.EC_EDWARDS, "EC_EDWARDS");
-      keyTypeNames.put(KeyType.EC_MONTGOMERY, "EC_MONTGOMERY");
-      keyTypeNames.put(KeyType.X9_42_DH, "X9_42_DH");
-      keyTypeNames.put(KeyType.KEA, "KEA");
-      keyTypeNames.put(KeyType.GENERIC_SECRET, "GENERIC_SECRET");
-      keyTypeNames.put(KeyType.RC2, "RC2");
-      keyTypeNames.put(KeyType.RC4, "RC4");
-      keyTypeNames.put(KeyType.DES, "DES");
-      keyTypeNames.put(KeyType.DES2, "DES2");
-      keyTypeNames.put(KeyType.DES3, "DES3");
-      keyTypeNames.put(KeyType.CAST, "CAST");
-      keyTypeNames.put(KeyType.CAST3, "CAST3");
-      keyTypeNames.put(KeyType.CAST128, "CAST128");
-      keyTypeNames.put(KeyType.RC5, "RC5");
-      keyTypeNames.put(KeyType.IDEA, "IDEA");
-      keyTypeNames.put(KeyType.SKIPJACK, "SKIPJACK");
-      keyTypeNames.put(KeyType.BATON, "BATON");
-      keyTypeNames.put(KeyType.JUNIPER, "JUNIPER");
-      keyTypeNames.put(KeyType.CDMF, "CDMF");
-      keyTypeNames.put(KeyType.AES, "AES");
-      keyTypeNames.put(KeyType.BLOWFISH, "BLOWFISH");
-      keyTypeNames.put(KeyType.TWOFISH, "TWOFISH");
-      keyTypeNames.put(KeyType.VENDOR_SM2, "SM2");
-      keyTypeNames.put(KeyType.VENDOR_SM4, "SM4");
+    String keyTypeName = keyTypeNameMap.get(keyType);
+    if (keyTypeName == null) {
+      keyTypeName = keyTypeNames.get(keyType);
     }
-
-    String keyTypeName = keyTypeNames.get(keyType);
     if (keyTypeName == null) {
       if ((keyType & PKCS11Constants.CKK_VENDOR_DEFINED) != 0L) {
         keyTypeName = "Vendor Defined";
@@ -0,0 +1,143 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11.objects;
+
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.Util;
+
+/**
+ * A handle of an object on the token, whose attributes are read only on the
+ * first call of {@link #getObject()}. Together with the *Handle methods of
+ * {@link Session} (e.g. {@link Session#generateKeyPairHandles(
+ * iaik.pkcs.pkcs11.Mechanism, PKCS11Object, PKCS11Object)}), no
+ * C_GetAttributeValue is issued for objects whose attributes are never
+ * needed.
+ * <p>
+ * The session must stay open until the object has been materialized.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class LazyObject {
+
+  private final Session session;
+
+  private final long objectHandle;
+
+  private volatile PKCS11Object object;
+
+  /**
+   * Constructor.
+   *
+   * @param session
+   *          The session to read the attributes with. Must not be null.
+   * @param objectHandle
+   *          The handle of the object.
+   */
+  public LazyObject(Session session, long objectHandle) {
+    this.session = Util.requireNonNull("session", session);
+    this.objectHandle = objectHandle;
+  }
+
+  /**
+   * Creates lazy objects for the given handles, e.g. returned by
+   * {@link Session#findObjectHandles(int)}.
+   *
+   * @param session
+   *          The session to read the attributes with. Must not be null.
+   * @param objectHandles
+   *          The handles of the objects. Must not be null.
+   * @return the lazy objects.
+   */
+  public static LazyObject[] getInstances(Session session,
+      long[] objectHandles) {
+    Util.requireNonNull("objectHandles", objectHandles);
+    LazyObject[] objects = new LazyObject[objectHandles.length];
+    for (int i = 0; i < objectHandles.length; i++) {
+      objects[i] = new LazyObject(session, objectHandles[i]);
+    }
+    return objects;
+  }
+
+  /**
+   * Gets the handle of the object.
+   *
+   * @return the object handle.
+   */
+  public long getObjectHandle() {
+    return objectHandle;
+  }
+
+  /**
+   * Returns whether the attributes have already been read.
+   *
+   * @return true if the attributes have been read, false otherwise.
+   */
+  public boolean isMaterialized() {
+    return object != null;
+  }
+
+  /**
+   * Gets the object with all its attributes. The attributes are read from
+   * the token on the first call only.
+   *
+   * @return the object.
+   * @exception TokenException
+   *              If reading the attributes failed.
+   */
+  public PKCS11Object getObject() throws TokenException {
+    PKCS11Object obj = object;
+    if (obj == null) {
+      synchronized (this) {
+        obj = object;
+        if (obj == null) {
+          obj = PKCS11Object.getInstance(session, objectHandle);
+          object = obj;
+        }
+      }
+    }
+    return obj;
+  }
+
+  /**
+   * Gets a {@link Key} which only carries the object handle, without reading
+   * any attribute. It can be passed to the methods of {@link Session} which
+   * use only the handle of a key, e.g. signInit or deriveKey.
+   *
+   * @return the key which carries only the object handle, or the
+   *         materialized object if it is already available as a key.
+   */
+  public Key asKey() {
+    PKCS11Object obj = object;
+    if (obj instanceof Key) {
+      return (Key) obj;
+    }
+
+    Key key = new Key();
+    key.setObjectHandle(objectHandle);
+    return key;
+  }
+
+  @Override
+  public String toString() {
+    return Util.concatObjects("LazyObject(handle=", objectHandle,
+        ", materialized=", isMaterialized(), ")");
+  }
+
+}
@@ -0,0 +1,1011 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11.objects;
+
+import iaik.pkcs.pkcs11.Module;
+import iaik.pkcs.pkcs11.ObjectCache;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.Util;
+import iaik.pkcs.pkcs11.VendorCodeConverter;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
+import sun.security.pkcs11.wrapper.CK_DATE;
+import sun.security.pkcs11.wrapper.PKCS11;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads objects from the token in as few round trips as possible. Instead of
+ * reading the object class, the key (or certificate) type and the attributes
+ * of each class level in separate calls, the reader guesses the type of the
+ * object from the last object it has read, and reads the class, the type and
+ * all attributes of the guessed type with one C_GetAttributeValue. If the
+ * token rejects an attribute of the guessed type, the class and the type are
+ * read first to confirm the guess. If the guess is wrong, the attributes of
+ * the actual type are read again. The guesses are kept per slot.
+ * <p>
+ * For each slot and object type the reader learns which attributes the
+ * token rejects as sensitive, and does not request them any more. These
+ * attributes are marked as sensitive in the returned objects, and are still
+ * read for private and secret keys which are not sensitive and extractable.
+ * Attributes which the token keeps rejecting as invalid are moved to a list of
+ * optional attributes, so that the main template is read with one call. Since
+ * optional attributes (e.g. CKA_ALLOWED_MECHANISMS or vendor attributes) may
+ * be present in other objects of the same type, they are read with a
+ * secondary call which tolerates missing attributes. Batches that are
+ * rejected are split by bisection to find the rejected attributes.
+ * <p>
+ * If the token of the session has an {@link ObjectCache}, read objects are
+ * put into it, and objects and attributes are read from it if present.
+ * <p>
+ * There is one reader per module, see {@link Module#getObjectReader()}. It is
+ * thread-safe.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+public class ObjectReader {
+
+  /**
+   * The number of consecutive objects without an attribute, after which the
+   * attribute is read as optional attribute.
+   */
+  private static final int OPTIONAL_THRESHOLD = 2;
+
+  /**
+   * The class and the type (key type, certificate type or hardware feature
+   * type) of an object.
+   */
+  private static final class ObjectType {
+
+    private static final long NO_TYPE = -1;
+
+    private final long objectClass;
+
+    private final long type;
+
+    private ObjectType(long objectClass, long type) {
+      this.objectClass = objectClass;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof ObjectType)) {
+        return false;
+      }
+
+      ObjectType other = (ObjectType) obj;
+      return objectClass == other.objectClass && type == other.type;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (objectClass * 31 + type);
+    }
+
+    @Override
+    public String toString() {
+      return Util.concatObjects("(class=0x", Long.toHexString(objectClass),
+          ", type=0x", Long.toHexString(type), ")");
+    }
+
+  }
+
+  /**
+   * What the reader has learned about the objects of one type in one slot.
+   */
+  private static final class Profile {
+
+    /**
+     * The attribute types to read. The object class and the type attribute
+     * come first.
+     */
+    private volatile long[] readableTypes;
+
+    /**
+     * The attribute types which are read with a secondary call, since most
+     * objects do not have them.
+     */
+    private volatile long[] optionalTypes = new long[0];
+
+    private final Set<Long> sensitiveTypes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of consecutive objects which do not have the attribute, per
+     * readable attribute type.
+     */
+    private final ConcurrentHashMap<Long, Integer> invalidCounts =
+        new ConcurrentHashMap<>();
+
+    private Profile(long[] types) {
+      this.readableTypes = types;
+    }
+
+    /**
+     * Learns from the errors of reading the given readable attributes.
+     */
+    private synchronized void learn(CK_ATTRIBUTE[] ckAttributes,
+        long[] errors) {
+      long[] removedTypes = new long[ckAttributes.length];
+      int numRemoved = 0;
+      for (int i = 0; i < ckAttributes.length; i++) {
+        long type = ckAttributes[i].type;
+        if (errors[i] == PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE) {
+          sensitiveTypes.add(type);
+          invalidCounts.remove(type);
+          removedTypes[numRemoved++] = type;
+        } else if (errors[i] == PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID) {
+          Integer count = invalidCounts.get(type);
+          int newCount = (count == null) ? 1 : count + 1;
+          if (newCount < OPTIONAL_THRESHOLD) {
+            invalidCounts.put(type, newCount);
+          } else {
+            invalidCounts.remove(type);
+            removedTypes[numRemoved++] = type;
+            long[] types = optionalTypes;
+            long[] newTypes = Arrays.copyOf(types, types.length + 1);
+            newTypes[types.length] = type;
+            optionalTypes = newTypes;
+          }
+        } else {
+          invalidCounts.remove(type);
+        }
+      }
+
+      if (numRemoved == 0) {
+        return;
+      }
+
+      long[] types = readableTypes;
+      long[] newTypes = new long[types.length];
+      int idx = 0;
+      for (long t : types) {
+        boolean removed = false;
+        for (int i = 0; i < numRemoved; i++) {
+          if (t == removedTypes[i]) {
+            removed = true;
+            break;
+          }
+        }
+
+        if (!removed) {
+          newTypes[idx++] = t;
+        }
+      }
+      readableTypes = Arrays.copyOf(newTypes, idx);
+    }
+
+    /**
+     * Learns that all readable attributes have been read.
+     */
+    private void learnAllRead() {
+      if (!invalidCounts.isEmpty()) {
+        invalidCounts.clear();
+      }
+    }
+
+  }
+
+  /**
+   * What the reader has learned about the objects of one slot.
+   */
+  private static final class SlotState {
+
+    private final ConcurrentHashMap<ObjectType, Profile> profiles =
+        new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Long, ObjectType> lastTypeOfClass =
+        new ConcurrentHashMap<>();
+
+    private volatile ObjectType lastType;
+
+  }
+
+  private final Module module;
+
+  /**
+   * The learned state, per slot ID.
+   */
+  private final ConcurrentHashMap<Long, SlotState> slots =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param module
+   *          The module whose objects are read. Must not be null.
+   */
+  public ObjectReader(Module module) {
+    this.module = Util.requireNonNull("module", module);
+  }
+
+  /**
+   * Reads the object with the given handle.
+   *
+   * @param session
+   *          The session to use for reading attributes. This session must
+   *          have the appropriate rights; i.e. it must be a user-session, if
+   *          it is a private object.
+   * @param objectHandle
+   *          The object handle as given from the PKCS#111 module.
+   * @return The object representing the PKCS#11 object.
+   * @exception TokenException
+   *              If getting the attributes failed.
+   */
+  public PKCS11Object readObject(Session session, long objectHandle)
+      throws TokenException {
+    return readObject(session, objectHandle, null);
+  }
+
+  /**
+   * Reads the object with the given handle, which is expected to be of the
+   * given class; e.g. {@link PKCS11Object.ObjectClass#PRIVATE_KEY} for the
+   * private key of a newly generated key pair.
+   *
+   * @param session
+   *          The session to use for reading attributes. This session must
+   *          have the appropriate rights; i.e. it must be a user-session, if
+   *          it is a private object.
+   * @param objectHandle
+   *          The object handle as given from the PKCS#111 module.
+   * @param objectClassHint
+   *          The expected object class.
+   * @return The object representing the PKCS#11 object.
+   * @exception TokenException
+   *              If getting the attributes failed.
+   */
+  public PKCS11Object readObject(Session session, long objectHandle,
+      long objectClassHint) throws TokenException {
+    return readObject(session, objectHandle, (Long) objectClassHint);
+  }
+
+  /**
+   * Reads only the given attributes of an object, with one
+   * C_GetAttributeValue if none of the attributes is sensitive or invalid.
+   * The generic key type is returned for vendor specific key types.
+   *
+   * @param session
+   *          The session to use for reading attributes. This session must
+   *          have the appropriate rights; i.e. it must be a user-session, if
+   *          it is a private object.
+   * @param objectHandle
+   *          The object handle as given from the PKCS#111 module.
+   * @param types
+   *          The types of the attributes to read.
+   * @return the attribute values.
+   * @exception TokenException
+   *              If getting the attributes failed.
+   */
+  public AttributeValues readAttributes(Session session, long objectHandle,
+      long... types) throws TokenException {
+    Util.requireNonNull("session", session);
+    Util.requireNonNull("types", types);
+    return readAttributes0(session, objectHandle, types.clone());
+  }
+
+  /**
+   * Reads only the given attributes of several objects. See
+   * {@link #readAttributes(Session, long, long...)}.
+   *
+   * @param session
+   *          The session to use for reading attributes. This session must
+   *          have the appropriate rights; i.e. it must be a user-session, if
+   *          it is a private object.
+   * @param objectHandles
+   *          The object handles as given from the PKCS#111 module.
+   * @param types
+   *          The types of the attributes to read.
+   * @return the attribute values, in the order of the object handles.
+   * @exception TokenException
+   *              If getting the attributes failed.
+   */
+  public AttributeValues[] readAttributes(Session session,
+      long[] objectHandles, long... types) throws TokenException {
+    Util.requireNonNull("session", session);
+    Util.requireNonNull("objectHandles", objectHandles);
+    Util.requireNonNull("types", types);
+
+    // the types array is shared by the results
+    long[] typesCopy = types.clone();
+    AttributeValues[] result = new AttributeValues[objectHandles.length];
+    for (int i = 0; i < objectHandles.length; i++) {
+      result[i] = readAttributes0(session, objectHandles[i], typesCopy);
+    }
+    return result;
+  }
+
+  private AttributeValues readAttributes0(Session session, long objectHandle,
+      long[] types) throws TokenException {
+    ObjectCache objectCache = session.getToken().getObjectCache();
+    if (objectCache != null) {
+      PKCS11Object object = objectCache.get(objectHandle);
+      AttributeValues values = (object == null) ? null
+          : toAttributeValues(object, types);
+      if (values != null) {
+        return values;
+      }
+    }
+
+    CK_ATTRIBUTE[] ckAttributes = newCkAttributes(types);
+    long[] errors = getAttributeValues(session, objectHandle, ckAttributes);
+
+    Object[] values = new Object[types.length];
+    for (int i = 0; i < types.length; i++) {
+      if (errors == null || errors[i] == PKCS11Constants.CKR_OK) {
+        Object value = ckAttributes[i].pValue;
+        if (types[i] == PKCS11Constants.CKA_KEY_TYPE
+            && value instanceof Long
+            && ((Long) value & Key.KeyType.VENDOR_DEFINED) != 0L) {
+          value = toGenericKeyType((Long) value);
+        }
+        values[i] = value;
+      }
+    }
+
+    return new AttributeValues(objectHandle, types, values, errors);
+  }
+
+  /**
+   * Gets the given attributes from a cached object.
+   *
+   * @return the attribute values, or null if the object does not have
+   *         all of the attributes.
+   */
+  private static AttributeValues toAttributeValues(PKCS11Object object,
+      long[] types) {
+    Object[] values = new Object[types.length];
+    long[] errors = null;
+    for (int i = 0; i < types.length; i++) {
+      Attribute attr = object.getAttribute(types[i]);
+      if (attr == null) {
+        return null;
+      }
+
+      long error = PKCS11Constants.CKR_OK;
+      if (!attr.isPresent()) {
+        error = PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID;
+      } else if (attr.isSensitive()) {
+        error = PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE;
+      } else {
+        // the cached object is shared
+        Object value = attr.getCkAttribute().pValue;
+        if (value instanceof byte[]) {
+          value = ((byte[]) value).clone();
+        } else if (value instanceof char[]) {
+          value = ((char[]) value).clone();
+        }
+        values[i] = value;
+      }
+
+      if (error != PKCS11Constants.CKR_OK) {
+        if (errors == null) {
+          errors = new long[types.length];
+        }
+        errors[i] = error;
+      }
+    }
+
+    return new AttributeValues(object.getObjectHandle(), types, values,
+        errors);
+  }
+
+  private PKCS11Object readObject(Session session, long objectHandle,
+      Long objectClassHint) throws TokenException {
+    Util.requireNonNull("session", session);
+    if (session.getModule() != module) {
+      throw new IllegalArgumentException(
+          "session does not belong to the module of this reader");
+    }
+
+    SlotState slot = getSlotState(session);
+    ObjectType guess = (objectClassHint == null) ? slot.lastType
+        : slot.lastTypeOfClass.get(objectClassHint);
+
+    ObjectCache objectCache = session.getToken().getObjectCache();
+    if (objectCache == null) {
+      return readObject0(session, objectHandle, slot, guess);
+    }
+
+    // the cached objects are not shared with the application
+    PKCS11Object cached = objectCache.get(objectHandle);
+    if (cached != null) {
+      PKCS11Object copy = copyObject(cached);
+      if (copy != null) {
+        return copy;
+      }
+    }
+
+    PKCS11Object object = readObject0(session, objectHandle, slot, guess);
+    PKCS11Object copy = copyObject(object);
+    if (copy != null) {
+      objectCache.put(copy);
+    }
+    return object;
+  }
+
+  /**
+   * Copies an object including its attribute values.
+   *
+   * @return the copy, or null if objects of this type are not supported by
+   *         this reader.
+   */
+  private PKCS11Object copyObject(PKCS11Object object) {
+    Long objectClass = object.getObjectClass().getLongValue();
+    if (objectClass == null) {
+      return null;
+    }
+
+    long type = ObjectType.NO_TYPE;
+    long typeAttribute = getTypeAttribute(objectClass);
+    if (typeAttribute != -1) {
+      Attribute attribute = object.attributes.get(typeAttribute);
+      CK_ATTRIBUTE ckAttribute =
+          (attribute == null) ? null : attribute.getCkAttribute();
+      if (ckAttribute == null || !(ckAttribute.pValue instanceof Long)) {
+        return null;
+      }
+      type = (Long) ckAttribute.pValue;
+    }
+
+    PKCS11Object copy = newObject(new ObjectType(objectClass, type));
+    if (copy == null || copy.getClass() != object.getClass()) {
+      return null;
+    }
+
+    copy.objectHandle = object.objectHandle;
+    AttributeTable table = object.attributes;
+    for (int i = 0; i < table.size(); i++) {
+      Attribute attribute = table.attributeAt(i);
+      Attribute target = copy.attributes.get(table.typeAt(i));
+      if (target == null) {
+        continue;
+      }
+
+      CK_ATTRIBUTE ckAttribute = attribute.getCkAttribute();
+      if (ckAttribute != null) {
+        target.setCkAttribute(copyCkAttribute(ckAttribute));
+      }
+      target.setPresent(attribute.isPresent());
+      target.setSensitive(attribute.isSensitive());
+    }
+    return copy;
+  }
+
+  private static CK_ATTRIBUTE copyCkAttribute(CK_ATTRIBUTE attr) {
+    Object value = attr.pValue;
+    if (value instanceof byte[]) {
+      value = ((byte[]) value).clone();
+    } else if (value instanceof char[]) {
+      value = ((char[]) value).clone();
+    } else if (value instanceof long[]) {
+      value = ((long[]) value).clone();
+    } else if (value instanceof CK_DATE) {
+      CK_DATE date = (CK_DATE) value;
+      value = new CK_DATE(date.year.clone(), date.month.clone(),
+          date.day.clone());
+    } else if (value instanceof CK_ATTRIBUTE[]) {
+      CK_ATTRIBUTE[] attrs = (CK_ATTRIBUTE[]) value;
+      CK_ATTRIBUTE[] copies = new CK_ATTRIBUTE[attrs.length];
+      for (int i = 0; i < attrs.length; i++) {
+        copies[i] = copyCkAttribute(attrs[i]);
+      }
+      value = copies;
+    }
+
+    return new CK_ATTRIBUTE(attr.type, value);
+  }
+
+  private PKCS11Object readObject0(Session session, long objectHandle,
+      SlotState slot, ObjectType guess) throws TokenException {
+    ObjectType actual = null;
+    Long objectClass = null;
+    if (guess != null) {
+      Profile profile = getProfile(slot, guess);
+      CK_ATTRIBUTE[] ckAttributes = newCkAttributes(profile.readableTypes);
+      if (readAll(session, objectHandle, ckAttributes)) {
+        actual = toObjectType(ckAttributes);
+        if (guess.equals(actual)) {
+          profile.learnAllRead();
+          return newObject(session, objectHandle, slot, actual, profile,
+              ckAttributes);
+        }
+      } else {
+        // bisect the same template: the class and the type come first and
+        // confirm or refute the guess, the other attributes are only read
+        // if the guess is right
+        int off = (getTypeAttribute(guess.objectClass) == -1) ? 1 : 2;
+        CK_ATTRIBUTE[] typeAttributes = Arrays.copyOf(ckAttributes, off);
+        if (readAll(session, objectHandle, typeAttributes)) {
+          actual = toObjectType(typeAttributes);
+          if (guess.equals(actual)) {
+            CK_ATTRIBUTE[] otherAttributes = readAndLearn(session,
+                objectHandle, profile, Arrays.copyOfRange(ckAttributes, off,
+                    ckAttributes.length));
+            return newObject(session, objectHandle, slot, actual, profile,
+                concat(typeAttributes, otherAttributes));
+          }
+        }
+      }
+
+      if (ckAttributes[0].pValue instanceof Long) {
+        objectClass = (Long) ckAttributes[0].pValue;
+      }
+    }
+
+    if (actual == null) {
+      actual = readObjectType(session, objectHandle, objectClass);
+    }
+
+    Profile profile = (actual == null) ? null : getProfile(slot, actual);
+    if (profile == null) {
+      return PKCS11Object.getInstanceStepwise(session, objectHandle);
+    }
+
+    CK_ATTRIBUTE[] ckAttributes = readAndLearn(session, objectHandle, profile,
+        newCkAttributes(profile.readableTypes));
+    return newObject(session, objectHandle, slot, actual, profile,
+        ckAttributes);
+  }
+
+  private static CK_ATTRIBUTE[] concat(CK_ATTRIBUTE[] a, CK_ATTRIBUTE[] b) {
+    CK_ATTRIBUTE[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  private PKCS11Object newObject(Session session, long objectHandle,
+      SlotState slot, ObjectType type, Profile profile,
+      CK_ATTRIBUTE[] ckAttributes) throws PKCS11Exception {
+    PKCS11Object object = newObject(type);
+    object.objectHandle = objectHandle;
+    // the attributes which have not been read remain not present
+    setAttributes(object, ckAttributes);
+
+    long[] optionalTypes = profile.optionalTypes;
+    if (optionalTypes.length != 0) {
+      // one call if the object has all optional attributes, missing ones
+      // are found by bisection
+      CK_ATTRIBUTE[] optionalAttributes = newCkAttributes(optionalTypes);
+      long[] errors =
+          getAttributeValues(session, objectHandle, optionalAttributes);
+      for (int i = 0; i < optionalAttributes.length; i++) {
+        if (errors == null || errors[i] == 0) {
+          setAttributes(object, optionalAttributes[i]);
+        }
+      }
+    }
+
+    if (!profile.sensitiveTypes.isEmpty()) {
+      for (Long attrType : profile.sensitiveTypes) {
+        Attribute attribute = object.attributes.get(attrType);
+        if (attribute != null) {
+          attribute.setPresent(true);
+          attribute.setSensitive(true);
+        }
+      }
+
+      if (isReadable(object)) {
+        // the sensitive attributes are readable for this key
+        CK_ATTRIBUTE[] sensitiveAttributes =
+            newCkAttributes(profile.sensitiveTypes);
+        long[] errors =
+            getAttributeValues(session, objectHandle, sensitiveAttributes);
+        for (int i = 0; i < sensitiveAttributes.length; i++) {
+          if (errors == null || errors[i] == 0) {
+            setAttributes(object, sensitiveAttributes[i]);
+          }
+        }
+      }
+    }
+
+    if (object instanceof Key && isVendorKeyType(type)) {
+      // map also the key type
+      ((Key) object).keyType.setLongValue(toGenericKeyType(type.type));
+    }
+
+    slot.lastType = type;
+    slot.lastTypeOfClass.put(type.objectClass, type);
+    return object;
+  }
+
+  private static void setAttributes(PKCS11Object object,
+      CK_ATTRIBUTE... ckAttributes) {
+    for (CK_ATTRIBUTE ckAttribute : ckAttributes) {
+      Attribute attribute = object.attributes.get(ckAttribute.type);
+      if (attribute != null) {
+        attribute.setCkAttribute(ckAttribute);
+        attribute.setPresent(true);
+        attribute.setSensitive(false);
+      }
+    }
+  }
+
+  /**
+   * Returns whether the sensitive attributes of the given object can be read,
+   * namely if it is a private or secret key which is neither sensitive nor
+   * unextractable.
+   */
+  private static boolean isReadable(PKCS11Object object) {
+    BooleanAttribute sensitive;
+    BooleanAttribute extractable;
+    if (object instanceof PrivateKey) {
+      sensitive = ((PrivateKey) object).sensitive;
+      extractable = ((PrivateKey) object).extractable;
+    } else if (object instanceof SecretKey) {
+      sensitive = ((SecretKey) object).sensitive;
+      extractable = ((SecretKey) object).extractable;
+    } else {
+      return false;
+    }
+
+    return Boolean.FALSE.equals(sensitive.getBooleanValue())
+        && Boolean.TRUE.equals(extractable.getBooleanValue());
+  }
+
+  /**
+   * Reads the given attributes of the profile, and learns the attributes
+   * rejected by the token as sensitive or, repeatedly, as invalid.
+   */
+  private static CK_ATTRIBUTE[] readAndLearn(Session session,
+      long objectHandle, Profile profile, CK_ATTRIBUTE[] ckAttributes)
+      throws PKCS11Exception {
+    long[] errors = getAttributeValues(session, objectHandle, ckAttributes);
+    if (errors == null) {
+      profile.learnAllRead();
+      return ckAttributes;
+    }
+
+    profile.learn(ckAttributes, errors);
+    CK_ATTRIBUTE[] readAttributes = new CK_ATTRIBUTE[ckAttributes.length];
+    int idx = 0;
+    for (int i = 0; i < ckAttributes.length; i++) {
+      if (errors[i] == 0) {
+        readAttributes[idx++] = ckAttributes[i];
+      }
+    }
+    return Arrays.copyOf(readAttributes, idx);
+  }
+
+  /**
+   * Reads the object class unless it is given, and then the type of the
+   * object.
+   */
+  private static ObjectType readObjectType(Session session, long objectHandle,
+      Long objectClass) throws PKCS11Exception {
+    if (objectClass == null) {
+      CK_ATTRIBUTE[] ckAttributes =
+          newCkAttributes(new long[] {PKCS11Constants.CKA_CLASS});
+      if (!readAll(session, objectHandle, ckAttributes)
+          || !(ckAttributes[0].pValue instanceof Long)) {
+        return null;
+      }
+      objectClass = (Long) ckAttributes[0].pValue;
+    }
+
+    long typeAttribute = getTypeAttribute(objectClass);
+    if (typeAttribute == -1) {
+      return new ObjectType(objectClass, ObjectType.NO_TYPE);
+    }
+
+    CK_ATTRIBUTE[] ckAttributes = newCkAttributes(new long[] {typeAttribute});
+    if (!readAll(session, objectHandle, ckAttributes)
+        || !(ckAttributes[0].pValue instanceof Long)) {
+      return null;
+    }
+
+    return new ObjectType(objectClass, (Long) ckAttributes[0].pValue);
+  }
+
+  /**
+   * Gets the object type from the read attributes.
+   */
+  private static ObjectType toObjectType(CK_ATTRIBUTE[] ckAttributes) {
+    if (!(ckAttributes[0].pValue instanceof Long)) {
+      return null;
+    }
+
+    long objectClass = (Long) ckAttributes[0].pValue;
+    long typeAttribute = getTypeAttribute(objectClass);
+    if (typeAttribute == -1) {
+      return new ObjectType(objectClass, ObjectType.NO_TYPE);
+    }
+
+    for (CK_ATTRIBUTE ckAttribute : ckAttributes) {
+      if (ckAttribute.type == typeAttribute) {
+        return (ckAttribute.pValue instanceof Long)
+            ? new ObjectType(objectClass, (Long) ckAttribute.pValue) : null;
+      }
+    }
+
+    return null;
+  }
+
+  private static long getTypeAttribute(long objectClass) {
+    if (objectClass == PKCS11Constants.CKO_PRIVATE_KEY
+        || objectClass == PKCS11Constants.CKO_PUBLIC_KEY
+        || objectClass == PKCS11Constants.CKO_SECRET_KEY
+        || objectClass == PKCS11Constants.CKO_DOMAIN_PARAMETERS) {
+      return PKCS11Constants.CKA_KEY_TYPE;
+    } else if (objectClass == PKCS11Constants.CKO_CERTIFICATE) {
+      return PKCS11Constants.CKA_CERTIFICATE_TYPE;
+    } else if (objectClass == PKCS11Constants.CKO_HW_FEATURE) {
+      return PKCS11Constants.CKA_HW_FEATURE_TYPE;
+    } else {
+      return -1;
+    }
+  }
+
+  private SlotState getSlotState(Session session) {
+    Long slotId = (session.getToken() == null) ? -1L
+        : session.getToken().getSlot().getSlotID();
+    SlotState slot = slots.get(slotId);
+    if (slot == null) {
+      slot = new SlotState();
+      SlotState old = slots.putIfAbsent(slotId, slot);
+      if (old != null) {
+        slot = old;
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * Gets the profile of the given object type, or null if objects of this
+   * type are not supported by this reader.
+   */
+  private Profile getProfile(SlotState slot, ObjectType type) {
+    ConcurrentHashMap<ObjectType, Profile> profiles = slot.profiles;
+    Profile profile = profiles.get(type);
+    if (profile != null) {
+      return profile;
+    }
+
+    PKCS11Object prototype = newObject(type);
+    if (prototype == null) {
+      return null;
+    }
+
+    long typeAttribute = getTypeAttribute(type.objectClass);
+    int off = (typeAttribute == -1) ? 1 : 2;
+    long[] types = new long[off + prototype.attributes.size()];
+    types[0] = PKCS11Constants.CKA_CLASS;
+    if (typeAttribute != -1) {
+      types[1] = typeAttribute;
+    }
+
+    int idx = off;
+    for (int i = 0; i < prototype.attributes.size(); i++) {
+      long attrType = prototype.attributes.typeAt(i);
+      if (attrType != PKCS11Constants.CKA_CLASS
+          && attrType != typeAttribute) {
+        types[idx++] = attrType;
+      }
+    }
+
+    profile = new Profile(Arrays.copyOf(types, idx));
+    Profile old = profiles.putIfAbsent(type, profile);
+    return (old != null) ? old : profile;
+  }
+
+  /**
+   * Creates an empty object of the given type, or returns null if objects of
+   * this type are not supported by this reader (e.g. vendor defined ones).
+   */
+  private PKCS11Object newObject(ObjectType type) {
+    final long objectClass = type.objectClass;
+    long keyType = type.type;
+    if (isVendorKeyType(type)) {
+      keyType = toGenericKeyType(keyType);
+      if (keyType != Key.KeyType.VENDOR_SM2) {
+        return null;
+      }
+    }
+
+    if (objectClass == PKCS11Constants.CKO_PRIVATE_KEY) {
+      if (keyType == Key.KeyType.RSA) {
+        return new RSAPrivateKey();
+      } else if (keyType == Key.KeyType.DSA) {
+        return new DSAPrivateKey();
+      } else if (keyType == Key.KeyType.EC
+          || keyType == Key.KeyType.EC_EDWARDS
+          || keyType == Key.KeyType.EC_MONTGOMERY
+          || keyType == Key.KeyType.VENDOR_SM2) {
+        return new ECPrivateKey(keyType);
+      } else if (keyType == Key.KeyType.DH) {
+        return new DHPrivateKey();
+      } else if (keyType == Key.KeyType.KEA) {
+        return new KEAPrivateKey();
+      } else if (keyType == Key.KeyType.X9_42_DH) {
+        return new X942DHPrivateKey();
+      }
+    } else if (objectClass == PKCS11Constants.CKO_PUBLIC_KEY) {
+      if (keyType == Key.KeyType.RSA) {
+        return new RSAPublicKey();
+      } else if (keyType == Key.KeyType.DSA) {
+        return new DSAPublicKey();
+      } else if (keyType == Key.KeyType.EC
+          || keyType == Key.KeyType.EC_EDWARDS
+          || keyType == Key.KeyType.EC_MONTGOMERY
+          || keyType == Key.KeyType.VENDOR_SM2) {
+        return new ECPublicKey(keyType);
+      } else if (keyType == Key.KeyType.DH) {
+        return new DHPublicKey();
+      } else if (keyType == Key.KeyType.KEA) {
+        return new KEAPublicKey();
+      } else if (keyType == Key.KeyType.X9_42_DH) {
+        return new X942DHPublicKey();
+      }
+    } else if (objectClass == PKCS11Constants.CKO_SECRET_KEY) {
+      return new ValuedSecretKey(keyType);
+    } else if (objectClass == PKCS11Constants.CKO_CERTIFICATE) {
+      if (keyType == Certificate.CertificateType.X_509_PUBLIC_KEY) {
+        return new X509PublicKeyCertificate();
+      } else if (keyType == Certificate.CertificateType.X_509_ATTRIBUTE) {
+        return new X509AttributeCertificate();
+      } else if (keyType == Certificate.CertificateType.WTLS) {
+        return new WTLSCertificate();
+      }
+    } else if (objectClass == PKCS11Constants.CKO_DATA) {
+      return new Data();
+    } else if (objectClass == PKCS11Constants.CKO_DOMAIN_PARAMETERS) {
+      if (keyType == Key.KeyType.DSA) {
+        return new DSAParams();
+      } else if (keyType == Key.KeyType.DH) {
+        return new DHParams();
+      } else if (keyType == Key.KeyType.X9_42_DH) {
+        return new X942DHParams();
+      }
+    } else if (objectClass == PKCS11Constants.CKO_MECHANISM) {
+      return new Mechanism();
+    } else if (objectClass == PKCS11Constants.CKO_HW_FEATURE) {
+      if (keyType == HardwareFeature.FeatureType.MONOTONIC_COUNTER) {
+        return new MonotonicCounter();
+      } else if (keyType == HardwareFeature.FeatureType.CLOCK) {
+        return new Clock();
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean isVendorKeyType(ObjectType type) {
+    return (type.objectClass == PKCS11Constants.CKO_PRIVATE_KEY
+        || type.objectClass == PKCS11Constants.CKO_PUBLIC_KEY)
+        && (type.type & Key.KeyType.VENDOR_DEFINED) != 0L;
+  }
+
+  private long toGenericKeyType(long keyType) {
+    VendorCodeConverter converter = module.getVendorCodeConverter();
+    return (converter == null) ? keyType
+        : converter.vendorToGenericCKK(keyType);
+  }
+
+  private static CK_ATTRIBUTE[] newCkAttributes(long[] types) {
+    CK_ATTRIBUTE[] ckAttributes = new CK_ATTRIBUTE[types.length];
+    for (int i = 0; i < types.length; i++) {
+      ckAttributes[i] = new CK_ATTRIBUTE();
+      ckAttributes[i].type = types[i];
+    }
+    return ckAttributes;
+  }
+
+  private static CK_ATTRIBUTE[] newCkAttributes(Set<Long> types) {
+    CK_ATTRIBUTE[] ckAttributes = new CK_ATTRIBUTE[types.size()];
+    int idx = 0;
+    for (Long type : types) {
+      if (idx == ckAttributes.length) {
+        break;
+      }
+      ckAttributes[idx] = new CK_ATTRIBUTE();
+      ckAttributes[idx].type = type;
+      idx++;
+    }
+    return (idx == ckAttributes.length) ? ckAttributes
+        : Arrays.copyOf(ckAttributes, idx);
+  }
+
+  /**
+   * Reads the given attributes with one call. Returns false if the token
+   * rejected one of the attributes as sensitive or invalid.
+   */
+  private static boolean readAll(Session session, long objectHandle,
+      CK_ATTRIBUTE[] ckAttributes) throws PKCS11Exception {
+    PKCS11 pkcs11Module = session.getModule().getPKCS11Module();
+    try {
+      pkcs11Module.C_GetAttributeValue(session.getSessionHandle(),
+          objectHandle, ckAttributes);
+      return true;
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      if (isAttributeError(ex.getErrorCode())) {
+        return false;
+      }
+      throw new PKCS11Exception(ex);
+    }
+  }
+
+  /**
+   * Reads the given attributes. If the token rejects the batch because of a
+   * sensitive or an invalid attribute, the batch is split into halves which
+   * are read separately, until the rejected attributes are found.
+   *
+   * @param session
+   *          The session to use for reading the attributes.
+   * @param objectHandle
+   *          The handle of the object which contains the attributes.
+   * @param ckAttributes
+   *          The attributes to read.
+   * @return null if all attributes have been read. Otherwise the error codes
+   *         (CKR_ATTRIBUTE_SENSITIVE or CKR_ATTRIBUTE_TYPE_INVALID) of the
+   *         rejected attributes, and 0 (CKR_OK) for the read ones.
+   * @exception PKCS11Exception
+   *              If getting the attributes failed for another reason.
+   */
+  static long[] getAttributeValues(Session session, long objectHandle,
+      CK_ATTRIBUTE[] ckAttributes) throws PKCS11Exception {
+    if (ckAttributes.length == 0) {
+      return null;
+    }
+
+    PKCS11 pkcs11Module = session.getModule().getPKCS11Module();
+    long[] errors = new long[ckAttributes.length];
+    boolean allRead = getAttributeValues(pkcs11Module,
+        session.getSessionHandle(), objectHandle, ckAttributes,
+        0, ckAttributes.length, errors);
+    return allRead ? null : errors;
+  }
+
+  private static boolean getAttributeValues(PKCS11 pkcs11Module,
+      long sessionHandle, long objectHandle, CK_ATTRIBUTE[] ckAttributes,
+      int from, int to, long[] errors) throws PKCS11Exception {
+    CK_ATTRIBUTE[] batch = (from == 0 && to == ckAttributes.length)
+        ? ckAttributes : Arrays.copyOfRange(ckAttributes, from, to);
+    try {
+      pkcs11Module.C_GetAttributeValue(sessionHandle, objectHandle, batch);
+      return true;
+    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
+      long errorCode = ex.getErrorCode();
+      if (!isAttributeError(errorCode)) {
+        throw new PKCS11Exception(ex);
+      }
+
+      if (to - from == 1) {
+        errors[from] = errorCode;
+        return false;
+      }
+
+      int mid = (from + to) >>> 1;
+      boolean allRead = getAttributeValues(pkcs11Module, sessionHandle,
+          objectHandle, ckAttributes, from, mid, errors);
+      return getAttributeValues(pkcs11Module, sessionHandle, objectHandle,
+          ckAttributes, mid, to, errors) && allRead;
+    }
+  }
+
+  private static boolean isAttributeError(long errorCode) {
+    return errorCode == PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE
+        || errorCode == PKCS11Constants.CKR_ATTRIBUTE_TYPE_INVALID;
+  }
+
+}
@@ -48,8 +48,10 @@ import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
 import sun.security.pkcs11.wrapper.CK_ATTRIBUTE;
 import sun.security.pkcs11.wrapper.PKCS11;
 
-import java.util.Enumeration;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -163,18 +165,51 @@ public class PKCS11Object {
   protected static VendorDefinedObjectBuilder vendorObjectBuilder;
 
   /**
-   * A table holding string representations for all known key types. Table key
-   * is the key type as Long object.
+   * A map holding string representations for all known object classes. Map
+   * key is the object class as Long object. This map is unmodifiable.
    */
+  private static final Map<Long, String> objectClassNameMap;
+
+  /**
+   * A copy of the object class names, kept for subclasses. It is only
+   * consulted for object classes that are not known to this class.
+   *
+   * @deprecated Use {@link #getObjectClassName(Long)} instead.
+   */
+  @Deprecated
   protected static Hashtable<Long, String> objectClassNames;
 
+  static {
+    Map<Long, String> names = new HashMap<>(16);
+    names.put(ObjectClass.DATA, "Data");
+    names.put(ObjectClass.CERTIFICATE, "Certificate");
+    names.put(ObjectClass.PUBLIC_KEY, "Public Key");
+    names.put(ObjectClass.PRIVATE_KEY, "Private Key");
+    names.put(ObjectClass.SECRET_KEY, "Secret Key");
+    names.put(ObjectClass.HW_FEATURE,
+        "Hardware Feature");
+    names.put(ObjectClass.DOMAIN_PARAMETERS,
+        "Domain Parameters");
+    objectClassNameMap = Collections.unmodifiableMap(names);
+    objectClassNames = new Hashtable<>(names);
+  }
+
   /**
    * Contains all attribute objects an object possesses. No matter if an
    * attribute is set present or not, it is part of this collection.
    * The key of this table is the attribute type as Long.
+   * <p>
+   * This is a view of the attribute table of this object: reads and writes
+   * go to the same attributes. Code in this package uses the compact table
+   * directly.
    */
   protected Hashtable<Long, Attribute> attributeTable;
 
+  /**
+   * The attributes of this object, keyed by the attribute type.
+   */
+  final AttributeTable attributes;
+
   /**
    * The class type of this object. One of ObjectClass, or one that has a
    * bigger value than VENDOR_DEFINED.
@@ -192,8 +227,10 @@ public class PKCS11Object {
    * for working with vendor-defined objects.
    */
   public PKCS11Object() {
-    attributeTable = new Hashtable<>(32);
+    attributes = new AttributeTable();
+    attributeTable = new AttributeTableView(attributes);
     allocateAttributes();
+    attributes.compact();
   }
 
   /**
@@ -214,8 +251,10 @@ public class PKCS11Object {
    */
   protected PKCS11Object(Session session, long objectHandle)
       throws TokenException {
-    this.attributeTable = new Hashtable<>(32);
+    this.attributes = new AttributeTable();
+    this.attributeTable = new AttributeTableView(attributes);
     allocateAttributes();
+    attributes.compact();
     this.objectHandle = objectHandle;
     readAttributes(session);
   }
@@ -243,6 +282,27 @@ public class PKCS11Object {
   public static PKCS11Object getInstance(Session session, long objectHandle)
       throws TokenException {
     Util.requireNonNull("session", session);
+    return session.getModule().getObjectReader().readObject(session,
+        objectHandle);
+  }
+
+  /**
+   * Creates an instance of an PKCS#11 object by reading the object class,
+   * the type and the attributes of each class level separately. The
+   * {@link ObjectReader} uses this method if it cannot read the object with
+   * one call.
+   *
+   * @param session
+   *          The session to use for reading attributes.
+   * @param objectHandle
+   *          The object handle as given from the PKCS#111 module.
+   * @return The object representing the PKCS#11 object.
+   * @exception TokenException
+   *              If getting the attributes failed.
+   */
+  static PKCS11Object getInstanceStepwise(Session session, long objectHandle)
+      throws TokenException {
+    Util.requireNonNull("session", session);
 
     ObjectClassAttribute objectClassAttribute = new ObjectClassAttribute();
     getAttributeValue(session, objectHandle, objectClassAttribute);
@@ -343,21 +403,10 @@ public class PKCS11Object {
     if ((objectClass & PKCS11Constants.CKO_VENDOR_DEFINED) != 0L) {
       objectClassName = "Vendor Defined";
     } else {
-      if (objectClassNames == null) {
-        // setup object class names table
-        objectClassNames = new Hashtable<>(7);
-        objectClassNames.put(ObjectClass.DATA, "Data");
-        objectClassNames.put(ObjectClass.CERTIFICATE, "Certificate");
-        objectClassNames.put(ObjectClass.PUBLIC_KEY, "Public Key");
-        objectClassNames.put(ObjectClass.PRIVATE_KEY, "Private Key");
-        objectClassNames.put(ObjectClass.SECRET_KEY, "Secret Key");
-        objectClassNames.put(ObjectClass.HW_FEATURE,
-            "Hardware Feature");
-        objectClassNames.put(ObjectClass.DOMAIN_PARAMETERS,
-            "Domain Parameters");
+      objectClassName = objectClassNameMap.get(objectClass);
+      if (objectClassName == null) {
+        objectClassName = objectClassNames.get(objectClass);
       }
-
-      objectClassName = objectClassNames.get(objectClass);
       if (objectClassName == null) {
         objectClassName = "<unknown>";
       }
@@ -428,9 +477,8 @@ public class PKCS11Object {
    * @return The table of all attributes of this object. Key is the attribute
    *         type as Long. This table is unmodifiable.
    */
-  @SuppressWarnings("unchecked")
   public Hashtable<Long, Attribute> getAttributeTable() {
-    return (Hashtable<Long, Attribute>) attributeTable.clone();
+    return attributes.toHashtable();
   }
 
   /**
@@ -468,7 +516,7 @@ public class PKCS11Object {
    * @return the attribute
    */
   public Attribute getAttribute(long attribute) {
-    return attributeTable.get(attribute);
+    return attributes.get(attribute);
   }
 
   /**
@@ -526,20 +574,33 @@ public class PKCS11Object {
    * @return An collection of CK_ATTRIBUTE objects.
    */
   public Vector<CK_ATTRIBUTE> getSetAttributes() {
+    CK_ATTRIBUTE[] ckAttributes = getSetCkAttributes();
     Vector<CK_ATTRIBUTE> attributeCollection =
-        new Vector<>(attributeTable.size());
+        new Vector<>(ckAttributes.length);
+    for (CK_ATTRIBUTE ckAttribute : ckAttributes) {
+      attributeCollection.addElement(ckAttribute);
+    }
+    return attributeCollection;
+  }
 
-    Enumeration<Attribute> attributeEnumeration =
-        attributeTable.elements();
-    while (attributeEnumeration.hasMoreElements()) {
-      Attribute attribute = attributeEnumeration.nextElement();
-      if (attribute.isPresent()) {
-        CK_ATTRIBUTE ckAttribute = attribute.getCkAttribute();
-        attributeCollection.addElement(ckAttribute);
+  private CK_ATTRIBUTE[] getSetCkAttributes() {
+    int size = attributes.size();
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (attributes.attributeAt(i).isPresent()) {
+        count++;
       }
     }
 
-    return attributeCollection;
+    CK_ATTRIBUTE[] ckAttributes = new CK_ATTRIBUTE[count];
+    int idx = 0;
+    for (int i = 0; i < size; i++) {
+      Attribute attribute = attributes.attributeAt(i);
+      if (attribute.isPresent()) {
+        ckAttributes[idx++] = attribute.getCkAttribute();
+      }
+    }
+    return ckAttributes;
   }
 
   /**
@@ -563,31 +624,30 @@ public class PKCS11Object {
           PKCS11Object object,
           VendorCodeConverter vendorCodeConverter)
       throws PKCS11Exception {
-    Vector<CK_ATTRIBUTE> setAttributes = (object != null)
-        ? object.getSetAttributes() : null;
-    if (setAttributes == null) {
+    if (object == null) {
       return null;
     }
 
+    CK_ATTRIBUTE[] setAttributes = object.getSetCkAttributes();
+
     // replace the generic key type to vendor specific one.
     if (object instanceof Key && vendorCodeConverter != null) {
       Long keyType = ((Key) object).getKeyType().getLongValue();
       if (keyType != null && (keyType & PKCS11Constants.CKK_VENDOR_DEFINED) != 0) {
         long vendorKeyType = vendorCodeConverter.genericToVendorCKK(keyType);
         if (vendorKeyType != keyType) {
-          Vector<CK_ATTRIBUTE> newSetAttributes = new Vector<>();
-          for (CK_ATTRIBUTE attr : setAttributes) {
-            if (attr.type == PKCS11Constants.CKA_KEY_TYPE) {
-              attr = new CK_ATTRIBUTE(attr.type, vendorKeyType); // replace the keyType
+          for (int i = 0; i < setAttributes.length; i++) {
+            if (setAttributes[i].type == PKCS11Constants.CKA_KEY_TYPE) {
+              // replace the keyType
+              setAttributes[i] = new CK_ATTRIBUTE(
+                  PKCS11Constants.CKA_KEY_TYPE, vendorKeyType);
             }
-            newSetAttributes.add(attr);
           }
-          setAttributes = newSetAttributes;
         }
       }
     }
 
-    return Util.convertAttributesVectorToArray(setAttributes);
+    return setAttributes;
   }
 
   /**
@@ -654,10 +714,9 @@ public class PKCS11Object {
   public String toString(boolean newline, boolean withName, String indent) {
     StringBuilder sb = new StringBuilder(1024);
 
-    Enumeration<Attribute> attributesEnumeration = attributeTable.elements();
     boolean firstAttribute = !newline;
-    while (attributesEnumeration.hasMoreElements()) {
-      Attribute attribute = attributesEnumeration.nextElement();
+    for (int i = 0; i < attributes.size(); i++) {
+      Attribute attribute = attributes.attributeAt(i);
       if (attribute.isPresent()) {
         if (!firstAttribute) {
           sb.append("\n");
@@ -738,8 +797,9 @@ public class PKCS11Object {
   /**
    * This method reads the attributes in a similar way as
    * {@link #getAttributeValue}, but a complete array at once. This can lead
-   * to performance improvements. If reading all attributes at once fails, it
-   * tries to read each attributes individually.
+   * to performance improvements. If reading all attributes at once fails,
+   * the array is split into halves which are read separately, until the
+   * sensitive or invalid attributes are found.
    *
    * @param session
    *          The session to use for reading the attributes.
@@ -757,28 +817,27 @@ public class PKCS11Object {
     Util.requireNonNull("session", session);
     Util.requireNonNull("attributes", attributes);
 
-    PKCS11 pkcs11Module = session.getModule().getPKCS11Module();
-    long sessionHandle = session.getSessionHandle();
+    CK_ATTRIBUTE[] attributeTemplateList = new CK_ATTRIBUTE[attributes.length];
+    for (int i = 0; i < attributes.length; i++) {
+      CK_ATTRIBUTE attribute = new CK_ATTRIBUTE();
+      attribute.type = attributes[i].getCkAttribute().type;
+      attributeTemplateList[i] = attribute;
+    }
 
-    try {
-      CK_ATTRIBUTE[] attributeTemplateList
-        = new CK_ATTRIBUTE[attributes.length];
-      for (int i = 0; i < attributes.length; i++) {
-        CK_ATTRIBUTE attribute = new CK_ATTRIBUTE();
-        attribute.type = attributes[i].getCkAttribute().type;
-        attributeTemplateList[i] = attribute;
-      }
-      pkcs11Module.C_GetAttributeValue(sessionHandle, objectHandle,
-            attributeTemplateList);
-      for (int i = 0; i < attributes.length; i++) {
+    long[] errors = ObjectReader.getAttributeValues(session, objectHandle,
+        attributeTemplateList);
+    for (int i = 0; i < attributes.length; i++) {
+      long errorCode = (errors == null) ? PKCS11Constants.CKR_OK : errors[i];
+      if (errorCode == PKCS11Constants.CKR_OK) {
         attributes[i].setCkAttribute(attributeTemplateList[i]);
         attributes[i].setPresent(true);
         attributes[i].setSensitive(false);
-      }
-    } catch (sun.security.pkcs11.wrapper.PKCS11Exception ex) {
-      // try to read values separately
-      for (Attribute attribute : attributes) {
-        getAttributeValue(session, objectHandle, attribute);
+      } else if (errorCode == PKCS11Constants.CKR_ATTRIBUTE_SENSITIVE) {
+        attributes[i].setPresent(true);
+        attributes[i].setSensitive(true);
+      } else {
+        // CKR_ATTRIBUTE_TYPE_INVALID
+        attributes[i].setPresent(false);
       }
     }
   }
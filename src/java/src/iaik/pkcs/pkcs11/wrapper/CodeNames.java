@@ -0,0 +1,1131 @@
+/*
+ *
+ * Copyright (c) 2019 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package iaik.pkcs.pkcs11.wrapper;
+
+/**
+ * Names of the PKCS#11 mechanism codes and return values.
+ * <p>
+ * Generated by dev.CodeGenerator from pkcs11t.h. DO NOT EDIT.
+ *
+ * @author Lijun Liao
+ * @since 1.4.9
+ */
+final class CodeNames implements PKCS11Constants {
+
+  /**
+   * Mechanism codes, parallel to {@link #CKM_NAMES}.
+   */
+  static final long[] CKM_CODES = {
+    0x00000000L,
+    0x00000001L,
+    0x00000002L,
+    0x00000003L,
+    0x00000004L,
+    0x00000005L,
+    0x00000006L,
+    0x00000007L,
+    0x00000008L,
+    0x00000009L,
+    0x0000000AL,
+    0x0000000BL,
+    0x0000000CL,
+    0x0000000DL,
+    0x0000000EL,
+    0x00000010L,
+    0x00000011L,
+    0x00000012L,
+    0x00000013L,
+    0x00000014L,
+    0x00000015L,
+    0x00000016L,
+    0x00000018L,
+    0x00000019L,
+    0x0000001AL,
+    0x0000001BL,
+    0x00000020L,
+    0x00000021L,
+    0x00000030L,
+    0x00000031L,
+    0x00000032L,
+    0x00000033L,
+    0x00000040L,
+    0x00000041L,
+    0x00000042L,
+    0x00000043L,
+    0x00000044L,
+    0x00000045L,
+    0x00000046L,
+    0x00000047L,
+    0x00000048L,
+    0x00000049L,
+    0x0000004AL,
+    0x0000004BL,
+    0x0000004CL,
+    0x0000004DL,
+    0x0000004EL,
+    0x0000004FL,
+    0x00000050L,
+    0x00000051L,
+    0x00000052L,
+    0x00000053L,
+    0x00000060L,
+    0x00000061L,
+    0x00000062L,
+    0x00000063L,
+    0x00000064L,
+    0x00000065L,
+    0x00000066L,
+    0x00000067L,
+    0x00000100L,
+    0x00000101L,
+    0x00000102L,
+    0x00000103L,
+    0x00000104L,
+    0x00000105L,
+    0x00000110L,
+    0x00000111L,
+    0x00000120L,
+    0x00000121L,
+    0x00000122L,
+    0x00000123L,
+    0x00000124L,
+    0x00000125L,
+    0x00000130L,
+    0x00000131L,
+    0x00000132L,
+    0x00000133L,
+    0x00000134L,
+    0x00000135L,
+    0x00000136L,
+    0x00000137L,
+    0x00000138L,
+    0x00000140L,
+    0x00000141L,
+    0x00000142L,
+    0x00000143L,
+    0x00000144L,
+    0x00000145L,
+    0x00000150L,
+    0x00000151L,
+    0x00000152L,
+    0x00000153L,
+    0x00000200L,
+    0x00000201L,
+    0x00000202L,
+    0x00000210L,
+    0x00000211L,
+    0x00000212L,
+    0x00000220L,
+    0x00000221L,
+    0x00000222L,
+    0x00000230L,
+    0x00000231L,
+    0x00000232L,
+    0x00000240L,
+    0x00000241L,
+    0x00000242L,
+    0x00000250L,
+    0x00000251L,
+    0x00000252L,
+    0x00000255L,
+    0x00000256L,
+    0x00000257L,
+    0x00000260L,
+    0x00000261L,
+    0x00000262L,
+    0x00000270L,
+    0x00000271L,
+    0x00000272L,
+    0x00000280L,
+    0x00000282L,
+    0x00000290L,
+    0x00000291L,
+    0x000002A0L,
+    0x000002A1L,
+    0x000002B0L,
+    0x000002B1L,
+    0x000002B2L,
+    0x000002B3L,
+    0x000002B5L,
+    0x000002B6L,
+    0x000002B7L,
+    0x000002B8L,
+    0x000002C0L,
+    0x000002C1L,
+    0x000002C2L,
+    0x000002C3L,
+    0x000002D0L,
+    0x000002D1L,
+    0x000002D2L,
+    0x000002D3L,
+    0x00000300L,
+    0x00000301L,
+    0x00000302L,
+    0x00000303L,
+    0x00000304L,
+    0x00000305L,
+    0x00000310L,
+    0x00000311L,
+    0x00000312L,
+    0x00000313L,
+    0x00000314L,
+    0x00000315L,
+    0x00000320L,
+    0x00000321L,
+    0x00000322L,
+    0x00000323L,
+    0x00000324L,
+    0x00000325L,
+    0x00000330L,
+    0x00000331L,
+    0x00000332L,
+    0x00000333L,
+    0x00000334L,
+    0x00000335L,
+    0x00000340L,
+    0x00000341L,
+    0x00000342L,
+    0x00000343L,
+    0x00000344L,
+    0x00000345L,
+    0x00000350L,
+    0x00000360L,
+    0x00000362L,
+    0x00000363L,
+    0x00000364L,
+    0x00000365L,
+    0x00000370L,
+    0x00000371L,
+    0x00000372L,
+    0x00000373L,
+    0x00000374L,
+    0x00000375L,
+    0x00000376L,
+    0x00000377L,
+    0x00000378L,
+    0x00000380L,
+    0x00000381L,
+    0x00000390L,
+    0x00000391L,
+    0x00000392L,
+    0x00000393L,
+    0x00000394L,
+    0x00000395L,
+    0x00000396L,
+    0x00000397L,
+    0x00000398L,
+    0x00000399L,
+    0x0000039AL,
+    0x0000039BL,
+    0x0000039CL,
+    0x000003A0L,
+    0x000003A1L,
+    0x000003A2L,
+    0x000003A3L,
+    0x000003A4L,
+    0x000003A5L,
+    0x000003A6L,
+    0x000003A7L,
+    0x000003A8L,
+    0x000003A9L,
+    0x000003AAL,
+    0x000003ABL,
+    0x000003ACL,
+    0x000003ADL,
+    0x000003AEL,
+    0x000003B0L,
+    0x000003C0L,
+    0x000003D0L,
+    0x000003D1L,
+    0x000003D2L,
+    0x000003D3L,
+    0x000003D4L,
+    0x000003D5L,
+    0x000003D6L,
+    0x000003D7L,
+    0x000003D8L,
+    0x000003D9L,
+    0x000003E0L,
+    0x000003E1L,
+    0x000003E2L,
+    0x000003E3L,
+    0x000003E4L,
+    0x000003E5L,
+    0x00000400L,
+    0x00000401L,
+    0x00000500L,
+    0x00000510L,
+    0x00000511L,
+    0x00000512L,
+    0x00000550L,
+    0x00000551L,
+    0x00000552L,
+    0x00000553L,
+    0x00000554L,
+    0x00000555L,
+    0x00000556L,
+    0x00000557L,
+    0x00000558L,
+    0x00000560L,
+    0x00000561L,
+    0x00000562L,
+    0x00000563L,
+    0x00000564L,
+    0x00000565L,
+    0x00000566L,
+    0x00000567L,
+    0x00000650L,
+    0x00000651L,
+    0x00000652L,
+    0x00000653L,
+    0x00000654L,
+    0x00000655L,
+    0x00000656L,
+    0x00000657L,
+    0x00001000L,
+    0x00001001L,
+    0x00001002L,
+    0x00001003L,
+    0x00001004L,
+    0x00001005L,
+    0x00001006L,
+    0x00001007L,
+    0x00001008L,
+    0x00001009L,
+    0x0000100AL,
+    0x00001010L,
+    0x00001011L,
+    0x00001012L,
+    0x00001020L,
+    0x00001030L,
+    0x00001031L,
+    0x00001032L,
+    0x00001033L,
+    0x00001034L,
+    0x00001035L,
+    0x00001036L,
+    0x00001040L,
+    0x00001041L,
+    0x00001042L,
+    0x00001043L,
+    0x00001044L,
+    0x00001045L,
+    0x00001046L,
+    0x00001047L,
+    0x00001048L,
+    0x00001049L,
+    0x0000104AL,
+    0x00001050L,
+    0x00001051L,
+    0x00001052L,
+    0x00001053L,
+    0x00001054L,
+    0x00001055L,
+    0x00001056L,
+    0x00001057L,
+    0x00001060L,
+    0x00001061L,
+    0x00001062L,
+    0x00001063L,
+    0x00001064L,
+    0x00001065L,
+    0x00001070L,
+    0x00001071L,
+    0x00001072L,
+    0x00001080L,
+    0x00001081L,
+    0x00001082L,
+    0x00001083L,
+    0x00001084L,
+    0x00001085L,
+    0x00001086L,
+    0x00001087L,
+    0x00001088L,
+    0x00001089L,
+    0x0000108AL,
+    0x0000108BL,
+    0x0000108CL,
+    0x0000108DL,
+    0x0000108EL,
+    0x00001090L,
+    0x00001091L,
+    0x00001092L,
+    0x00001093L,
+    0x00001094L,
+    0x00001095L,
+    0x00001100L,
+    0x00001101L,
+    0x00001102L,
+    0x00001103L,
+    0x00001104L,
+    0x00001105L,
+    0x00001200L,
+    0x00001201L,
+    0x00001202L,
+    0x00001203L,
+    0x00001204L,
+    0x00001210L,
+    0x00001211L,
+    0x00001220L,
+    0x00001221L,
+    0x00001222L,
+    0x00001223L,
+    0x00001224L,
+    0x00001225L,
+    0x00001226L,
+    0x00001227L,
+    0x00001228L,
+    0x00002000L,
+    0x00002001L,
+    0x00002002L,
+    0x00002003L,
+    0x00002004L,
+    0x00002104L,
+    0x00002105L,
+    0x00002106L,
+    0x00002107L,
+    0x00002108L,
+    0x00002109L,
+    0x0000210AL,
+    0x0000210BL,
+    0x00004001L,
+    0x00004002L,
+    0x00004003L,
+    0x00004004L,
+    0x00004005L,
+    0x00004006L,
+    0x00004007L,
+    0x00004008L,
+    0x00004009L,
+    0x0000400AL,
+    0x0000400BL,
+    0x0000400CL,
+    0x0000400DL,
+    0x0000400EL,
+    0x0000400FL,
+    0x00004010L,
+    0x00004011L,
+    0x00004012L,
+    0x00004013L,
+    0x00004014L,
+    0x00004015L,
+    0x00004016L,
+    0x00004017L,
+    0x00004018L,
+    0x00004019L,
+    0x0000401AL,
+    0x0000401BL,
+    0x0000401CL,
+    0x0000401DL,
+    0x0000401EL,
+    0x0000401FL,
+    0x00004020L,
+    0x00004021L,
+    0x00004022L,
+    0x00004023L,
+    0x00004024L,
+    0x00004025L,
+    0x00004026L,
+    0x00004027L,
+    0x00004028L,
+    0x00004029L,
+    0x0000402AL,
+    0x0000402BL,
+    0x0000402CL,
+    0x80000000L,
+    CKM_VENDOR_ISO2_SM4_MAC,
+    CKM_VENDOR_ISO2_SM4_MAC_GENERAL,
+    CKM_VENDOR_SM2,
+    CKM_VENDOR_SM2_ENCRYPT,
+    CKM_VENDOR_SM2_KEY_PAIR_GEN,
+    CKM_VENDOR_SM2_SM3,
+    CKM_VENDOR_SM3,
+    CKM_VENDOR_SM4_CBC,
+    CKM_VENDOR_SM4_ECB,
+    CKM_VENDOR_SM4_ECB_ENCRYPT_DATA,
+    CKM_VENDOR_SM4_KEY_GEN,
+    CKM_VENDOR_SM4_MAC,
+    CKM_VENDOR_SM4_MAC_GENERAL};
+
+  /**
+   * Names of the mechanisms in {@link #CKM_CODES}.
+   */
+  static final String[] CKM_NAMES = {
+    "CKM_RSA_PKCS_KEY_PAIR_GEN",
+    "CKM_RSA_PKCS",
+    "CKM_RSA_9796",
+    "CKM_RSA_X_509",
+    "CKM_MD2_RSA_PKCS",
+    "CKM_MD5_RSA_PKCS",
+    "CKM_SHA1_RSA_PKCS",
+    "CKM_RIPEMD128_RSA_PKCS",
+    "CKM_RIPEMD160_RSA_PKCS",
+    "CKM_RSA_PKCS_OAEP",
+    "CKM_RSA_X9_31_KEY_PAIR_GEN",
+    "CKM_RSA_X9_31",
+    "CKM_SHA1_RSA_X9_31",
+    "CKM_RSA_PKCS_PSS",
+    "CKM_SHA1_RSA_PKCS_PSS",
+    "CKM_DSA_KEY_PAIR_GEN",
+    "CKM_DSA",
+    "CKM_DSA_SHA1",
+    "CKM_DSA_SHA224",
+    "CKM_DSA_SHA256",
+    "CKM_DSA_SHA384",
+    "CKM_DSA_SHA512",
+    "CKM_DSA_SHA3_224",
+    "CKM_DSA_SHA3_256",
+    "CKM_DSA_SHA3_384",
+    "CKM_DSA_SHA3_512",
+    "CKM_DH_PKCS_KEY_PAIR_GEN",
+    "CKM_DH_PKCS_DERIVE",
+    "CKM_X9_42_DH_KEY_PAIR_GEN",
+    "CKM_X9_42_DH_DERIVE",
+    "CKM_X9_42_DH_HYBRID_DERIVE",
+    "CKM_X9_42_MQV_DERIVE",
+    "CKM_SHA256_RSA_PKCS",
+    "CKM_SHA384_RSA_PKCS",
+    "CKM_SHA512_RSA_PKCS",
+    "CKM_SHA256_RSA_PKCS_PSS",
+    "CKM_SHA384_RSA_PKCS_PSS",
+    "CKM_SHA512_RSA_PKCS_PSS",
+    "CKM_SHA224_RSA_PKCS",
+    "CKM_SHA224_RSA_PKCS_PSS",
+    "CKM_SHA512_224",
+    "CKM_SHA512_224_HMAC",
+    "CKM_SHA512_224_HMAC_GENERAL",
+    "CKM_SHA512_224_KEY_DERIVATION",
+    "CKM_SHA512_256",
+    "CKM_SHA512_256_HMAC",
+    "CKM_SHA512_256_HMAC_GENERAL",
+    "CKM_SHA512_256_KEY_DERIVATION",
+    "CKM_SHA512_T",
+    "CKM_SHA512_T_HMAC",
+    "CKM_SHA512_T_HMAC_GENERAL",
+    "CKM_SHA512_T_KEY_DERIVATION",
+    "CKM_SHA3_256_RSA_PKCS",
+    "CKM_SHA3_384_RSA_PKCS",
+    "CKM_SHA3_512_RSA_PKCS",
+    "CKM_SHA3_256_RSA_PKCS_PSS",
+    "CKM_SHA3_384_RSA_PKCS_PSS",
+    "CKM_SHA3_512_RSA_PKCS_PSS",
+    "CKM_SHA3_224_RSA_PKCS",
+    "CKM_SHA3_224_RSA_PKCS_PSS",
+    "CKM_RC2_KEY_GEN",
+    "CKM_RC2_ECB",
+    "CKM_RC2_CBC",
+    "CKM_RC2_MAC",
+    "CKM_RC2_MAC_GENERAL",
+    "CKM_RC2_CBC_PAD",
+    "CKM_RC4_KEY_GEN",
+    "CKM_RC4",
+    "CKM_DES_KEY_GEN",
+    "CKM_DES_ECB",
+    "CKM_DES_CBC",
+    "CKM_DES_MAC",
+    "CKM_DES_MAC_GENERAL",
+    "CKM_DES_CBC_PAD",
+    "CKM_DES2_KEY_GEN",
+    "CKM_DES3_KEY_GEN",
+    "CKM_DES3_ECB",
+    "CKM_DES3_CBC",
+    "CKM_DES3_MAC",
+    "CKM_DES3_MAC_GENERAL",
+    "CKM_DES3_CBC_PAD",
+    "CKM_DES3_CMAC_GENERAL",
+    "CKM_DES3_CMAC",
+    "CKM_CDMF_KEY_GEN",
+    "CKM_CDMF_ECB",
+    "CKM_CDMF_CBC",
+    "CKM_CDMF_MAC",
+    "CKM_CDMF_MAC_GENERAL",
+    "CKM_CDMF_CBC_PAD",
+    "CKM_DES_OFB64",
+    "CKM_DES_OFB8",
+    "CKM_DES_CFB64",
+    "CKM_DES_CFB8",
+    "CKM_MD2",
+    "CKM_MD2_HMAC",
+    "CKM_MD2_HMAC_GENERAL",
+    "CKM_MD5",
+    "CKM_MD5_HMAC",
+    "CKM_MD5_HMAC_GENERAL",
+    "CKM_SHA_1",
+    "CKM_SHA_1_HMAC",
+    "CKM_SHA_1_HMAC_GENERAL",
+    "CKM_RIPEMD128",
+    "CKM_RIPEMD128_HMAC",
+    "CKM_RIPEMD128_HMAC_GENERAL",
+    "CKM_RIPEMD160",
+    "CKM_RIPEMD160_HMAC",
+    "CKM_RIPEMD160_HMAC_GENERAL",
+    "CKM_SHA256",
+    "CKM_SHA256_HMAC",
+    "CKM_SHA256_HMAC_GENERAL",
+    "CKM_SHA224",
+    "CKM_SHA224_HMAC",
+    "CKM_SHA224_HMAC_GENERAL",
+    "CKM_SHA384",
+    "CKM_SHA384_HMAC",
+    "CKM_SHA384_HMAC_GENERAL",
+    "CKM_SHA512",
+    "CKM_SHA512_HMAC",
+    "CKM_SHA512_HMAC_GENERAL",
+    "CKM_SECURID_KEY_GEN",
+    "CKM_SECURID",
+    "CKM_HOTP_KEY_GEN",
+    "CKM_HOTP",
+    "CKM_ACTI",
+    "CKM_ACTI_KEY_GEN",
+    "CKM_SHA3_256",
+    "CKM_SHA3_256_HMAC",
+    "CKM_SHA3_256_HMAC_GENERAL",
+    "CKM_SHA3_256_KEY_GEN",
+    "CKM_SHA3_224",
+    "CKM_SHA3_224_HMAC",
+    "CKM_SHA3_224_HMAC_GENERAL",
+    "CKM_SHA3_224_KEY_GEN",
+    "CKM_SHA3_384",
+    "CKM_SHA3_384_HMAC",
+    "CKM_SHA3_384_HMAC_GENERAL",
+    "CKM_SHA3_384_KEY_GEN",
+    "CKM_SHA3_512",
+    "CKM_SHA3_512_HMAC",
+    "CKM_SHA3_512_HMAC_GENERAL",
+    "CKM_SHA3_512_KEY_GEN",
+    "CKM_CAST_KEY_GEN",
+    "CKM_CAST_ECB",
+    "CKM_CAST_CBC",
+    "CKM_CAST_MAC",
+    "CKM_CAST_MAC_GENERAL",
+    "CKM_CAST_CBC_PAD",
+    "CKM_CAST3_KEY_GEN",
+    "CKM_CAST3_ECB",
+    "CKM_CAST3_CBC",
+    "CKM_CAST3_MAC",
+    "CKM_CAST3_MAC_GENERAL",
+    "CKM_CAST3_CBC_PAD",
+    "CKM_CAST128_KEY_GEN",
+    "CKM_CAST128_ECB",
+    "CKM_CAST128_CBC",
+    "CKM_CAST128_MAC",
+    "CKM_CAST128_MAC_GENERAL",
+    "CKM_CAST128_CBC_PAD",
+    "CKM_RC5_KEY_GEN",
+    "CKM_RC5_ECB",
+    "CKM_RC5_CBC",
+    "CKM_RC5_MAC",
+    "CKM_RC5_MAC_GENERAL",
+    "CKM_RC5_CBC_PAD",
+    "CKM_IDEA_KEY_GEN",
+    "CKM_IDEA_ECB",
+    "CKM_IDEA_CBC",
+    "CKM_IDEA_MAC",
+    "CKM_IDEA_MAC_GENERAL",
+    "CKM_IDEA_CBC_PAD",
+    "CKM_GENERIC_SECRET_KEY_GEN",
+    "CKM_CONCATENATE_BASE_AND_KEY",
+    "CKM_CONCATENATE_BASE_AND_DATA",
+    "CKM_CONCATENATE_DATA_AND_BASE",
+    "CKM_XOR_BASE_AND_DATA",
+    "CKM_EXTRACT_KEY_FROM_KEY",
+    "CKM_SSL3_PRE_MASTER_KEY_GEN",
+    "CKM_SSL3_MASTER_KEY_DERIVE",
+    "CKM_SSL3_KEY_AND_MAC_DERIVE",
+    "CKM_SSL3_MASTER_KEY_DERIVE_DH",
+    "CKM_TLS_PRE_MASTER_KEY_GEN",
+    "CKM_TLS_MASTER_KEY_DERIVE",
+    "CKM_TLS_KEY_AND_MAC_DERIVE",
+    "CKM_TLS_MASTER_KEY_DERIVE_DH",
+    "CKM_TLS_PRF",
+    "CKM_SSL3_MD5_MAC",
+    "CKM_SSL3_SHA1_MAC",
+    "CKM_MD5_KEY_DERIVATION",
+    "CKM_MD2_KEY_DERIVATION",
+    "CKM_SHA1_KEY_DERIVATION",
+    "CKM_SHA256_KEY_DERIVATION",
+    "CKM_SHA384_KEY_DERIVATION",
+    "CKM_SHA512_KEY_DERIVATION",
+    "CKM_SHA224_KEY_DERIVATION",
+    "CKM_SHA3_256_KEY_DERIVE",
+    "CKM_SHA3_224_KEY_DERIVE",
+    "CKM_SHA3_384_KEY_DERIVE",
+    "CKM_SHA3_512_KEY_DERIVE",
+    "CKM_SHAKE_128_KEY_DERIVE",
+    "CKM_SHAKE_256_KEY_DERIVE",
+    "CKM_PBE_MD2_DES_CBC",
+    "CKM_PBE_MD5_DES_CBC",
+    "CKM_PBE_MD5_CAST_CBC",
+    "CKM_PBE_MD5_CAST3_CBC",
+    "CKM_PBE_MD5_CAST128_CBC",
+    "CKM_PBE_SHA1_CAST128_CBC",
+    "CKM_PBE_SHA1_RC4_128",
+    "CKM_PBE_SHA1_RC4_40",
+    "CKM_PBE_SHA1_DES3_EDE_CBC",
+    "CKM_PBE_SHA1_DES2_EDE_CBC",
+    "CKM_PBE_SHA1_RC2_128_CBC",
+    "CKM_PBE_SHA1_RC2_40_CBC",
+    "CKM_SP800_108_COUNTER_KDF",
+    "CKM_SP800_108_FEEDBACK_KDF",
+    "CKM_SP800_108_DOUBLE_PIPELINE_KDF",
+    "CKM_PKCS5_PBKD2",
+    "CKM_PBA_SHA1_WITH_SHA1_HMAC",
+    "CKM_WTLS_PRE_MASTER_KEY_GEN",
+    "CKM_WTLS_MASTER_KEY_DERIVE",
+    "CKM_WTLS_MASTER_KEY_DERIVE_DH_ECC",
+    "CKM_WTLS_PRF",
+    "CKM_WTLS_SERVER_KEY_AND_MAC_DERIVE",
+    "CKM_WTLS_CLIENT_KEY_AND_MAC_DERIVE",
+    "CKM_TLS10_MAC_SERVER",
+    "CKM_TLS10_MAC_CLIENT",
+    "CKM_TLS12_MAC",
+    "CKM_TLS12_KDF",
+    "CKM_TLS12_MASTER_KEY_DERIVE",
+    "CKM_TLS12_KEY_AND_MAC_DERIVE",
+    "CKM_TLS12_MASTER_KEY_DERIVE_DH",
+    "CKM_TLS12_KEY_SAFE_DERIVE",
+    "CKM_TLS_MAC",
+    "CKM_TLS_KDF",
+    "CKM_KEY_WRAP_LYNKS",
+    "CKM_KEY_WRAP_SET_OAEP",
+    "CKM_CMS_SIG",
+    "CKM_KIP_DERIVE",
+    "CKM_KIP_WRAP",
+    "CKM_KIP_MAC",
+    "CKM_CAMELLIA_KEY_GEN",
+    "CKM_CAMELLIA_ECB",
+    "CKM_CAMELLIA_CBC",
+    "CKM_CAMELLIA_MAC",
+    "CKM_CAMELLIA_MAC_GENERAL",
+    "CKM_CAMELLIA_CBC_PAD",
+    "CKM_CAMELLIA_ECB_ENCRYPT_DATA",
+    "CKM_CAMELLIA_CBC_ENCRYPT_DATA",
+    "CKM_CAMELLIA_CTR",
+    "CKM_ARIA_KEY_GEN",
+    "CKM_ARIA_ECB",
+    "CKM_ARIA_CBC",
+    "CKM_ARIA_MAC",
+    "CKM_ARIA_MAC_GENERAL",
+    "CKM_ARIA_CBC_PAD",
+    "CKM_ARIA_ECB_ENCRYPT_DATA",
+    "CKM_ARIA_CBC_ENCRYPT_DATA",
+    "CKM_SEED_KEY_GEN",
+    "CKM_SEED_ECB",
+    "CKM_SEED_CBC",
+    "CKM_SEED_MAC",
+    "CKM_SEED_MAC_GENERAL",
+    "CKM_SEED_CBC_PAD",
+    "CKM_SEED_ECB_ENCRYPT_DATA",
+    "CKM_SEED_CBC_ENCRYPT_DATA",
+    "CKM_SKIPJACK_KEY_GEN",
+    "CKM_SKIPJACK_ECB64",
+    "CKM_SKIPJACK_CBC64",
+    "CKM_SKIPJACK_OFB64",
+    "CKM_SKIPJACK_CFB64",
+    "CKM_SKIPJACK_CFB32",
+    "CKM_SKIPJACK_CFB16",
+    "CKM_SKIPJACK_CFB8",
+    "CKM_SKIPJACK_WRAP",
+    "CKM_SKIPJACK_PRIVATE_WRAP",
+    "CKM_SKIPJACK_RELAYX",
+    "CKM_KEA_KEY_PAIR_GEN",
+    "CKM_KEA_KEY_DERIVE",
+    "CKM_KEA_DERIVE",
+    "CKM_FORTEZZA_TIMESTAMP",
+    "CKM_BATON_KEY_GEN",
+    "CKM_BATON_ECB128",
+    "CKM_BATON_ECB96",
+    "CKM_BATON_CBC128",
+    "CKM_BATON_COUNTER",
+    "CKM_BATON_SHUFFLE",
+    "CKM_BATON_WRAP",
+    "CKM_EC_KEY_PAIR_GEN",
+    "CKM_ECDSA",
+    "CKM_ECDSA_SHA1",
+    "CKM_ECDSA_SHA224",
+    "CKM_ECDSA_SHA256",
+    "CKM_ECDSA_SHA384",
+    "CKM_ECDSA_SHA512",
+    "CKM_ECDSA_SHA3_224",
+    "CKM_ECDSA_SHA3_256",
+    "CKM_ECDSA_SHA3_384",
+    "CKM_ECDSA_SHA3_512",
+    "CKM_ECDH1_DERIVE",
+    "CKM_ECDH1_COFACTOR_DERIVE",
+    "CKM_ECMQV_DERIVE",
+    "CKM_ECDH_AES_KEY_WRAP",
+    "CKM_RSA_AES_KEY_WRAP",
+    "CKM_EC_EDWARDS_KEY_PAIR_GEN",
+    "CKM_EC_MONTGOMERY_KEY_PAIR_GEN",
+    "CKM_EDDSA",
+    "CKM_JUNIPER_KEY_GEN",
+    "CKM_JUNIPER_ECB128",
+    "CKM_JUNIPER_CBC128",
+    "CKM_JUNIPER_COUNTER",
+    "CKM_JUNIPER_SHUFFLE",
+    "CKM_JUNIPER_WRAP",
+    "CKM_FASTHASH",
+    "CKM_AES_XTS",
+    "CKM_AES_XTS_KEY_GEN",
+    "CKM_AES_KEY_GEN",
+    "CKM_AES_ECB",
+    "CKM_AES_CBC",
+    "CKM_AES_MAC",
+    "CKM_AES_MAC_GENERAL",
+    "CKM_AES_CBC_PAD",
+    "CKM_AES_CTR",
+    "CKM_AES_GCM",
+    "CKM_AES_CCM",
+    "CKM_AES_CTS",
+    "CKM_AES_CMAC",
+    "CKM_AES_CMAC_GENERAL",
+    "CKM_AES_XCBC_MAC",
+    "CKM_AES_XCBC_MAC_96",
+    "CKM_AES_GMAC",
+    "CKM_BLOWFISH_KEY_GEN",
+    "CKM_BLOWFISH_CBC",
+    "CKM_TWOFISH_KEY_GEN",
+    "CKM_TWOFISH_CBC",
+    "CKM_BLOWFISH_CBC_PAD",
+    "CKM_TWOFISH_CBC_PAD",
+    "CKM_DES_ECB_ENCRYPT_DATA",
+    "CKM_DES_CBC_ENCRYPT_DATA",
+    "CKM_DES3_ECB_ENCRYPT_DATA",
+    "CKM_DES3_CBC_ENCRYPT_DATA",
+    "CKM_AES_ECB_ENCRYPT_DATA",
+    "CKM_AES_CBC_ENCRYPT_DATA",
+    "CKM_GOSTR3410_KEY_PAIR_GEN",
+    "CKM_GOSTR3410",
+    "CKM_GOSTR3410_WITH_GOSTR3411",
+    "CKM_GOSTR3410_KEY_WRAP",
+    "CKM_GOSTR3410_DERIVE",
+    "CKM_GOSTR3411",
+    "CKM_GOSTR3411_HMAC",
+    "CKM_GOST28147_KEY_GEN",
+    "CKM_GOST28147_ECB",
+    "CKM_GOST28147",
+    "CKM_GOST28147_MAC",
+    "CKM_GOST28147_KEY_WRAP",
+    "CKM_CHACHA20_KEY_GEN",
+    "CKM_CHACHA20",
+    "CKM_POLY1305_KEY_GEN",
+    "CKM_POLY1305",
+    "CKM_DSA_PARAMETER_GEN",
+    "CKM_DH_PKCS_PARAMETER_GEN",
+    "CKM_X9_42_DH_PARAMETER_GEN",
+    "CKM_DSA_PROBABLISTIC_PARAMETER_GEN",
+    "CKM_DSA_SHAWE_TAYLOR_PARAMETER_GEN",
+    "CKM_AES_OFB",
+    "CKM_AES_CFB64",
+    "CKM_AES_CFB8",
+    "CKM_AES_CFB128",
+    "CKM_AES_CFB1",
+    "CKM_AES_KEY_WRAP",
+    "CKM_AES_KEY_WRAP_PAD",
+    "CKM_AES_KEY_WRAP_KWP",
+    "CKM_RSA_PKCS_TPM_1_1",
+    "CKM_RSA_PKCS_OAEP_TPM_1_1",
+    "CKM_SHA_1_KEY_GEN",
+    "CKM_SHA224_KEY_GEN",
+    "CKM_SHA256_KEY_GEN",
+    "CKM_SHA384_KEY_GEN",
+    "CKM_SHA512_KEY_GEN",
+    "CKM_SHA512_224_KEY_GEN",
+    "CKM_SHA512_256_KEY_GEN",
+    "CKM_SHA512_T_KEY_GEN",
+    "CKM_NULL",
+    "CKM_BLAKE2B_160",
+    "CKM_BLAKE2B_160_HMAC",
+    "CKM_BLAKE2B_160_HMAC_GENERAL",
+    "CKM_BLAKE2B_160_KEY_DERIVE",
+    "CKM_BLAKE2B_160_KEY_GEN",
+    "CKM_BLAKE2B_256",
+    "CKM_BLAKE2B_256_HMAC",
+    "CKM_BLAKE2B_256_HMAC_GENERAL",
+    "CKM_BLAKE2B_256_KEY_DERIVE",
+    "CKM_BLAKE2B_256_KEY_GEN",
+    "CKM_BLAKE2B_384",
+    "CKM_BLAKE2B_384_HMAC",
+    "CKM_BLAKE2B_384_HMAC_GENERAL",
+    "CKM_BLAKE2B_384_KEY_DERIVE",
+    "CKM_BLAKE2B_384_KEY_GEN",
+    "CKM_BLAKE2B_512",
+    "CKM_BLAKE2B_512_HMAC",
+    "CKM_BLAKE2B_512_HMAC_GENERAL",
+    "CKM_BLAKE2B_512_KEY_DERIVE",
+    "CKM_BLAKE2B_512_KEY_GEN",
+    "CKM_SALSA20",
+    "CKM_CHACHA20_POLY1305",
+    "CKM_SALSA20_POLY1305",
+    "CKM_X3DH_INITIALIZE",
+    "CKM_X3DH_RESPOND",
+    "CKM_X2RATCHET_INITIALIZE",
+    "CKM_X2RATCHET_RESPOND",
+    "CKM_X2RATCHET_ENCRYPT",
+    "CKM_X2RATCHET_DECRYPT",
+    "CKM_XEDDSA",
+    "CKM_HKDF_DERIVE",
+    "CKM_HKDF_DATA",
+    "CKM_HKDF_KEY_GEN",
+    "CKM_VENDOR_DEFINED",
+    "CKM_VENDOR_ISO2_SM4_MAC",
+    "CKM_VENDOR_ISO2_SM4_MAC_GENERAL",
+    "CKM_VENDOR_SM2",
+    "CKM_VENDOR_SM2_ENCRYPT",
+    "CKM_VENDOR_SM2_KEY_PAIR_GEN",
+    "CKM_VENDOR_SM2_SM3",
+    "CKM_VENDOR_SM3",
+    "CKM_VENDOR_SM4_CBC",
+    "CKM_VENDOR_SM4_ECB",
+    "CKM_VENDOR_SM4_ECB_ENCRYPT_DATA",
+    "CKM_VENDOR_SM4_KEY_GEN",
+    "CKM_VENDOR_SM4_MAC",
+    "CKM_VENDOR_SM4_MAC_GENERAL"};
+
+  /**
+   * Codes of the alias mechanism names in {@link #CKM_ALIASES}.
+   */
+  static final long[] CKM_ALIAS_CODES = {
+    0x00000322L,
+    0x00000323L,
+    0x00000324L,
+    0x00000325L,
+    0x000003A4L,
+    0x000003A5L,
+    0x00001040L};
+
+  /**
+   * Further (deprecated) names of mechanisms.
+   */
+  static final String[] CKM_ALIASES = {
+    "CKM_CAST5_CBC",
+    "CKM_CAST5_MAC",
+    "CKM_CAST5_MAC_GENERAL",
+    "CKM_CAST5_CBC_PAD",
+    "CKM_PBE_MD5_CAST5_CBC",
+    "CKM_PBE_SHA1_CAST5_CBC",
+    "CKM_ECDSA_KEY_PAIR_GEN"};
+
+  /**
+   * Return value codes, parallel to {@link #CKR_NAMES}.
+   */
+  static final long[] CKR_CODES = {
+    0x00000000L,
+    0x00000001L,
+    0x00000002L,
+    0x00000003L,
+    0x00000005L,
+    0x00000006L,
+    0x00000007L,
+    0x00000008L,
+    0x00000009L,
+    0x0000000AL,
+    0x00000010L,
+    0x00000011L,
+    0x00000012L,
+    0x00000013L,
+    0x0000001BL,
+    0x00000020L,
+    0x00000021L,
+    0x00000030L,
+    0x00000031L,
+    0x00000032L,
+    0x00000040L,
+    0x00000041L,
+    0x00000042L,
+    0x00000050L,
+    0x00000051L,
+    0x00000054L,
+    0x00000060L,
+    0x00000062L,
+    0x00000063L,
+    0x00000064L,
+    0x00000065L,
+    0x00000066L,
+    0x00000067L,
+    0x00000068L,
+    0x00000069L,
+    0x0000006AL,
+    0x00000070L,
+    0x00000071L,
+    0x00000082L,
+    0x00000090L,
+    0x00000091L,
+    0x000000A0L,
+    0x000000A1L,
+    0x000000A2L,
+    0x000000A3L,
+    0x000000A4L,
+    0x000000B0L,
+    0x000000B1L,
+    0x000000B3L,
+    0x000000B4L,
+    0x000000B5L,
+    0x000000B6L,
+    0x000000B7L,
+    0x000000B8L,
+    0x000000C0L,
+    0x000000C1L,
+    0x000000D0L,
+    0x000000D1L,
+    0x000000E0L,
+    0x000000E1L,
+    0x000000E2L,
+    0x000000F0L,
+    0x000000F1L,
+    0x000000F2L,
+    0x00000100L,
+    0x00000101L,
+    0x00000102L,
+    0x00000103L,
+    0x00000104L,
+    0x00000105L,
+    0x00000110L,
+    0x00000112L,
+    0x00000113L,
+    0x00000114L,
+    0x00000115L,
+    0x00000120L,
+    0x00000121L,
+    0x00000130L,
+    0x00000140L,
+    0x00000150L,
+    0x00000160L,
+    0x00000170L,
+    0x00000180L,
+    0x00000190L,
+    0x00000191L,
+    0x000001A0L,
+    0x000001A1L,
+    0x000001B0L,
+    0x000001B1L,
+    0x000001B5L,
+    0x000001B6L,
+    0x000001B7L,
+    0x000001B8L,
+    0x000001B9L,
+    0x00000200L,
+    0x00000201L,
+    0x80000000L};
+
+  /**
+   * Names of the return values in {@link #CKR_CODES}.
+   */
+  static final String[] CKR_NAMES = {
+    "CKR_OK",
+    "CKR_CANCEL",
+    "CKR_HOST_MEMORY",
+    "CKR_SLOT_ID_INVALID",
+    "CKR_GENERAL_ERROR",
+    "CKR_FUNCTION_FAILED",
+    "CKR_ARGUMENTS_BAD",
+    "CKR_NO_EVENT",
+    "CKR_NEED_TO_CREATE_THREADS",
+    "CKR_CANT_LOCK",
+    "CKR_ATTRIBUTE_READ_ONLY",
+    "CKR_ATTRIBUTE_SENSITIVE",
+    "CKR_ATTRIBUTE_TYPE_INVALID",
+    "CKR_ATTRIBUTE_VALUE_INVALID",
+    "CKR_ACTION_PROHIBITED",
+    "CKR_DATA_INVALID",
+    "CKR_DATA_LEN_RANGE",
+    "CKR_DEVICE_ERROR",
+    "CKR_DEVICE_MEMORY",
+    "CKR_DEVICE_REMOVED",
+    "CKR_ENCRYPTED_DATA_INVALID",
+    "CKR_ENCRYPTED_DATA_LEN_RANGE",
+    "CKR_AEAD_DECRYPT_FAILED",
+    "CKR_FUNCTION_CANCELED",
+    "CKR_FUNCTION_NOT_PARALLEL",
+    "CKR_FUNCTION_NOT_SUPPORTED",
+    "CKR_KEY_HANDLE_INVALID",
+    "CKR_KEY_SIZE_RANGE",
+    "CKR_KEY_TYPE_INCONSISTENT",
+    "CKR_KEY_NOT_NEEDED",
+    "CKR_KEY_CHANGED",
+    "CKR_KEY_NEEDED",
+    "CKR_KEY_INDIGESTIBLE",
+    "CKR_KEY_FUNCTION_NOT_PERMITTED",
+    "CKR_KEY_NOT_WRAPPABLE",
+    "CKR_KEY_UNEXTRACTABLE",
+    "CKR_MECHANISM_INVALID",
+    "CKR_MECHANISM_PARAM_INVALID",
+    "CKR_OBJECT_HANDLE_INVALID",
+    "CKR_OPERATION_ACTIVE",
+    "CKR_OPERATION_NOT_INITIALIZED",
+    "CKR_PIN_INCORRECT",
+    "CKR_PIN_INVALID",
+    "CKR_PIN_LEN_RANGE",
+    "CKR_PIN_EXPIRED",
+    "CKR_PIN_LOCKED",
+    "CKR_SESSION_CLOSED",
+    "CKR_SESSION_COUNT",
+    "CKR_SESSION_HANDLE_INVALID",
+    "CKR_SESSION_PARALLEL_NOT_SUPPORTED",
+    "CKR_SESSION_READ_ONLY",
+    "CKR_SESSION_EXISTS",
+    "CKR_SESSION_READ_ONLY_EXISTS",
+    "CKR_SESSION_READ_WRITE_SO_EXISTS",
+    "CKR_SIGNATURE_INVALID",
+    "CKR_SIGNATURE_LEN_RANGE",
+    "CKR_TEMPLATE_INCOMPLETE",
+    "CKR_TEMPLATE_INCONSISTENT",
+    "CKR_TOKEN_NOT_PRESENT",
+    "CKR_TOKEN_NOT_RECOGNIZED",
+    "CKR_TOKEN_WRITE_PROTECTED",
+    "CKR_UNWRAPPING_KEY_HANDLE_INVALID",
+    "CKR_UNWRAPPING_KEY_SIZE_RANGE",
+    "CKR_UNWRAPPING_KEY_TYPE_INCONSISTENT",
+    "CKR_USER_ALREADY_LOGGED_IN",
+    "CKR_USER_NOT_LOGGED_IN",
+    "CKR_USER_PIN_NOT_INITIALIZED",
+    "CKR_USER_TYPE_INVALID",
+    "CKR_USER_ANOTHER_ALREADY_LOGGED_IN",
+    "CKR_USER_TOO_MANY_TYPES",
+    "CKR_WRAPPED_KEY_INVALID",
+    "CKR_WRAPPED_KEY_LEN_RANGE",
+    "CKR_WRAPPING_KEY_HANDLE_INVALID",
+    "CKR_WRAPPING_KEY_SIZE_RANGE",
+    "CKR_WRAPPING_KEY_TYPE_INCONSISTENT",
+    "CKR_RANDOM_SEED_NOT_SUPPORTED",
+    "CKR_RANDOM_NO_RNG",
+    "CKR_DOMAIN_PARAMS_INVALID",
+    "CKR_CURVE_NOT_SUPPORTED",
+    "CKR_BUFFER_TOO_SMALL",
+    "CKR_SAVED_STATE_INVALID",
+    "CKR_INFORMATION_SENSITIVE",
+    "CKR_STATE_UNSAVEABLE",
+    "CKR_CRYPTOKI_NOT_INITIALIZED",
+    "CKR_CRYPTOKI_ALREADY_INITIALIZED",
+    "CKR_MUTEX_BAD",
+    "CKR_MUTEX_NOT_LOCKED",
+    "CKR_NEW_PIN_MODE",
+    "CKR_NEXT_OTP",
+    "CKR_EXCEEDED_MAX_ITERATIONS",
+    "CKR_FIPS_SELF_TEST_FAILED",
+    "CKR_LIBRARY_LOAD_FAILED",
+    "CKR_PIN_TOO_WEAK",
+    "CKR_PUBLIC_KEY_INVALID",
+    "CKR_FUNCTION_REJECTED",
+    "CKR_TOKEN_RESOURCE_EXCEEDED",
+    "CKR_VENDOR_DEFINED"};
+
+  private CodeNames() {
+  }
+
+}
@@ -42,6 +42,8 @@
 
 package iaik.pkcs.pkcs11.wrapper;
 
+import iaik.pkcs.pkcs11.LongObjectMap;
+import iaik.pkcs.pkcs11.LongSet;
 import iaik.pkcs.pkcs11.Mechanism;
 
 import java.util.*;
@@ -119,115 +121,452 @@ public class Functions implements PKCS11Constants {
 
   }
 
-  /**
-   * The name of the properties file that holds the names of the PKCS#11
-   * mechanism-codes.
-   */
-  private static final String CKM_CODE_PROPERTIES
-      = "/iaik/pkcs/pkcs11/wrapper/ckm.properties";
-
-  /**
-   * The name of the properties file that holds the names of the PKCS#11
-   * mechanism-codes.
-   */
-  private static final String CKR_CODE_PROPERTIES
-      = "/iaik/pkcs/pkcs11/wrapper/ckr.properties";
-
-  /**
-   * True, if the mapping of mechanism codes to PKCS#11 mechanism names is
-   * available.
-   */
-  private static boolean mechCodeNamesAvailable;
-
-  /**
-   * Maps mechanism codes as Long to their names as Strings.
-   */
-  private static Map<Long, String> mechNames;
-
-  /**
-   * Maps mechanism name as String to their code as Long.
-   */
-  private static Map<String, Long> mechNameToCodes;
-
-  private static final Map<Long, String> hashMechCodeToHashNames;
-
-  /**
-   * True, if the mapping of error codes to PKCS#11 error names is available.
-   */
-  private static boolean errorCodeNamesAvailable;
-
-  /**
-   * The properties object that holds the mapping from error-code to the name
-   * of the PKCS#11 error.
-   */
-  private static Map<Long, String> errorCodeNames;
+  private static final LongObjectMap<String> hashMechCodeToHashNames;
 
   // MGFs (CKG_*)
-  private static final Map<Long, String> mgfNames = new HashMap<>();
+  private static final LongObjectMap<String> mgfNames =
+      new LongObjectMap<>();
 
   /**
    * This set contains the mechanisms that are full encrypt/decrypt
    * mechanisms; i.e. mechanisms that support the update functions.
    */
-  private static Set<Long> fullEncryptDecryptMechs;
+  private static final LongSet fullEncryptDecryptMechs = LongSet.of(
+    CKM_AES_ECB,
+    CKM_AES_CBC,
+    CKM_AES_CBC_PAD,
+    CKM_AES_OFB,
+    CKM_AES_CFB64,
+    CKM_AES_CFB8,
+    CKM_AES_CFB128,
+    CKM_AES_CFB1,
+    CKM_AES_XTS,
+    CKM_AES_CTR,
+    CKM_AES_CTS,
+    CKM_AES_GCM,
+    CKM_AES_CCM,
+    CKM_AES_KEY_WRAP,
+    CKM_AES_KEY_WRAP_PAD,
+    CKM_AES_KEY_WRAP_KWP,
+    CKM_DES3_ECB,
+    CKM_DES3_CBC,
+    CKM_DES3_CBC_PAD,
+    CKM_DES_OFB64,
+    CKM_DES_OFB8,
+    CKM_DES_CFB64,
+    CKM_DES_CFB8,
+    CKM_BLOWFISH_CBC,
+    CKM_BLOWFISH_CBC_PAD,
+    CKM_CAMELLIA_ECB,
+    CKM_CAMELLIA_CBC,
+    CKM_CAMELLIA_CBC_PAD,
+    CKM_ARIA_ECB,
+    CKM_ARIA_CBC,
+    CKM_ARIA_CBC_PAD,
+    CKM_SEED_CBC_PAD,
+    CKM_GOST28147_ECB,
+    CKM_GOST28147,
+    CKM_CHACHA20,
+    CKM_SALSA20,
+    CKM_CHACHA20_POLY1305,
+    CKM_SALSA20_POLY1305,
+    CKM_X2RATCHET_ENCRYPT,
+    CKM_X2RATCHET_DECRYPT,
+    // Vendor Mechanisms
+    CKM_VENDOR_SM4_CBC, CKM_VENDOR_SM4_ECB);
 
   /**
    * This set contains the mechanisms that are single-operation
    * encrypt/decrypt mechanisms; i.e. mechanisms that do not support the
    * update functions.
    */
-  private static Set<Long> sglOpEncryptDecryptMechs;
+  private static final LongSet sglOpEncryptDecryptMechs = LongSet.of(
+    CKM_RSA_PKCS,
+    CKM_RSA_PKCS_OAEP,
+    CKM_RSA_X_509,
+    CKM_RSA_PKCS_TPM_1_1,
+    CKM_RSA_PKCS_OAEP_TPM_1_1);
 
   /**
    * This set contains the mechanisms that are full sign/verify
    * mechanisms; i.e. mechanisms that support the update functions.
    */
-  private static Set<Long> fullSignVerifyMechs;
+  private static final LongSet fullSignVerifyMechs = LongSet.of(
+    CKM_SHA1_RSA_PKCS,
+    CKM_SHA256_RSA_PKCS,
+    CKM_SHA384_RSA_PKCS,
+    CKM_SHA512_RSA_PKCS,
+    CKM_SHA1_RSA_PKCS_PSS,
+    CKM_SHA256_RSA_PKCS_PSS,
+    CKM_SHA384_RSA_PKCS_PSS,
+    CKM_SHA512_RSA_PKCS_PSS,
+    CKM_SHA1_RSA_X9_31,
+    CKM_DSA_SHA1,
+    CKM_DSA_SHA224,
+    CKM_DSA_SHA256,
+    CKM_DSA_SHA384,
+    CKM_DSA_SHA512,
+    CKM_ECDSA_SHA1,
+    CKM_AES_MAC_GENERAL,
+    CKM_AES_MAC,
+    CKM_AES_XCBC_MAC,
+    CKM_AES_XCBC_MAC_96,
+    CKM_AES_GMAC,
+    CKM_AES_CMAC_GENERAL,
+    CKM_AES_CMAC,
+    CKM_DES3_MAC_GENERAL,
+    CKM_DES3_MAC,
+    CKM_DES3_CMAC_GENERAL,
+    CKM_DES3_CMAC,
+    CKM_SHA_1_HMAC_GENERAL,
+    CKM_SHA_1_HMAC,
+    CKM_SHA224_HMAC,
+    CKM_SHA224_HMAC_GENERAL,
+    CKM_SHA224_RSA_PKCS,
+    CKM_SHA224_RSA_PKCS_PSS,
+    CKM_SHA256_HMAC_GENERAL,
+    CKM_SHA256_HMAC,
+    CKM_SHA384_HMAC_GENERAL,
+    CKM_SHA384_HMAC,
+    CKM_SHA512_HMAC_GENERAL,
+    CKM_SHA512_HMAC,
+    CKM_SHA512_224_HMAC_GENERAL,
+    CKM_SHA512_224_HMAC,
+    CKM_SHA512_256_HMAC_GENERAL,
+    CKM_SHA512_256_HMAC,
+    CKM_SHA512_T_HMAC_GENERAL,
+    CKM_SHA512_T_HMAC,
+    CKM_SSL3_MD5_MAC,
+    CKM_SSL3_SHA1_MAC,
+    CKM_TLS10_MAC_SERVER,
+    CKM_TLS10_MAC_CLIENT,
+    CKM_TLS12_MAC,
+    CKM_CMS_SIG,
+    CKM_CAMELLIA_MAC_GENERAL,
+    CKM_CAMELLIA_MAC,
+    CKM_ARIA_MAC_GENERAL,
+    CKM_ARIA_MAC,
+    CKM_SECURID,
+    CKM_HOTP,
+    CKM_ACTI,
+    CKM_KIP_MAC,
+    CKM_GOST28147_MAC,
+    CKM_GOSTR3411_HMAC,
+    CKM_GOSTR3410_WITH_GOSTR3411,
+    CKM_POLY1305,
+    CKM_DSA_SHA3_224,
+    CKM_DSA_SHA3_256,
+    CKM_DSA_SHA3_384,
+    CKM_DSA_SHA3_512,
+    CKM_SHA3_224_RSA_PKCS,
+    CKM_SHA3_256_RSA_PKCS,
+    CKM_SHA3_384_RSA_PKCS,
+    CKM_SHA3_512_RSA_PKCS,
+    CKM_SHA3_224_RSA_PKCS_PSS,
+    CKM_SHA3_256_RSA_PKCS_PSS,
+    CKM_SHA3_384_RSA_PKCS_PSS,
+    CKM_SHA3_512_RSA_PKCS_PSS,
+    CKM_SHA3_224_HMAC,
+    CKM_SHA3_224_HMAC_GENERAL,
+    CKM_SHA3_256_HMAC,
+    CKM_SHA3_256_HMAC_GENERAL,
+    CKM_SHA3_384_HMAC,
+    CKM_SHA3_384_HMAC_GENERAL,
+    CKM_SHA3_512_HMAC,
+    CKM_SHA3_512_HMAC_GENERAL,
+    CKM_ECDSA_SHA3_224,
+    CKM_ECDSA_SHA3_256,
+    CKM_ECDSA_SHA3_384,
+    CKM_ECDSA_SHA3_512,
+    CKM_MD2_HMAC_GENERAL,
+    CKM_MD2_HMAC,
+    CKM_MD5_HMAC_GENERAL,
+    CKM_MD5_HMAC,
+    CKM_RIPEMD128_HMAC_GENERAL,
+    CKM_RIPEMD128_HMAC,
+    CKM_RIPEMD160_HMAC_GENERAL,
+    CKM_RIPEMD160_HMAC,
+    CKM_RIPEMD128_RSA_PKCS,
+    CKM_RIPEMD160_RSA_PKCS,
+    CKM_VENDOR_SM2,
+    CKM_VENDOR_SM2_SM3,
+    CKM_VENDOR_SM4_MAC_GENERAL,
+    CKM_VENDOR_SM4_MAC,
+    CKM_VENDOR_ISO2_SM4_MAC_GENERAL,
+    CKM_VENDOR_ISO2_SM4_MAC,
+    CKM_BLAKE2B_160_HMAC,
+    CKM_BLAKE2B_160_HMAC_GENERAL,
+    CKM_BLAKE2B_256_HMAC,
+    CKM_BLAKE2B_256_HMAC_GENERAL,
+    CKM_BLAKE2B_384_HMAC,
+    CKM_BLAKE2B_384_HMAC_GENERAL,
+    CKM_BLAKE2B_512_HMAC,
+    CKM_BLAKE2B_512_HMAC_GENERAL,
+    CKM_XEDDSA,
+    CKM_EDDSA,
+    // Vendor Mechanisms
+    CKM_VENDOR_SM2, CKM_VENDOR_SM2_SM3, CKM_VENDOR_ISO2_SM4_MAC,
+    CKM_VENDOR_SM4_MAC, CKM_VENDOR_SM4_MAC_GENERAL,
+    CKM_VENDOR_ISO2_SM4_MAC, CKM_VENDOR_ISO2_SM4_MAC_GENERAL);
 
   /**
    * This set contains the mechanisms that are single-operation
    * sign/verify mechanisms; i.e. mechanisms that do not support the update
    * functions.
    */
-  private static Set<Long> sglOpSignVerifyMechs;
+  private static final LongSet sglOpSignVerifyMechs = LongSet.of(
+    CKM_RSA_PKCS,
+    CKM_RSA_PKCS_PSS,
+    CKM_RSA_9796,
+    CKM_RSA_X_509,
+    CKM_RSA_X9_31,
+    CKM_DSA,
+    CKM_ECDSA,
+    CKM_GOSTR3410);
 
   /**
    * This table contains the mechanisms that are sign/verify mechanisms with
    * message recovery.
    */
-  private static Set<Long> signVerifyRecoverMechs;
+  private static final LongSet signVerifyRecoverMechs = LongSet.of(
+    CKM_RSA_PKCS,
+    CKM_RSA_9796,
+    CKM_RSA_X_509,
+    CKM_CMS_SIG,
+    CKM_SEED_ECB,
+    CKM_SEED_CBC,
+    CKM_SEED_MAC_GENERAL);
 
   /**
    * This set contains the mechanisms that are digest mechanisms.
    * The Long values of the mechanisms are the keys, and the mechanism
    * names are the values.
    */
-  private static Set<Long> digestMechs;
+  private static final LongSet digestMechs = LongSet.of(
+    CKM_SHA_1,
+    CKM_SHA224,
+    CKM_SHA256,
+    CKM_SHA384,
+    CKM_SHA512,
+    CKM_SHA512_224,
+    CKM_SHA512_256,
+    CKM_SHA512_T,
+    CKM_SEED_MAC,
+    CKM_GOSTR3411,
+    CKM_SHA3_224,
+    CKM_SHA3_256,
+    CKM_SHA3_384,
+    CKM_SHA3_512,
+    CKM_MD2,
+    CKM_MD5,
+    CKM_RIPEMD128,
+    CKM_RIPEMD160,
+    CKM_VENDOR_SM3,
+    CKM_BLAKE2B_160,
+    CKM_BLAKE2B_256,
+    CKM_BLAKE2B_384,
+    CKM_BLAKE2B_512,
+    // Vendor Mechanisms
+    CKM_VENDOR_SM3);
 
   /**
    * This table contains the mechanisms that key generation mechanisms; i.e.
    * mechanisms for generating symmetric keys.
    */
-  private static Set<Long> keyGenMechs;
+  private static final LongSet keyGenMechs = LongSet.of(
+    CKM_DSA_PARAMETER_GEN,
+    CKM_DSA_PROBABLISTIC_PARAMETER_GEN,
+    CKM_DSA_SHAWE_TAYLOR_PARAMETER_GEN,
+    CKM_DH_PKCS_PARAMETER_GEN,
+    CKM_GENERIC_SECRET_KEY_GEN,
+    CKM_AES_KEY_GEN,
+    CKM_AES_XTS_KEY_GEN,
+    CKM_DES2_KEY_GEN,
+    CKM_DES3_KEY_GEN,
+    CKM_PBE_SHA1_DES3_EDE_CBC,
+    CKM_PBE_SHA1_DES2_EDE_CBC,
+    CKM_PBA_SHA1_WITH_SHA1_HMAC,
+    CKM_PKCS5_PBKD2,
+    CKM_SSL3_PRE_MASTER_KEY_GEN,
+    CKM_WTLS_PRE_MASTER_KEY_GEN,
+    CKM_CAMELLIA_KEY_GEN,
+    CKM_ARIA_KEY_GEN,
+    CKM_SEED_KEY_GEN,
+    CKM_SECURID_KEY_GEN,
+    CKM_HOTP_KEY_GEN,
+    CKM_ACTI_KEY_GEN,
+    CKM_GOST28147_KEY_GEN,
+    CKM_CHACHA20_KEY_GEN,
+    CKM_POLY1305_KEY_GEN,
+    CKM_VENDOR_SM4_KEY_GEN,
+    CKM_SHA_1_KEY_GEN,
+    CKM_SHA224_KEY_GEN,
+    CKM_SHA256_KEY_GEN,
+    CKM_SHA384_KEY_GEN,
+    CKM_SHA512_KEY_GEN,
+    CKM_SHA512_224_KEY_GEN,
+    CKM_SHA512_256_KEY_GEN,
+    CKM_SHA512_T_KEY_GEN,
+    CKM_BLAKE2B_160_KEY_GEN,
+    CKM_BLAKE2B_256_KEY_GEN,
+    CKM_BLAKE2B_384_KEY_GEN,
+    CKM_BLAKE2B_512_KEY_GEN,
+    CKM_HKDF_KEY_GEN,
+    // Vendor Mechnisms
+    CKM_VENDOR_SM4_KEY_GEN);
 
   /**
    * This table contains the mechanisms that key-pair generation mechanisms;
    * i.e. mechanisms for generating key-pairs.
    */
-  private static Set<Long> keyPairGenMechs;
+  private static final LongSet keyPairGenMechs = LongSet.of(
+    CKM_RSA_PKCS_KEY_PAIR_GEN,
+    CKM_RSA_X9_31_KEY_PAIR_GEN,
+    CKM_DSA_KEY_PAIR_GEN,
+    CKM_EC_KEY_PAIR_GEN,
+    CKM_DH_PKCS_KEY_PAIR_GEN,
+    CKM_X9_42_DH_KEY_PAIR_GEN,
+    CKM_GOSTR3410_KEY_PAIR_GEN,
+    CKM_VENDOR_SM2_KEY_PAIR_GEN,
+    CKM_EC_EDWARDS_KEY_PAIR_GEN,
+    CKM_EC_MONTGOMERY_KEY_PAIR_GEN,
+    // Vendor Mechnisms
+    CKM_VENDOR_SM2_KEY_PAIR_GEN);
 
   /**
    * This table contains the mechanisms that are wrap/unwrap mechanisms.
    */
-  private static Set<Long> wrapUnwrapMechs;
+  private static final LongSet wrapUnwrapMechs = LongSet.of(
+    CKM_RSA_PKCS,
+    CKM_RSA_PKCS_OAEP,
+    CKM_RSA_X_509,
+    CKM_RSA_PKCS_TPM_1_1,
+    CKM_RSA_PKCS_OAEP_TPM_1_1,
+    CKM_ECDH_AES_KEY_WRAP,
+    CKM_AES_ECB,
+    CKM_AES_CBC,
+    CKM_AES_CBC_PAD,
+    CKM_AES_OFB,
+    CKM_AES_CFB64,
+    CKM_AES_CFB8,
+    CKM_AES_CFB128,
+    CKM_AES_CFB1,
+    CKM_AES_XTS,
+    CKM_AES_CTR,
+    CKM_AES_CTS,
+    CKM_AES_GCM,
+    CKM_AES_CCM,
+    CKM_AES_KEY_WRAP,
+    CKM_AES_KEY_WRAP_PAD,
+    CKM_AES_KEY_WRAP_KWP,
+    CKM_DES3_ECB,
+    CKM_DES3_CBC,
+    CKM_DES3_CBC_PAD,
+    CKM_BLOWFISH_CBC,
+    CKM_BLOWFISH_CBC_PAD,
+    CKM_CAMELLIA_ECB,
+    CKM_CAMELLIA_CBC,
+    CKM_CAMELLIA_CBC_PAD,
+    CKM_ARIA_ECB,
+    CKM_ARIA_CBC,
+    CKM_ARIA_CBC_PAD,
+    CKM_SEED_CBC_PAD,
+    CKM_KIP_WRAP,
+    CKM_GOST28147_ECB,
+    CKM_GOST28147,
+    CKM_GOST28147_KEY_WRAP,
+    CKM_GOSTR3410_KEY_WRAP,
+    CKM_CHACHA20,
+    CKM_VENDOR_SM2_ENCRYPT,
+    CKM_VENDOR_SM4_ECB,
+    CKM_VENDOR_SM4_CBC,
+    CKM_SALSA20,
+    CKM_X2RATCHET_ENCRYPT,
+    CKM_X2RATCHET_DECRYPT,
+    // Vendor Mechanisms
+    CKM_VENDOR_SM2_ENCRYPT, CKM_VENDOR_SM4_ECB);
 
   /**
    * This table contains the mechanisms that are key derivation mechanisms.
    */
-  private static Set<Long> keyDerivationMechs;
+  private static final LongSet keyDerivationMechs = LongSet.of(
+    CKM_ECDH1_DERIVE,
+    CKM_ECDH1_COFACTOR_DERIVE,
+    CKM_ECMQV_DERIVE,
+    CKM_DH_PKCS_DERIVE,
+    CKM_X9_42_DH_DERIVE,
+    CKM_X9_42_DH_HYBRID_DERIVE,
+    CKM_X9_42_MQV_DERIVE,
+    CKM_AES_GMAC,
+    CKM_DES_ECB_ENCRYPT_DATA,
+    CKM_DES_CBC_ENCRYPT_DATA,
+    CKM_DES3_ECB_ENCRYPT_DATA,
+    CKM_DES3_CBC_ENCRYPT_DATA,
+    CKM_AES_ECB_ENCRYPT_DATA,
+    CKM_AES_CBC_ENCRYPT_DATA,
+    CKM_SHA1_KEY_DERIVATION,
+    CKM_SHA224_KEY_DERIVATION,
+    CKM_SHA256_KEY_DERIVATION,
+    CKM_SHA384_KEY_DERIVATION,
+    CKM_SHA512_KEY_DERIVATION,
+    CKM_SHA512_224_KEY_DERIVATION,
+    CKM_SHA512_256_KEY_DERIVATION,
+    CKM_SHA512_T_KEY_DERIVATION,
+    CKM_SSL3_MASTER_KEY_DERIVE,
+    CKM_SSL3_MASTER_KEY_DERIVE_DH,
+    CKM_SSL3_KEY_AND_MAC_DERIVE,
+    CKM_TLS12_MASTER_KEY_DERIVE,
+    CKM_TLS12_MASTER_KEY_DERIVE_DH,
+    CKM_TLS12_KEY_AND_MAC_DERIVE,
+    CKM_TLS12_KEY_SAFE_DERIVE,
+    CKM_TLS_KDF,
+    CKM_WTLS_MASTER_KEY_DERIVE,
+    CKM_WTLS_MASTER_KEY_DERIVE_DH_ECC,
+    CKM_WTLS_SERVER_KEY_AND_MAC_DERIVE,
+    CKM_WTLS_CLIENT_KEY_AND_MAC_DERIVE,
+    CKM_WTLS_PRF,
+    CKM_CONCATENATE_BASE_AND_KEY,
+    CKM_CONCATENATE_BASE_AND_DATA,
+    CKM_CONCATENATE_DATA_AND_BASE,
+    CKM_XOR_BASE_AND_DATA,
+    CKM_EXTRACT_KEY_FROM_KEY,
+    CKM_CAMELLIA_ECB_ENCRYPT_DATA,
+    CKM_CAMELLIA_CBC_ENCRYPT_DATA,
+    CKM_ARIA_ECB_ENCRYPT_DATA,
+    CKM_ARIA_CBC_ENCRYPT_DATA,
+    CKM_SEED_ECB_ENCRYPT_DATA,
+    CKM_SEED_CBC_ENCRYPT_DATA,
+    CKM_KIP_DERIVE,
+    CKM_GOSTR3410_DERIVE,
+    CKM_SHA3_224_KEY_DERIVE,
+    CKM_SHA3_256_KEY_DERIVE,
+    CKM_SHA3_384_KEY_DERIVE,
+    CKM_SHA3_512_KEY_DERIVE,
+    CKM_SHAKE_128_KEY_DERIVE,
+    CKM_SHAKE_256_KEY_DERIVE,
+    CKM_SHA256_KEY_DERIVATION,
+    CKM_SHA256_KEY_DERIVATION,
+    CKM_SHA256_KEY_DERIVATION,
+    CKM_SHA256_KEY_DERIVATION,
+    CKM_VENDOR_SM4_ECB_ENCRYPT_DATA,
+    CKM_BLAKE2B_160_KEY_DERIVE,
+    CKM_BLAKE2B_256_KEY_DERIVE,
+    CKM_BLAKE2B_384_KEY_DERIVE,
+    CKM_BLAKE2B_512_KEY_DERIVE,
+    CKM_X3DH_INITIALIZE,
+    CKM_X3DH_RESPOND,
+    CKM_X2RATCHET_INITIALIZE,
+    CKM_X2RATCHET_RESPOND,
+    CKM_SP800_108_COUNTER_KDF,
+    CKM_SP800_108_FEEDBACK_KDF,
+    CKM_SP800_108_DOUBLE_PIPELINE_KDF,
+    CKM_HKDF_DERIVE,
+    CKM_HKDF_DATA,
+    // Vendor Mechanisms
+    CKM_VENDOR_SM4_ECB_ENCRYPT_DATA);
 
   static {
-    hashMechCodeToHashNames = new HashMap<>();
+    hashMechCodeToHashNames = new LongObjectMap<>();
     hashMechCodeToHashNames.put(CKM_SHA_1,      "SHA1");
     hashMechCodeToHashNames.put(CKM_SHA224,     "SHA224");
     hashMechCodeToHashNames.put(CKM_SHA256,     "SHA256");
@@ -259,8 +598,7 @@ public class Functions implements PKCS11Constants {
    * @return The string representation of the mechanism.
    */
   public static String mechanismCodeToString(long mechCode) {
-    initMechanismMap();
-    String name = mechCodeNamesAvailable ? mechNames.get(mechCode) : null;
+    String name = MechanismNames.mechNames.get(mechCode);
 
     if (name == null) {
       name = "Unknwon mechanism with code: 0x" + toFullHex(mechCode);
@@ -293,9 +631,7 @@ public class Functions implements PKCS11Constants {
    * @return The code representation of the mechanism.
    */
   public static long mechanismStringToCode(String mechName) {
-    initMechanismMap();
-    Long code = mechCodeNamesAvailable
-        ? mechNameToCodes.get(mechName) : null;
+    Long code = MechanismNames.mechNameToCodes.get(mechName);
     return (code != null) ? code : -1;
   }
 
@@ -303,72 +639,43 @@ public class Functions implements PKCS11Constants {
     return mgfNames.get(id);
   }
 
-  private static synchronized void initMechanismMap() {
-    // ensure that another thread has not loaded the codes meanwhile
-    if (mechNames != null) {
-      return;
-    }
+  /**
+   * Holds the names of the mechanism codes. They are built once, when this
+   * class is initialized on first use.
+   */
+  private static final class MechanismNames {
 
-    // if the names of the defined codes are not yet loaded, load them
-    Map<Long, String> codeNameMap = new HashMap<>();
-    Map<String, Long> nameCodeMap = new HashMap<>();
-
-    Properties props = new Properties();
-    try {
-      props.load(Functions.class.getResourceAsStream(CKM_CODE_PROPERTIES));
-      for (String propName : props.stringPropertyNames()) {
-        String mechNames = props.getProperty(propName);
-        StringTokenizer tokens = new StringTokenizer(mechNames, ",");
-
-        if (!tokens.hasMoreTokens()) {
-          System.out.println(
-              "No name defined for Mechanism code " + propName);
-        }
-
-        long code;
-        if (propName.startsWith("0x") || propName.startsWith("0X")) {
-          code = Long.parseLong(propName.substring(2), 16);
-        } else {
-          code = Long.parseLong(propName);
-        }
-
-        String mainMechName = tokens.nextToken();
-        codeNameMap.put(code, mainMechName);
-
-        while (tokens.hasMoreTokens()) {
-          nameCodeMap.put(tokens.nextToken(), code);
-        }
-      }
+    /**
+     * Maps mechanism codes as Long to their names as Strings.
+     */
+    private static final LongObjectMap<String> mechNames;
+
+    /**
+     * Maps mechanism name as String to their code as Long.
+     */
+    private static final Map<String, Long> mechNameToCodes;
 
-      codeNameMap.put(CKM_VENDOR_ISO2_SM4_MAC, "CKM_VENDOR_ISO2_SM4_MAC");
-      codeNameMap.put(CKM_VENDOR_ISO2_SM4_MAC_GENERAL,
-          "CKM_VENDOR_ISO2_SM4_MAC_GENERAL");
-      codeNameMap.put(CKM_VENDOR_SM2, "CKM_VENDOR_SM2");
-      codeNameMap.put(CKM_VENDOR_SM2_ENCRYPT, "CKM_VENDOR_SM2_ENCRYPT");
-      codeNameMap.put(CKM_VENDOR_SM2_KEY_PAIR_GEN,
-          "CKM_VENDOR_SM2_KEY_PAIR_GEN");
-      codeNameMap.put(CKM_VENDOR_SM2_SM3, "CKM_VENDOR_SM2_SM3");
-      codeNameMap.put(CKM_VENDOR_SM3, "CKM_VENDOR_SM3");
-      codeNameMap.put(CKM_VENDOR_SM4_CBC, "CKM_VENDOR_SM4_CBC");
-      codeNameMap.put(CKM_VENDOR_SM4_ECB, "CKM_VENDOR_SM4_ECB");
-      codeNameMap.put(CKM_VENDOR_SM4_ECB_ENCRYPT_DATA,
-          "CKM_VENDOR_SM4_ECB_ENCRYPT_DATA");
-      codeNameMap.put(CKM_VENDOR_SM4_KEY_GEN, "CKM_VENDOR_SM4_KEY_GEN");
-      codeNameMap.put(CKM_VENDOR_SM4_MAC, "CKM_VENDOR_SM4_MAC");
-      codeNameMap.put(CKM_VENDOR_SM4_MAC_GENERAL, "CKM_VENDOR_SM4_MAC_GENERAL");
-
-      Set<Long> codes = codeNameMap.keySet();
-      for (Long code : codes) {
-        nameCodeMap.put(codeNameMap.get(code), code);
+    static {
+      long[] codes = CodeNames.CKM_CODES;
+      String[] names = CodeNames.CKM_NAMES;
+      long[] aliasCodes = CodeNames.CKM_ALIAS_CODES;
+      String[] aliases = CodeNames.CKM_ALIASES;
+
+      LongObjectMap<String> codeNameMap = new LongObjectMap<>(codes.length);
+      Map<String, Long> nameCodeMap =
+          new HashMap<>((codes.length + aliases.length) * 4 / 3 + 1);
+      for (int i = 0; i < codes.length; i++) {
+        codeNameMap.put(codes[i], names[i]);
+        nameCodeMap.put(names[i], codes[i]);
+      }
+      for (int i = 0; i < aliasCodes.length; i++) {
+        nameCodeMap.put(aliases[i], aliasCodes[i]);
       }
 
       mechNames = codeNameMap;
-      mechNameToCodes = nameCodeMap;
-      mechCodeNamesAvailable = true;
-    } catch (Exception ex) {
-      System.err.println(
-          "Could not read properties for code names: " + ex.getMessage());
+      mechNameToCodes = Collections.unmodifiableMap(nameCodeMap);
     }
+
   }
 
   /**
@@ -379,10 +686,7 @@ public class Functions implements PKCS11Constants {
    * @return The string representation of the error.
    */
   public static String errorCodeToString(long errorCode) {
-    initErrorCodeMap();
-
-    String name = errorCodeNamesAvailable
-        ? errorCodeNames.get(errorCode) : null;
+    String name = ErrorCodeNames.errorCodeNames.get(errorCode);
     if (name == null) {
       name = "Unknwon CKR with code: 0x" + toFullHex(errorCode);
     }
@@ -390,41 +694,26 @@ public class Functions implements PKCS11Constants {
     return name;
   }
 
-  private static synchronized void initErrorCodeMap() {
-    // ensure that another thread has not loaded the codes meanwhile
-    if (errorCodeNames != null) {
-      return;
-    }
+  /**
+   * Holds the names of the error codes. They are built once, when this
+   * class is initialized on first use.
+   */
+  private static final class ErrorCodeNames {
 
-    // if the names of the defined codes are not yet loaded, load them
-    Map<Long, String> codeNamMap = new HashMap<>();
-    Properties props = new Properties();
-    try {
-      props.load(Functions.class.getResourceAsStream(CKR_CODE_PROPERTIES));
-      for (String propName : props.stringPropertyNames()) {
-        String errorName = props.getProperty(propName);
-        long code;
-        if (propName.startsWith("0x") || propName.startsWith("0X")) {
-          code = Long.parseLong(propName.substring(2), 16);
-        } else {
-          code = Long.parseLong(propName);
-        }
-        codeNamMap.put(code, errorName);
+    /**
+     * Maps error codes as Long to the names of the PKCS#11 errors.
+     */
+    private static final LongObjectMap<String> errorCodeNames;
+
+    static {
+      long[] codes = CodeNames.CKR_CODES;
+      String[] names = CodeNames.CKR_NAMES;
+      errorCodeNames = new LongObjectMap<>(codes.length);
+      for (int i = 0; i < codes.length; i++) {
+        errorCodeNames.put(codes[i], names[i]);
       }
-      errorCodeNames = codeNamMap;
-      errorCodeNamesAvailable = true;
-    } catch (Exception ex) {
-      System.err.println("Could not read properties for error code names: "
-          + ex.getMessage());
     }
-  }
 
-  private static Set<Long> asSet(long[] elements) {
-    HashSet<Long> set = new HashSet<>();
-    for (long el : elements) {
-      set.add(el);
-    }
-    return set;
   }
 
   /**
@@ -440,54 +729,6 @@ public class Functions implements PKCS11Constants {
    *         mechanism. False, otherwise.
    */
   public static boolean isFullEncryptDecryptMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (fullEncryptDecryptMechs == null) {
-      long[] mechs = new long[]{
-        CKM_AES_ECB,
-        CKM_AES_CBC,
-        CKM_AES_CBC_PAD,
-        CKM_AES_OFB,
-        CKM_AES_CFB64,
-        CKM_AES_CFB8,
-        CKM_AES_CFB128,
-        CKM_AES_CFB1,
-        CKM_AES_XTS,
-        CKM_AES_CTR,
-        CKM_AES_CTS,
-        CKM_AES_GCM,
-        CKM_AES_CCM,
-        CKM_AES_KEY_WRAP,
-        CKM_AES_KEY_WRAP_PAD,
-        CKM_AES_KEY_WRAP_KWP,
-        CKM_DES3_ECB,
-        CKM_DES3_CBC,
-        CKM_DES3_CBC_PAD,
-        CKM_DES_OFB64,
-        CKM_DES_OFB8,
-        CKM_DES_CFB64,
-        CKM_DES_CFB8,
-        CKM_BLOWFISH_CBC,
-        CKM_BLOWFISH_CBC_PAD,
-        CKM_CAMELLIA_ECB,
-        CKM_CAMELLIA_CBC,
-        CKM_CAMELLIA_CBC_PAD,
-        CKM_ARIA_ECB,
-        CKM_ARIA_CBC,
-        CKM_ARIA_CBC_PAD,
-        CKM_SEED_CBC_PAD,
-        CKM_GOST28147_ECB,
-        CKM_GOST28147,
-        CKM_CHACHA20,
-        CKM_SALSA20,
-        CKM_CHACHA20_POLY1305,
-        CKM_SALSA20_POLY1305,
-        CKM_X2RATCHET_ENCRYPT,
-        CKM_X2RATCHET_DECRYPT,
-        // Vendor Mechanisms
-        CKM_VENDOR_SM4_CBC, CKM_VENDOR_SM4_ECB};
-      fullEncryptDecryptMechs = asSet(mechs);
-    }
-
     return fullEncryptDecryptMechs.contains(mechCode);
   }
 
@@ -505,17 +746,6 @@ public class Functions implements PKCS11Constants {
    */
   public static boolean isSingleOperationEncryptDecryptMechanism(
       long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (sglOpEncryptDecryptMechs == null) {
-      long[] mechs = new long[]{
-        CKM_RSA_PKCS,
-        CKM_RSA_PKCS_OAEP,
-        CKM_RSA_X_509,
-        CKM_RSA_PKCS_TPM_1_1,
-        CKM_RSA_PKCS_OAEP_TPM_1_1};
-      sglOpEncryptDecryptMechs = asSet(mechs);
-    }
-
     return sglOpEncryptDecryptMechs.contains(mechCode);
   }
 
@@ -532,128 +762,6 @@ public class Functions implements PKCS11Constants {
    *         mechanism. False, otherwise.
    */
   public static boolean isFullSignVerifyMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (fullSignVerifyMechs == null) {
-      long[] mechs = new long[]{
-        CKM_SHA1_RSA_PKCS,
-        CKM_SHA256_RSA_PKCS,
-        CKM_SHA384_RSA_PKCS,
-        CKM_SHA512_RSA_PKCS,
-        CKM_SHA1_RSA_PKCS_PSS,
-        CKM_SHA256_RSA_PKCS_PSS,
-        CKM_SHA384_RSA_PKCS_PSS,
-        CKM_SHA512_RSA_PKCS_PSS,
-        CKM_SHA1_RSA_X9_31,
-        CKM_DSA_SHA1,
-        CKM_DSA_SHA224,
-        CKM_DSA_SHA256,
-        CKM_DSA_SHA384,
-        CKM_DSA_SHA512,
-        CKM_ECDSA_SHA1,
-        CKM_AES_MAC_GENERAL,
-        CKM_AES_MAC,
-        CKM_AES_XCBC_MAC,
-        CKM_AES_XCBC_MAC_96,
-        CKM_AES_GMAC,
-        CKM_AES_CMAC_GENERAL,
-        CKM_AES_CMAC,
-        CKM_DES3_MAC_GENERAL,
-        CKM_DES3_MAC,
-        CKM_DES3_CMAC_GENERAL,
-        CKM_DES3_CMAC,
-        CKM_SHA_1_HMAC_GENERAL,
-        CKM_SHA_1_HMAC,
-        CKM_SHA224_HMAC,
-        CKM_SHA224_HMAC_GENERAL,
-        CKM_SHA224_RSA_PKCS,
-        CKM_SHA224_RSA_PKCS_PSS,
-        CKM_SHA256_HMAC_GENERAL,
-        CKM_SHA256_HMAC,
-        CKM_SHA384_HMAC_GENERAL,
-        CKM_SHA384_HMAC,
-        CKM_SHA512_HMAC_GENERAL,
-        CKM_SHA512_HMAC,
-        CKM_SHA512_224_HMAC_GENERAL,
-        CKM_SHA512_224_HMAC,
-        CKM_SHA512_256_HMAC_GENERAL,
-        CKM_SHA512_256_HMAC,
-        CKM_SHA512_T_HMAC_GENERAL,
-        CKM_SHA512_T_HMAC,
-        CKM_SSL3_MD5_MAC,
-        CKM_SSL3_SHA1_MAC,
-        CKM_TLS10_MAC_SERVER,
-        CKM_TLS10_MAC_CLIENT,
-        CKM_TLS12_MAC,
-        CKM_CMS_SIG,
-        CKM_CAMELLIA_MAC_GENERAL,
-        CKM_CAMELLIA_MAC,
-        CKM_ARIA_MAC_GENERAL,
-        CKM_ARIA_MAC,
-        CKM_SECURID,
-        CKM_HOTP,
-        CKM_ACTI,
-        CKM_KIP_MAC,
-        CKM_GOST28147_MAC,
-        CKM_GOSTR3411_HMAC,
-        CKM_GOSTR3410_WITH_GOSTR3411,
-        CKM_POLY1305,
-        CKM_DSA_SHA3_224,
-        CKM_DSA_SHA3_256,
-        CKM_DSA_SHA3_384,
-        CKM_DSA_SHA3_512,
-        CKM_SHA3_224_RSA_PKCS,
-        CKM_SHA3_256_RSA_PKCS,
-        CKM_SHA3_384_RSA_PKCS,
-        CKM_SHA3_512_RSA_PKCS,
-        CKM_SHA3_224_RSA_PKCS_PSS,
-        CKM_SHA3_256_RSA_PKCS_PSS,
-        CKM_SHA3_384_RSA_PKCS_PSS,
-        CKM_SHA3_512_RSA_PKCS_PSS,
-        CKM_SHA3_224_HMAC,
-        CKM_SHA3_224_HMAC_GENERAL,
-        CKM_SHA3_256_HMAC,
-        CKM_SHA3_256_HMAC_GENERAL,
-        CKM_SHA3_384_HMAC,
-        CKM_SHA3_384_HMAC_GENERAL,
-        CKM_SHA3_512_HMAC,
-        CKM_SHA3_512_HMAC_GENERAL,
-        CKM_ECDSA_SHA3_224,
-        CKM_ECDSA_SHA3_256,
-        CKM_ECDSA_SHA3_384,
-        CKM_ECDSA_SHA3_512,
-        CKM_MD2_HMAC_GENERAL,
-        CKM_MD2_HMAC,
-        CKM_MD5_HMAC_GENERAL,
-        CKM_MD5_HMAC,
-        CKM_RIPEMD128_HMAC_GENERAL,
-        CKM_RIPEMD128_HMAC,
-        CKM_RIPEMD160_HMAC_GENERAL,
-        CKM_RIPEMD160_HMAC,
-        CKM_RIPEMD128_RSA_PKCS,
-        CKM_RIPEMD160_RSA_PKCS,
-        CKM_VENDOR_SM2,
-        CKM_VENDOR_SM2_SM3,
-        CKM_VENDOR_SM4_MAC_GENERAL,
-        CKM_VENDOR_SM4_MAC,
-        CKM_VENDOR_ISO2_SM4_MAC_GENERAL,
-        CKM_VENDOR_ISO2_SM4_MAC,
-        CKM_BLAKE2B_160_HMAC,
-        CKM_BLAKE2B_160_HMAC_GENERAL,
-        CKM_BLAKE2B_256_HMAC,
-        CKM_BLAKE2B_256_HMAC_GENERAL,
-        CKM_BLAKE2B_384_HMAC,
-        CKM_BLAKE2B_384_HMAC_GENERAL,
-        CKM_BLAKE2B_512_HMAC,
-        CKM_BLAKE2B_512_HMAC_GENERAL,
-        CKM_XEDDSA,
-        CKM_EDDSA,
-        // Vendor Mechanisms
-        CKM_VENDOR_SM2, CKM_VENDOR_SM2_SM3, CKM_VENDOR_ISO2_SM4_MAC,
-        CKM_VENDOR_SM4_MAC, CKM_VENDOR_SM4_MAC_GENERAL,
-        CKM_VENDOR_ISO2_SM4_MAC, CKM_VENDOR_ISO2_SM4_MAC_GENERAL};
-      fullSignVerifyMechs = asSet(mechs);
-    }
-
     return fullSignVerifyMechs.contains(mechCode);
   }
 
@@ -670,20 +778,6 @@ public class Functions implements PKCS11Constants {
    *         sign/verify mechanism. False, otherwise.
    */
   public static boolean isSingleOperationSignVerifyMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (sglOpSignVerifyMechs == null) {
-      long[] mechs = new long[]{
-        CKM_RSA_PKCS,
-        CKM_RSA_PKCS_PSS,
-        CKM_RSA_9796,
-        CKM_RSA_X_509,
-        CKM_RSA_X9_31,
-        CKM_DSA,
-        CKM_ECDSA,
-        CKM_GOSTR3410};
-      sglOpSignVerifyMechs = asSet(mechs);
-    }
-
     return sglOpSignVerifyMechs.contains(mechCode);
   }
 
@@ -699,19 +793,6 @@ public class Functions implements PKCS11Constants {
    *         message recovery. False, otherwise.
    */
   public static boolean isSignVerifyRecoverMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (signVerifyRecoverMechs == null) {
-      long[] mechs = new long[]{
-        CKM_RSA_PKCS,
-        CKM_RSA_9796,
-        CKM_RSA_X_509,
-        CKM_CMS_SIG,
-        CKM_SEED_ECB,
-        CKM_SEED_CBC,
-        CKM_SEED_MAC_GENERAL};
-      signVerifyRecoverMechs = asSet(mechs);
-    }
-
     return signVerifyRecoverMechs.contains(mechCode);
   }
 
@@ -727,37 +808,6 @@ public class Functions implements PKCS11Constants {
    *         otherwise.
    */
   public static boolean isDigestMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (digestMechs == null) {
-      long[] mechs = new long[]{
-        CKM_SHA_1,
-        CKM_SHA224,
-        CKM_SHA256,
-        CKM_SHA384,
-        CKM_SHA512,
-        CKM_SHA512_224,
-        CKM_SHA512_256,
-        CKM_SHA512_T,
-        CKM_SEED_MAC,
-        CKM_GOSTR3411,
-        CKM_SHA3_224,
-        CKM_SHA3_256,
-        CKM_SHA3_384,
-        CKM_SHA3_512,
-        CKM_MD2,
-        CKM_MD5,
-        CKM_RIPEMD128,
-        CKM_RIPEMD160,
-        CKM_VENDOR_SM3,
-        CKM_BLAKE2B_160,
-        CKM_BLAKE2B_256,
-        CKM_BLAKE2B_384,
-        CKM_BLAKE2B_512,
-        // Vendor Mechanisms
-        CKM_VENDOR_SM3};
-      digestMechs = asSet(mechs);
-    }
-
     return digestMechs.contains(mechCode);
   }
 
@@ -773,52 +823,6 @@ public class Functions implements PKCS11Constants {
    *         False, otherwise.
    */
   public static boolean isKeyGenerationMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (keyGenMechs == null) {
-      long[] mechs = new long[]{
-        CKM_DSA_PARAMETER_GEN,
-        CKM_DSA_PROBABLISTIC_PARAMETER_GEN,
-        CKM_DSA_SHAWE_TAYLOR_PARAMETER_GEN,
-        CKM_DH_PKCS_PARAMETER_GEN,
-        CKM_GENERIC_SECRET_KEY_GEN,
-        CKM_AES_KEY_GEN,
-        CKM_AES_XTS_KEY_GEN,
-        CKM_DES2_KEY_GEN,
-        CKM_DES3_KEY_GEN,
-        CKM_PBE_SHA1_DES3_EDE_CBC,
-        CKM_PBE_SHA1_DES2_EDE_CBC,
-        CKM_PBA_SHA1_WITH_SHA1_HMAC,
-        CKM_PKCS5_PBKD2,
-        CKM_SSL3_PRE_MASTER_KEY_GEN,
-        CKM_WTLS_PRE_MASTER_KEY_GEN,
-        CKM_CAMELLIA_KEY_GEN,
-        CKM_ARIA_KEY_GEN,
-        CKM_SEED_KEY_GEN,
-        CKM_SECURID_KEY_GEN,
-        CKM_HOTP_KEY_GEN,
-        CKM_ACTI_KEY_GEN,
-        CKM_GOST28147_KEY_GEN,
-        CKM_CHACHA20_KEY_GEN,
-        CKM_POLY1305_KEY_GEN,
-        CKM_VENDOR_SM4_KEY_GEN,
-        CKM_SHA_1_KEY_GEN,
-        CKM_SHA224_KEY_GEN,
-        CKM_SHA256_KEY_GEN,
-        CKM_SHA384_KEY_GEN,
-        CKM_SHA512_KEY_GEN,
-        CKM_SHA512_224_KEY_GEN,
-        CKM_SHA512_256_KEY_GEN,
-        CKM_SHA512_T_KEY_GEN,
-        CKM_BLAKE2B_160_KEY_GEN,
-        CKM_BLAKE2B_256_KEY_GEN,
-        CKM_BLAKE2B_384_KEY_GEN,
-        CKM_BLAKE2B_512_KEY_GEN,
-        CKM_HKDF_KEY_GEN,
-        // Vendor Mechnisms
-        CKM_VENDOR_SM4_KEY_GEN};
-      keyGenMechs = asSet(mechs);
-    }
-
     return keyGenMechs.contains(mechCode);
   }
 
@@ -834,24 +838,6 @@ public class Functions implements PKCS11Constants {
    *         mechanism. False, otherwise.
    */
   public static boolean isKeyPairGenerationMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (keyPairGenMechs == null) {
-      long[] mechs = new long[]{
-        CKM_RSA_PKCS_KEY_PAIR_GEN,
-        CKM_RSA_X9_31_KEY_PAIR_GEN,
-        CKM_DSA_KEY_PAIR_GEN,
-        CKM_EC_KEY_PAIR_GEN,
-        CKM_DH_PKCS_KEY_PAIR_GEN,
-        CKM_X9_42_DH_KEY_PAIR_GEN,
-        CKM_GOSTR3410_KEY_PAIR_GEN,
-        CKM_VENDOR_SM2_KEY_PAIR_GEN,
-        CKM_EC_EDWARDS_KEY_PAIR_GEN,
-        CKM_EC_MONTGOMERY_KEY_PAIR_GEN,
-        // Vendor Mechnisms
-        CKM_VENDOR_SM2_KEY_PAIR_GEN};
-      keyPairGenMechs = asSet(mechs);
-    }
-
     return keyPairGenMechs.contains(mechCode);
   }
 
@@ -868,60 +854,6 @@ public class Functions implements PKCS11Constants {
    *         False, otherwise.
    */
   public static boolean isWrapUnwrapMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (wrapUnwrapMechs == null) {
-      long[] mechs = new long[] {
-        CKM_RSA_PKCS,
-        CKM_RSA_PKCS_OAEP,
-        CKM_RSA_X_509,
-        CKM_RSA_PKCS_TPM_1_1,
-        CKM_RSA_PKCS_OAEP_TPM_1_1,
-        CKM_ECDH_AES_KEY_WRAP,
-        CKM_AES_ECB,
-        CKM_AES_CBC,
-        CKM_AES_CBC_PAD,
-        CKM_AES_OFB,
-        CKM_AES_CFB64,
-        CKM_AES_CFB8,
-        CKM_AES_CFB128,
-        CKM_AES_CFB1,
-        CKM_AES_XTS,
-        CKM_AES_CTR,
-        CKM_AES_CTS,
-        CKM_AES_GCM,
-        CKM_AES_CCM,
-        CKM_AES_KEY_WRAP,
-        CKM_AES_KEY_WRAP_PAD,
-        CKM_AES_KEY_WRAP_KWP,
-        CKM_DES3_ECB,
-        CKM_DES3_CBC,
-        CKM_DES3_CBC_PAD,
-        CKM_BLOWFISH_CBC,
-        CKM_BLOWFISH_CBC_PAD,
-        CKM_CAMELLIA_ECB,
-        CKM_CAMELLIA_CBC,
-        CKM_CAMELLIA_CBC_PAD,
-        CKM_ARIA_ECB,
-        CKM_ARIA_CBC,
-        CKM_ARIA_CBC_PAD,
-        CKM_SEED_CBC_PAD,
-        CKM_KIP_WRAP,
-        CKM_GOST28147_ECB,
-        CKM_GOST28147,
-        CKM_GOST28147_KEY_WRAP,
-        CKM_GOSTR3410_KEY_WRAP,
-        CKM_CHACHA20,
-        CKM_VENDOR_SM2_ENCRYPT,
-        CKM_VENDOR_SM4_ECB,
-        CKM_VENDOR_SM4_CBC,
-        CKM_SALSA20,
-        CKM_X2RATCHET_ENCRYPT,
-        CKM_X2RATCHET_DECRYPT,
-        // Vendor Mechanisms
-        CKM_VENDOR_SM2_ENCRYPT, CKM_VENDOR_SM4_ECB};
-      wrapUnwrapMechs = asSet(mechs);
-    }
-
     return wrapUnwrapMechs.contains(mechCode);
   }
 
@@ -937,86 +869,6 @@ public class Functions implements PKCS11Constants {
    *         False, otherwise.
    */
   public static boolean isKeyDerivationMechanism(long mechCode) {
-    // build the hashtable on demand (=first use)
-    if (keyDerivationMechs == null) {
-      long[] mechs = new long[]{
-        CKM_ECDH1_DERIVE,
-        CKM_ECDH1_COFACTOR_DERIVE,
-        CKM_ECMQV_DERIVE,
-        CKM_DH_PKCS_DERIVE,
-        CKM_X9_42_DH_DERIVE,
-        CKM_X9_42_DH_HYBRID_DERIVE,
-        CKM_X9_42_MQV_DERIVE,
-        CKM_AES_GMAC,
-        CKM_DES_ECB_ENCRYPT_DATA,
-        CKM_DES_CBC_ENCRYPT_DATA,
-        CKM_DES3_ECB_ENCRYPT_DATA,
-        CKM_DES3_CBC_ENCRYPT_DATA,
-        CKM_AES_ECB_ENCRYPT_DATA,
-        CKM_AES_CBC_ENCRYPT_DATA,
-        CKM_SHA1_KEY_DERIVATION,
-        CKM_SHA224_KEY_DERIVATION,
-        CKM_SHA256_KEY_DERIVATION,
-        CKM_SHA384_KEY_DERIVATION,
-        CKM_SHA512_KEY_DERIVATION,
-        CKM_SHA512_224_KEY_DERIVATION,
-        CKM_SHA512_256_KEY_DERIVATION,
-        CKM_SHA512_T_KEY_DERIVATION,
-        CKM_SSL3_MASTER_KEY_DERIVE,
-        CKM_SSL3_MASTER_KEY_DERIVE_DH,
-        CKM_SSL3_KEY_AND_MAC_DERIVE,
-        CKM_TLS12_MASTER_KEY_DERIVE,
-        CKM_TLS12_MASTER_KEY_DERIVE_DH,
-        CKM_TLS12_KEY_AND_MAC_DERIVE,
-        CKM_TLS12_KEY_SAFE_DERIVE,
-        CKM_TLS_KDF,
-        CKM_WTLS_MASTER_KEY_DERIVE,
-        CKM_WTLS_MASTER_KEY_DERIVE_DH_ECC,
-        CKM_WTLS_SERVER_KEY_AND_MAC_DERIVE,
-        CKM_WTLS_CLIENT_KEY_AND_MAC_DERIVE,
-        CKM_WTLS_PRF,
-        CKM_CONCATENATE_BASE_AND_KEY,
-        CKM_CONCATENATE_BASE_AND_DATA,
-        CKM_CONCATENATE_DATA_AND_BASE,
-        CKM_XOR_BASE_AND_DATA,
-        CKM_EXTRACT_KEY_FROM_KEY,
-        CKM_CAMELLIA_ECB_ENCRYPT_DATA,
-        CKM_CAMELLIA_CBC_ENCRYPT_DATA,
-        CKM_ARIA_ECB_ENCRYPT_DATA,
-        CKM_ARIA_CBC_ENCRYPT_DATA,
-        CKM_SEED_ECB_ENCRYPT_DATA,
-        CKM_SEED_CBC_ENCRYPT_DATA,
-        CKM_KIP_DERIVE,
-        CKM_GOSTR3410_DERIVE,
-        CKM_SHA3_224_KEY_DERIVE,
-        CKM_SHA3_256_KEY_DERIVE,
-        CKM_SHA3_384_KEY_DERIVE,
-        CKM_SHA3_512_KEY_DERIVE,
-        CKM_SHAKE_128_KEY_DERIVE,
-        CKM_SHAKE_256_KEY_DERIVE,
-        CKM_SHA256_KEY_DERIVATION,
-        CKM_SHA256_KEY_DERIVATION,
-        CKM_SHA256_KEY_DERIVATION,
-        CKM_SHA256_KEY_DERIVATION,
-        CKM_VENDOR_SM4_ECB_ENCRYPT_DATA,
-        CKM_BLAKE2B_160_KEY_DERIVE,
-        CKM_BLAKE2B_256_KEY_DERIVE,
-        CKM_BLAKE2B_384_KEY_DERIVE,
-        CKM_BLAKE2B_512_KEY_DERIVE,
-        CKM_X3DH_INITIALIZE,
-        CKM_X3DH_RESPOND,
-        CKM_X2RATCHET_INITIALIZE,
-        CKM_X2RATCHET_RESPOND,
-        CKM_SP800_108_COUNTER_KDF,
-        CKM_SP800_108_FEEDBACK_KDF,
-        CKM_SP800_108_DOUBLE_PIPELINE_KDF,
-        CKM_HKDF_DERIVE,
-        CKM_HKDF_DATA,
-        // Vendor Mechanisms
-        CKM_VENDOR_SM4_ECB_ENCRYPT_DATA};
-      keyDerivationMechs = asSet(mechs);
-    }
-
     return keyDerivationMechs.contains(mechCode);
   }
 